@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.image;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the color histogram used by {@link IndexImage}, compared to the previous
+ * implementation, using lists of counter objects in 4096 bins, and per pixel {@code getRGB(x, y)}.
+ * Also measures creating an indexed image, using median cut, octree and octree with k-means refinement.
+ * <p/>
+ * In package {@code com.twelvemonkeys.image}, as {@code IndexImage} and {@code ColorHistogram} are package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexImageBenchmark {
+    @Param({"1", "5"})
+    public int imageType;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        image = ImageUtil.toBuffered(createRGB(2048, 1536), imageType);
+    }
+
+    // Smooth gradients with some noise, and a few flat blocks, somewhat like photographic content
+    private static BufferedImage createRGB(final int width, final int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int off = (y * width + x) * 3;
+                int noise = random.nextInt(8);
+                boolean block = ((x / 64) + (y / 64)) % 5 == 0;
+
+                data[off    ] = (byte) (block ? 32 : (x * 255 / width) + noise);      // Blue
+                data[off + 1] = (byte) (block ? 224 : (y * 255 / height) + noise);    // Green
+                data[off + 2] = (byte) (((x + y) * 255 / (width + height)) + noise);  // Red
+            }
+        }
+
+        return image;
+    }
+
+    @Benchmark
+    public int histogram() {
+        IndexImage.MedianCutQuantizer quantizer = new IndexImage.MedianCutQuantizer();
+        quantizer.addPixels(image, 1);
+        quantizer.histogram.sort();
+
+        return quantizer.histogram.size();
+    }
+
+    @Benchmark
+    public Object histogramLegacy() {
+        return LegacyHistogram.create(image);
+    }
+
+    @Benchmark
+    public BufferedImage createIndexed() {
+        return IndexImage.getIndexedImage(image, 256, IndexImage.COLOR_SELECTION_QUALITY | IndexImage.DITHER_NONE);
+    }
+
+    @Benchmark
+    public BufferedImage createIndexedOctree() {
+        return IndexImage.getIndexedImage(image, 256, IndexImage.COLOR_SELECTION_QUALITY | IndexImage.DITHER_NONE | IndexImage.QUANTIZER_OCTREE);
+    }
+
+    @Benchmark
+    public BufferedImage createIndexedOctreeKMeans() {
+        return IndexImage.getIndexedImage(image, 256, IndexImage.COLOR_SELECTION_QUALITY | IndexImage.DITHER_NONE | IndexImage.QUANTIZER_OCTREE | IndexImage.REFINE_KMEANS);
+    }
+
+    /**
+     * The previous histogram implementation, for comparison.
+     */
+    static final class LegacyHistogram {
+        static final class Counter {
+            final int val;
+            int count = 1;
+
+            Counter(final int val) {
+                this.val = val;
+            }
+
+            boolean add(final int val) {
+                if (this.val != val) {
+                    return false;
+                }
+
+                count++;
+
+                return true;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        static List<Counter>[] create(final BufferedImage image) {
+            List<Counter>[] colors = new List[1 << 12];
+
+            for (int x = 0; x < image.getWidth(); x++) {
+                for (int y = 0; y < image.getHeight(); y++) {
+                    int rgb = image.getRGB(x, y) & 0xFFFFFF;
+                    int index = ColorHistogram.binIndex(rgb);
+
+                    List<Counter> v = colors[index];
+
+                    if (v == null) {
+                        v = new ArrayList<Counter>();
+                        v.add(new Counter(rgb));
+                        colors[index] = v;
+                    }
+                    else {
+                        boolean found = false;
+
+                        for (Counter counter : v) {
+                            if (counter.add(rgb)) {
+                                found = true;
+                                break;
+                            }
+                        }
+
+                        if (!found) {
+                            v.add(new Counter(rgb));
+                        }
+                    }
+                }
+            }
+
+            return colors;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.image;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of 24 bit RGB colors, counting the number of pixels of each color.
+ * <p/>
+ * Colors are counted in an open addressing hash table of primitive {@code int}s,
+ * so adding a color does not allocate any objects.
+ * After counting, the histogram can be sorted into 4096 bins, using the high four bits of each component
+ * as the bin index, for efficient traversal of a sub cube of the color space.
+ *
+ * @see IndexImage
+ */
+final class ColorHistogram {
+    /** The number of bins, when sorted. */
+    static final int BINS = 1 << 12;
+
+    private static final int EMPTY = -1;
+
+    // Hash table, or flat arrays of colors and counts when sorted
+    int[] colors;
+    int[] counts;
+
+    // Offsets into colors and counts for each bin (plus one), null until sorted
+    int[] bins;
+
+    private int size;
+    private int total;
+    private int threshold;
+
+    ColorHistogram() {
+        this(1024);
+    }
+
+    ColorHistogram(final int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+
+        allocate(capacity);
+    }
+
+    private void allocate(final int capacity) {
+        colors = new int[capacity];
+        counts = new int[capacity];
+        Arrays.fill(colors, EMPTY);
+
+        // Keep the load factor at or below 0.5, to keep the probe sequences short
+        threshold = capacity >> 1;
+    }
+
+    private static int hash(final int rgb) {
+        int hash = rgb * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Adds one pixel of the given color.
+     *
+     * @param rgb the color, any alpha bits are ignored
+     * @throws IllegalStateException if the histogram is sorted
+     */
+    void add(final int rgb) {
+        add(rgb, 1);
+    }
+
+    private void add(final int rgb, final int count) {
+        if (bins != null) {
+            throw new IllegalStateException("Histogram already sorted");
+        }
+
+        total += count;
+
+        int color = rgb & 0xFFFFFF;
+        int mask = colors.length - 1;
+        int index = hash(color) & mask;
+
+        while (true) {
+            int current = colors[index];
+
+            if (current == color) {
+                counts[index] += count;
+                break;
+            }
+
+            if (current == EMPTY) {
+                colors[index] = color;
+                counts[index] = count;
+
+                if (++size > threshold) {
+                    rehash();
+                }
+
+                break;
+            }
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    private void rehash() {
+        int[] oldColors = colors;
+        int[] oldCounts = counts;
+
+        allocate(oldColors.length << 1);
+
+        int mask = colors.length - 1;
+
+        for (int i = 0; i < oldColors.length; i++) {
+            int color = oldColors[i];
+
+            if (color != EMPTY) {
+                int index = hash(color) & mask;
+
+                while (colors[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+
+                colors[index] = color;
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of distinct colors.
+     *
+     * @return the number of distinct colors
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the total number of pixels counted.
+     *
+     * @return the number of pixels counted
+     */
+    int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the bin index of the given color, from the high four bits of each component.
+     *
+     * @param rgb the color
+     * @return the bin index, in the range {@code [0, BINS)}
+     */
+    static int binIndex(final int rgb) {
+        return ((rgb & 0xF00000) >>> 12) | ((rgb & 0x00F000) >>> 8) | ((rgb & 0x0000F0) >>> 4);
+    }
+
+    /**
+     * Compacts the histogram into flat arrays of {@code size()} colors and counts, grouped by bin.
+     * The colors of bin {@code i} are found at the indexes from {@code bins[i]} (inclusive)
+     * to {@code bins[i + 1]} (exclusive).
+     * No more colors can be added after sorting.
+     */
+    void sort() {
+        if (bins != null) {
+            return;
+        }
+
+        int[] offsets = new int[BINS + 1];
+
+        for (int color : colors) {
+            if (color != EMPTY) {
+                offsets[binIndex(color) + 1]++;
+            }
+        }
+
+        for (int i = 0; i < BINS; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] sortedColors = new int[size];
+        int[] sortedCounts = new int[size];
+        int[] next = offsets.clone();
+
+        for (int i = 0; i < colors.length; i++) {
+            int color = colors[i];
+
+            if (color != EMPTY) {
+                int index = next[binIndex(color)]++;
+                sortedColors[index] = color;
+                sortedCounts[index] = counts[i];
+            }
+        }
+
+        colors = sortedColors;
+        counts = sortedCounts;
+        bins = offsets;
+    }
+}
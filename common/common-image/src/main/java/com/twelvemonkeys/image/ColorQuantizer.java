@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Abstract base class for color quantizers, creating a palette of a limited number of colors,
+ * representing the colors of an image.
+ * <p/>
+ * Pixels are added one at a time, so quantizers may consume large images in a streaming fashion.
+ * Any alpha information is ignored.
+ *
+ * @see IndexImage
+ */
+abstract class ColorQuantizer {
+    /**
+     * Adds one pixel of the given color.
+     *
+     * @param rgb the color, any alpha bits are ignored
+     */
+    abstract void add(int rgb);
+
+    /**
+     * Creates a palette from the pixels added.
+     *
+     * @param pNumberOfColors the maximum number of colors in the palette
+     * @return the palette, as 24 bit RGB values, with at least one and at most {@code pNumberOfColors} colors
+     */
+    abstract int[] createPalette(int pNumberOfColors);
+
+    /**
+     * Adds the pixels of the given image.
+     * The pixels are read one row at a time, and only every {@code pStep}th pixel
+     * of each row and column is added, with the sampled pixels staggered diagonally.
+     *
+     * @param pImage the image
+     * @param pStep the distance between sampled pixels, {@code 1} means add every pixel
+     */
+    void addPixels(final BufferedImage pImage, final int pStep) {
+        int width = pImage.getWidth();
+        int height = pImage.getHeight();
+        Raster raster = pImage.getRaster();
+
+        int[] row;
+
+        switch (pImage.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+                // The data elements are the packed RGB values
+                row = new int[width];
+
+                for (int y = 0; y < height; y++) {
+                    raster.getDataElements(0, y, width, 1, row);
+
+                    for (int x = y % pStep; x < width; x += pStep) {
+                        add(row[x]);
+                    }
+                }
+
+                break;
+
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                // The samples are R, G, B (and A), in band order
+                int bands = raster.getNumBands();
+                row = new int[width * bands];
+
+                for (int y = 0; y < height; y++) {
+                    raster.getPixels(0, y, width, 1, row);
+
+                    for (int x = y % pStep; x < width; x += pStep) {
+                        int i = x * bands;
+                        add(row[i] << 16 | row[i + 1] << 8 | row[i + 2]);
+                    }
+                }
+
+                break;
+
+            default:
+                row = new int[width];
+
+                for (int y = 0; y < height; y++) {
+                    pImage.getRGB(0, y, width, 1, row, 0, width);
+
+                    for (int x = y % pStep; x < width; x += pStep) {
+                        add(row[x]);
+                    }
+                }
+        }
+    }
+}
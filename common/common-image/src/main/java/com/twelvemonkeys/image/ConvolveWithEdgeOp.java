@@ -32,10 +32,26 @@ import java.awt.image.*;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 /**
  * This class implements a convolution from the source
  * to the destination.
+ * <p/>
+ * For the common 8 bit image types (like {@code TYPE_INT_RGB}, {@code TYPE_INT_ARGB}, {@code TYPE_3BYTE_BGR},
+ * {@code TYPE_4BYTE_ABGR} and {@code TYPE_BYTE_GRAY}), the convolution is done directly on the backing arrays.
+ * Separable kernels (like the Gaussian kernels used for blurring) are detected, and applied as one horizontal
+ * and one vertical pass, requiring {@code w + h} instead of {@code w * h} multiplications per sample.
+ * The {@code EDGE_REFLECT} and {@code EDGE_WRAP} edge conditions are implemented by mapping the sample
+ * coordinates, and do not require a bordered copy of the source.
+ * Indexed and packed layouts with no more than 8 bits per sample are converted to {@code TYPE_INT_RGB} or
+ * {@code TYPE_INT_ARGB} first, and convolved the same way.
+ * Other image types, like 16 bit images, are converted using {@link ConvolveOp}, separable kernels still in two
+ * passes when the edge condition is {@code EDGE_REFLECT} or {@code EDGE_WRAP}.
+ * <p/>
+ * To convolve large images faster on multi-core systems, an {@code Executor} may be passed to the constructor.
+ * The rows of the destination are then split into bands, that are convolved concurrently.
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haku $
@@ -60,7 +76,7 @@ public class ConvolveWithEdgeOp implements BufferedImageOp, RasterOp {
      * edges of the original image. This is usually a good default.
      * Note that while this mode typically provides better quality than the
      * standard modes {@code EDGE_ZERO_FILL} and {@code EDGE_NO_OP}, it does so
-     * at the expense of higher memory consumption and considerable more computation.
+     * at the expense of some more computation.
      */
     public static final int EDGE_REFLECT = 2; // as JAI BORDER_REFLECT
     /**
@@ -68,37 +84,108 @@ public class ConvolveWithEdgeOp implements BufferedImageOp, RasterOp {
      * edges of the original image. This is usually the best choice for tiles.
      * Note that while this mode typically provides better quality than the
      * standard modes {@code EDGE_ZERO_FILL} and {@code EDGE_NO_OP}, it does so
-     * at the expense of higher memory consumption and considerable more computation.
+     * at the expense of some more computation.
      * @see #EDGE_REFLECT
      */
     public static final int EDGE_WRAP = 3; // as JAI BORDER_WRAP
 
-    private final Kernel kernel;
+    private final int kernelWidth;
+    private final int kernelHeight;
+    private final int xOrigin;
+    private final int yOrigin;
     private final int edgeCondition;
+    private final RenderingHints hints;
+    private final Executor executor;
 
-    private final ConvolveOp convolve;
+    // The horizontal and vertical kernels, if the kernel is separable, otherwise null
+    private final float[][] separated;
+
+    // Created lazily, if created from a horizontal and a vertical kernel, as only ConvolveOp needs the full kernel
+    private ConvolveOp convolve;
+
+    // Relative difference allowed between the kernel and the outer product of its row and column
+    private static final float SEPARABLE_EPSILON = 1e-5f;
 
     public ConvolveWithEdgeOp(final Kernel pKernel, final int pEdgeCondition, final RenderingHints pHints) {
+        this(pKernel, pEdgeCondition, pHints, null);
+    }
+
+    /**
+     * Creates a {@code ConvolveWithEdgeOp}, that uses the given {@code Executor} to convolve bands of rows
+     * concurrently.
+     * The calling thread takes part in the work, and {@code filter} does not return until all bands are done.
+     * If the executor rejects a task, the remaining bands are convolved by the threads already working.
+     *
+     * @param pKernel the kernel
+     * @param pEdgeCondition the edge condition
+     * @param pHints the rendering hints, may be {@code null}
+     * @param pExecutor the executor used to convolve concurrently, or {@code null} to use only the calling thread
+     */
+    public ConvolveWithEdgeOp(final Kernel pKernel, final int pEdgeCondition, final RenderingHints pHints, final Executor pExecutor) {
+        kernelWidth = pKernel.getWidth();
+        kernelHeight = pKernel.getHeight();
+        xOrigin = pKernel.getXOrigin();
+        yOrigin = pKernel.getYOrigin();
+        edgeCondition = pEdgeCondition;
+        hints = pHints;
+        executor = pExecutor;
+
+        separated = separate(pKernel.getKernelData(null), kernelWidth, kernelHeight);
+
         // Create convolution operation
-        int edge;
+        convolve = createConvolveOp(pKernel);
+    }
+
+    /**
+     * Creates a {@code ConvolveWithEdgeOp}, for the separable kernel that is the outer product of the given
+     * vertical and horizontal kernels, without creating the full kernel up front.
+     *
+     * @param pHorizontal the horizontal kernel
+     * @param pVertical the vertical kernel
+     * @param pEdgeCondition the edge condition
+     * @param pHints the rendering hints, may be {@code null}
+     * @param pExecutor the executor used to convolve concurrently, or {@code null} to use only the calling thread
+     */
+    ConvolveWithEdgeOp(final float[] pHorizontal, final float[] pVertical, final int pEdgeCondition, final RenderingHints pHints, final Executor pExecutor) {
+        kernelWidth = pHorizontal.length;
+        kernelHeight = pVertical.length;
+        xOrigin = (kernelWidth - 1) / 2;
+        yOrigin = (kernelHeight - 1) / 2;
+        edgeCondition = pEdgeCondition;
+        hints = pHints;
+        executor = pExecutor;
+
+        separated = new float[][] {pHorizontal.clone(), pVertical.clone()};
+    }
+
+    public ConvolveWithEdgeOp(final Kernel pKernel) {
+        this(pKernel, EDGE_ZERO_FILL, null);
+    }
 
-        switch (pEdgeCondition) {
+    private ConvolveOp createConvolveOp(final Kernel pKernel) {
+        switch (edgeCondition) {
             case EDGE_REFLECT:
             case EDGE_WRAP:
-                edge = ConvolveOp.EDGE_NO_OP;
-                break;
+                return new ConvolveOp(pKernel, ConvolveOp.EDGE_NO_OP, hints);
             default:
-                edge = pEdgeCondition;
-                break;
+                return new ConvolveOp(pKernel, edgeCondition, hints);
         }
-
-        kernel = pKernel;
-        edgeCondition = pEdgeCondition;
-        convolve = new ConvolveOp(pKernel, edge, pHints);
     }
 
-    public ConvolveWithEdgeOp(final Kernel pKernel) {
-        this(pKernel, EDGE_ZERO_FILL, null);
+    private synchronized ConvolveOp getConvolveOp() {
+        if (convolve == null) {
+            float[] data = new float[kernelWidth * kernelHeight];
+
+            for (int y = 0; y < kernelHeight; y++) {
+                for (int x = 0; x < kernelWidth; x++) {
+                    data[y * kernelWidth + x] = separated[1][y] * separated[0][x];
+                }
+            }
+
+            convolve = createConvolveOp(new Kernel(kernelWidth, kernelHeight, data));
+        }
+
+        return convolve;
     }
 
     public BufferedImage filter(BufferedImage pSource, BufferedImage pDestination) {
@@ -109,8 +196,42 @@ public class ConvolveWithEdgeOp implements BufferedImageOp, RasterOp {
             throw new IllegalArgumentException("source image cannot be the same as the destination image");
         }
 
-        int borderX = kernel.getWidth() / 2;
-        int borderY = kernel.getHeight() / 2;
+        // Fast path for the common 8 bit layouts
+        if (pDestination == null || pDestination.getWidth() == pSource.getWidth() && pDestination.getHeight() == pSource.getHeight()) {
+            BufferedImage source = pSource;
+            ResampleOp.SampleRows srcRows = source.getColorModel() instanceof IndexColorModel
+                    ? null
+                    : ResampleOp.SampleRows.create(source.getRaster(), ResampleOp.getChannelMax(source));
+
+            // Indexed and packed layouts with no more than 8 bits per sample are converted to true color first
+            if (srcRows == null && hasAtMost8Bits(source.getColorModel())) {
+                source = ImageUtil.toBuffered(pSource, pSource.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+                srcRows = ResampleOp.SampleRows.create(source.getRaster(), ResampleOp.getChannelMax(source));
+            }
+
+            if (srcRows != null) {
+                // If the destination is of a different type, convolve into a temporary image and convert
+                BufferedImage destination = pDestination != null && pDestination.getColorModel().equals(source.getColorModel())
+                        ? pDestination
+                        : createCompatibleDestImage(source, null);
+                ResampleOp.SampleRows dstRows = ResampleOp.SampleRows.create(destination.getRaster(), ResampleOp.getChannelMax(destination));
+
+                if (isSameLayout(srcRows, dstRows)) {
+                    convolveRows(srcRows, dstRows);
+
+                    // Converted sources give the same type of destination as ConvolveOp would
+                    BufferedImage target = pDestination != null ? pDestination : source != pSource ? createCompatibleDestImage(pSource, null) : destination;
+                    if (target != destination) {
+                        ImageUtil.drawOnto(target, destination);
+                    }
+
+                    return target;
+                }
+            }
+        }
+
+        int borderX = kernelWidth / 2;
+        int borderY = kernelHeight / 2;
 
         BufferedImage original = addBorder(pSource, borderX, borderY);
 
@@ -128,7 +249,31 @@ public class ConvolveWithEdgeOp implements BufferedImageOp, RasterOp {
         }
 
         // Do the filtering (if destination is null, a new image will be created)
-        destination = convolve.filter(original, destination);
+        // Separable kernels are applied as a horizontal and a vertical pass, the border takes care of the edges
+        if (separated != null && pSource != original) {
+            float[] horizontal = separated[0].clone();
+            float[] vertical = separated[1].clone();
+
+            // Let the horizontal kernel sum to 1 if possible, so the rows stay within the range of the samples
+            float sum = 0;
+            for (float value : horizontal) {
+                sum += value;
+            }
+            if (sum != 0) {
+                for (int i = 0; i < horizontal.length; i++) {
+                    horizontal[i] /= sum;
+                }
+                for (int i = 0; i < vertical.length; i++) {
+                    vertical[i] *= sum;
+                }
+            }
+
+            BufferedImage rows = new ConvolveOp(new Kernel(kernelWidth, 1, horizontal), ConvolveOp.EDGE_NO_OP, hints).filter(original, null);
+            destination = new ConvolveOp(new Kernel(1, kernelHeight, vertical), ConvolveOp.EDGE_NO_OP, hints).filter(rows, destination);
+        }
+        else {
+            destination = getConvolveOp().filter(original, destination);
+        }
 
         if (pSource != original) {
             // Remove the border
@@ -138,6 +283,16 @@ public class ConvolveWithEdgeOp implements BufferedImageOp, RasterOp {
         return destination;
     }
 
+    private static boolean hasAtMost8Bits(final ColorModel pColorModel) {
+        for (int size : pColorModel.getComponentSize()) {
+            if (size > 8) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private BufferedImage addBorder(final BufferedImage pOriginal, final int pBorderX, final int pBorderY) {
         if ((edgeCondition & 2) == 0) {
             return pOriginal;
@@ -212,35 +367,393 @@ public class ConvolveWithEdgeOp implements BufferedImageOp, RasterOp {
     }
 
     public WritableRaster filter(final Raster pSource, final WritableRaster pDestination) {
-        return convolve.filter(pSource, pDestination);
+        if (pSource == null) {
+            throw new NullPointerException("source raster is null");
+        }
+        if (pSource == pDestination) {
+            throw new IllegalArgumentException("source raster cannot be the same as the destination raster");
+        }
+
+        ResampleOp.SampleRows srcRows = ResampleOp.SampleRows.create(pSource, ResampleOp.getChannelMax(pSource));
+
+        if (srcRows != null) {
+            WritableRaster destination = pDestination != null ? pDestination : createCompatibleDestRaster(pSource);
+            ResampleOp.SampleRows dstRows = ResampleOp.SampleRows.create(destination, ResampleOp.getChannelMax(destination));
+
+            if (isSameLayout(srcRows, dstRows)) {
+                convolveRows(srcRows, dstRows);
+                return destination;
+            }
+        }
+
+        // NOTE: ConvolveOp does not support EDGE_REFLECT or EDGE_WRAP for rasters, uses EDGE_NO_OP instead
+        return getConvolveOp().filter(pSource, pDestination);
+    }
+
+    private static boolean isSameLayout(final ResampleOp.SampleRows pSource, final ResampleOp.SampleRows pDestination) {
+        return pDestination != null && pSource.width == pDestination.width && pSource.height == pDestination.height
+                && pSource.hasSameLayout(pDestination);
+    }
+
+    /*
+        convolveRows()
+
+        Convolves all samples of the source rows into the destination rows.
+        The kernel is flipped, like ConvolveOp does, so that the result is a true convolution.
+        Source coordinates outside the image are mapped into the image according to the edge condition,
+        EDGE_ZERO_FILL and EDGE_NO_OP is applied after convolving, to the pixels where the kernel does not fit.
+    */
+    private void convolveRows(final ResampleOp.SampleRows src, final ResampleOp.SampleRows dst) {
+        // Number of kernel samples left of and above the origin, after flipping
+        final int left = kernelWidth - 1 - xOrigin;
+        final int top = kernelHeight - 1 - yOrigin;
+
+        final int[] xMap = createEdgeMap(src.width, left, kernelWidth, src.channels);
+        final int[] yMap = createEdgeMap(src.height, top, kernelHeight, 1);
+
+        // Flipping the kernel is the same as flipping both the horizontal and vertical kernel
+        final float[] horizontal = separated != null ? flip(separated[0]) : null;
+        final float[] vertical = separated != null ? flip(separated[1]) : null;
+        final float[] flipped = separated == null ? flip(getKernel().getKernelData(null)) : null;
+
+        ResampleOp.resampleBands(executor, dst.height, true, new ResampleOp.Band() {
+            public void resample(final int from, final int to) {
+                if (separated != null) {
+                    convolveSeparable(src, dst, horizontal, vertical, xMap, yMap, from, to);
+                }
+                else {
+                    convolve(src, dst, flipped, kernelWidth, kernelHeight, xMap, yMap, from, to);
+                }
+
+                if (edgeCondition == EDGE_ZERO_FILL || edgeCondition == EDGE_NO_OP) {
+                    fillEdges(src, dst, kernelWidth, kernelHeight, from, to);
+                }
+            }
+        });
+    }
+
+    private static float[] flip(final float[] pData) {
+        float[] flipped = new float[pData.length];
+
+        for (int i = 0; i < pData.length; i++) {
+            flipped[i] = pData[pData.length - 1 - i];
+        }
+
+        return flipped;
     }
 
+    /*
+        createEdgeMap()
+
+        Maps the coordinates -left...length + kernelSize - left - 1 (offset by left) to sample indexes in the image.
+        EDGE_WRAP wraps around, all other conditions repeat the edge samples. For EDGE_ZERO_FILL and
+        EDGE_NO_OP, the edge pixels are overwritten later.
+    */
+    private int[] createEdgeMap(final int length, final int left, final int kernelSize, final int channels) {
+        int[] map = new int[length + kernelSize - 1];
+
+        for (int i = 0; i < map.length; i++) {
+            int index = i - left;
+
+            if (edgeCondition == EDGE_WRAP) {
+                index %= length;
+                if (index < 0) {
+                    index += length;
+                }
+            }
+            else {
+                index = index < 0 ? 0 : index >= length ? length - 1 : index;
+            }
+
+            map[i] = index * channels;
+        }
+
+        return map;
+    }
+
+    /*
+        separate()
+
+        Returns the horizontal and vertical kernel, if the kernel is the outer product of a column and a row
+        (has rank 1), like a Gaussian, otherwise null.
+    */
+    static float[][] separate(final float[] pData, final int pWidth, final int pHeight) {
+        // Use the largest value as pivot
+        int pivot = 0;
+        for (int i = 1; i < pData.length; i++) {
+            if (Math.abs(pData[i]) > Math.abs(pData[pivot])) {
+                pivot = i;
+            }
+        }
+
+        float max = Math.abs(pData[pivot]);
+        if (max == 0f || pWidth == 1 && pHeight == 1) {
+            return null;
+        }
+
+        int pivotX = pivot % pWidth;
+        int pivotY = pivot / pWidth;
+
+        float[] horizontal = new float[pWidth];
+        float[] vertical = new float[pHeight];
+
+        for (int x = 0; x < pWidth; x++) {
+            horizontal[x] = pData[pivotY * pWidth + x] / pData[pivot];
+        }
+        for (int y = 0; y < pHeight; y++) {
+            vertical[y] = pData[y * pWidth + pivotX];
+        }
+
+        for (int y = 0; y < pHeight; y++) {
+            for (int x = 0; x < pWidth; x++) {
+                if (Math.abs(pData[y * pWidth + x] - vertical[y] * horizontal[x]) > max * SEPARABLE_EPSILON) {
+                    return null;
+                }
+            }
+        }
+
+        return new float[][] {horizontal, vertical};
+    }
+
+    /*
+        convolveSeparable()
+
+        Convolves the destination rows from (inclusive) to to (exclusive), first horizontally into a ring buffer
+        of intermediate rows, then vertically.
+    */
+    private static void convolveSeparable(final ResampleOp.SampleRows src, final ResampleOp.SampleRows dst,
+                                          final float[] horizontal, final float[] vertical,
+                                          final int[] xMap, final int[] yMap, final int from, final int to) {
+        final int channels = src.channels;
+        final int rowLength = src.width * channels;
+        final int kernelWidth = horizontal.length;
+        final int kernelHeight = vertical.length;
+
+        int[] samples = new int[rowLength];
+        int[] padded = new int[xMap.length * channels];
+        int[] result = new int[rowLength];
+        float[] sums = new float[rowLength];
+
+        // Intermediate rows, indexed by the row in edge map coordinates modulo kernel height
+        float[][] rows = new float[kernelHeight][rowLength];
+        int next = from; // The next row (in edge map coordinates) to convolve horizontally
+
+        for (int y = from; y < to; y++) {
+            // Convolve any new source rows horizontally
+            for (; next < y + kernelHeight; next++) {
+                float[] row = rows[next % kernelHeight];
+                src.getRow(yMap[next], samples, 0);
+
+                // Pad the row according to the edge condition, so all taps can be applied to contiguous samples
+                for (int x = 0; x < xMap.length; x++) {
+                    System.arraycopy(samples, xMap[x], padded, x * channels, channels);
+                }
+
+                for (int i = 0; i < rowLength; i++) {
+                    row[i] = horizontal[0] * padded[i];
+                }
+
+                for (int k = 1; k < kernelWidth; k++) {
+                    float weight = horizontal[k];
+                    int offset = k * channels;
+
+                    for (int i = 0; i < rowLength; i++) {
+                        row[i] += weight * padded[offset + i];
+                    }
+                }
+            }
+
+            // Convolve vertically, one intermediate row at a time
+            float[] first = rows[y % kernelHeight];
+            for (int i = 0; i < rowLength; i++) {
+                sums[i] = vertical[0] * first[i];
+            }
+
+            for (int k = 1; k < kernelHeight; k++) {
+                float weight = vertical[k];
+                float[] row = rows[(y + k) % kernelHeight];
+
+                for (int i = 0; i < rowLength; i++) {
+                    sums[i] += weight * row[i];
+                }
+            }
+
+            for (int i = 0; i < rowLength; i++) {
+                result[i] = clamp(sums[i]);
+            }
+
+            dst.setRow(y, result);
+        }
+    }
+
+    /*
+        convolve()
+
+        Convolves the destination rows from (inclusive) to to (exclusive), using the full 2D kernel.
+        Padded source rows are kept in a ring buffer, indexed by the row in edge map coordinates modulo kernel height.
+    */
+    private static void convolve(final ResampleOp.SampleRows src, final ResampleOp.SampleRows dst,
+                                 final float[] kernel, final int kernelWidth, final int kernelHeight,
+                                 final int[] xMap, final int[] yMap, final int from, final int to) {
+        final int channels = src.channels;
+        final int rowLength = src.width * channels;
+
+        int[] samples = new int[rowLength];
+        int[] result = new int[rowLength];
+        float[] sums = new float[rowLength];
+
+        // Padded source rows
+        int[][] rows = new int[kernelHeight][xMap.length * channels];
+        int next = from;
+
+        for (int y = from; y < to; y++) {
+            for (; next < y + kernelHeight; next++) {
+                int[] row = rows[next % kernelHeight];
+                src.getRow(yMap[next], samples, 0);
+
+                for (int x = 0; x < xMap.length; x++) {
+                    System.arraycopy(samples, xMap[x], row, x * channels, channels);
+                }
+            }
+
+            Arrays.fill(sums, 0);
+
+            for (int ky = 0; ky < kernelHeight; ky++) {
+                int[] row = rows[(y + ky) % kernelHeight];
+
+                for (int kx = 0; kx < kernelWidth; kx++) {
+                    float weight = kernel[ky * kernelWidth + kx];
+
+                    if (weight != 0) {
+                        int offset = kx * channels;
+
+                        for (int i = 0; i < rowLength; i++) {
+                            sums[i] += weight * row[offset + i];
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < rowLength; i++) {
+                result[i] = clamp(sums[i]);
+            }
+
+            dst.setRow(y, result);
+        }
+    }
+
+    /*
+        fillEdges()
+
+        Zero fills, or copies the source pixels to, the destination pixels in rows from (inclusive) to to (exclusive)
+        where the kernel does not fit inside the source, as ConvolveOp does for EDGE_ZERO_FILL and EDGE_NO_OP.
+        Like ConvolveOp, the edges are kernel width / 2 and kernel height / 2 on all sides, even for kernels of even
+        size, where the kernel would fit one more column or row to the right or bottom.
+    */
+    private void fillEdges(final ResampleOp.SampleRows src, final ResampleOp.SampleRows dst,
+                           final int kernelWidth, final int kernelHeight, final int from, final int to) {
+        final int channels = src.channels;
+        final int rowLength = src.width * channels;
+
+        // The first and last (exclusive) column and row that are not edges
+        final int startX = Math.min(kernelWidth / 2, src.width);
+        final int endX = Math.max(startX, src.width - kernelWidth / 2);
+        final int startY = kernelHeight / 2;
+        final int endY = src.height - kernelHeight / 2;
+
+        if (startX == 0 && endX == src.width && from >= startY && to <= endY) {
+            return;
+        }
+
+        int[] samples = new int[rowLength];
+        int[] result = new int[rowLength];
+        int[] zeros = new int[rowLength];
+
+        for (int y = from; y < to; y++) {
+            boolean edgeRow = y < startY || y >= endY;
+
+            if (edgeCondition == EDGE_NO_OP) {
+                src.getRow(y, samples, 0);
+            }
+
+            if (edgeRow) {
+                if (edgeCondition == EDGE_NO_OP) {
+                    dst.setRow(y, samples);
+                }
+                else {
+                    dst.setRow(y, zeros);
+                }
+            }
+            else if (startX > 0 || endX < src.width) {
+                dst.getRow(y, result, 0);
+
+                for (int i = 0; i < startX * channels; i++) {
+                    result[i] = edgeCondition == EDGE_NO_OP ? samples[i] : 0;
+                }
+                for (int i = endX * channels; i < rowLength; i++) {
+                    result[i] = edgeCondition == EDGE_NO_OP ? samples[i] : 0;
+                }
+
+                dst.setRow(y, result);
+            }
+        }
+    }
+
+    private static int clamp(final float pValue) {
+        int value = Math.round(pValue);
+        return value < 0 ? 0 : value > 0xff ? 0xff : value;
+    }
+
+    // NOTE: The methods below don't depend on the kernel, and are implemented like in ConvolveOp
+
     public BufferedImage createCompatibleDestImage(final BufferedImage pSource, final ColorModel pDesinationColorModel) {
-        return convolve.createCompatibleDestImage(pSource, pDesinationColorModel);
+        ColorModel cm = pDesinationColorModel;
+        WritableRaster raster = null;
+
+        if (cm == null) {
+            cm = pSource.getColorModel();
+
+            if (cm instanceof IndexColorModel) {
+                // Convolving indexed samples makes no sense, use RGB
+                cm = ColorModel.getRGBdefault();
+            }
+            else {
+                raster = pSource.getRaster().createCompatibleWritableRaster(pSource.getWidth(), pSource.getHeight());
+            }
+        }
+
+        if (raster == null) {
+            raster = cm.createCompatibleWritableRaster(pSource.getWidth(), pSource.getHeight());
+        }
+
+        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
     }
 
     public WritableRaster createCompatibleDestRaster(final Raster pSource) {
-        return convolve.createCompatibleDestRaster(pSource);
+        return pSource.createCompatibleWritableRaster();
     }
 
     public Rectangle2D getBounds2D(final BufferedImage pSource) {
-        return convolve.getBounds2D(pSource);
+        return getBounds2D(pSource.getRaster());
     }
 
     public Rectangle2D getBounds2D(final Raster pSource) {
-        return convolve.getBounds2D(pSource);
+        return pSource.getBounds();
     }
 
     public Point2D getPoint2D(final Point2D pSourcePoint, final Point2D pDestinationPoint) {
-        return convolve.getPoint2D(pSourcePoint, pDestinationPoint);
+        Point2D destination = pDestinationPoint != null ? pDestinationPoint : new Point2D.Float();
+        destination.setLocation(pSourcePoint.getX(), pSourcePoint.getY());
+
+        return destination;
     }
 
     public RenderingHints getRenderingHints() {
-        return convolve.getRenderingHints();
+        return hints;
     }
 
     public Kernel getKernel() {
-        return convolve.getKernel();
+        return getConvolveOp().getKernel();
     }
 
 }
@@ -1,17 +1,23 @@
 package com.twelvemonkeys.image;
 
 
+import com.twelvemonkeys.lang.Validate;
+
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.RasterOp;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.Executor;
 
 /**
  * This {@code BufferedImageOp/RasterOp} implements basic
@@ -32,6 +38,13 @@ import java.util.Random;
  * <P/>
  * See <A href="http://www.awprofessional.com/bookstore/product.asp?isbn=0201848406&rl=1">Computer Graphics (Foley et al.)</a>
  * for more information.
+ * <P/>
+ * Other error-diffusion kernels may be used instead, see {@link #setKernel(int)}.
+ * <P/>
+ * To dither large images faster on multi-core systems, an {@code Executor} may be passed to the constructor.
+ * The image is then dithered in tiles of rows, that are processed concurrently.
+ * Each tile starts with the error from dithering the last few rows of the tile above it, so the seams are
+ * hardly visible, and the result is the same regardless of the number of threads.
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haku $
@@ -40,11 +53,73 @@ import java.util.Random;
  */
 public class DiffusionDither implements BufferedImageOp, RasterOp {
 
-    private static final int FS_SCALE = 1 << 8;
+    /**
+     * Floyd-Steinberg error-diffusion kernel (the default).
+     * Distributes the error to 4 neighbours, using the weights 7/16, 3/16, 5/16 and 1/16.
+     */
+    public static final int KERNEL_FLOYD_STEINBERG = 0;
+    /**
+     * Atkinson error-diffusion kernel.
+     * Distributes 6/8 of the error to 6 neighbours, 1/8 each. Gives more contrast, at the expense of
+     * loss of detail in highlights and shadows.
+     */
+    public static final int KERNEL_ATKINSON = 1;
+    /**
+     * Stucki error-diffusion kernel.
+     * Distributes the error to 12 neighbours, over 3 rows, using weights in 42ths.
+     */
+    public static final int KERNEL_STUCKI = 2;
+    /**
+     * Sierra (three-row) error-diffusion kernel.
+     * Distributes the error to 10 neighbours, over 3 rows, using weights in 32ths.
+     */
+    public static final int KERNEL_SIERRA = 3;
+
+    // The kernels, as triplets of {dx, dy, weight}, followed by the divisor
+    private static final int[][] KERNELS = {
+            { // Floyd-Steinberg
+                     1, 0, 7,
+                    -1, 1, 3,   0, 1, 5,   1, 1, 1,
+                    16
+            },
+            { // Atkinson
+                     1, 0, 1,   2, 0, 1,
+                    -1, 1, 1,   0, 1, 1,   1, 1, 1,
+                     0, 2, 1,
+                    8
+            },
+            { // Stucki
+                                                       1, 0, 8,   2, 0, 4,
+                    -2, 1, 2,  -1, 1, 4,   0, 1, 8,    1, 1, 4,   2, 1, 2,
+                    -2, 2, 1,  -1, 2, 2,   0, 2, 4,    1, 2, 2,   2, 2, 1,
+                    42
+            },
+            { // Sierra
+                                                       1, 0, 5,   2, 0, 3,
+                    -2, 1, 2,  -1, 1, 4,   0, 1, 5,    1, 1, 4,   2, 1, 2,
+                               -1, 2, 2,   0, 2, 3,    1, 2, 2,
+                    32
+            }
+    };
+
+    // Maximum horizontal and vertical extent of the kernels
+    private static final int KERNEL_MARGIN = 2;
+    private static final int KERNEL_ROWS = 3;
+
+    // Errors are accumulated in fixed point, with this many fraction bits
+    private static final int ERROR_BITS = 12;
+    private static final int ERROR_HALF = 1 << (ERROR_BITS - 1);
+
+    // Rows per tile, and rows dithered from the tile above, to get the error, when dithering concurrently
+    static final int TILE_HEIGHT = 128;
+    static final int TILE_OVERLAP = 8;
+
     private static final Random RANDOM = new Random();
 
     protected final IndexColorModel indexColorModel;
+    private final Executor executor;
     private boolean alternateScans = true;
+    private int kernel = KERNEL_FLOYD_STEINBERG;
 
     /**
      * Creates a {@code DiffusionDither}, using the given
@@ -53,8 +128,24 @@ public class DiffusionDither implements BufferedImageOp, RasterOp {
      * @param pICM an IndexColorModel.
      */
     public DiffusionDither(final IndexColorModel pICM) {
+        this(pICM, null);
+    }
+
+    /**
+     * Creates a {@code DiffusionDither}, using the given
+     * {@code IndexColorModel} for dithering into, that uses the given
+     * {@code Executor} to dither tiles of rows concurrently.
+     * The calling thread takes part in the work, and {@code filter} does not
+     * return until all tiles are done.
+     *
+     * @param pICM an IndexColorModel, may be {@code null}.
+     * @param pExecutor the executor used to dither concurrently, or
+     * {@code null} to use only the calling thread, without tiles.
+     */
+    public DiffusionDither(final IndexColorModel pICM, final Executor pExecutor) {
         // Store color model
         indexColorModel = pICM;
+        executor = pExecutor;
     }
 
     /**
@@ -79,6 +170,30 @@ public class DiffusionDither implements BufferedImageOp, RasterOp {
         alternateScans = pUse;
     }
 
+    /**
+     * Sets the error-diffusion kernel.
+     * The default is {@link #KERNEL_FLOYD_STEINBERG}.
+     *
+     * @param pKernel the kernel, one of {@link #KERNEL_FLOYD_STEINBERG},
+     * {@link #KERNEL_ATKINSON}, {@link #KERNEL_STUCKI} or {@link #KERNEL_SIERRA}
+     *
+     * @throws IllegalArgumentException if {@code pKernel} is not a known kernel
+     */
+    public void setKernel(int pKernel) {
+        Validate.isTrue(pKernel >= KERNEL_FLOYD_STEINBERG && pKernel <= KERNEL_SIERRA, "Unknown kernel: " + pKernel);
+        kernel = pKernel;
+    }
+
+    /**
+     * Returns the error-diffusion kernel.
+     *
+     * @return the kernel
+     * @see #setKernel(int)
+     */
+    public int getKernel() {
+        return kernel;
+    }
+
     /**
      * Creates a compatible {@code BufferedImage} to dither into.
      * Only {@code IndexColorModel} allowed.
@@ -187,36 +302,8 @@ public class DiffusionDither implements BufferedImageOp, RasterOp {
     }
 
     /**
-     * Converts an int ARGB to int triplet.
-     */
-    private static int[] toRGBArray(int pARGB, int[] pBuffer) {
-        pBuffer[0] = ((pARGB & 0x00ff0000) >> 16);
-        pBuffer[1] = ((pARGB & 0x0000ff00) >> 8);
-        pBuffer[2] = ((pARGB & 0x000000ff));
-        //pBuffer[3] = ((pARGB & 0xff000000) >> 24); // alpha
-
-        return pBuffer;
-    }
-
-    /**
-     * Converts a int triplet to int ARGB.
-     */
-    private static int toIntARGB(int[] pRGB) {
-        return 0xff000000 // All opaque
-                | (pRGB[0] << 16)
-                | (pRGB[1] << 8)
-                | (pRGB[2]);
-        /*
-          | ((int) (pRGB[0] << 16) & 0x00ff0000)
-          | ((int) (pRGB[1] <<  8) & 0x0000ff00)
-          | ((int) (pRGB[2]      ) & 0x000000ff);
-        */
-    }
-
-
-    /**
-     * Performs a single-input/single-output dither operation, applying basic
-     * Floyd-Steinberg error-diffusion to the image.
+     * Performs a single-input/single-output dither operation, applying
+     * error-diffusion to the image.
      *
      * @param pSource the source image
      * @param pDest the destination image
@@ -240,8 +327,8 @@ public class DiffusionDither implements BufferedImageOp, RasterOp {
     }
 
     /**
-     * Performs a single-input/single-output dither operation, applying basic
-     * Floyd-Steinberg error-diffusion to the image.
+     * Performs a single-input/single-output dither operation, applying
+     * error-diffusion to the image.
      *
      * @param pSource the source raster, assumed to be in sRGB
      * @param pDest the destination raster, may be {@code null}
@@ -268,8 +355,8 @@ public class DiffusionDither implements BufferedImageOp, RasterOp {
     }
 
     /**
-     * Performs a single-input/single-output dither operation, applying basic
-     * Floyd-Steinberg error-diffusion to the image.
+     * Performs a single-input/single-output dither operation, applying
+     * error-diffusion to the image.
      *
      * @param pSource the source raster, assumed to be in sRGB
      * @param pDest the destination raster, may be {@code null}
@@ -279,182 +366,212 @@ public class DiffusionDither implements BufferedImageOp, RasterOp {
      * {@code null}.
      */
     public final WritableRaster filter(final Raster pSource, WritableRaster pDest, IndexColorModel pColorModel) {
-        int width = pSource.getWidth();
-        int height = pSource.getHeight();
+        final int height = pSource.getHeight();
 
         // Create destination raster if needed
         if (pDest == null) {
             pDest = createCompatibleDestRaster(pSource, pColorModel);
         }
 
-        // Initialize Floyd-Steinberg error vectors.
-        // +2 to handle the previous pixel and next pixel case minimally
-        // When reference for column, add 1 to reference as this buffer is
-        // offset from actual column position by one to allow FS to not check
-        // left/right edge conditions
-        int[][] currErr = new int[width + 2][3];
-        int[][] nextErr = new int[width + 2][3];
-
-        // Random errors in [-1 .. 1] - for first row
-        for (int i = 0; i < width + 2; i++) {
-            // Note: This is broken for the strange cases where nextInt returns Integer.MIN_VALUE
-            currErr[i][0] = RANDOM.nextInt(FS_SCALE * 2) - FS_SCALE;
-            currErr[i][1] = RANDOM.nextInt(FS_SCALE * 2) - FS_SCALE;
-            currErr[i][2] = RANDOM.nextInt(FS_SCALE * 2) - FS_SCALE;
+        final Raster source = pSource;
+        final WritableRaster dest = pDest;
+        final Palette palette = new Palette(pColorModel);
+
+        if (executor == null) {
+            ditherRows(source, dest, palette, 0, 0, height, RANDOM);
         }
+        else {
+            // Tiles are always the same, regardless of the number of threads, so the result is deterministic
+            final int tiles = (height + TILE_HEIGHT - 1) / TILE_HEIGHT;
+
+            ResampleOp.resampleBands(executor, tiles, true, new ResampleOp.Band() {
+                public void resample(final int from, final int to) {
+                    for (int tile = from; tile < to; tile++) {
+                        int y = tile * TILE_HEIGHT;
+                        ditherRows(source, dest, palette, Math.max(0, y - TILE_OVERLAP), y, Math.min(y + TILE_HEIGHT, height), null);
+                    }
+                }
+            });
+        }
+
+        return pDest;
+    }
+
+    /*
+        ditherRows()
+
+        Dithers the rows from start (inclusive) to end (exclusive), but only writes the rows from first (inclusive).
+        The rows before first are only dithered to get the error to diffuse into the first row.
+        If noise is non-null, the first row starts with a random error in the range [-1...1].
+    */
+    private void ditherRows(final Raster pSource, final WritableRaster pDest, final Palette pPalette,
+                            final int pStart, final int pFirst, final int pEnd, final Random pNoise) {
+        final int width = pSource.getWidth();
+        final int[] weights = KERNELS[kernel];
+        final int taps = weights.length / 3;
+
+        // Weights in fixed point, and offsets into the error rows, for left-right and right-left rows
+        final int[] fixedWeights = new int[taps];
+        final int[] forwardOffsets = new int[taps];
+        final int[] backwardOffsets = new int[taps];
+
+        for (int t = 0; t < taps; t++) {
+            fixedWeights[t] = (int) (((long) weights[t * 3 + 2] << ERROR_BITS) / weights[weights.length - 1]);
+            forwardOffsets[t] = weights[t * 3] * 3;
+            backwardOffsets[t] = -weights[t * 3] * 3;
+        }
+
+        final int[][] tapRows = new int[taps][];
+
+        // Error rows, padded with a margin on each side, so no edge checks are needed.
+        // Indexed by row modulo KERNEL_ROWS, the current row holds the error for the pixels not yet dithered.
+        final int stride = (width + 2 * KERNEL_MARGIN) * 3;
+        final int[][] errors = new int[KERNEL_ROWS][stride];
 
-        // Temp buffers
-        final int[] diff = new int[3]; // No alpha
-        final int[] inRGB = new int[4];
-        final int[] outRGB = new int[4];
-        Object pixel = null;
-        boolean forward = true;
-
-        // Loop through image data
-        for (int y = 0; y < height; y++) {
-            // Clear out next error rows for colour errors
-            for (int i = nextErr.length; --i >= 0;) {
-                nextErr[i][0] = 0;
-                nextErr[i][1] = 0;
-                nextErr[i][2] = 0;
+        if (pNoise != null) {
+            for (int i = 0; i < stride; i++) {
+                errors[pStart % KERNEL_ROWS][i] = pNoise.nextInt(2 << ERROR_BITS) - (1 << ERROR_BITS);
             }
+        }
 
-            // Set up start column and limit
-            int x;
-            int limit;
-            if (forward) {
-                x = 0;
-                limit = width;
+        // Read samples directly from the backing array for the common 8 bit layouts
+        ResampleOp.SampleRows sourceRows = pSource.getNumBands() >= 3 ? ResampleOp.SampleRows.create(pSource, ResampleOp.getChannelMax(pSource)) : null;
+        final int channels = sourceRows != null ? sourceRows.channels : pSource.getNumBands();
+        final int redOffset = sourceRows != null ? sourceRows.sampleIndex(0) : 0;
+        final int greenOffset = channels >= 3 ? sourceRows != null ? sourceRows.sampleIndex(1) : 1 : 0;
+        final int blueOffset = channels >= 3 ? sourceRows != null ? sourceRows.sampleIndex(2) : 2 : 0;
+
+        final int[] samples = new int[width * channels];
+        final int[] indexes = new int[width];
+
+        // Write indexes directly to the backing array for byte per pixel rasters
+        byte[] destData = null;
+        int destOffset = 0;
+        int destStride = 0;
+
+        if (pDest.getDataBuffer() instanceof DataBufferByte && pDest.getSampleModel() instanceof ComponentSampleModel) {
+            ComponentSampleModel model = (ComponentSampleModel) pDest.getSampleModel();
+
+            if (model.getNumBands() == 1 && model.getPixelStride() == 1 && pDest.getDataBuffer().getNumBanks() == 1) {
+                destData = ((DataBufferByte) pDest.getDataBuffer()).getData();
+                destStride = model.getScanlineStride();
+                destOffset = pDest.getDataBuffer().getOffset() + model.getOffset(
+                        pDest.getMinX() - pDest.getSampleModelTranslateX(), pDest.getMinY() - pDest.getSampleModelTranslateY()
+                );
+            }
+        }
+
+        final int[] rgbs = pPalette.rgbs;
+
+        for (int y = pStart; y < pEnd; y++) {
+            if (sourceRows != null) {
+                sourceRows.getRow(y, samples, 0);
             }
             else {
-                x = width - 1;
-                limit = -1;
+                pSource.getPixels(pSource.getMinX(), pSource.getMinY() + y, width, 1, samples);
             }
 
-            // TODO: Use getPixels instead of getPixel for better performance?            
+            // Serpentine scan: Even rows left-right, odd rows right-left
+            boolean forward = !alternateScans || (y & 1) == 0;
+            int direction = forward ? 1 : -1;
+            int[] offsets = forward ? forwardOffsets : backwardOffsets;
+
+            int[] current = errors[y % KERNEL_ROWS];
 
-            // Loop over row
-            while (true) {
-                // Get RGB from original raster
-                // DON'T KNOW IF THIS WILL WORK FOR ALL TYPES.
-                pSource.getPixel(x, y, inRGB);
+            for (int t = 0; t < taps; t++) {
+                tapRows[t] = errors[(y + weights[t * 3 + 1]) % KERNEL_ROWS];
+            }
 
-                // Get error for this pixel & add error to rgb
-                for (int i = 0; i < 3; i++) {
-                    // Make a 28.4 FP number, add Error (with fraction),
-                    // rounding and truncate to int
-                    inRGB[i] = ((inRGB[i] << 4) + currErr[x + 1][i] + 0x08) >> 4;
+            for (int i = 0, x = forward ? 0 : width - 1; i < width; i++, x += direction) {
+                int s = x * channels;
+                int e = (x + KERNEL_MARGIN) * 3;
 
-                    // Clamp
-                    if (inRGB[i] > 255) {
-                        inRGB[i] = 255;
-                    }
-                    else if (inRGB[i] < 0) {
-                        inRGB[i] = 0;
-                    }
+                // Add error (with fraction), round and clamp
+                int r = clamp(((samples[s + redOffset] << ERROR_BITS) + current[e] + ERROR_HALF) >> ERROR_BITS);
+                int g = clamp(((samples[s + greenOffset] << ERROR_BITS) + current[e + 1] + ERROR_HALF) >> ERROR_BITS);
+                int b = clamp(((samples[s + blueOffset] << ERROR_BITS) + current[e + 2] + ERROR_HALF) >> ERROR_BITS);
+
+                int index = pPalette.getIndexNearest(r, g, b);
+                indexes[x] = index;
+
+                int rgb = rgbs[index];
+                int diffR = r - ((rgb >> 16) & 0xff);
+                int diffG = g - ((rgb >> 8) & 0xff);
+                int diffB = b - (rgb & 0xff);
+
+                // Diffuse error, mirrored for right-left rows
+                for (int t = 0; t < taps; t++) {
+                    int[] row = tapRows[t];
+                    int offset = e + offsets[t];
+                    int weight = fixedWeights[t];
+
+                    row[offset] += diffR * weight;
+                    row[offset + 1] += diffG * weight;
+                    row[offset + 2] += diffB * weight;
                 }
+            }
 
-                // Get pixel value...
-                // It is VERY important that we are using a IndexColorModel that
-                // support reverse color lookup for speed.
-                pixel = pColorModel.getDataElements(toIntARGB(inRGB), pixel);
-
-                // ...set it...
-                pDest.setDataElements(x, y, pixel);
-
-                // ..and get back the closet match
-                pDest.getPixel(x, y, outRGB);
-
-                // Convert the value to default sRGB
-                // Should work for all transfertypes supported by IndexColorModel
-                toRGBArray(pColorModel.getRGB(outRGB[0]), outRGB);
-
-                // Find diff
-                diff[0] = inRGB[0] - outRGB[0];
-                diff[1] = inRGB[1] - outRGB[1];
-                diff[2] = inRGB[2] - outRGB[2];
-
-                // Apply F-S error diffusion
-                // Serpentine scan: left-right
-                if (forward) {
-                    // Row 1 (y)
-                    // Update error in this pixel (x + 1)
-                    currErr[x + 2][0] += diff[0] * 7;
-                    currErr[x + 2][1] += diff[1] * 7;
-                    currErr[x + 2][2] += diff[2] * 7;
-
-                    // Row 2 (y + 1)
-                    // Update error in this pixel (x - 1)
-                    nextErr[x][0] += diff[0] * 3;
-                    nextErr[x][1] += diff[1] * 3;
-                    nextErr[x][2] += diff[2] * 3;
-                    // Update error in this pixel (x)
-                    nextErr[x + 1][0] += diff[0] * 5;
-                    nextErr[x + 1][1] += diff[1] * 5;
-                    nextErr[x + 1][2] += diff[2] * 5;
-                    // Update error in this pixel (x + 1)
-                    // TODO: Consider calculating this using
-                    // error term = error - sum(error terms 1, 2 and 3)
-                    // See Computer Graphics (Foley et al.), p. 573
-                    nextErr[x + 2][0] += diff[0]; // * 1;
-                    nextErr[x + 2][1] += diff[1]; // * 1;
-                    nextErr[x + 2][2] += diff[2]; // * 1;
-
-                    // Next
-                    x++;
-
-                    // Done?
-                    if (x >= limit) {
-                        break;
-                    }
+            // Current row is done, and becomes the last row of the kernel
+            Arrays.fill(current, 0);
+
+            if (y >= pFirst) {
+                if (destData != null) {
+                    int offset = destOffset + y * destStride;
 
+                    for (int x = 0; x < width; x++) {
+                        destData[offset + x] = (byte) indexes[x];
+                    }
                 }
                 else {
-                    // Row 1 (y)
-                    // Update error in this pixel (x - 1)
-                    currErr[x][0] += diff[0] * 7;
-                    currErr[x][1] += diff[1] * 7;
-                    currErr[x][2] += diff[2] * 7;
-
-                    // Row 2 (y + 1)
-                    // Update error in this pixel (x + 1)
-                    nextErr[x + 2][0] += diff[0] * 3;
-                    nextErr[x + 2][1] += diff[1] * 3;
-                    nextErr[x + 2][2] += diff[2] * 3;
-                    // Update error in this pixel (x)
-                    nextErr[x + 1][0] += diff[0] * 5;
-                    nextErr[x + 1][1] += diff[1] * 5;
-                    nextErr[x + 1][2] += diff[2] * 5;
-                    // Update error in this pixel (x - 1)
-                    // TODO: Consider calculating this using
-                    // error term = error - sum(error terms 1, 2 and 3)
-                    // See Computer Graphics (Foley et al.), p. 573
-                    nextErr[x][0] += diff[0]; // * 1;
-                    nextErr[x][1] += diff[1]; // * 1;
-                    nextErr[x][2] += diff[2]; // * 1;
-
-                    // Previous
-                    x--;
-
-                    // Done?
-                    if (x <= limit) {
-                        break;
-                    }
+                    pDest.setSamples(pDest.getMinX(), pDest.getMinY() + y, width, 1, 0, indexes);
                 }
             }
+        }
+    }
+
+    private static int clamp(final int pValue) {
+        return pValue < 0 ? 0 : pValue > 255 ? 255 : pValue;
+    }
+
+    /*
+        Palette
 
-            // Make next error info current for next iteration
-            int[][] temperr;
-            temperr = currErr;
-            currErr = nextErr;
-            nextErr = temperr;
+        The RGB values of the color model, and a fast reverse lookup.
+    */
+    private static final class Palette {
+        final int[] rgbs;
+        final InverseColorMap inverseMap;
+        final int whiteIndex;
 
-            // Toggle direction
-            if (alternateScans) {
-                forward = !forward;
+        Palette(final IndexColorModel pColorModel) {
+            rgbs = new int[pColorModel.getMapSize()];
+            pColorModel.getRGBs(rgbs);
+
+            if (pColorModel instanceof InverseColorMapIndexColorModel) {
+                // Same lookup as the color model's getDataElements, for opaque colors
+                inverseMap = ((InverseColorMapIndexColorModel) pColorModel).inverseMap;
+
+                int white = -1;
+                for (int i = 0; i < rgbs.length; i++) {
+                    if ((rgbs[i] & 0x00ffffff) == 0x00ffffff) {
+                        white = i;
+                        break;
+                    }
+                }
+                whiteIndex = white;
+            }
+            else {
+                inverseMap = new InverseColorMap(rgbs, pColorModel.getTransparentPixel());
+                whiteIndex = -1;
             }
         }
 
-        return pDest;
+        int getIndexNearest(final int pRed, final int pGreen, final int pBlue) {
+            if (whiteIndex != -1 && (pRed & pGreen & pBlue) == 0xff) {
+                return whiteIndex;
+            }
+
+            return inverseMap.getIndexNearest(pRed, pGreen, pBlue);
+        }
     }
-}
\ No newline at end of file
+}
@@ -141,6 +141,31 @@ public final class ImageUtil {
      */
     protected final static int TRANSPARENCY_TRANSLUCENT = IndexImage.TRANSPARENCY_TRANSLUCENT;
 
+    /**
+     * Default quantizer (median cut)
+     */
+    public final static int QUANTIZER_DEFAULT = IndexImage.QUANTIZER_DEFAULT;
+
+    /**
+     * Median cut quantizer
+     */
+    public final static int QUANTIZER_MEDIAN_CUT = IndexImage.QUANTIZER_MEDIAN_CUT;
+
+    /**
+     * Octree quantizer, using bounded memory, regardless of the number of colors in the image
+     */
+    public final static int QUANTIZER_OCTREE = IndexImage.QUANTIZER_OCTREE;
+
+    /**
+     * No refinement of the palette (default)
+     */
+    public final static int REFINE_NONE = IndexImage.REFINE_NONE;
+
+    /**
+     * Refine the palette, using k-means clustering
+     */
+    public final static int REFINE_KMEANS = IndexImage.REFINE_KMEANS;
+
     /** Passed to the createXxx methods, to indicate that the type does not matter */
     private final static int BI_TYPE_ANY = -1;
     /*
@@ -997,7 +1022,7 @@ public final class ImageUtil {
      * @param pImage the image to convert
      * @param pColors number of colors in the resulting image
      * @param pMatte color to replace transparent parts of the original.
-     * @param pHints hints controlling dither, transparency and color selection
+     * @param pHints hints controlling dither, transparency, color selection and quantization
      *
      * @return an indexed version of the given image
      *
@@ -1012,6 +1037,10 @@ public final class ImageUtil {
      * @see #TRANSPARENCY_OPAQUE
      * @see #TRANSPARENCY_BITMASK
      * @see #TRANSPARENCY_TRANSLUCENT
+     * @see #QUANTIZER_DEFAULT
+     * @see #QUANTIZER_MEDIAN_CUT
+     * @see #QUANTIZER_OCTREE
+     * @see #REFINE_KMEANS
      */
     public static BufferedImage createIndexed(Image pImage, int pColors, Color pMatte, int pHints) {
         return IndexImage.getIndexedImage(toBuffered(pImage), pColors, pMatte, pHints);
@@ -1154,40 +1183,12 @@ public final class ImageUtil {
             return pOriginal;
         }
 
-        // TODO: Re-implement using two-pass one-dimensional gaussion blur
+        // The kernel is the outer product of two one-dimensional Gaussians, and is convolved as two
+        // one-dimensional passes by ConvolveWithEdgeOp.
         // See: http://en.wikipedia.org/wiki/Gaussian_blur#Implementation
-        // Also see http://www.jhlabs.com/ip/blurring.html
-
-        // TODO: Rethink... Fixed amount and scale matrix instead?
-//        pAmount = 1f - pAmount;
-//        float pAmount = 1f - pRadius;
-//
-//        // Normalize amount
-//        float normAmt = (1f - pAmount) / 24;
-//
-//        // Create the convolution matrix
-//        float[] data = new float[] {
-//            normAmt / 2, normAmt, normAmt, normAmt, normAmt / 2,
-//            normAmt, normAmt, normAmt * 2, normAmt, normAmt,
-//            normAmt, normAmt * 2, pAmount, normAmt * 2, normAmt,
-//            normAmt, normAmt, normAmt * 2, normAmt, normAmt,
-//            normAmt / 2, normAmt, normAmt, normAmt, normAmt / 2
-//        };
-//
-//        // Do the filtering
-//        return convolve(pOriginal, new Kernel(5, 5, data), EDGE_REFLECT);
-
-        Kernel horizontal = makeKernel(pRadius);
-        Kernel vertical = new Kernel(horizontal.getHeight(), horizontal.getWidth(), horizontal.getKernelData(null));
-
-        BufferedImage temp = addBorder(pOriginal, horizontal.getWidth() / 2, vertical.getHeight() / 2, EDGE_REFLECT);
-
-        temp = convolve(temp, horizontal, EDGE_NO_OP);
-        temp = convolve(temp, vertical, EDGE_NO_OP);
-
-        return temp.getSubimage(
-                horizontal.getWidth() / 2, vertical.getHeight() / 2, pOriginal.getWidth(), pOriginal.getHeight()
-        );
+        float[] gaussian = makeKernel(pRadius).getKernelData(null);
+
+        return new ConvolveWithEdgeOp(gaussian, gaussian, EDGE_REFLECT, null, null).filter(pOriginal, null);
     }
 
     /**
@@ -1237,103 +1238,7 @@ public final class ImageUtil {
      * @return a new BufferedImage, containing the sharpened image.
      */
     public static BufferedImage convolve(BufferedImage pOriginal, Kernel pKernel, int pEdgeOperation) {
-        // Allow for 2 more edge operations
-        BufferedImage original;
-        switch (pEdgeOperation) {
-            case EDGE_REFLECT:
-            case EDGE_WRAP:
-                original = addBorder(pOriginal, pKernel.getWidth() / 2, pKernel.getHeight() / 2, pEdgeOperation);
-                break;
-            default:
-                original = pOriginal;
-                break;
-        }
-
-        // Create convolution operation
-        ConvolveOp convolve = new ConvolveOp(pKernel, pEdgeOperation, null);
-
-        // Workaround for what seems to be a Java2D bug:
-        // ConvolveOp needs explicit destination image type for some "uncommon"
-        // image types. However, TYPE_3BYTE_BGR is what javax.imageio.ImageIO
-        // normally returns for color JPEGs... :-/
-        BufferedImage result = null;
-        if (original.getType() == BufferedImage.TYPE_3BYTE_BGR) {
-            result = createBuffered(
-                    pOriginal.getWidth(), pOriginal.getHeight(),
-                    pOriginal.getType(), pOriginal.getColorModel().getTransparency()
-            );
-        }
-
-        // Do the filtering (if result is null, a new image will be created)
-        BufferedImage image = convolve.filter(original, result);
-
-        if (pOriginal != original) {
-            // Remove the border
-            image = image.getSubimage(
-                    pKernel.getWidth() / 2, pKernel.getHeight() / 2, pOriginal.getWidth(), pOriginal.getHeight()
-            );
-        }
-
-        return image;
-    }
-
-    private static BufferedImage addBorder(final BufferedImage pOriginal, final int pBorderX, final int pBorderY, final int pEdgeOperation) {
-        // TODO: Might be faster if we could clone raster and strech it...
-        int w = pOriginal.getWidth();
-        int h = pOriginal.getHeight();
-
-        ColorModel cm = pOriginal.getColorModel();
-        WritableRaster raster = cm.createCompatibleWritableRaster(w + 2 * pBorderX, h + 2 * pBorderY);
-        BufferedImage bordered = new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
-
-        Graphics2D g = bordered.createGraphics();
-        try {
-            g.setComposite(AlphaComposite.Src);
-            g.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
-
-            // Draw original in center
-            g.drawImage(pOriginal, pBorderX, pBorderY, null);
-
-            // TODO: I guess we need the top/left etc, if the corner pixels are covered by the kernel
-            switch (pEdgeOperation) {
-                case EDGE_REFLECT:
-                    // Top/left (empty)
-                    g.drawImage(pOriginal, pBorderX, 0, pBorderX + w, pBorderY, 0, 0, w, 1, null); // Top/center
-                    // Top/right (empty)
-
-                    g.drawImage(pOriginal, -w + pBorderX, pBorderY, pBorderX, h + pBorderY, 0, 0, 1, h, null); // Center/left
-                    // Center/center (already drawn)
-                    g.drawImage(pOriginal, w + pBorderX, pBorderY, 2 * pBorderX + w, h + pBorderY, w - 1, 0, w, h, null); // Center/right
-
-                    // Bottom/left (empty)
-                    g.drawImage(pOriginal, pBorderX, pBorderY + h, pBorderX + w, 2 * pBorderY + h, 0, h - 1, w, h, null); // Bottom/center
-                    // Bottom/right (empty)
-                    break;
-                case EDGE_WRAP:
-                    g.drawImage(pOriginal, -w + pBorderX, -h + pBorderY, null); // Top/left
-                    g.drawImage(pOriginal, pBorderX, -h + pBorderY, null); // Top/center
-                    g.drawImage(pOriginal, w + pBorderX, -h + pBorderY, null); // Top/right
-
-                    g.drawImage(pOriginal, -w + pBorderX, pBorderY, null); // Center/left
-                    // Center/center (already drawn)
-                    g.drawImage(pOriginal, w + pBorderX, pBorderY, null); // Center/right
-
-                    g.drawImage(pOriginal, -w + pBorderX, h + pBorderY, null); // Bottom/left
-                    g.drawImage(pOriginal, pBorderX, h + pBorderY, null); // Bottom/center
-                    g.drawImage(pOriginal, w + pBorderX, h + pBorderY, null); // Bottom/right
-                    break;
-                default:
-                    throw new IllegalArgumentException("Illegal edge operation " + pEdgeOperation);
-            }
-
-        }
-        finally {
-            g.dispose();
-        }
-
-        //ConvolveTester.showIt(bordered, "jaffe");
-
-        return bordered;
+        return new ConvolveWithEdgeOp(pKernel, pEdgeOperation, null).filter(pOriginal, null);
     }
 
     /**
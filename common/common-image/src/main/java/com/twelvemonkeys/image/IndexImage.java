@@ -91,9 +91,6 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 
 /**
  * This class implements an adaptive palette generator to reduce images
@@ -116,6 +113,12 @@ import java.util.List;
  * {@link #TRANSPARENCY_BITMASK} and
  * {@link #TRANSPARENCY_TRANSLUCENT}.
  * <p/>
+ * The color quantization algorithm can be controlled using the hints
+ * {@link #QUANTIZER_MEDIAN_CUT},
+ * {@link #QUANTIZER_OCTREE} and
+ * {@link #QUANTIZER_DEFAULT}, optionally combined with
+ * {@link #REFINE_KMEANS}.
+ * <p/>
  * <HR/>
  * <p/>
  * <PRE>
@@ -205,46 +208,44 @@ class IndexImage {
     protected final static int TRANSPARENCY_TRANSLUCENT = 0x030000;
 
     /**
-     * Used to track a color and the number of pixels of that colors
+     * Quantizer mask
      */
-    private static class Counter {
+    protected final static int QUANTIZER_MASK = 0x0F000000;
 
-        /**
-         * Field val
-         */
-        public int val;
+    /**
+     * Default quantizer (median cut)
+     */
+    public final static int QUANTIZER_DEFAULT = 0x00000000;
 
-        /**
-         * Field count
-         */
-        public int count = 1;
+    /**
+     * Median cut quantizer
+     */
+    public final static int QUANTIZER_MEDIAN_CUT = 0x01000000;
 
-        /**
-         * Constructor Counter
-         *
-         * @param val the initial value
-         */
-        public Counter(int val) {
-            this.val = val;
-        }
+    /**
+     * Octree quantizer, using bounded memory, regardless of the number of colors in the image
+     */
+    public final static int QUANTIZER_OCTREE = 0x02000000;
 
-        /**
-         * Method add
-         *
-         * @param val the new value
-         * @return {@code true} if the value was added, otherwise {@code false}
-         */
-        public boolean add(int val) {
-            // See if the value matches us...
-            if (this.val != val) {
-                return false;
-            }
+    /**
+     * Refinement mask
+     */
+    protected final static int REFINE_MASK = 0xF0000000;
 
-            count++;
+    /**
+     * No refinement of the palette (default)
+     */
+    public final static int REFINE_NONE = 0x00000000;
 
-            return true;
-        }
-    }
+    /**
+     * Refine the palette, using k-means clustering
+     */
+    public final static int REFINE_KMEANS = 0x10000000;
+
+    /**
+     * Number of k-means iterations, each iteration reads the pixels once more
+     */
+    private final static int KMEANS_ITERATIONS = 3;
 
     /**
      * Used to define a cube of the color space.  The cube can be split
@@ -254,7 +255,7 @@ class IndexImage {
         int[] min = {0, 0, 0};
         int[] max = {255, 255, 255};
         boolean done = false;
-        List<Counter>[] colors = null;
+        ColorHistogram histogram = null;
         int count = 0;
         static final int RED = 0;
         static final int GRN = 1;
@@ -263,11 +264,11 @@ class IndexImage {
         /**
          * Define a new cube.
          *
-         * @param colors contains the 3D color histogram to be subdivided
-         * @param count  the total number of pixels in the 3D histogram.
+         * @param histogram contains the sorted 3D color histogram to be subdivided
+         * @param count     the total number of pixels in the 3D histogram.
          */
-        public Cube(List<Counter>[] colors, int count) {
-            this.colors = colors;
+        public Cube(ColorHistogram histogram, int count) {
+            this.histogram = histogram;
             this.count = count;
         }
 
@@ -384,6 +385,9 @@ class IndexImage {
             int maxR = max[0], maxG = max[1], maxB = max[2];
             int val;
             int[] vals = {0, 0, 0};
+            int[] colors = histogram.colors;
+            int[] colorCounts = histogram.counts;
+            int[] bins = histogram.bins;
 
             for (int i = minIdx[splitChannel]; i <= maxIdx[splitChannel]; i++) {
                 int idx1 = i << splitSh4;
@@ -393,14 +397,9 @@ class IndexImage {
 
                     for (int k = minIdx[c1]; k <= maxIdx[c1]; k++) {
                         int idx = idx2 | (k << c1Sh4);
-                        List<Counter> v = colors[idx];
 
-                        if (v == null) {
-                            continue;
-                        }
-                        
-                        for (Counter c : v) {
-                            val = c.val;
+                        for (int n = bins[idx]; n < bins[idx + 1]; n++) {
+                            val = colors[n];
                             vals[0] = (val & 0xFF0000) >> 16;
                             vals[1] = (val & 0xFF00) >> 8;
                             vals[2] = (val & 0xFF);
@@ -408,8 +407,8 @@ class IndexImage {
                                     && ((vals[2] >= minB) && (vals[2] <= maxB))) {
 
                                 // The val lies within this cube so count it.
-                                counts[vals[splitChannel]] += c.count;
-                                tcount += c.count;
+                                counts[vals[splitChannel]] += colorCounts[n];
+                                tcount += colorCounts[n];
                             }
                         }
                     }
@@ -497,7 +496,7 @@ class IndexImage {
             //                    " Count: " + tcount  + " of " + count +
             //                    " LA: " + lastAdd);
             // Create the new cube and update everyone's bounds & counts.
-            Cube ret = new Cube(colors, tcount);
+            Cube ret = new Cube(histogram, tcount);
 
             this.count = this.count - tcount;
             ret.min[splitChannel] = this.min[splitChannel];
@@ -521,13 +520,17 @@ class IndexImage {
                 return 0;
             }
             
-            float red = 0, grn = 0, blu = 0;
+            // NOTE: Integer sums, so the result does not depend on the order of the colors
+            long red = 0, grn = 0, blu = 0;
             int minR = min[0], minG = min[1], minB = min[2];
             int maxR = max[0], maxG = max[1], maxB = max[2];
             int[] minIdx = {minR >> 4, minG >> 4, minB >> 4};
             int[] maxIdx = {maxR >> 4, maxG >> 4, maxB >> 4};
             int val, ired, igrn, iblu;
-            float weight;
+            long weight;
+            int[] colors = histogram.colors;
+            int[] colorCounts = histogram.counts;
+            int[] bins = histogram.bins;
 
             for (int i = minIdx[0]; i <= maxIdx[0]; i++) {
                 int idx1 = i << 8;
@@ -537,23 +540,18 @@ class IndexImage {
 
                     for (int k = minIdx[2]; k <= maxIdx[2]; k++) {
                         int idx = idx2 | k;
-                        List<Counter> v = colors[idx];
 
-                        if (v == null) {
-                            continue;
-                        }
-
-                        for (Counter c : v) {
-                            val = c.val;
+                        for (int n = bins[idx]; n < bins[idx + 1]; n++) {
+                            val = colors[n];
                             ired = (val & 0xFF0000) >> 16;
                             igrn = (val & 0x00FF00) >> 8;
                             iblu = (val & 0x0000FF);
                             
                             if (((ired >= minR) && (ired <= maxR)) && ((igrn >= minG) && (igrn <= maxG)) && ((iblu >= minB) && (iblu <= maxB))) {
-                                weight = (c.count / (float) this.count);
-                                red += ((float) ired) * weight;
-                                grn += ((float) igrn) * weight;
-                                blu += ((float) iblu) * weight;
+                                weight = colorCounts[n];
+                                red += ired * weight;
+                                grn += igrn * weight;
+                                blu += iblu * weight;
                             }
                         }
                     }
@@ -562,10 +560,96 @@ class IndexImage {
 
             // System.out.println("RGB: [" + red + ", " +
             //                    grn + ", " + blu + "]");
-            return (((int) (red + 0.5f)) << 16 | ((int) (grn + 0.5f)) << 8 | ((int) (blu + 0.5f)));
+            long half = this.count / 2;
+            return (int) ((red + half) / this.count) << 16 | (int) ((grn + half) / this.count) << 8 | (int) ((blu + half) / this.count);
         }
     }// end Cube
 
+    /**
+     * Median cut quantizer, counting the colors in a histogram, and splitting cubes of the color space.
+     */
+    static final class MedianCutQuantizer extends ColorQuantizer {
+        final ColorHistogram histogram = new ColorHistogram();
+
+        void add(final int rgb) {
+            histogram.add(rgb);
+        }
+
+        int[] createPalette(final int pNumberOfColors) {
+            // Sort the colors into bins, using 4 bits from R, G & B
+            histogram.sort();
+
+            int sampleCount = histogram.getTotal();
+
+            // All colours found, reduce to pNumberOfColors
+            int numberOfCubes = 1;
+            int fCube = 0;
+            Cube[] cubes = new Cube[pNumberOfColors];
+
+            cubes[0] = new Cube(histogram, sampleCount);
+
+            //cubes[0] = new Cube(colors, width * height);
+            while (numberOfCubes < pNumberOfColors) {
+                while (cubes[fCube].isDone()) {
+                    fCube++;
+
+                    if (fCube == numberOfCubes) {
+                        break;
+                    }
+                }
+
+                if (fCube == numberOfCubes) {
+                    break;
+                }
+
+                Cube cube = cubes[fCube];
+                Cube newCube = cube.split();
+
+                if (newCube != null) {
+                    if (newCube.count > cube.count) {
+                        Cube tmp = cube;
+
+                        cube = newCube;
+                        newCube = tmp;
+                    }
+
+                    int j = fCube;
+                    int count = cube.count;
+
+                    for (int i = fCube + 1; i < numberOfCubes; i++) {
+                        if (cubes[i].count < count) {
+                            break;
+                        }
+                        cubes[j++] = cubes[i];
+                    }
+
+                    cubes[j++] = cube;
+                    count = newCube.count;
+
+                    while (j < numberOfCubes) {
+                        if (cubes[j].count < count) {
+                            break;
+                        }
+                        j++;
+                    }
+
+                    System.arraycopy(cubes, j, cubes, j + 1, numberOfCubes - j);
+
+                    cubes[j/*++*/] = newCube;
+                    numberOfCubes++;
+                }
+            }
+
+            int[] palette = new int[numberOfCubes];
+
+            for (int i = 0; i < numberOfCubes; i++) {
+                palette[i] = cubes[i].averageColor();
+            }
+
+            return palette;
+        }
+    }
+
     /**
      * You cannot create this
      */
@@ -669,129 +753,37 @@ class IndexImage {
         int width = pImage.getWidth();
         int height = pImage.getHeight();
 
-        // Using 4 bits from R, G & B.
-        @SuppressWarnings("unchecked")
-        List<Counter>[] colors = new List[1 << 12];// [4096]
-
         // Speedup, doesn't decrease image quality much
         int step = 1;
 
         if (isFast(pHints)) {
             step += (width * height / 16384);// 128x128px
         }
-        int sampleCount = 0;
-        int rgb;
-
-        //for (int x = 0; x < width; x++) {
-        //for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-            for (int y = x % step; y < height; y += step) {
-                // Count the number of color samples
-                sampleCount++;
-
-                // Get ARGB pixel from image
-                rgb = (pImage.getRGB(x, y) & 0xFFFFFF);
-
-                // Get index from high four bits of each component.
-                int index = (((rgb & 0xF00000) >>> 12) | ((rgb & 0x00F000) >>> 8) | ((rgb & 0x0000F0) >>> 4));
-
-                // Get the 'hash vector' for that key.
-                List<Counter> v = colors[index];
-
-                if (v == null) {
-                    // No colors in this bin yet so create vector and
-                    // add color.
-                    v = new ArrayList<Counter>();
-                    v.add(new Counter(rgb));
-                    colors[index] = v;
-                }
-                else {
-                    // Find our color in the bin or create a counter for it.
-                    Iterator i = v.iterator();
-
-                    while (true) {
-                        if (i.hasNext()) {
-                            // try adding our color to each counter...
-                            if (((Counter) i.next()).add(rgb)) {
-                                break;
-                            }
-                        }
-                        else {
-                            v.add(new Counter(rgb));
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        // All colours found, reduce to pNumberOfColors
-        int numberOfCubes = 1;
-        int fCube = 0;
-        Cube[] cubes = new Cube[pNumberOfColors];
-
-        cubes[0] = new Cube(colors, sampleCount);
-
-        //cubes[0] = new Cube(colors, width * height);
-        while (numberOfCubes < pNumberOfColors) {
-            while (cubes[fCube].isDone()) {
-                fCube++;
-                
-                if (fCube == numberOfCubes) {
-                    break;
-                }
-            }
-            
-            if (fCube == numberOfCubes) {
-                break;
-            }
-            
-            Cube cube = cubes[fCube];
-            Cube newCube = cube.split();
-
-            if (newCube != null) {
-                if (newCube.count > cube.count) {
-                    Cube tmp = cube;
-
-                    cube = newCube;
-                    newCube = tmp;
-                }
-
-                int j = fCube;
-                int count = cube.count;
 
-                for (int i = fCube + 1; i < numberOfCubes; i++) {
-                    if (cubes[i].count < count) {
-                        break;
-                    }
-                    cubes[j++] = cubes[i];
-                }
-
-                cubes[j++] = cube;
-                count = newCube.count;
-
-                while (j < numberOfCubes) {
-                    if (cubes[j].count < count) {
-                        break;
-                    }
-                    j++;
-                }
+        // Find the colors, and reduce to pNumberOfColors
+        ColorQuantizer quantizer = createQuantizer(pHints);
+        quantizer.addPixels(pImage, step);
 
-                System.arraycopy(cubes, j, cubes, j + 1, numberOfCubes - j);
+        int[] palette = quantizer.createPalette(pNumberOfColors);
 
-                cubes[j/*++*/] = newCube;
-                numberOfCubes++;
+        if (isRefine(pHints)) {
+            for (int i = 0; i < KMEANS_ITERATIONS; i++) {
+                ColorQuantizer refiner = new KMeansRefiner(palette);
+                refiner.addPixels(pImage, step);
+                palette = refiner.createPalette(palette.length);
             }
         }
 
+        int numberOfColors = palette.length;
+
         // Create RGB arrays with correct number of colors
         // If we have transparency, the last color will be the transparent one
-        byte[] r = new byte[useTransparency ? numberOfCubes + 1 : numberOfCubes];
-        byte[] g = new byte[useTransparency ? numberOfCubes + 1 : numberOfCubes];
-        byte[] b = new byte[useTransparency ? numberOfCubes + 1 : numberOfCubes];
+        byte[] r = new byte[useTransparency ? numberOfColors + 1 : numberOfColors];
+        byte[] g = new byte[useTransparency ? numberOfColors + 1 : numberOfColors];
+        byte[] b = new byte[useTransparency ? numberOfColors + 1 : numberOfColors];
 
-        for (int i = 0; i < numberOfCubes; i++) {
-            int val = cubes[i].averageColor();
+        for (int i = 0; i < numberOfColors; i++) {
+            int val = palette[i];
 
             r[i] = (byte) ((val >> 16) & 0xFF);
             g[i] = (byte) ((val >> 8) & 0xFF);
@@ -849,6 +841,33 @@ class IndexImage {
         return (pHints & COLOR_SELECTION_MASK) != COLOR_SELECTION_QUALITY;
     }
 
+    /**
+     * Tests if the hint {@code REFINE_KMEANS} is set.
+     *
+     * @param pHints hints
+     * @return true if the hint {@code REFINE_KMEANS} is set.
+     */
+    private static boolean isRefine(int pHints) {
+        return (pHints & REFINE_MASK) == REFINE_KMEANS;
+    }
+
+    /**
+     * Creates the quantizer specified by the {@code QUANTIZER_*} hint.
+     *
+     * @param pHints hints
+     * @return a new quantizer
+     */
+    private static ColorQuantizer createQuantizer(int pHints) {
+        switch (pHints & QUANTIZER_MASK) {
+            case QUANTIZER_OCTREE:
+                return new OctreeQuantizer();
+            case QUANTIZER_DEFAULT:
+            case QUANTIZER_MEDIAN_CUT:
+            default:
+                return new MedianCutQuantizer();
+        }
+    }
+
     /**
      * Tests if the hint {@code TRANSPARENCY_BITMASK} or
      * {@code TRANSPARENCY_TRANSLUCENT} is set.
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.image;
+
+/**
+ * Refines a palette, using one iteration of k-means clustering.
+ * <p/>
+ * Each pixel added is assigned to the nearest color of the initial palette, and the refined palette
+ * consists of the average color of the pixels assigned to each color.
+ * Colors with no pixels assigned are kept as-is.
+ * Only the sums of each cluster are kept, so the memory used does not depend on the number of pixels.
+ *
+ * @see IndexImage#REFINE_KMEANS
+ */
+final class KMeansRefiner extends ColorQuantizer {
+    private final int[] palette;
+    private final InverseColorMap inverse;
+
+    private final long[] red;
+    private final long[] green;
+    private final long[] blue;
+    private final int[] counts;
+
+    KMeansRefiner(final int[] palette) {
+        if (palette.length < 1 || palette.length > 256) {
+            throw new IllegalArgumentException("Palette must have 1 to 256 colors: " + palette.length);
+        }
+
+        this.palette = palette;
+        inverse = new InverseColorMap(palette);
+
+        red = new long[palette.length];
+        green = new long[palette.length];
+        blue = new long[palette.length];
+        counts = new int[palette.length];
+    }
+
+    void add(final int rgb) {
+        int index = inverse.getIndexNearest(rgb);
+
+        red[index] += (rgb >> 16) & 0xFF;
+        green[index] += (rgb >> 8) & 0xFF;
+        blue[index] += rgb & 0xFF;
+        counts[index]++;
+    }
+
+    /**
+     * Creates the refined palette.
+     *
+     * @param pNumberOfColors ignored, the refined palette has the same number of colors as the initial palette
+     * @return the refined palette
+     */
+    int[] createPalette(final int pNumberOfColors) {
+        int[] refined = new int[palette.length];
+
+        for (int i = 0; i < palette.length; i++) {
+            int count = counts[i];
+
+            if (count == 0) {
+                refined[i] = palette[i];
+            }
+            else {
+                int half = count / 2;
+                refined[i] = (int) ((red[i] + half) / count) << 16
+                        | (int) ((green[i] + half) / count) << 8
+                        | (int) ((blue[i] + half) / count);
+            }
+        }
+
+        return refined;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.image;
+
+/**
+ * An octree color quantizer, using bounded memory.
+ * <p/>
+ * Each pixel is added to the octree, branching on one bit of each of the red, green and blue components per level.
+ * Whenever the number of leaves exceeds a fixed limit, the least populated node at the deepest level is reduced
+ * (its children are merged into it), so the size of the tree does not depend on the number of colors in the image.
+ * The palette is created by reducing the tree further, until the requested number of leaves remains,
+ * and then using the average color of each leaf.
+ *
+ * @see IndexImage#QUANTIZER_OCTREE
+ */
+final class OctreeQuantizer extends ColorQuantizer {
+    /** The default maximum number of leaves while adding pixels. */
+    static final int MAX_LEAVES = 4096;
+
+    private static final int MAX_DEPTH = 8;
+
+    private final Node root;
+    private final int maxLeaves;
+
+    // Internal nodes for each level, the candidates for reduction
+    private final Node[] reducible = new Node[MAX_DEPTH];
+    private int leaves;
+
+    private static final class Node {
+        final Node[] children;
+
+        long red;
+        long green;
+        long blue;
+        int count;
+
+        boolean leaf;
+
+        // Next internal node at the same level
+        Node next;
+
+        Node(final boolean leaf) {
+            this.leaf = leaf;
+            children = leaf ? null : new Node[8];
+        }
+    }
+
+    OctreeQuantizer() {
+        this(MAX_LEAVES);
+    }
+
+    OctreeQuantizer(final int maxLeaves) {
+        if (maxLeaves < 1) {
+            throw new IllegalArgumentException("maxLeaves must be positive: " + maxLeaves);
+        }
+
+        this.maxLeaves = maxLeaves;
+        root = createNode(0);
+    }
+
+    private Node createNode(final int level) {
+        Node node = new Node(level == MAX_DEPTH);
+
+        if (node.leaf) {
+            leaves++;
+        }
+        else {
+            node.next = reducible[level];
+            reducible[level] = node;
+        }
+
+        return node;
+    }
+
+    void add(final int rgb) {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+
+        Node node = root;
+
+        for (int level = 0; !node.leaf; level++) {
+            node.count++;
+
+            int shift = 7 - level;
+            int index = ((red >> shift) & 1) << 2 | ((green >> shift) & 1) << 1 | ((blue >> shift) & 1);
+
+            Node child = node.children[index];
+
+            if (child == null) {
+                child = createNode(level + 1);
+                node.children[index] = child;
+            }
+
+            node = child;
+        }
+
+        node.red += red;
+        node.green += green;
+        node.blue += blue;
+        node.count++;
+
+        while (leaves > maxLeaves) {
+            reduce();
+        }
+    }
+
+    /**
+     * Returns the current number of leaves, the number of colors in the palette if created now.
+     *
+     * @return the number of leaves
+     */
+    int getLeafCount() {
+        return leaves;
+    }
+
+    private void reduce() {
+        // All children of the nodes at the deepest level with internal nodes are leaves
+        int level = MAX_DEPTH - 1;
+        while (reducible[level] == null) {
+            level--;
+        }
+
+        // Reduce the least populated node, to lose as little detail as possible
+        Node previous = null;
+        Node node = reducible[level];
+        Node minPrevious = null;
+        Node min = node;
+
+        while (node != null) {
+            if (node.count < min.count) {
+                min = node;
+                minPrevious = previous;
+            }
+
+            previous = node;
+            node = node.next;
+        }
+
+        if (minPrevious == null) {
+            reducible[level] = min.next;
+        }
+        else {
+            minPrevious.next = min.next;
+        }
+
+        int merged = 0;
+        for (int i = 0; i < 8; i++) {
+            Node child = min.children[i];
+
+            if (child != null) {
+                min.red += child.red;
+                min.green += child.green;
+                min.blue += child.blue;
+                min.children[i] = null;
+                merged++;
+            }
+        }
+
+        min.leaf = true;
+        min.next = null;
+        leaves -= merged - 1;
+    }
+
+    int[] createPalette(final int pNumberOfColors) {
+        if (pNumberOfColors < 1) {
+            throw new IllegalArgumentException("Number of colors must be positive: " + pNumberOfColors);
+        }
+
+        while (leaves > pNumberOfColors) {
+            reduce();
+        }
+
+        int[] palette = new int[Math.max(leaves, 1)];
+        int index = collect(root, palette, 0);
+
+        if (index < palette.length) {
+            // No pixels added, use black
+            palette = new int[] {0};
+        }
+
+        return palette;
+    }
+
+    private static int collect(final Node node, final int[] palette, int index) {
+        if (node.leaf) {
+            if (node.count > 0) {
+                int half = node.count / 2;
+                palette[index++] = (int) ((node.red + half) / node.count) << 16
+                        | (int) ((node.green + half) / node.count) << 8
+                        | (int) ((node.blue + half) / node.count);
+            }
+
+            return index;
+        }
+
+        for (Node child : node.children) {
+            if (child != null) {
+                index = collect(child, palette, index);
+            }
+        }
+
+        return index;
+    }
+}
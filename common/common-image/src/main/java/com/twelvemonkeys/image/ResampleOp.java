@@ -57,6 +57,11 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Resamples (scales) a {@code BufferedImage} to a new width and height, using
@@ -98,6 +103,22 @@ import java.awt.image.*;
  * BufferedImage scaled = new ResampleOp(w, h).filter(temp, null);
  * </pre></blockquote>
  * <p/>
+ * To resample very large images faster on multi-core systems, an {@code Executor}
+ * may be specified in the constructor. The destination columns are then
+ * resampled in bands, concurrently, using the executor's threads in addition to
+ * the calling thread. The result is identical to the result of resampling on
+ * a single thread.
+ * <blockquote><pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+ * <p/>
+ * //...
+ * <p/>
+ * BufferedImage thumbnail = new ResampleOp(w, h, ResampleOp.FILTER_LANCZOS, executor).filter(veryLarge, null);
+ * </pre></blockquote>
+ * <p/>
+ * For source images too large to keep in memory, see {@link ScanlineResampler},
+ * which resamples one source scanline at a time.
+ * <p/>
  * For maximum performance, this class will use native code, through
  * <a href="http://www.yeo.id.au/jmagick/">JMagick</a>, when available.
  * Otherwise, the class will silently fall back to pure Java mode.
@@ -286,6 +307,40 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
     public final static Object VALUE_INTERPOLATION_BLACKMAN_SINC =
             new Value(KEY_RESAMPLE_INTERPOLATION, "Blackman-Sinc", FILTER_BLACKMAN_SINC);
 
+    // Blending types, values for KEY_RESAMPLE_BLENDING
+    static final int BLENDING_DIRECT = 0;
+    static final int BLENDING_PREMULTIPLIED = 1;
+    static final int BLENDING_LINEAR = 2;
+
+    /**
+     * RenderingHints.Key specifying how samples are blended while resampling.
+     * <p/>
+     * Blending in linear light and with premultiplied alpha avoids darkened edges and colored fringes
+     * around transparent areas, at some extra cost.
+     * The conversions are done on the fly for each row, using lookup tables, and are fully supported for
+     * images with 8 bit samples, interleaved in bytes or packed in ints.
+     * Other images are converted to {@code TYPE_INT_ARGB} or {@code TYPE_INT_RGB} before resampling.
+     * Only images in the sRGB color space are converted to linear light, other images are blended with
+     * premultiplied alpha only.
+     */
+    public final static RenderingHints.Key KEY_RESAMPLE_BLENDING = new Key("ResampleBlending");
+
+    /**
+     * Samples are blended as stored in the image, this is the default.
+     */
+    public final static Object VALUE_BLENDING_DIRECT =
+            new Value(KEY_RESAMPLE_BLENDING, "Direct", BLENDING_DIRECT);
+    /**
+     * Color samples are premultiplied by alpha, before blending.
+     */
+    public final static Object VALUE_BLENDING_PREMULTIPLIED =
+            new Value(KEY_RESAMPLE_BLENDING, "Premultiplied", BLENDING_PREMULTIPLIED);
+    /**
+     * Color samples are converted to linear light and premultiplied by alpha, before blending.
+     */
+    public final static Object VALUE_BLENDING_LINEAR =
+            new Value(KEY_RESAMPLE_BLENDING, "Linear", BLENDING_LINEAR);
+
     // Member variables
     // Package access, to allow access from MagickAccelerator
     int width;
@@ -293,6 +348,9 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
 
     int filterType;
 
+    private final int blending;
+    private final Executor executor;
+
     /**
      * RendereingHints.Key implementation, works only with Value values.
      */
@@ -328,7 +386,7 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         public Value(final RenderingHints.Key pKey, final String pName, final int pType) {
             key = pKey;
             name = pName;
-            type = validateFilterType(pType);
+            type = pKey == KEY_RESAMPLE_BLENDING ? validateBlending(pType) : validateFilterType(pType);
         }
 
         public boolean isCompatibleKey(Key pKey) {
@@ -385,6 +443,9 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
      * {@code FILTER_MITCHELL}</li>
      * </ul>
      * </li>
+     * <p/>
+     * <li>{@code KEY_RESAMPLE_BLENDING} specifies how samples are blended, see
+     * {@link #KEY_RESAMPLE_BLENDING}.</li>
      * </ul>
      * Other hints have no effect on this filter.
      *
@@ -392,12 +453,29 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
      * @param height height of the re-sampled image
      * @param hints  rendering hints, affecting interpolation algorithm
      * @see #KEY_RESAMPLE_INTERPOLATION
+     * @see #KEY_RESAMPLE_BLENDING
      * @see RenderingHints#KEY_INTERPOLATION
      * @see RenderingHints#KEY_RENDERING
      * @see RenderingHints#KEY_COLOR_RENDERING
      */
     public ResampleOp(int width, int height, RenderingHints hints) {
-        this(width, height, getFilterType(hints));
+        this(width, height, getFilterType(hints), getBlending(hints), null);
+    }
+
+    /**
+     * Creates a {@code ResampleOp} that will resample input images to the
+     * given width and height, using the interpolation filter specified by
+     * the given hints, and the given executor for concurrent resampling.
+     *
+     * @param width    width of the re-sampled image
+     * @param height   height of the re-sampled image
+     * @param hints    rendering hints, affecting interpolation algorithm
+     * @param executor executor used for resampling concurrently, may be {@code null}
+     * @see #ResampleOp(int, int, java.awt.RenderingHints)
+     * @see #ResampleOp(int, int, int, java.util.concurrent.Executor)
+     */
+    public ResampleOp(int width, int height, RenderingHints hints, Executor executor) {
+        this(width, height, getFilterType(hints), getBlending(hints), executor);
     }
 
     /**
@@ -410,6 +488,33 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
      * @see <a href="#field_summary">filter type constants</a>
      */
     public ResampleOp(int width, int height, int filterType) {
+        this(width, height, filterType, null);
+    }
+
+    /**
+     * Creates a {@code ResampleOp} that will resample input images to the
+     * given width and height, using the given interpolation filter, and the
+     * given executor for concurrent resampling.
+     * <p/>
+     * If {@code executor} is non-{@code null}, the destination image is split
+     * into bands of columns, resampled concurrently by the calling thread and
+     * up to one task per available processor submitted to the executor.
+     * The calling thread never waits for tasks that are not yet started, so it
+     * is safe to share the executor with other work, or to invoke the filter
+     * from the executor's own threads.
+     * The result is identical to the result of resampling on a single thread.
+     *
+     * @param width      width of the re-sampled image
+     * @param height     height of the re-sampled image
+     * @param filterType interpolation filter algorithm
+     * @param executor   executor used for resampling concurrently, may be {@code null}
+     * @see <a href="#field_summary">filter type constants</a>
+     */
+    public ResampleOp(int width, int height, int filterType, Executor executor) {
+        this(width, height, filterType, BLENDING_DIRECT, executor);
+    }
+
+    private ResampleOp(int width, int height, int filterType, int blending, Executor executor) {
         if (width <= 0 || height <= 0) {
             // NOTE: w/h == 0 makes the Magick DLL crash and the JVM dies.. :-P
             throw new IllegalArgumentException("width and height must be positive");
@@ -419,9 +524,11 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         this.height = height;
 
         this.filterType = validateFilterType(filterType);
+        this.blending = validateBlending(blending);
+        this.executor = executor;
     }
 
-    private static int validateFilterType(int pFilterType) {
+    static int validateFilterType(int pFilterType) {
         switch (pFilterType) {
             case FILTER_UNDEFINED:
             case FILTER_POINT:
@@ -445,6 +552,37 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         }
     }
 
+    private static int validateBlending(int pBlending) {
+        switch (pBlending) {
+            case BLENDING_DIRECT:
+            case BLENDING_PREMULTIPLIED:
+            case BLENDING_LINEAR:
+                return pBlending;
+            default:
+                throw new IllegalArgumentException("Unknown blending: " + pBlending);
+        }
+    }
+
+    /**
+     * Gets the blending specified by the given hints.
+     *
+     * @param pHints rendering hints
+     * @return a blending constant
+     */
+    private static int getBlending(RenderingHints pHints) {
+        if (pHints == null || !pHints.containsKey(KEY_RESAMPLE_BLENDING)) {
+            return BLENDING_DIRECT;
+        }
+
+        Object value = pHints.get(KEY_RESAMPLE_BLENDING);
+        // NOTE: Workaround for a bug in RenderingHints constructor (Bug id# 5084832)
+        if (!KEY_RESAMPLE_BLENDING.isCompatibleValue(value)) {
+            throw new IllegalArgumentException(value + " incompatible with key " + KEY_RESAMPLE_BLENDING);
+        }
+
+        return value != null ? ((Value) value).getFilterType() : BLENDING_DIRECT;
+    }
+
     /**
      * Gets the filter type specified by the given hints.
      *
@@ -512,6 +650,7 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
 
         // Special case for POINT, TRIANGLE and QUADRATIC filter, as standard
         // Java implementation is very fast (possibly H/W accelerated)
+        // NOTE: Point sampling does not blend, but the others do, and only directly
         switch (filterType) {
             case FILTER_POINT:
                 if (input.getType() != BufferedImage.TYPE_CUSTOM) {
@@ -519,26 +658,26 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                 }
                 // Else fall through
             case FILTER_TRIANGLE:
-                if (input.getType() != BufferedImage.TYPE_CUSTOM) {
+                if (input.getType() != BufferedImage.TYPE_CUSTOM && blending == BLENDING_DIRECT) {
                     return fastResample(input, output, width, height, AffineTransformOp.TYPE_BILINEAR);
                 }
                 // Else fall through
             case FILTER_QUADRATIC:
-                if (input.getType() != BufferedImage.TYPE_CUSTOM) {
+                if (input.getType() != BufferedImage.TYPE_CUSTOM && blending == BLENDING_DIRECT) {
                     return fastResample(input, output, width, height, AffineTransformOp.TYPE_BICUBIC);
                 }
                 // Else fall through
             default:
                 filter = createFilter(filterType);
                 // NOTE: Workaround for filter throwing exceptions when input or output is less than support...
-                if (Math.min(input.getWidth(), input.getHeight()) <= filter.support() || Math.min(width, height) <= filter.support()) {
+                if (blending == BLENDING_DIRECT && (Math.min(input.getWidth(), input.getHeight()) <= filter.support() || Math.min(width, height) <= filter.support())) {
                     return fastResample(input, output, width, height, AffineTransformOp.TYPE_BILINEAR);
                 }
                 // Fall through
         }
 
-        // Try to use native ImageMagick code
-        BufferedImage result = MagickAccelerator.filter(this, input, output);
+        // Try to use native ImageMagick code (blends directly only)
+        BufferedImage result = blending == BLENDING_DIRECT ? MagickAccelerator.filter(this, input, output) : null;
         if (result != null) {
             return result;
         }
@@ -559,6 +698,11 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
             temp = input;
         }
 
+        // Blending is done on the fly by the fast path only, convert other layouts to a supported type
+        if (blending != BLENDING_DIRECT && SampleRows.create(temp.getRaster(), getChannelMax(temp)) == null) {
+            temp = ImageUtil.toBuffered(temp, temp.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        }
+
         // Create or convert output to a suitable image
         // TODO: OPTIMIZE: Don't really need to convert all types to same as input
         result = output != null && temp.getType() != BufferedImage.TYPE_CUSTOM ? /*output*/ ImageUtil.toBuffered(output, temp.getType()) : createCompatibleDestImage(temp, null);
@@ -754,7 +898,7 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         return filterType;
     }
 
-    private static InterpolationFilter createFilter(int pFilterType) {
+    static InterpolationFilter createFilter(int pFilterType) {
         // TODO: Select correct filter based on scale up or down, if undefined!
         if (pFilterType == FILTER_UNDEFINED) {
             pFilterType = FILTER_LANCZOS;
@@ -815,7 +959,8 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         Object value;
         switch (filterType) {
             case FILTER_UNDEFINED:
-                return null;
+                value = null;
+                break;
             case FILTER_POINT:
                 value = VALUE_INTERPOLATION_POINT;
                 break;
@@ -865,7 +1010,35 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                 throw new IllegalStateException("Unknown filter type: " + filterType);
         }
 
-        return new RenderingHints(KEY_RESAMPLE_INTERPOLATION, value);
+        Object blendingValue;
+        switch (blending) {
+            case BLENDING_DIRECT:
+                blendingValue = null;
+                break;
+            case BLENDING_PREMULTIPLIED:
+                blendingValue = VALUE_BLENDING_PREMULTIPLIED;
+                break;
+            case BLENDING_LINEAR:
+                blendingValue = VALUE_BLENDING_LINEAR;
+                break;
+            default:
+                throw new IllegalStateException("Unknown blending: " + blending);
+        }
+
+        if (value == null && blendingValue == null) {
+            return null;
+        }
+
+        RenderingHints hints = new RenderingHints(null);
+
+        if (value != null) {
+            hints.put(KEY_RESAMPLE_INTERPOLATION, value);
+        }
+        if (blendingValue != null) {
+            hints.put(KEY_RESAMPLE_BLENDING, blendingValue);
+        }
+
+        return hints;
     }
 
     public Rectangle2D getBounds2D(BufferedImage src) {
@@ -1270,14 +1443,23 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
     /*
     *	image rescaling routine
     */
-    class Contributor {
-        int pixel;
-        double weight;
-    }
 
-    class ContributorList {
-        int n;/* number of contributors (may be < p.length) */
-        Contributor[] p;/* pointer to list of contributions */
+    /*
+        Contributions
+
+        Filter contributions (source pixel and weight) for all dst pixels along one axis, in flat arrays.
+        The contributions for dst pixel i are found from offsets[i] (inclusive) to offsets[i + 1] (exclusive).
+    */
+    static final class Contributions {
+        final int[] offsets;
+        final int[] pixels;
+        final double[] weights;
+
+        Contributions(final int dstSize, final int maxContributors) {
+            offsets = new int[dstSize + 1];
+            pixels = new int[dstSize * maxContributors];
+            weights = new double[dstSize * maxContributors];
+        }
     }
 
     /*
@@ -1307,264 +1489,179 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
     }/* round */
 
     /*
-        calcXContrib()
+        calcContributions()
 
-        Calculates the filter weights for a single target column.
-        contribX->p must be freed afterwards.
-
-        Returns -1 if error, 0 otherwise.
+        Calculates the filter weights for all dst pixels along one axis.
+        Source pixels outside the image are mirrored at the edges.
     */
-    private ContributorList calcXContrib(double xscale, double fwidth, int srcwidth, InterpolationFilter pFilter, int i) {
-        // TODO: What to do when fwidth > srcwidyj or dstwidth
-
+    static Contributions calcContributions(final double scale, final double fwidth, final int srcSize, final int dstSize, final InterpolationFilter pFilter) {
+        // TODO: What to do when fwidth > srcSize or dstSize
         double width;
         double fscale;
-        double center;
-        double weight;
-
-        ContributorList contribX = new ContributorList();
 
-        if (xscale < 1.0) {
+        if (scale < 1.0) {
             /* Shrinking image */
-            width = fwidth / xscale;
-            fscale = 1.0 / xscale;
+            width = fwidth / scale;
+            fscale = 1.0 / scale;
 
             if (width <= .5) {
                 // Reduce to point sampling.
                 width = .5 + 1.0e-6;
                 fscale = 1.0;
             }
+        }
+        else {
+            /* Expanding image */
+            width = fwidth;
+            fscale = 1.0;
+        }
+
+        Contributions contributions = new Contributions(dstSize, (int) (width * 2.0 + 1.0));
+        int k = 0;
 
-            //contribX.n = 0;
-            contribX.p = new Contributor[(int) (width * 2.0 + 1.0)];
+        for (int i = 0; i < dstSize; i++) {
+            contributions.offsets[i] = k;
 
-            center = (double) i / xscale;
-            int left = (int) Math.ceil(center - width);// Note: Assumes width <= .5
+            double center = (double) i / scale;
+            int left = (int) Math.ceil(center - width);
             int right = (int) Math.floor(center + width);
 
             double density = 0.0;
 
             for (int j = left; j <= right; j++) {
-                weight = center - (double) j;
+                double weight = center - (double) j;
                 weight = pFilter.filter(weight / fscale) / fscale;
+
                 int n;
                 if (j < 0) {
                     n = -j;
                 }
-                else if (j >= srcwidth) {
-                    n = (srcwidth - j) + srcwidth - 1;
+                else if (j >= srcSize) {
+                    n = (srcSize - j) + srcSize - 1;
                 }
                 else {
                     n = j;
                 }
 
                 /**/
-                if (n >= srcwidth) {
-                    n = n % srcwidth;
+                if (n >= srcSize) {
+                    n = n % srcSize;
                 }
                 else if (n < 0) {
-                    n = srcwidth - 1;
+                    n = srcSize - 1;
                 }
                 /**/
 
-                int k = contribX.n++;
-                contribX.p[k] = new Contributor();
-                contribX.p[k].pixel = n;
-                contribX.p[k].weight = weight;
+                contributions.pixels[k] = n;
+                contributions.weights[k] = weight;
+                k++;
 
                 density += weight;
-
             }
 
-            if ((density != 0.0) && (density != 1.0)) {
+            if (scale < 1.0 && (density != 0.0) && (density != 1.0)) {
                 //Normalize.
                 density = 1.0 / density;
-                for (int k = 0; k < contribX.n; k++) {
-                    contribX.p[k].weight *= density;
+                for (int l = contributions.offsets[i]; l < k; l++) {
+                    contributions.weights[l] *= density;
                 }
             }
         }
-        else {
-            /* Expanding image */
-            //contribX.n = 0;
-            contribX.p = new Contributor[(int) (fwidth * 2.0 + 1.0)];
 
-            center = (double) i / xscale;
-            int left = (int) Math.ceil(center - fwidth);
-            int right = (int) Math.floor(center + fwidth);
+        contributions.offsets[dstSize] = k;
 
-            for (int j = left; j <= right; j++) {
-                weight = center - (double) j;
-                weight = pFilter.filter(weight);
-
-                int n;
-                if (j < 0) {
-                    n = -j;
-                }
-                else if (j >= srcwidth) {
-                    n = (srcwidth - j) + srcwidth - 1;
-                }
-                else {
-                    n = j;
-                }
-
-                /**/
-                if (n >= srcwidth) {
-                    n = n % srcwidth;
-                }
-                else if (n < 0) {
-                    n = srcwidth - 1;
-                }
-                /**/
-
-                int k = contribX.n++;
-                contribX.p[k] = new Contributor();
-                contribX.p[k].pixel = n;
-                contribX.p[k].weight = weight;
-            }
-        }
-        return contribX;
-    }/* calcXContrib */
+        return contributions;
+    }/* calcContributions */
 
     /*
         resample()
 
         Resizes bitmaps while resampling them.
     */
-    private BufferedImage resample(BufferedImage pSource, BufferedImage pDest, InterpolationFilter pFilter) {
+    private BufferedImage resample(final BufferedImage pSource, final BufferedImage pDest, final InterpolationFilter pFilter) {
         final int dstWidth = pDest.getWidth();
         final int dstHeight = pDest.getHeight();
 
         final int srcWidth = pSource.getWidth();
         final int srcHeight = pSource.getHeight();
 
-        /* create intermediate column to hold horizontal dst column zoom */
-        final ColorModel cm = pSource.getColorModel();
-//        final WritableRaster work = cm.createCompatibleWritableRaster(1, srcHeight);
-        final WritableRaster work = ImageUtil.createCompatibleWritableRaster(pSource, cm, 1, srcHeight);
-
-        double xscale = (double) dstWidth / (double) srcWidth;
-        double yscale = (double) dstHeight / (double) srcHeight;
-
-        ContributorList[] contribY = new ContributorList[dstHeight];
-        for (int i = 0; i < contribY.length; i++) {
-            contribY[i] = new ContributorList();
-        }
-
-        // TODO: What to do when fwidth > srcHeight or dstHeight
-        double fwidth = pFilter.support();
-        if (yscale < 1.0) {
-            double width = fwidth / yscale;
-            double fscale = 1.0 / yscale;
-
-            if (width <= .5) {
-                // Reduce to point sampling.
-                width = .5 + 1.0e-6;
-                fscale = 1.0;
-            }
-
-            for (int i = 0; i < dstHeight; i++) {
-                //contribY[i].n = 0;
-                contribY[i].p = new Contributor[(int) (width * 2.0 + 1)];
-
-                double center = (double) i / yscale;
-                int left = (int) Math.ceil(center - width);
-                int right = (int) Math.floor(center + width);
-
-                double density = 0.0;
+        // The contributions are computed once per axis, and shared by all rows, columns and threads
+        final Contributions contribX = calcContributions((double) dstWidth / (double) srcWidth, pFilter.support(), srcWidth, dstWidth, pFilter);
+        final Contributions contribY = calcContributions((double) dstHeight / (double) srcHeight, pFilter.support(), srcHeight, dstHeight, pFilter);
 
-                for (int j = left; j <= right; j++) {
-                    double weight = center - (double) j;
-                    weight = pFilter.filter(weight / fscale) / fscale;
-                    int n;
-                    if (j < 0) {
-                        n = -j;
-                    }
-                    else if (j >= srcHeight) {
-                        n = (srcHeight - j) + srcHeight - 1;
-                    }
-                    else {
-                        n = j;
-                    }
+        final Raster raster = pSource.getRaster();
+        final WritableRaster out = pDest.getRaster();
 
-                    /**/
-                    if (n >= srcHeight) {
-                        n = n % srcHeight;
-                    }
-                    else if (n < 0) {
-                        n = srcHeight - 1;
-                    }
-                    /**/
+        final int[] channelMax = getChannelMax(pSource);
 
-                    int k = contribY[i].n++;
-                    contribY[i].p[k] = new Contributor();
-                    contribY[i].p[k].pixel = n;
-                    contribY[i].p[k].weight = weight;
+        // Fast path for the common 8 bit layouts, working directly on the backing arrays
+        final SampleRows srcRows = SampleRows.create(raster, channelMax);
+        final SampleRows dstRows = srcRows != null ? SampleRows.create(out, channelMax) : null;
 
-                    density += weight;
-                }
+        if (dstRows != null && srcRows.channels == dstRows.channels) {
+            Blending decoder = Blending.create(blending, pSource.getColorModel(), srcRows);
+            Blending encoder = Blending.create(blending, pDest.getColorModel(), dstRows);
 
-                if ((density != 0.0) && (density != 1.0)) {
-                    //Normalize.
-                    density = 1.0 / density;
-                    for (int k = 0; k < contribY[i].n; k++) {
-                        contribY[i].p[k].weight *= density;
-                    }
-                }
-            }
+            resampleRows(srcRows, dstRows, decoder, encoder, contribX, contribY);
         }
         else {
-            for (int i = 0; i < dstHeight; ++i) {
-                //contribY[i].n = 0;
-                contribY[i].p = new Contributor[(int) (fwidth * 2 + 1)];
-
-                double center = (double) i / yscale;
-                double left = Math.ceil(center - fwidth);
-                double right = Math.floor(center + fwidth);
-                for (int j = (int) left; j <= right; ++j) {
-                    double weight = center - (double) j;
-                    weight = pFilter.filter(weight);
-                    int n;
-                    if (j < 0) {
-                        n = -j;
-                    }
-                    else if (j >= srcHeight) {
-                        n = (srcHeight - j) + srcHeight - 1;
-                    }
-                    else {
-                        n = j;
-                    }
-
-                    /**/
-                    if (n >= srcHeight) {
-                        n = n % srcHeight;
-                    }
-                    else if (n < 0) {
-                        n = srcHeight - 1;
-                    }
-                    /**/
-
-                    int k = contribY[i].n++;
-                    contribY[i].p[k] = new Contributor();
-                    contribY[i].p[k].pixel = n;
-                    contribY[i].p[k].weight = weight;
+            // NOTE: Multiple pixels packed into one data element can't be written concurrently
+            resampleBands(executor, dstWidth, !(out.getSampleModel() instanceof MultiPixelPackedSampleModel), new Band() {
+                public void resample(final int from, final int to) {
+                    resampleColumns(pSource, out, contribX, contribY, channelMax, from, to);
                 }
-            }
+            });
         }
 
-        final Raster raster = pSource.getRaster();
-        final WritableRaster out = pDest.getRaster();
+        return pDest;
+    }/* resample */
 
+    static int[] getChannelMax(final BufferedImage pImage) {
         // TODO: This is not optimal for non-byte-packed rasters...
         // (What? Maybe I implemented the fix, but forgot to remove the TODO?)
-        final int numChannels = raster.getNumBands();
+        final int numChannels = pImage.getRaster().getNumBands();
         final int[] channelMax = new int[numChannels];
         for (int k = 0; k < numChannels; k++) {
-            channelMax[k] = (1 << pSource.getColorModel().getComponentSize(k)) - 1;
+            channelMax[k] = (1 << pImage.getColorModel().getComponentSize(k)) - 1;
+        }
+
+        return channelMax;
+    }
+
+    static int[] getChannelMax(final Raster pRaster) {
+        int[] sampleSize = pRaster.getSampleModel().getSampleSize();
+        int[] channelMax = new int[sampleSize.length];
+
+        for (int i = 0; i < sampleSize.length; i++) {
+            channelMax[i] = (1 << sampleSize[i]) - 1;
         }
 
-        for (int xx = 0; xx < dstWidth; xx++) {
-            ContributorList contribX = calcXContrib(xscale, fwidth, srcWidth, pFilter, xx);
+        return channelMax;
+    }
+
+    /*
+        resampleColumns()
+
+        Generic resampling, using the raster's getSample/setSample methods.
+        Resamples the dst columns from fromX (inclusive) to toX (exclusive).
+        Uses its own intermediate column, so disjoint ranges may be resampled concurrently.
+    */
+    private static void resampleColumns(final BufferedImage pSource, final WritableRaster out, final Contributions contribX, final Contributions contribY,
+                                        final int[] channelMax, final int fromX, final int toX) {
+        final Raster raster = pSource.getRaster();
+        final int srcHeight = raster.getHeight();
+        final int dstHeight = out.getHeight();
+        final int numChannels = raster.getNumBands();
+
+        /* create intermediate column to hold horizontal dst column zoom */
+        final ColorModel cm = pSource.getColorModel();
+//        final WritableRaster work = cm.createCompatibleWritableRaster(1, srcHeight);
+        final WritableRaster work = ImageUtil.createCompatibleWritableRaster(pSource, cm, 1, srcHeight);
+
+        for (int xx = fromX; xx < toX; xx++) {
+            final int firstX = contribX.offsets[xx];
+            final int lastX = contribX.offsets[xx + 1];
+
             /* Apply horiz filter to make dst column in tmp. */
             for (int k = 0; k < srcHeight; k++) {
                 for (int channel = 0; channel < numChannels; channel++) {
@@ -1573,13 +1670,13 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                     boolean bPelDelta = false;
                     // TODO: This line throws index out of bounds, if the image
                     // is smaller than filter.support()
-                    double pel = raster.getSample(contribX.p[0].pixel, k, channel);
-                    for (int j = 0; j < contribX.n; j++) {
-                        double pel2 = j == 0 ? pel : raster.getSample(contribX.p[j].pixel, k, channel);
+                    double pel = raster.getSample(contribX.pixels[firstX], k, channel);
+                    for (int j = firstX; j < lastX; j++) {
+                        double pel2 = j == firstX ? pel : raster.getSample(contribX.pixels[j], k, channel);
                         if (pel2 != pel) {
                             bPelDelta = true;
                         }
-                        weight += pel2 * contribX.p[j].weight;
+                        weight += pel2 * contribX.weights[j];
                     }
                     weight = bPelDelta ? round(weight) : pel;
 
@@ -1597,20 +1694,23 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
 
             /* The temp column has been built. Now stretch it vertically into dst column. */
             for (int i = 0; i < dstHeight; i++) {
+                final int firstY = contribY.offsets[i];
+                final int lastY = contribY.offsets[i + 1];
+
                 for (int channel = 0; channel < numChannels; channel++) {
 
                     double weight = 0.0;
                     boolean bPelDelta = false;
-                    double pel = work.getSample(0, contribY[i].p[0].pixel, channel);
+                    double pel = work.getSample(0, contribY.pixels[firstY], channel);
 
-                    for (int j = 0; j < contribY[i].n; j++) {
+                    for (int j = firstY; j < lastY; j++) {
                         // TODO: This line throws index out of bounds, if the image
                         // is smaller than filter.support()
-                        double pel2 = j == 0 ? pel : work.getSample(0, contribY[i].p[j].pixel, channel);
+                        double pel2 = j == firstY ? pel : work.getSample(0, contribY.pixels[j], channel);
                         if (pel2 != pel) {
                             bPelDelta = true;
                         }
-                        weight += pel2 * contribY[i].p[j].weight;
+                        weight += pel2 * contribY.weights[j];
                     }
                     weight = bPelDelta ? round(weight) : pel;
                     if (weight < 0) {
@@ -1624,6 +1724,610 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                 }
             }/* next dst row */
         }/* next dst column */
-        return pDest;
-    }/* resample */
-}
\ No newline at end of file
+    }/* resampleColumns */
+
+    /*
+        resampleRows()
+
+        Fast resampling of 8 bit samples, working directly on the backing arrays.
+        First filters all src rows horizontally into an intermediate image of dstWidth x srcHeight samples,
+        then filters the intermediate image vertically into the dst rows.
+        Rounds and clamps exactly like resampleColumns(), so the result is identical.
+        If decoder and encoder are non-null, the rows are converted to and from 16 bit blending values on the fly,
+        and the intermediate image holds 16 bit values.
+    */
+    private void resampleRows(final SampleRows src, final SampleRows dst, final Blending decoder, final Blending encoder,
+                              final Contributions contribX, final Contributions contribY) {
+        final int channels = src.channels;
+        final int srcStride = src.width * channels;
+        final int dstWidth = dst.width;
+        final int tempStride = dstWidth * channels;
+        final char[] temp = new char[tempStride * src.height];
+        final int max = decoder != null ? Blending.MAX_VALUE : 0xff;
+
+        // Sample indexes, rather than pixel indexes, for the inner loops
+        final int[] offsetsX = contribX.offsets;
+        final int[] indexesX = multiply(contribX.pixels, channels);
+        final double[] weightsX = contribX.weights;
+
+        final int[] offsetsY = contribY.offsets;
+        final int[] indexesY = multiply(contribY.pixels, tempStride);
+        final double[] weightsY = contribY.weights;
+
+        // NOTE: The inner loops filter 4 rows or samples at a time, using the same contributions, to keep more
+        // independent computations in flight. The computations for each sample are the same as when done one at a time.
+
+        /* Apply horiz filter to make dst rows in temp. */
+        resampleBands(executor, src.height, true, new Band() {
+            public void resample(final int from, final int to) {
+                final int[] rows = new int[4 * srcStride];
+
+                for (int y = from; y < to; y += 4) {
+                    final int count = Math.min(4, to - y);
+
+                    // Repeat the last row, if less than 4 rows remain
+                    for (int r = 0; r < 4; r++) {
+                        src.getRow(y + Math.min(r, count - 1), rows, r * srcStride);
+
+                        if (decoder != null) {
+                            decoder.decode(rows, r * srcStride, srcStride);
+                        }
+                    }
+
+                    int t = y * tempStride;
+
+                    for (int x = 0; x < dstWidth; x++) {
+                        final int first = offsetsX[x];
+                        final int last = offsetsX[x + 1];
+
+                        for (int c = 0; c < channels; c++, t++) {
+                            final int index = indexesX[first] + c;
+                            final int pel0 = rows[index];
+                            final int pel1 = rows[index + srcStride];
+                            final int pel2 = rows[index + 2 * srcStride];
+                            final int pel3 = rows[index + 3 * srcStride];
+
+                            double weight0 = 0.0, weight1 = 0.0, weight2 = 0.0, weight3 = 0.0;
+                            int delta0 = 0, delta1 = 0, delta2 = 0, delta3 = 0;
+
+                            for (int j = first; j < last; j++) {
+                                final int i = indexesX[j] + c;
+                                final double w = weightsX[j];
+
+                                final int sample0 = rows[i];
+                                final int sample1 = rows[i + srcStride];
+                                final int sample2 = rows[i + 2 * srcStride];
+                                final int sample3 = rows[i + 3 * srcStride];
+
+                                delta0 |= sample0 ^ pel0;
+                                delta1 |= sample1 ^ pel1;
+                                delta2 |= sample2 ^ pel2;
+                                delta3 |= sample3 ^ pel3;
+
+                                weight0 += sample0 * w;
+                                weight1 += sample1 * w;
+                                weight2 += sample2 * w;
+                                weight3 += sample3 * w;
+                            }
+
+                            temp[t] = (char) clamp(weight0, delta0, pel0, max);
+
+                            switch (count) {
+                                case 4:
+                                    temp[t + 3 * tempStride] = (char) clamp(weight3, delta3, pel3, max);
+                                case 3:
+                                    temp[t + 2 * tempStride] = (char) clamp(weight2, delta2, pel2, max);
+                                case 2:
+                                    temp[t + tempStride] = (char) clamp(weight1, delta1, pel1, max);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+
+        /* Now stretch temp vertically into dst rows. */
+        resampleBands(executor, dst.height, true, new Band() {
+            public void resample(final int from, final int to) {
+                final int[] row = new int[tempStride];
+
+                for (int y = from; y < to; y++) {
+                    final int first = offsetsY[y];
+                    final int last = offsetsY[y + 1];
+
+                    int s = 0;
+
+                    for (; s + 4 <= tempStride; s += 4) {
+                        final int index = indexesY[first] + s;
+                        final int pel0 = temp[index];
+                        final int pel1 = temp[index + 1];
+                        final int pel2 = temp[index + 2];
+                        final int pel3 = temp[index + 3];
+
+                        double weight0 = 0.0, weight1 = 0.0, weight2 = 0.0, weight3 = 0.0;
+                        int delta0 = 0, delta1 = 0, delta2 = 0, delta3 = 0;
+
+                        for (int j = first; j < last; j++) {
+                            final int i = indexesY[j] + s;
+                            final double w = weightsY[j];
+
+                            final int sample0 = temp[i];
+                            final int sample1 = temp[i + 1];
+                            final int sample2 = temp[i + 2];
+                            final int sample3 = temp[i + 3];
+
+                            delta0 |= sample0 ^ pel0;
+                            delta1 |= sample1 ^ pel1;
+                            delta2 |= sample2 ^ pel2;
+                            delta3 |= sample3 ^ pel3;
+
+                            weight0 += sample0 * w;
+                            weight1 += sample1 * w;
+                            weight2 += sample2 * w;
+                            weight3 += sample3 * w;
+                        }
+
+                        row[s] = clamp(weight0, delta0, pel0, max);
+                        row[s + 1] = clamp(weight1, delta1, pel1, max);
+                        row[s + 2] = clamp(weight2, delta2, pel2, max);
+                        row[s + 3] = clamp(weight3, delta3, pel3, max);
+                    }
+
+                    for (; s < tempStride; s++) {
+                        final int pel = temp[indexesY[first] + s];
+
+                        double weight = 0.0;
+                        int delta = 0;
+
+                        for (int j = first; j < last; j++) {
+                            final int sample = temp[indexesY[j] + s];
+                            delta |= sample ^ pel;
+                            weight += sample * weightsY[j];
+                        }
+
+                        row[s] = clamp(weight, delta, pel, max);
+                    }
+
+                    if (encoder != null) {
+                        encoder.encode(row);
+                    }
+
+                    dst.setRow(y, row);
+                }
+            }
+        });
+    }/* resampleRows */
+
+    private static int[] multiply(final int[] values, final int factor) {
+        int[] result = new int[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i] * factor;
+        }
+
+        return result;
+    }
+
+    private static int clamp(final double weight, final int pelDelta, final int pel, final int max) {
+        // NOTE: If all samples are equal, use the sample as-is, to avoid rounding errors
+        if (pelDelta == 0) {
+            return pel;
+        }
+
+        int value = round(weight);
+
+        return value < 0 ? 0 : value > max ? max : value;
+    }
+
+    /*
+        Band
+
+        A range of rows or columns, resampled by one thread.
+        Also used by ConvolveWithEdgeOp.
+    */
+    interface Band {
+        void resample(int from, int to);
+    }
+
+    /*
+        resampleBands()
+
+        Resamples the range from 0 (inclusive) to size (exclusive).
+        If executor is non-null, and concurrent is true, the range is split into bands, resampled using the calling
+        thread and the executor. The bands are handed out from a shared counter, so the calling thread only waits
+        for bands in progress.
+    */
+    static void resampleBands(final Executor executor, final int size, final boolean concurrent, final Band band) {
+        if (executor == null || !concurrent || size < 2) {
+            band.resample(0, size);
+            return;
+        }
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+
+        // Use more bands than processors, to even out the load
+        final int bandSize = (size + processors * 4 - 1) / (processors * 4);
+        final int bands = (size + bandSize - 1) / bandSize;
+
+        final AtomicInteger nextBand = new AtomicInteger();
+        final CountDownLatch bandsDone = new CountDownLatch(bands);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Runnable worker = new Runnable() {
+            public void run() {
+                int next;
+
+                while ((next = nextBand.getAndIncrement()) < bands) {
+                    try {
+                        // Skip remaining bands if any band failed
+                        if (failure.get() == null) {
+                            int from = next * bandSize;
+                            band.resample(from, Math.min(from + bandSize, size));
+                        }
+                    }
+                    catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally {
+                        bandsDone.countDown();
+                    }
+                }
+            }
+        };
+
+        for (int i = 1; i < Math.min(processors, bands); i++) {
+            try {
+                executor.execute(worker);
+            }
+            catch (RejectedExecutionException ignore) {
+                // Executor is saturated or shut down, continue with the threads we have
+                break;
+            }
+        }
+
+        // The calling thread works too, and finishes alone if no other threads are available
+        worker.run();
+
+        // Other threads may still be writing to the destination, so we must wait for them, even if interrupted
+        boolean interrupted = false;
+
+        while (bandsDone.getCount() > 0) {
+            try {
+                bandsDone.await();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable cause = failure.get();
+
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            ImagingOpException exception = new ImagingOpException("Could not filter image: " + cause.getMessage());
+            exception.initCause(cause);
+            throw exception;
+        }
+    }/* resampleBands */
+
+    /*
+        SampleRows
+
+        Reads and writes rows of 8 bit samples, with the samples of each pixel interleaved, directly from/to the backing
+        array of a raster. Supports pixel interleaved byte rasters (like TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR and
+        TYPE_BYTE_GRAY) and packed int rasters (like TYPE_INT_ARGB and TYPE_INT_RGB).
+        All channels are filtered the same way, so the order of the samples does not matter.
+    */
+    static abstract class SampleRows {
+        final int width;
+        final int height;
+        final int channels;
+
+        final int offset;
+        final int scanlineStride;
+
+        SampleRows(final Raster raster, final int channels, final int offset, final int scanlineStride) {
+            this.width = raster.getWidth();
+            this.height = raster.getHeight();
+            this.channels = channels;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+        }
+
+        abstract void getRow(int y, int[] samples, int offset);
+
+        abstract void setRow(int y, int[] samples);
+
+        /*
+            Returns the index of the given band's sample, within the samples of a pixel.
+        */
+        abstract int sampleIndex(int band);
+
+        /*
+            Returns true if the other rows have the same number of channels, and each band has the same position
+            within the pixel, as samples are read and written in memory order.
+        */
+        boolean hasSameLayout(final SampleRows other) {
+            if (channels != other.channels) {
+                return false;
+            }
+
+            for (int band = 0; band < channels; band++) {
+                if (sampleIndex(band) != other.sampleIndex(band)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /*
+            Returns null if the raster layout is not supported.
+        */
+        static SampleRows create(final Raster raster, final int[] channelMax) {
+            for (int max : channelMax) {
+                if (max != 0xff) {
+                    return null;
+                }
+            }
+
+            SampleModel sampleModel = raster.getSampleModel();
+            DataBuffer dataBuffer = raster.getDataBuffer();
+
+            if (dataBuffer.getNumBanks() != 1) {
+                return null;
+            }
+
+            int x = raster.getMinX() - raster.getSampleModelTranslateX();
+            int y = raster.getMinY() - raster.getSampleModelTranslateY();
+
+            if (dataBuffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel) {
+                ComponentSampleModel model = (ComponentSampleModel) sampleModel;
+                int channels = model.getNumBands();
+
+                // Every byte of the pixel must be a sample
+                if (model.getPixelStride() == channels && isPermutation(model.getBandOffsets())) {
+                    int offset = dataBuffer.getOffset() + y * model.getScanlineStride() + x * channels;
+                    return new ByteRows(raster, ((DataBufferByte) dataBuffer).getData(), model.getBandOffsets(), offset, model.getScanlineStride());
+                }
+            }
+            else if (dataBuffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel) {
+                SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) sampleModel;
+                int[] masks = model.getBitMasks();
+                int[] bitOffsets = model.getBitOffsets();
+
+                for (int i = 0; i < masks.length; i++) {
+                    if (masks[i] != 0xff << bitOffsets[i]) {
+                        return null;
+                    }
+                }
+
+                int offset = dataBuffer.getOffset() + y * model.getScanlineStride() + x;
+                return new IntRows(raster, ((DataBufferInt) dataBuffer).getData(), bitOffsets, offset, model.getScanlineStride());
+            }
+
+            return null;
+        }
+
+        private static boolean isPermutation(final int[] offsets) {
+            boolean[] seen = new boolean[offsets.length];
+
+            for (int offset : offsets) {
+                if (offset < 0 || offset >= offsets.length || seen[offset]) {
+                    return false;
+                }
+
+                seen[offset] = true;
+            }
+
+            return true;
+        }
+    }
+
+    static final class ByteRows extends SampleRows {
+        private final byte[] data;
+        private final int[] bandOffsets;
+
+        ByteRows(final Raster raster, final byte[] data, final int[] bandOffsets, final int offset, final int scanlineStride) {
+            super(raster, bandOffsets.length, offset, scanlineStride);
+            this.data = data;
+            this.bandOffsets = bandOffsets;
+        }
+
+        int sampleIndex(final int band) {
+            return bandOffsets[band];
+        }
+
+        void getRow(final int y, final int[] samples, final int samplesOffset) {
+            int index = offset + y * scanlineStride;
+
+            for (int i = 0; i < width * channels; i++) {
+                samples[samplesOffset + i] = data[index++] & 0xff;
+            }
+        }
+
+        void setRow(final int y, final int[] samples) {
+            int index = offset + y * scanlineStride;
+
+            for (int i = 0; i < width * channels; i++) {
+                data[index++] = (byte) samples[i];
+            }
+        }
+    }
+
+    static final class IntRows extends SampleRows {
+        private final int[] data;
+        private final int[] bitOffsets;
+        private final int unusedBits;
+
+        IntRows(final Raster raster, final int[] data, final int[] bitOffsets, final int offset, final int scanlineStride) {
+            super(raster, bitOffsets.length, offset, scanlineStride);
+            this.data = data;
+            this.bitOffsets = bitOffsets;
+
+            int used = 0;
+            for (int bitOffset : bitOffsets) {
+                used |= 0xff << bitOffset;
+            }
+            unusedBits = ~used;
+        }
+
+        int sampleIndex(final int band) {
+            return band;
+        }
+
+        void getRow(final int y, final int[] samples, final int samplesOffset) {
+            int index = offset + y * scanlineStride;
+            int s = samplesOffset;
+
+            for (int x = 0; x < width; x++) {
+                int pixel = data[index++];
+
+                for (int bitOffset : bitOffsets) {
+                    samples[s++] = (pixel >>> bitOffset) & 0xff;
+                }
+            }
+        }
+
+        void setRow(final int y, final int[] samples) {
+            int index = offset + y * scanlineStride;
+            int s = 0;
+
+            for (int x = 0; x < width; x++) {
+                // Keep any bits not used by the samples, like setSample does
+                int pixel = data[index] & unusedBits;
+
+                for (int bitOffset : bitOffsets) {
+                    pixel |= samples[s++] << bitOffset;
+                }
+
+                data[index++] = pixel;
+            }
+        }
+    }
+
+    /*
+        Blending
+
+        Converts rows of 8 bit samples to and from 16 bit values for blending, using lookup tables.
+        Color samples are optionally converted from sRGB to linear light, and premultiplied by alpha if the image has
+        alpha. Images with premultiplied alpha are un-premultiplied before, and premultiplied after conversion.
+    */
+    static final class Blending {
+        static final int MAX_VALUE = 0xffff;
+
+        // sRGB encoded 8 bit samples to linear 16 bit values, and back
+        private static final int[] TO_LINEAR = new int[0x100];
+        private static final byte[] FROM_LINEAR = new byte[MAX_VALUE + 1];
+
+        static {
+            for (int i = 0; i < TO_LINEAR.length; i++) {
+                TO_LINEAR[i] = (int) Math.round(toLinear(i / 255.0) * MAX_VALUE);
+            }
+
+            for (int i = 0; i < FROM_LINEAR.length; i++) {
+                FROM_LINEAR[i] = (byte) Math.round(fromLinear(i / (double) MAX_VALUE) * 255);
+            }
+        }
+
+        private final int channels;
+        private final int alphaIndex;
+        private final boolean linear;
+        private final boolean premultiplied;
+
+        Blending(final int channels, final int alphaIndex, final boolean linear, final boolean premultiplied) {
+            this.channels = channels;
+            this.alphaIndex = alphaIndex;
+            this.linear = linear;
+            this.premultiplied = premultiplied;
+        }
+
+        /*
+            Returns null if the samples may be blended directly.
+        */
+        static Blending create(final int blending, final ColorModel cm, final SampleRows rows) {
+            boolean linear = blending == BLENDING_LINEAR && cm.getColorSpace().isCS_sRGB();
+            boolean hasAlpha = cm.hasAlpha();
+            boolean premultiplied = hasAlpha && cm.isAlphaPremultiplied();
+
+            if (blending == BLENDING_DIRECT || !linear && (!hasAlpha || premultiplied)) {
+                return null;
+            }
+
+            // NOTE: The alpha band is always the last band
+            return new Blending(rows.channels, hasAlpha ? rows.sampleIndex(cm.getNumComponents() - 1) : -1, linear, premultiplied);
+        }
+
+        static double toLinear(final double value) {
+            return value <= 0.04045 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+        }
+
+        static double fromLinear(final double value) {
+            return value <= 0.0031308 ? value * 12.92 : 1.055 * Math.pow(value, 1 / 2.4) - 0.055;
+        }
+
+        void decode(final int[] samples, final int offset, final int length) {
+            for (int i = offset; i < offset + length; i += channels) {
+                final int alpha = alphaIndex >= 0 ? samples[i + alphaIndex] : 0xff;
+
+                for (int c = 0; c < channels; c++) {
+                    if (c == alphaIndex) {
+                        samples[i + c] = alpha * 257;
+                        continue;
+                    }
+
+                    int value = samples[i + c];
+
+                    if (premultiplied) {
+                        value = alpha == 0 ? 0 : Math.min(0xff, (value * 0xff + alpha / 2) / alpha);
+                    }
+
+                    value = linear ? TO_LINEAR[value] : value * 257;
+
+                    if (alphaIndex >= 0) {
+                        value = (value * alpha + 127) / 255;
+                    }
+
+                    samples[i + c] = value;
+                }
+            }
+        }
+
+        void encode(final int[] samples) {
+            for (int i = 0; i < samples.length; i += channels) {
+                final int alpha16 = alphaIndex >= 0 ? samples[i + alphaIndex] : MAX_VALUE;
+                final int alpha = (alpha16 + 128) / 257;
+
+                for (int c = 0; c < channels; c++) {
+                    if (c == alphaIndex) {
+                        samples[i + c] = alpha;
+                        continue;
+                    }
+
+                    int value = samples[i + c];
+
+                    if (alphaIndex >= 0) {
+                        value = alpha16 == 0 ? 0 : (int) Math.min(MAX_VALUE, ((long) value * MAX_VALUE + alpha16 / 2) / alpha16);
+                    }
+
+                    value = linear ? FROM_LINEAR[value] & 0xff : (value + 128) / 257;
+
+                    if (premultiplied) {
+                        value = (value * alpha + 127) / 255;
+                    }
+
+                    samples[i + c] = value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.image;
+
+import com.twelvemonkeys.lang.Validate;
+
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Resamples (scales) an image, one source scanline at a time, without ever
+ * holding the full source image in memory.
+ * <p/>
+ * Source rows are written in order, from top to bottom, either one row at a time
+ * or as bands of rows, for example as decoded by an {@code ImageReader} using
+ * consecutive source regions. Each row is filtered horizontally as it arrives,
+ * and kept in a ring buffer only as long as it is needed for the vertical filter.
+ * Destination rows are passed on to the {@link RowConsumer} as soon as all
+ * the source rows they depend on are written.
+ * Memory use is thus bounded by the size of the destination rows plus the
+ * filter window, regardless of the size of the source image.
+ * <p/>
+ * Example, creating a preview of a very large image:
+ * <blockquote><pre>
+ * WritableRaster preview = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 1024, 768, 3, null);
+ * ScanlineResampler resampler = new ScanlineResampler(width, height, preview, ResampleOp.FILTER_LANCZOS);
+ * <p/>
+ * ImageReadParam param = reader.getDefaultReadParam();
+ * <p/>
+ * for (int y = 0; y < height; y += 256) {
+ *     param.setSourceRegion(new Rectangle(0, y, width, Math.min(256, height - y)));
+ *     resampler.writeRows(reader.read(0, param).getRaster());
+ * }
+ * </pre></blockquote>
+ * <p/>
+ * The interpolation filters and rounding are the same as for
+ * {@link ResampleOp}, and the result is the same as the result of the
+ * {@code ResampleOp} for filters not delegating to
+ * {@code AffineTransformOp} (all but {@code FILTER_POINT},
+ * {@code FILTER_TRIANGLE} and {@code FILTER_QUADRATIC}), provided the
+ * source and destination are larger than the filter support.
+ * <p/>
+ * Samples are passed as {@code int}s, with the samples for each pixel interleaved.
+ * All channels are resampled independently. No color conversion takes place,
+ * and alpha is not treated specially.
+ *
+ * @see ResampleOp
+ */
+public final class ScanlineResampler {
+
+    /**
+     * Receives the destination rows from a {@code ScanlineResampler}.
+     */
+    public interface RowConsumer {
+        /**
+         * Invoked once for each destination row, in order from top to bottom,
+         * as soon as the row is complete.
+         *
+         * @param y the destination row.
+         * @param samples the samples of the row, with the samples for each pixel interleaved.
+         * The array is reused for the next row, and must not be kept.
+         */
+        void consumeRow(int y, int[] samples);
+    }
+
+    private final int srcWidth;
+    private final int srcHeight;
+    private final int dstWidth;
+    private final int dstHeight;
+    private final int channels;
+    private final int maxSample;
+
+    private final RowConsumer consumer;
+
+    private final ResampleOp.Contributions contribX;
+    private final ResampleOp.Contributions contribY;
+
+    // Last source row needed for each destination row
+    private final int[] lastRows;
+
+    // Horizontally filtered source rows, row y is found at index y % rows.length
+    private final int[][] rows;
+    private final int[] srcRow;
+    private final int[] dstRow;
+
+    private int rowsWritten;
+    private int rowsConsumed;
+
+    /**
+     * Creates a {@code ScanlineResampler}.
+     *
+     * @param srcWidth the width of the source image
+     * @param srcHeight the height of the source image
+     * @param dstWidth the width of the destination image
+     * @param dstHeight the height of the destination image
+     * @param channels the number of channels (samples per pixel)
+     * @param bitsPerSample the number of bits per sample, used for clamping the resampled values
+     * @param filterType the interpolation filter, see the {@link ResampleOp} filter type constants
+     * @param consumer the consumer of the destination rows
+     *
+     * @throws IllegalArgumentException if any of the dimensions, {@code channels} or {@code bitsPerSample} are
+     * not positive, if {@code bitsPerSample > 16}, if the filter type is unknown, or if {@code consumer} is {@code null}.
+     */
+    public ScanlineResampler(final int srcWidth, final int srcHeight, final int dstWidth, final int dstHeight,
+                             final int channels, final int bitsPerSample, final int filterType, final RowConsumer consumer) {
+        Validate.isTrue(srcWidth > 0 && srcHeight > 0, "source width and height must be positive");
+        Validate.isTrue(dstWidth > 0 && dstHeight > 0, "destination width and height must be positive");
+        Validate.isTrue(channels > 0, channels, "channels must be positive: %d");
+        Validate.isTrue(bitsPerSample > 0 && bitsPerSample <= 16, bitsPerSample, "bitsPerSample must be in the range 1-16: %d");
+
+        this.srcWidth = srcWidth;
+        this.srcHeight = srcHeight;
+        this.dstWidth = dstWidth;
+        this.dstHeight = dstHeight;
+        this.channels = channels;
+        this.maxSample = (1 << bitsPerSample) - 1;
+        this.consumer = Validate.notNull(consumer, "consumer");
+
+        ResampleOp.InterpolationFilter filter = ResampleOp.createFilter(ResampleOp.validateFilterType(filterType));
+        contribX = ResampleOp.calcContributions((double) dstWidth / (double) srcWidth, filter.support(), srcWidth, dstWidth, filter);
+        contribY = ResampleOp.calcContributions((double) dstHeight / (double) srcHeight, filter.support(), srcHeight, dstHeight, filter);
+
+        // Destination rows are completed in order, so a row may have to wait for the rows needed by the rows above.
+        // The ring buffer must hold all rows from the first row needed, to the last row written before completion.
+        lastRows = new int[dstHeight];
+        int last = 0;
+        int window = 1;
+
+        for (int i = 0; i < dstHeight; i++) {
+            int first = srcHeight;
+
+            for (int j = contribY.offsets[i]; j < contribY.offsets[i + 1]; j++) {
+                first = Math.min(first, contribY.pixels[j]);
+                last = Math.max(last, contribY.pixels[j]);
+            }
+
+            lastRows[i] = last;
+            window = Math.max(window, last - first + 1);
+        }
+
+        rows = new int[window][dstWidth * channels];
+        srcRow = new int[srcWidth * channels];
+        dstRow = new int[dstWidth * channels];
+    }
+
+    /**
+     * Creates a {@code ScanlineResampler} that writes the destination rows to the given raster.
+     * The size of the destination image, number of channels and bits per sample are given by the raster.
+     *
+     * @param srcWidth the width of the source image
+     * @param srcHeight the height of the source image
+     * @param destination the destination raster
+     * @param filterType the interpolation filter, see the {@link ResampleOp} filter type constants
+     *
+     * @throws IllegalArgumentException if the source dimensions are not positive, if {@code destination} is
+     * {@code null}, or if the filter type is unknown.
+     */
+    public ScanlineResampler(final int srcWidth, final int srcHeight, final WritableRaster destination, final int filterType) {
+        this(srcWidth, srcHeight,
+             Validate.notNull(destination, "destination").getWidth(), destination.getHeight(),
+             destination.getNumBands(), maxSampleSize(destination), filterType,
+             new RasterConsumer(destination));
+    }
+
+    private static int maxSampleSize(final Raster raster) {
+        int size = 0;
+
+        for (int sampleSize : raster.getSampleModel().getSampleSize()) {
+            size = Math.max(size, sampleSize);
+        }
+
+        return size;
+    }
+
+    /**
+     * Writes the next source row.
+     *
+     * @param samples the samples of the source row, with the samples for each pixel interleaved.
+     *
+     * @throws IllegalArgumentException if {@code samples} is shorter than the source width times the number of channels.
+     * @throws IllegalStateException if all source rows are already written.
+     */
+    public void writeRow(final int[] samples) {
+        Validate.notNull(samples, "samples");
+        Validate.isTrue(samples.length >= srcRow.length, samples.length, "samples too short: %d");
+
+        if (rowsWritten >= srcHeight) {
+            throw new IllegalStateException("All source rows written");
+        }
+
+        filterHorizontal(samples, rows[rowsWritten % rows.length]);
+        rowsWritten++;
+
+        // Emit all destination rows that depend on rows written so far
+        while (rowsConsumed < dstHeight && lastRows[rowsConsumed] < rowsWritten) {
+            filterVertical(rowsConsumed, dstRow);
+            consumer.consumeRow(rowsConsumed, dstRow);
+            rowsConsumed++;
+        }
+    }
+
+    /**
+     * Writes the next source rows, from the given raster.
+     * All rows of the raster are written, in order from top to bottom.
+     *
+     * @param raster a raster containing the source rows. The raster must be as wide as the source image,
+     * and have the same number of bands as the number of channels.
+     *
+     * @throws IllegalArgumentException if the raster has the wrong width or number of bands.
+     * @throws IllegalStateException if the raster contains more rows than remaining.
+     */
+    public void writeRows(final Raster raster) {
+        Validate.notNull(raster, "raster");
+        Validate.isTrue(raster.getWidth() == srcWidth, raster.getWidth(), "raster width does not match source width: %d");
+        Validate.isTrue(raster.getNumBands() == channels, raster.getNumBands(), "raster bands does not match channels: %d");
+
+        if (raster.getHeight() > srcHeight - rowsWritten) {
+            throw new IllegalStateException(String.format("Too many rows: %d, remaining: %d", raster.getHeight(), srcHeight - rowsWritten));
+        }
+
+        for (int y = raster.getMinY(); y < raster.getMinY() + raster.getHeight(); y++) {
+            writeRow(raster.getPixels(raster.getMinX(), y, srcWidth, 1, srcRow));
+        }
+    }
+
+    /**
+     * Returns the number of source rows written so far.
+     *
+     * @return the number of source rows written so far.
+     */
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Returns whether all destination rows are complete, and passed to the consumer.
+     *
+     * @return {@code true} if all destination rows are complete.
+     */
+    public boolean isComplete() {
+        return rowsConsumed == dstHeight;
+    }
+
+    private void filterHorizontal(final int[] samples, final int[] row) {
+        int[] offsets = contribX.offsets;
+        int[] pixels = contribX.pixels;
+        double[] weights = contribX.weights;
+
+        int s = 0;
+
+        for (int x = 0; x < dstWidth; x++) {
+            final int first = offsets[x];
+            final int last = offsets[x + 1];
+
+            for (int c = 0; c < channels; c++) {
+                int pel = samples[pixels[first] * channels + c];
+                int pelDelta = 0;
+                double weight = 0.0;
+
+                for (int j = first; j < last; j++) {
+                    int sample = samples[pixels[j] * channels + c];
+                    pelDelta |= sample ^ pel;
+                    weight += sample * weights[j];
+                }
+
+                row[s++] = clamp(weight, pelDelta, pel);
+            }
+        }
+    }
+
+    private void filterVertical(final int y, final int[] row) {
+        final int first = contribY.offsets[y];
+        final int last = contribY.offsets[y + 1];
+
+        int[] pixels = contribY.pixels;
+        double[] weights = contribY.weights;
+
+        for (int s = 0; s < row.length; s++) {
+            int pel = rows[pixels[first] % rows.length][s];
+            int pelDelta = 0;
+            double weight = 0.0;
+
+            for (int j = first; j < last; j++) {
+                int sample = rows[pixels[j] % rows.length][s];
+                pelDelta |= sample ^ pel;
+                weight += sample * weights[j];
+            }
+
+            row[s] = clamp(weight, pelDelta, pel);
+        }
+    }
+
+    private int clamp(final double weight, final int pelDelta, final int pel) {
+        // NOTE: If all samples are equal, use the sample as-is, to avoid rounding errors, like ResampleOp
+        if (pelDelta == 0) {
+            return pel;
+        }
+
+        int value = ResampleOp.round(weight);
+
+        return value < 0 ? 0 : value > maxSample ? maxSample : value;
+    }
+
+    private static final class RasterConsumer implements RowConsumer {
+        private final WritableRaster raster;
+
+        RasterConsumer(final WritableRaster raster) {
+            this.raster = raster;
+        }
+
+        public void consumeRow(final int y, final int[] samples) {
+            raster.setPixels(raster.getMinX(), raster.getMinY() + y, raster.getWidth(), 1, samples);
+        }
+    }
+}
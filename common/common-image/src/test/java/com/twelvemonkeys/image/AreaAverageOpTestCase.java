@@ -0,0 +1,218 @@
+package com.twelvemonkeys.image;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * AreaAverageOpTestCase
+ */
+public class AreaAverageOpTestCase {
+    private static final int[] TYPES = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY
+    };
+
+    private static BufferedImage createImage(final int width, final int height, final int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        return image;
+    }
+
+    private static BufferedImage createGradient(final int width, final int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+
+        try {
+            g.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+            g.fillRect(0, 0, width, height);
+        }
+        finally {
+            g.dispose();
+        }
+
+        return image;
+    }
+
+    // Straight forward average, rounded to nearest
+    private static int[] average(final Raster raster, final int x, final int y, final int w, final int h) {
+        int bands = raster.getNumBands();
+        int[] average = new int[bands];
+
+        for (int b = 0; b < bands; b++) {
+            int[] samples = raster.getSamples(x, y, w, h, b, (int[]) null);
+
+            long sum = 0;
+            for (int sample : samples) {
+                sum += sample;
+            }
+
+            average[b] = (int) ((sum + samples.length / 2) / samples.length);
+        }
+
+        return average;
+    }
+
+    @Test
+    public void testIntegerFactor() {
+        for (int type : TYPES) {
+            BufferedImage image = createImage(60, 40, type);
+            BufferedImage result = new AreaAverageOp(15, 8).filter(image, null);
+
+            assertEquals(15, result.getWidth());
+            assertEquals(8, result.getHeight());
+
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 15; x++) {
+                    assertArrayEquals(average(image.getRaster(), x * 4, y * 5, 4, 5), result.getRaster().getPixel(x, y, (int[]) null));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNonIntegerFactor() {
+        for (int type : TYPES) {
+            BufferedImage image = createImage(61, 43, type);
+            BufferedImage result = new AreaAverageOp(7, 9).filter(image, null);
+
+            for (int y = 0; y < 9; y++) {
+                int y0 = y * 43 / 9;
+                int y1 = (y + 1) * 43 / 9;
+
+                for (int x = 0; x < 7; x++) {
+                    int x0 = x * 61 / 7;
+                    int x1 = (x + 1) * 61 / 7;
+
+                    assertArrayEquals(average(image.getRaster(), x0, y0, x1 - x0, y1 - y0), result.getRaster().getPixel(x, y, (int[]) null));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSourceRegion() {
+        BufferedImage image = createImage(100, 100, BufferedImage.TYPE_3BYTE_BGR);
+
+        AreaAverageOp op = new AreaAverageOp(10, 5);
+        op.setSourceRegion(new Rectangle(20, 30, 40, 20));
+        BufferedImage result = op.filter(image, null);
+
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 10; x++) {
+                assertArrayEquals(average(image.getRaster(), 20 + x * 4, 30 + y * 4, 4, 4), result.getRaster().getPixel(x, y, (int[]) null));
+            }
+        }
+    }
+
+    @Test
+    public void testLargerDestination() {
+        BufferedImage image = createImage(40, 40, BufferedImage.TYPE_INT_RGB);
+        BufferedImage destination = new BufferedImage(30, 30, BufferedImage.TYPE_INT_RGB);
+
+        assertSame(destination, new AreaAverageOp(20, 10).filter(image, destination));
+
+        assertArrayEquals(average(image.getRaster(), 38, 36, 2, 4), destination.getRaster().getPixel(19, 9, (int[]) null));
+        assertArrayEquals(new int[3], destination.getRaster().getPixel(20, 9, (int[]) null));
+        assertArrayEquals(new int[3], destination.getRaster().getPixel(19, 10, (int[]) null));
+    }
+
+    @Test
+    public void testFilterRaster() {
+        BufferedImage image = createImage(64, 64, BufferedImage.TYPE_4BYTE_ABGR);
+        WritableRaster result = new AreaAverageOp(8, 8).filter(image.getRaster(), null);
+
+        assertArrayEquals(average(image.getRaster(), 56, 0, 8, 8), result.getPixel(7, 0, (int[]) null));
+    }
+
+    @Test
+    public void testUShortGray() {
+        // Not supported by the fast path, but should work
+        BufferedImage image = createImage(40, 40, BufferedImage.TYPE_USHORT_GRAY);
+        BufferedImage result = new AreaAverageOp(10, 10).filter(image, null);
+
+        assertEquals(10, result.getWidth());
+        assertEquals(10, result.getHeight());
+    }
+
+    @Test
+    public void testReduceAndResampleSameAsResampleOp() {
+        BufferedImage image = createGradient(1000, 600);
+
+        for (int filterType : new int[] {ResampleOp.FILTER_TRIANGLE, ResampleOp.FILTER_LANCZOS, ResampleOp.FILTER_MITCHELL}) {
+            BufferedImage expected = new ResampleOp(50, 30, filterType).filter(image, null);
+            BufferedImage actual = new AreaAverageOp(50, 30, filterType).filter(image, null);
+
+            assertEquals(50, actual.getWidth());
+            assertEquals(30, actual.getHeight());
+
+            int[] expectedPixels = expected.getRaster().getPixels(0, 0, 50, 30, (int[]) null);
+            int[] actualPixels = actual.getRaster().getPixels(0, 0, 50, 30, (int[]) null);
+
+            for (int i = 0; i < expectedPixels.length; i++) {
+                assertEquals("Sample " + i, expectedPixels[i], actualPixels[i], 3);
+            }
+        }
+    }
+
+    @Test
+    public void testReduceAndResampleSmallFactor() {
+        // Less than 4 times smaller, no area averaging step
+        BufferedImage image = createImage(100, 100, BufferedImage.TYPE_INT_RGB);
+
+        BufferedImage expected = new ResampleOp(40, 40, ResampleOp.FILTER_LANCZOS).filter(image, null);
+        BufferedImage actual = new AreaAverageOp(40, 40, ResampleOp.FILTER_LANCZOS).filter(image, null);
+
+        assertArrayEquals(expected.getRaster().getPixels(0, 0, 40, 40, (int[]) null), actual.getRaster().getPixels(0, 0, 40, 40, (int[]) null));
+    }
+
+    @Test
+    public void testReduceAndResampleIndexed() {
+        // Palette indices must not be averaged, a red/blue checker averages to purple
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_BYTE_INDEXED);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x + y) % 2 == 0 ? 0xff0000 : 0x0000ff);
+            }
+        }
+
+        for (int filterType : new int[] {ResampleOp.FILTER_BOX, ResampleOp.FILTER_LANCZOS}) {
+            BufferedImage expected = new ResampleOp(20, 20, filterType).filter(image, null);
+            BufferedImage actual = new AreaAverageOp(20, 20, filterType).filter(image, null);
+
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < 20; x++) {
+                    int expectedRGB = expected.getRGB(x, y);
+                    int actualRGB = actual.getRGB(x, y);
+
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        assertEquals(String.format("(%d, %d): %08x", x, y, actualRGB), (expectedRGB >> shift) & 0xff, (actualRGB >> shift) & 0xff, 3);
+                    }
+                }
+            }
+        }
+
+        int purple = new AreaAverageOp(20, 20, ResampleOp.FILTER_LANCZOS).filter(image, null).getRGB(10, 10);
+        assertEquals(String.format("%08x", purple), 0x80, (purple >> 16) & 0xff, 3);
+        assertEquals(String.format("%08x", purple), 0, (purple >> 8) & 0xff);
+        assertEquals(String.format("%08x", purple), 0x80, purple & 0xff, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFilterType() {
+        new AreaAverageOp(10, 10, -1);
+    }
+}
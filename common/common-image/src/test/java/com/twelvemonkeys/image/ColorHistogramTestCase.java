@@ -0,0 +1,127 @@
+package com.twelvemonkeys.image;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColorHistogramTestCase
+ */
+public class ColorHistogramTestCase {
+    private static BufferedImage createImage(final int width, final int height, final int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * y) % 7 == 0 ? random.nextInt() | 0xff000000 : 0xff000000 | (x * 2) << 16 | (y * 3) << 8 | (x + y) & 0xff);
+            }
+        }
+
+        return image;
+    }
+
+    private static void assertSameAsGetRGB(final BufferedImage image, final int step) {
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        int total = 0;
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (x % step == y % step) {
+                    int rgb = image.getRGB(x, y) & 0xffffff;
+                    Integer count = expected.get(rgb);
+                    expected.put(rgb, count == null ? 1 : count + 1);
+                    total++;
+                }
+            }
+        }
+
+        IndexImage.MedianCutQuantizer quantizer = new IndexImage.MedianCutQuantizer();
+        quantizer.addPixels(image, step);
+
+        ColorHistogram histogram = quantizer.histogram;
+        assertEquals(expected.size(), histogram.size());
+        assertEquals(total, histogram.getTotal());
+
+        histogram.sort();
+        assertEquals(expected.size(), histogram.bins[ColorHistogram.BINS]);
+
+        for (int bin = 0; bin < ColorHistogram.BINS; bin++) {
+            for (int i = histogram.bins[bin]; i < histogram.bins[bin + 1]; i++) {
+                int rgb = histogram.colors[i];
+                assertEquals(bin, ColorHistogram.binIndex(rgb));
+                assertEquals(String.format("Count for #%06x", rgb), expected.remove(rgb), Integer.valueOf(histogram.counts[i]));
+            }
+        }
+
+        assertTrue(expected.isEmpty());
+    }
+
+    @Test
+    public void testCreate() {
+        int[] types = {
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB
+        };
+
+        for (int type : types) {
+            assertSameAsGetRGB(createImage(211, 157, type), 1);
+        }
+    }
+
+    @Test
+    public void testCreateStep() {
+        assertSameAsGetRGB(createImage(211, 157, BufferedImage.TYPE_INT_RGB), 3);
+        assertSameAsGetRGB(createImage(211, 157, BufferedImage.TYPE_3BYTE_BGR), 7);
+        assertSameAsGetRGB(createImage(211, 157, BufferedImage.TYPE_BYTE_GRAY), 2);
+    }
+
+    @Test
+    public void testAddIgnoresAlpha() {
+        ColorHistogram histogram = new ColorHistogram(16);
+
+        histogram.add(0xff123456);
+        histogram.add(0x00123456);
+        histogram.add(0x123456);
+
+        assertEquals(1, histogram.size());
+        assertEquals(3, histogram.getTotal());
+    }
+
+    @Test
+    public void testAddAllColors() {
+        // Grows from the smallest capacity, to hold every 16th color of the RGB cube
+        ColorHistogram histogram = new ColorHistogram(16);
+
+        for (int rgb = 0; rgb <= 0xffffff; rgb += 16) {
+            histogram.add(rgb);
+            histogram.add(rgb);
+        }
+
+        assertEquals(0x100000, histogram.size());
+        assertEquals(0x200000, histogram.getTotal());
+
+        histogram.sort();
+
+        for (int bin = 0; bin < ColorHistogram.BINS; bin++) {
+            assertEquals(256, histogram.bins[bin + 1] - histogram.bins[bin]);
+        }
+        for (int i = 0; i < histogram.size(); i++) {
+            assertEquals(2, histogram.counts[i]);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddSorted() {
+        ColorHistogram histogram = new ColorHistogram();
+        histogram.add(0xff0000);
+        histogram.sort();
+
+        histogram.add(0x00ff00);
+    }
+}
@@ -0,0 +1,164 @@
+package com.twelvemonkeys.image;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColorQuantizerTestCase
+ */
+public class ColorQuantizerTestCase {
+    private static final int[] COLORS = {0x000000, 0xffffff, 0xff0000, 0x00ff00, 0x0000ff, 0x808080, 0x123456, 0xfedcba};
+
+    private static BufferedImage createImage(final int width, final int height, final int[] colors) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, colors[random.nextInt(colors.length)]);
+            }
+        }
+
+        return image;
+    }
+
+    private static Set<Integer> toSet(final int[] values) {
+        Set<Integer> set = new HashSet<Integer>();
+
+        for (int value : values) {
+            set.add(value);
+        }
+
+        return set;
+    }
+
+    @Test
+    public void testOctreeFewColors() {
+        ColorQuantizer quantizer = new OctreeQuantizer();
+        quantizer.addPixels(createImage(97, 83, COLORS), 1);
+
+        int[] palette = quantizer.createPalette(256);
+        assertEquals(toSet(COLORS), toSet(palette));
+        assertEquals(COLORS.length, palette.length);
+    }
+
+    @Test
+    public void testOctreeReduce() {
+        ColorQuantizer quantizer = new OctreeQuantizer();
+        quantizer.addPixels(createImage(97, 83, COLORS), 1);
+
+        // Reducing a node merges all its children, so there may be fewer colors than requested
+        int[] palette = quantizer.createPalette(4);
+        assertTrue(palette.length <= 4);
+        assertTrue(palette.length > 0);
+    }
+
+    @Test
+    public void testOctreeBoundedLeaves() {
+        OctreeQuantizer quantizer = new OctreeQuantizer(64);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 100000; i++) {
+            quantizer.add(random.nextInt());
+            assertTrue(quantizer.getLeafCount() <= 64);
+        }
+
+        int[] palette = quantizer.createPalette(16);
+        assertTrue(palette.length <= 16);
+        assertTrue(palette.length > 0);
+    }
+
+    @Test
+    public void testOctreeEmpty() {
+        assertArrayEquals(new int[] {0}, new OctreeQuantizer().createPalette(256));
+    }
+
+    @Test
+    public void testKMeansRefine() {
+        // Two clusters, around dark red and light blue
+        int[] colors = {0x400000, 0x420202, 0x3e0000, 0x8080ff, 0x8282fd, 0x7e7eff};
+        BufferedImage image = createImage(64, 64, colors);
+
+        // Initial palette far from the cluster centers, but nearest to one cluster each
+        KMeansRefiner refiner = new KMeansRefiner(new int[] {0x000000, 0xffffff});
+        refiner.addPixels(image, 1);
+
+        int[] palette = refiner.createPalette(2);
+        assertEquals(2, palette.length);
+        assertColorNear(0x400000, palette[0]);
+        assertColorNear(0x8080ff, palette[1]);
+    }
+
+    @Test
+    public void testKMeansKeepsUnusedColors() {
+        KMeansRefiner refiner = new KMeansRefiner(new int[] {0x000000, 0xffffff});
+        refiner.add(0x101010);
+
+        assertArrayEquals(new int[] {0x101010, 0xffffff}, refiner.createPalette(2));
+    }
+
+    private static void assertColorNear(final int expected, final int actual) {
+        for (int shift = 0; shift < 24; shift += 8) {
+            assertEquals(String.format("#%06x != #%06x", expected, actual), (expected >> shift) & 0xff, (actual >> shift) & 0xff, 2);
+        }
+    }
+
+    @Test
+    public void testCreateIndexedQuantizers() {
+        BufferedImage image = createImage(97, 83, COLORS);
+        int[] hints = {
+                ImageUtil.QUANTIZER_DEFAULT, ImageUtil.QUANTIZER_MEDIAN_CUT, ImageUtil.QUANTIZER_OCTREE,
+                ImageUtil.QUANTIZER_MEDIAN_CUT | ImageUtil.REFINE_KMEANS, ImageUtil.QUANTIZER_OCTREE | ImageUtil.REFINE_KMEANS
+        };
+
+        for (int hint : hints) {
+            BufferedImage indexed = ImageUtil.createIndexed(image, 256, null, ImageUtil.COLOR_SELECTION_QUALITY | ImageUtil.DITHER_NONE | hint);
+            assertTrue(indexed.getColorModel() instanceof IndexColorModel);
+
+            // Few colors, so all colors must be exact
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    assertEquals(String.format("Hint %08x, (%d, %d)", hint, x, y), image.getRGB(x, y), indexed.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCreateIndexedOctreeManyColors() {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x << 16 | y << 8 | (x + y) / 2);
+            }
+        }
+
+        BufferedImage indexed = ImageUtil.createIndexed(image, 256, null, ImageUtil.DITHER_NONE | ImageUtil.QUANTIZER_OCTREE | ImageUtil.REFINE_KMEANS);
+        IndexColorModel icm = (IndexColorModel) indexed.getColorModel();
+        assertTrue(icm.getMapSize() <= 256);
+
+        // Average error should be small for a smooth gradient
+        long error = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int expected = image.getRGB(x, y);
+                int actual = indexed.getRGB(x, y);
+
+                for (int shift = 0; shift < 24; shift += 8) {
+                    error += Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff));
+                }
+            }
+        }
+
+        double meanError = error / (3.0 * image.getWidth() * image.getHeight());
+        assertTrue(Arrays.toString(new double[] {meanError}), meanError < 8);
+    }
+}
@@ -0,0 +1,301 @@
+package com.twelvemonkeys.image;
+
+import org.junit.Test;
+
+import java.awt.image.*;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * ConvolveWithEdgeOpTestCase
+ */
+public class ConvolveWithEdgeOpTestCase {
+    private static final int[] TYPES = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY
+    };
+
+    // Not separable, not symmetric, origin not in center
+    private static final Kernel ASYMMETRIC = new Kernel(4, 2, new float[] {
+            0.05f, 0.1f, 0.2f, 0.05f,
+            0.3f, 0.1f, 0.0f, 0.2f
+    });
+
+    // Separable, not symmetric
+    private static final Kernel SEPARABLE = new Kernel(3, 3, outer(new float[] {0.2f, 0.5f, 0.3f}, new float[] {0.1f, 0.3f, 0.6f}));
+
+    private static float[] outer(final float[] vertical, final float[] horizontal) {
+        float[] data = new float[vertical.length * horizontal.length];
+
+        for (int y = 0; y < vertical.length; y++) {
+            for (int x = 0; x < horizontal.length; x++) {
+                data[y * horizontal.length + x] = vertical[y] * horizontal[x];
+            }
+        }
+
+        return data;
+    }
+
+    private static BufferedImage createImage(final int width, final int height, final int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        return image;
+    }
+
+    private static void assertSamplesEqual(final Raster expected, final Raster actual, final int tolerance) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+
+        int[] expectedPixels = expected.getPixels(0, 0, expected.getWidth(), expected.getHeight(), (int[]) null);
+        int[] actualPixels = actual.getPixels(0, 0, actual.getWidth(), actual.getHeight(), (int[]) null);
+        assertEquals(expectedPixels.length, actualPixels.length);
+
+        for (int i = 0; i < expectedPixels.length; i++) {
+            if (Math.abs(expectedPixels[i] - actualPixels[i]) > tolerance) {
+                fail(String.format("Sample %d differs: expected %d, was %d", i, expectedPixels[i], actualPixels[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsConvolveOp() {
+        int[] edgeConditions = {ConvolveWithEdgeOp.EDGE_NO_OP, ConvolveWithEdgeOp.EDGE_ZERO_FILL};
+
+        for (int type : TYPES) {
+            BufferedImage image = createImage(37, 23, type);
+
+            for (Kernel kernel : new Kernel[] {ASYMMETRIC, SEPARABLE}) {
+                for (int edgeCondition : edgeConditions) {
+                    BufferedImage expected = new ConvolveOp(kernel, edgeCondition, null).filter(image, null);
+                    BufferedImage actual = new ConvolveWithEdgeOp(kernel, edgeCondition, null).filter(image, null);
+
+                    assertEquals(image.getType(), actual.getType());
+
+                    // ConvolveOp truncates, we round
+                    assertSamplesEqual(expected.getRaster(), actual.getRaster(), 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReflectUniformUnchanged() {
+        for (int type : TYPES) {
+            BufferedImage image = new BufferedImage(20, 10, type);
+
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    image.setRGB(x, y, 0xff8040c0);
+                }
+            }
+
+            // Edges, including corners, are repeated, so a normalized kernel should not change a uniform image
+            BufferedImage blurred = ImageUtil.blur(image, 5f);
+
+            assertSamplesEqual(image.getRaster(), blurred.getRaster(), 0);
+        }
+    }
+
+    @Test
+    public void testWrap() {
+        // A kernel that moves the image one pixel right and one pixel down
+        Kernel shift = new Kernel(3, 3, new float[] {
+                0, 0, 0,
+                0, 0, 0,
+                0, 0, 1
+        });
+
+        for (int type : TYPES) {
+            BufferedImage image = createImage(11, 7, type);
+            BufferedImage shifted = new ConvolveWithEdgeOp(shift, ConvolveWithEdgeOp.EDGE_WRAP, null).filter(image, null);
+
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int srcX = (x + image.getWidth() - 1) % image.getWidth();
+                    int srcY = (y + image.getHeight() - 1) % image.getHeight();
+
+                    assertEquals(String.format("Pixel %d, %d", x, y), image.getRGB(srcX, srcY), shifted.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKernelLargerThanImage() {
+        BufferedImage image = createImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        Kernel kernel = new Kernel(7, 5, new float[7 * 5]);
+
+        BufferedImage noOp = new ConvolveWithEdgeOp(kernel, ConvolveWithEdgeOp.EDGE_NO_OP, null).filter(image, null);
+        assertSamplesEqual(image.getRaster(), noOp.getRaster(), 0);
+
+        BufferedImage zeroFill = new ConvolveWithEdgeOp(kernel, ConvolveWithEdgeOp.EDGE_ZERO_FILL, null).filter(image, null);
+        assertSamplesEqual(new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB).getRaster(), zeroFill.getRaster(), 0);
+
+        // Should not throw exceptions
+        new ConvolveWithEdgeOp(ASYMMETRIC, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(image, null);
+        new ConvolveWithEdgeOp(ASYMMETRIC, ConvolveWithEdgeOp.EDGE_WRAP, null).filter(image, null);
+    }
+
+    @Test
+    public void testSeparable() {
+        float[][] separated = ConvolveWithEdgeOp.separate(SEPARABLE.getKernelData(null), 3, 3);
+        assertNotNull(separated);
+
+        float[] data = SEPARABLE.getKernelData(null);
+
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                assertEquals(data[y * 3 + x], separated[1][y] * separated[0][x], 1e-6f);
+            }
+        }
+
+        assertNull(ConvolveWithEdgeOp.separate(ASYMMETRIC.getKernelData(null), 4, 2));
+        assertNull(ConvolveWithEdgeOp.separate(new float[] {0, -1, 0, -1, 5, -1, 0, -1, 0}, 3, 3));
+    }
+
+    @Test
+    public void testSeparableSameAsNonSeparable() {
+        // Perturb the separable kernel slightly, so that it is not detected as separable
+        float[] data = SEPARABLE.getKernelData(null);
+        data[0] += 1e-3f;
+        Kernel almostSeparable = new Kernel(3, 3, data);
+        assertNull(ConvolveWithEdgeOp.separate(data, 3, 3));
+
+        for (int type : TYPES) {
+            BufferedImage image = createImage(29, 31, type);
+
+            BufferedImage expected = new ConvolveWithEdgeOp(almostSeparable, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(image, null);
+            BufferedImage actual = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(image, null);
+
+            assertSamplesEqual(expected.getRaster(), actual.getRaster(), 1);
+        }
+    }
+
+    @Test
+    public void testSeparableKernelsSameAsKernel() {
+        float[] horizontal = {0.1f, 0.3f, 0.6f};
+        float[] vertical = {0.2f, 0.5f, 0.3f};
+
+        for (int edgeCondition = ConvolveWithEdgeOp.EDGE_ZERO_FILL; edgeCondition <= ConvolveWithEdgeOp.EDGE_WRAP; edgeCondition++) {
+            ConvolveWithEdgeOp separable = new ConvolveWithEdgeOp(horizontal, vertical, edgeCondition, null, null);
+            ConvolveWithEdgeOp op = new ConvolveWithEdgeOp(SEPARABLE, edgeCondition, null);
+
+            for (int type : new int[] {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_USHORT_GRAY}) {
+                BufferedImage image = createImage(29, 31, type);
+                assertSamplesEqual(op.filter(image, null).getRaster(), separable.filter(image, null).getRaster(), 0);
+            }
+
+            BufferedImage image = createImage(29, 31, BufferedImage.TYPE_3BYTE_BGR);
+            assertSamplesEqual(op.filter(image.getRaster(), null), separable.filter(image.getRaster(), null), 0);
+        }
+
+        Kernel kernel = new ConvolveWithEdgeOp(horizontal, vertical, ConvolveWithEdgeOp.EDGE_REFLECT, null, null).getKernel();
+        assertEquals(3, kernel.getWidth());
+        assertEquals(3, kernel.getHeight());
+        assertArrayEquals(SEPARABLE.getKernelData(null), kernel.getKernelData(null), 1e-6f);
+    }
+
+    @Test
+    public void testConcurrentSameAsSerial() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            for (int type : TYPES) {
+                BufferedImage image = createImage(64, 97, type);
+
+                for (Kernel kernel : new Kernel[] {ASYMMETRIC, SEPARABLE}) {
+                    for (int edgeCondition = ConvolveWithEdgeOp.EDGE_ZERO_FILL; edgeCondition <= ConvolveWithEdgeOp.EDGE_WRAP; edgeCondition++) {
+                        BufferedImage expected = new ConvolveWithEdgeOp(kernel, edgeCondition, null).filter(image, null);
+                        BufferedImage actual = new ConvolveWithEdgeOp(kernel, edgeCondition, null, executor).filter(image, null);
+
+                        assertSamplesEqual(expected.getRaster(), actual.getRaster(), 0);
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFilterRasterWrap() {
+        BufferedImage image = createImage(11, 7, BufferedImage.TYPE_3BYTE_BGR);
+
+        ConvolveWithEdgeOp op = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_WRAP, null);
+        WritableRaster actual = op.filter(image.getRaster(), null);
+
+        assertSamplesEqual(op.filter(image, null).getRaster(), actual, 0);
+    }
+
+    @Test
+    public void testUnsupportedLayouts() {
+        // Indexed images are converted, 16 bit images are filtered using ConvolveOp
+        BufferedImage indexed = createImage(16, 16, BufferedImage.TYPE_BYTE_INDEXED);
+        BufferedImage result = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(indexed, null);
+        assertEquals(16, result.getWidth());
+        assertEquals(16, result.getHeight());
+
+        BufferedImage gray = createImage(16, 16, BufferedImage.TYPE_USHORT_GRAY);
+        BufferedImage expected = new ConvolveOp(ASYMMETRIC, ConvolveOp.EDGE_NO_OP, null).filter(gray, null);
+        result = new ConvolveWithEdgeOp(ASYMMETRIC, ConvolveWithEdgeOp.EDGE_NO_OP, null).filter(gray, null);
+        assertSamplesEqual(expected.getRaster(), result.getRaster(), 0);
+
+    }
+
+    @Test
+    public void testPackedLayouts() {
+        // Indexed and packed layouts are converted to true color, and convolved like the common layouts
+        BufferedImage packed = createImage(16, 16, BufferedImage.TYPE_USHORT_565_RGB);
+        BufferedImage expected = new ConvolveOp(SEPARABLE, ConvolveOp.EDGE_NO_OP, null).filter(packed, null);
+        BufferedImage result = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(packed, null);
+        assertEquals(BufferedImage.TYPE_USHORT_565_RGB, result.getType());
+        assertSamplesEqual(expected.getRaster().createChild(1, 1, 14, 14, 0, 0, null), result.getRaster().createChild(1, 1, 14, 14, 0, 0, null), 1);
+
+        BufferedImage indexed = createImage(16, 16, BufferedImage.TYPE_BYTE_INDEXED);
+        expected = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(ImageUtil.toBuffered(indexed, BufferedImage.TYPE_INT_RGB), null);
+        result = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(indexed, null);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, result.getType());
+        assertSamplesEqual(expected.getRaster(), ImageUtil.toBuffered(result, BufferedImage.TYPE_INT_RGB).getRaster(), 0);
+    }
+
+    @Test
+    public void testSeparable16Bit() {
+        // Separable kernels are applied in two passes also when using ConvolveOp
+        BufferedImage gray = new BufferedImage(16, 16, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = gray.getRaster();
+        Random random = new Random(42);
+        for (int y = 0; y < gray.getHeight(); y++) {
+            for (int x = 0; x < gray.getWidth(); x++) {
+                raster.setSample(x, y, 0, random.nextInt(32768));
+            }
+        }
+
+        BufferedImage expected = new ConvolveOp(SEPARABLE, ConvolveOp.EDGE_NO_OP, null).filter(gray, null);
+        BufferedImage result = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null).filter(gray, null);
+        assertEquals(BufferedImage.TYPE_USHORT_GRAY, result.getType());
+        assertSamplesEqual(expected.getRaster().createChild(1, 1, 14, 14, 0, 0, null), result.getRaster().createChild(1, 1, 14, 14, 0, 0, null), 1);
+    }
+
+    @Test
+    public void testDestinationOfDifferentType() {
+        BufferedImage rgb = createImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        BufferedImage bgr = new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR);
+
+        ConvolveWithEdgeOp op = new ConvolveWithEdgeOp(SEPARABLE, ConvolveWithEdgeOp.EDGE_REFLECT, null);
+        assertSame(bgr, op.filter(rgb, bgr));
+
+        BufferedImage expected = op.filter(rgb, null);
+        assertSamplesEqual(expected.getRaster(), ImageUtil.toBuffered(bgr, BufferedImage.TYPE_INT_RGB).getRaster(), 0);
+    }
+}
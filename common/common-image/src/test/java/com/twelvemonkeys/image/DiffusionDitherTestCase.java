@@ -0,0 +1,233 @@
+package com.twelvemonkeys.image;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * DiffusionDitherTestCase
+ */
+public class DiffusionDitherTestCase {
+    private static final int[] KERNELS = {
+            DiffusionDither.KERNEL_FLOYD_STEINBERG, DiffusionDither.KERNEL_ATKINSON,
+            DiffusionDither.KERNEL_STUCKI, DiffusionDither.KERNEL_SIERRA
+    };
+
+    // Dithers in tiles, but using only the calling thread
+    private static final Executor SAME_THREAD = new Executor() {
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final IndexColorModel BLACK_WHITE = new IndexColorModel(1, 2, new byte[] {0, -1}, new byte[] {0, -1}, new byte[] {0, -1});
+
+    private static BufferedImage createGray(final int width, final int height, final int type, final int gray) {
+        BufferedImage image = new BufferedImage(width, height, type);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xff000000 | gray << 16 | gray << 8 | gray);
+            }
+        }
+
+        return image;
+    }
+
+    private static BufferedImage createImage(final int width, final int height, final int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Smooth gradient, with some noise
+                int r = (x * 255 / width + random.nextInt(16)) & 0xff;
+                int g = (y * 255 / height) & 0xff;
+                int b = ((x + y) * 127 / (width + height) + 64) & 0xff;
+
+                image.setRGB(x, y, 0xff000000 | r << 16 | g << 8 | b);
+            }
+        }
+
+        return image;
+    }
+
+    private static double mean(final Raster raster) {
+        int[] samples = raster.getSamples(0, 0, raster.getWidth(), raster.getHeight(), 0, (int[]) null);
+
+        long sum = 0;
+        for (int sample : samples) {
+            sum += sample;
+        }
+
+        return sum / (double) samples.length;
+    }
+
+    @Test
+    public void testDefaultKernel() {
+        assertEquals(DiffusionDither.KERNEL_FLOYD_STEINBERG, new DiffusionDither().getKernel());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownKernel() {
+        new DiffusionDither().setKernel(-1);
+    }
+
+    @Test
+    public void testPreservesMeanIntensity() {
+        // 25% gray, dithered to black and white, should give 25% white pixels
+        for (int kernel : KERNELS) {
+            if (kernel == DiffusionDither.KERNEL_ATKINSON) {
+                // Atkinson only diffuses 3/4 of the error, so shadows get darker
+                continue;
+            }
+
+            DiffusionDither dither = new DiffusionDither(BLACK_WHITE);
+            dither.setKernel(kernel);
+
+            BufferedImage result = dither.filter(createGray(200, 200, BufferedImage.TYPE_INT_RGB, 64), null);
+            assertEquals("Kernel " + kernel, 64 / 255.0, mean(result.getRaster()), 0.01);
+        }
+    }
+
+    @Test
+    public void testAtkinsonMidtones() {
+        DiffusionDither dither = new DiffusionDither(BLACK_WHITE);
+        dither.setKernel(DiffusionDither.KERNEL_ATKINSON);
+
+        BufferedImage result = dither.filter(createGray(200, 200, BufferedImage.TYPE_INT_RGB, 128), null);
+        assertEquals(0.5, mean(result.getRaster()), 0.02);
+    }
+
+    @Test
+    public void testPaletteColorsUnchanged() {
+        IndexColorModel colors = new IndexColorModel(8, 4, new int[] {0xff000000, 0xffff0000, 0xff336699, 0xffffffff}, 0, false, -1, 0);
+
+        for (int kernel : KERNELS) {
+            DiffusionDither dither = new DiffusionDither(colors);
+            dither.setKernel(kernel);
+
+            BufferedImage result = dither.filter(createColor(0xff336699), null);
+
+            int[] indexes = result.getRaster().getSamples(0, 0, result.getWidth(), result.getHeight(), 0, (int[]) null);
+            for (int index : indexes) {
+                assertEquals(2, index);
+            }
+        }
+    }
+
+    private static BufferedImage createColor(final int rgb) {
+        BufferedImage image = new BufferedImage(31, 17, BufferedImage.TYPE_3BYTE_BGR);
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+
+        return image;
+    }
+
+    @Test
+    public void testTiledIndependentOfThreads() {
+        BufferedImage image = createImage(97, DiffusionDither.TILE_HEIGHT * 3 + 17, BufferedImage.TYPE_INT_RGB);
+        IndexColorModel colors = IndexImage.getIndexColorModel(image, 16, IndexImage.TRANSPARENCY_OPAQUE);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            for (int kernel : KERNELS) {
+                DiffusionDither serial = new DiffusionDither(colors, SAME_THREAD);
+                serial.setKernel(kernel);
+                DiffusionDither concurrent = new DiffusionDither(colors, pool);
+                concurrent.setKernel(kernel);
+
+                Raster expected = serial.filter(image, null).getRaster();
+
+                for (int i = 0; i < 3; i++) {
+                    Raster actual = concurrent.filter(image, null).getRaster();
+
+                    assertArrayEquals(
+                            expected.getSamples(0, 0, image.getWidth(), image.getHeight(), 0, (int[]) null),
+                            actual.getSamples(0, 0, image.getWidth(), image.getHeight(), 0, (int[]) null)
+                    );
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTiledPreservesMeanIntensity() {
+        DiffusionDither dither = new DiffusionDither(BLACK_WHITE, SAME_THREAD);
+        BufferedImage result = dither.filter(createGray(100, DiffusionDither.TILE_HEIGHT * 4, BufferedImage.TYPE_INT_RGB, 192), null);
+
+        assertEquals(192 / 255.0, mean(result.getRaster()), 0.01);
+    }
+
+    @Test
+    public void testSourceTypes() {
+        // The direct and generic paths should give the same result
+        int[] types = {
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB
+        };
+
+        BufferedImage image = createImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        IndexColorModel colors = IndexImage.getIndexColorModel(image, 32, IndexImage.TRANSPARENCY_OPAQUE);
+
+        DiffusionDither dither = new DiffusionDither(colors, SAME_THREAD);
+        int[] expected = dither.filter(image, null).getRaster().getSamples(0, 0, 64, 48, 0, (int[]) null);
+
+        for (int type : types) {
+            if (type == BufferedImage.TYPE_USHORT_565_RGB) {
+                // Lossy conversion, just make sure it works
+                assertNotNull(dither.filter(ImageUtil.toBuffered(image, type), null));
+                continue;
+            }
+
+            int[] actual = dither.filter(ImageUtil.toBuffered(image, type), null).getRaster().getSamples(0, 0, 64, 48, 0, (int[]) null);
+            assertArrayEquals("Type " + type, expected, actual);
+        }
+    }
+
+    @Test
+    public void testBinaryDestination() {
+        BufferedImage image = createImage(50, 30, BufferedImage.TYPE_INT_RGB);
+
+        DiffusionDither dither = new DiffusionDither(BLACK_WHITE, SAME_THREAD);
+        BufferedImage indexed = dither.filter(image, new BufferedImage(50, 30, BufferedImage.TYPE_BYTE_INDEXED, BLACK_WHITE));
+        BufferedImage binary = dither.filter(image, new BufferedImage(50, 30, BufferedImage.TYPE_BYTE_BINARY, BLACK_WHITE));
+
+        assertArrayEquals(
+                indexed.getRaster().getSamples(0, 0, 50, 30, 0, (int[]) null),
+                binary.getRaster().getSamples(0, 0, 50, 30, 0, (int[]) null)
+        );
+    }
+
+    @Test
+    public void testFilterSubRaster() {
+        BufferedImage image = createImage(60, 40, BufferedImage.TYPE_3BYTE_BGR);
+        DiffusionDither dither = new DiffusionDither(BLACK_WHITE, SAME_THREAD);
+
+        BufferedImage expected = dither.filter(image.getSubimage(10, 5, 30, 20), null);
+
+        Raster child = image.getRaster().createChild(10, 5, 30, 20, 100, 200, null);
+        Raster actual = dither.filter(child, null, BLACK_WHITE);
+
+        assertArrayEquals(
+                expected.getRaster().getSamples(0, 0, 30, 20, 0, (int[]) null),
+                actual.getSamples(actual.getMinX(), actual.getMinY(), 30, 20, 0, (int[]) null)
+        );
+    }
+}
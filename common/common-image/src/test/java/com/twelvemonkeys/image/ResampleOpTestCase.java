@@ -3,11 +3,15 @@ package com.twelvemonkeys.image;
 import junit.framework.TestCase;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.image.ImagingOpException;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ResampleOpTestCase
@@ -259,5 +263,318 @@ public class ResampleOpTestCase extends TestCase {
     public void testResampleLanczos() {
         assertResampleBufferedImageTypes(ResampleOp.FILTER_LANCZOS);
     }
-}
 
+    private void assertResampleParallelSameAsSerial(final BufferedImage pImage, final int pWidth, final int pHeight, final int pFilterType, final ExecutorService pExecutor) {
+        BufferedImage expected = new ResampleOp(pWidth, pHeight, pFilterType).filter(pImage, null);
+        BufferedImage actual = new ResampleOp(pWidth, pHeight, pFilterType, pExecutor).filter(pImage, null);
+
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(pWidth, actual.getWidth());
+        assertEquals(pHeight, actual.getHeight());
+
+        for (int y = 0; y < pHeight; y++) {
+            for (int x = 0; x < pWidth; x++) {
+                assertEquals(String.format("Pixel differs at (%d, %d)", x, y), expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testResampleParallelSameAsSerial() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            int[] filterTypes = {ResampleOp.FILTER_BOX, ResampleOp.FILTER_LANCZOS, ResampleOp.FILTER_MITCHELL, ResampleOp.FILTER_BLACKMAN_SINC};
+            int[] imageTypes = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY};
+
+            for (int filterType : filterTypes) {
+                for (int imageType : imageTypes) {
+                    BufferedImage image = createImage(211, 157, imageType);
+
+                    assertResampleParallelSameAsSerial(image, 67, 45, filterType, executor);  // Down
+                    assertResampleParallelSameAsSerial(image, 397, 301, filterType, executor); // Up
+                    assertResampleParallelSameAsSerial(image, 7, 400, filterType, executor);  // Mixed, fewer columns than bands
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testResampleParallelFromExecutorThread() throws Exception {
+        // The executor's only thread is busy running the filter, the calling thread must do all the work
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            final BufferedImage image = createImage(211, 157, BufferedImage.TYPE_INT_ARGB);
+            BufferedImage expected = new ResampleOp(67, 45, ResampleOp.FILTER_LANCZOS).filter(image, null);
+
+            BufferedImage actual = executor.submit(new Callable<BufferedImage>() {
+                public BufferedImage call() {
+                    return new ResampleOp(67, 45, ResampleOp.FILTER_LANCZOS, executor).filter(image, null);
+                }
+            }).get();
+
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static BufferedImage createPaddedCopy(final BufferedImage pImage) {
+        // Same samples, in a layout not supported by the fast path, to force the generic getSample/setSample path
+        WritableRaster raster = pImage.getRaster();
+        boolean hasAlpha = pImage.getColorModel().hasAlpha();
+        ColorSpace cs = ColorSpace.getInstance(raster.getNumBands() < 3 ? ColorSpace.CS_GRAY : ColorSpace.CS_sRGB);
+        ColorModel cm = new ComponentColorModel(cs, hasAlpha, false, hasAlpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+        // Pixel interleaved, with an extra padding byte per pixel
+        int numBands = raster.getNumBands();
+        int[] bandOffsets = new int[numBands];
+        for (int i = 0; i < numBands; i++) {
+            bandOffsets[i] = i;
+        }
+
+        WritableRaster copy = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, pImage.getWidth(), pImage.getHeight(), pImage.getWidth() * (numBands + 1), numBands + 1, bandOffsets, null);
+        copy.setRect(raster);
+
+        return new BufferedImage(cm, copy, false, null);
+    }
+
+    private void assertResampleFastSameAsGeneric(final int pImageType, final int pWidth, final int pHeight, final int pFilterType) {
+        BufferedImage image = createImage(97, 83, pImageType);
+        BufferedImage banded = createPaddedCopy(image);
+
+        Raster expected = new ResampleOp(pWidth, pHeight, pFilterType).filter(banded, null).getRaster();
+        Raster actual = new ResampleOp(pWidth, pHeight, pFilterType).filter(image, null).getRaster();
+
+        assertEquals(expected.getNumBands(), actual.getNumBands());
+
+        for (int band = 0; band < expected.getNumBands(); band++) {
+            int[] expectedSamples = expected.getSamples(0, 0, pWidth, pHeight, band, (int[]) null);
+            int[] actualSamples = actual.getSamples(0, 0, pWidth, pHeight, band, (int[]) null);
+
+            for (int i = 0; i < expectedSamples.length; i++) {
+                assertEquals(String.format("Sample differs at (%d, %d), band %d", i % pWidth, i / pWidth, band), expectedSamples[i], actualSamples[i]);
+            }
+        }
+    }
+
+    public void testResampleFastSameAsGeneric() {
+        int[] filterTypes = {ResampleOp.FILTER_BOX, ResampleOp.FILTER_HERMITE, ResampleOp.FILTER_LANCZOS, ResampleOp.FILTER_MITCHELL, ResampleOp.FILTER_BLACKMAN_SINC};
+        int[] imageTypes = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY};
+
+        for (int filterType : filterTypes) {
+            for (int imageType : imageTypes) {
+                assertResampleFastSameAsGeneric(imageType, 31, 29, filterType);   // Down
+                assertResampleFastSameAsGeneric(imageType, 250, 190, filterType); // Up
+                assertResampleFastSameAsGeneric(imageType, 13, 201, filterType);  // Mixed
+            }
+        }
+    }
+
+    public void testResampleFastSubimage() {
+        // Sub images share the parent's data buffer, with offsets
+        BufferedImage parent = createImage(160, 140, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage subimage = parent.getSubimage(21, 17, 97, 83);
+
+        BufferedImage expected = new ResampleOp(40, 30, ResampleOp.FILTER_LANCZOS).filter(createPaddedCopy(subimage), null);
+        BufferedImage actual = new ResampleOp(40, 30, ResampleOp.FILTER_LANCZOS).filter(subimage, null);
+
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testResampleParallelShutdownExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        executor.shutdown();
+
+        // Rejected tasks are fine, the calling thread does the work
+        assertResampleParallelSameAsSerial(createImage(211, 157, BufferedImage.TYPE_INT_ARGB), 67, 45, ResampleOp.FILTER_MITCHELL, executor);
+    }
+
+    public void testResampleBandsInterrupted() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            final Thread caller = Thread.currentThread();
+            final AtomicInteger resampled = new AtomicInteger();
+
+            // The calling thread is interrupted, but must still wait for the bands resampled by other threads
+            caller.interrupt();
+
+            ResampleOp.resampleBands(executor, 1000, true, new ResampleOp.Band() {
+                public void resample(int from, int to) {
+                    if (Thread.currentThread() != caller) {
+                        try {
+                            Thread.sleep(50);
+                        }
+                        catch (InterruptedException ignore) {
+                        }
+                    }
+
+                    resampled.addAndGet(to - from);
+                }
+            });
+
+            assertEquals(1000, resampled.get());
+            assertTrue("Interrupted status not restored", Thread.interrupted());
+        }
+        finally {
+            Thread.interrupted();
+            executor.shutdown();
+        }
+    }
+
+    private static RenderingHints createBlendingHints(final Object pBlending) {
+        RenderingHints hints = new RenderingHints(ResampleOp.KEY_RESAMPLE_INTERPOLATION, ResampleOp.VALUE_INTERPOLATION_LANCZOS);
+        hints.put(ResampleOp.KEY_RESAMPLE_BLENDING, pBlending);
+        return hints;
+    }
+
+    public void testBlendingRenderingHints() {
+        RenderingHints hints = new ResampleOp(10, 10, createBlendingHints(ResampleOp.VALUE_BLENDING_LINEAR)).getRenderingHints();
+        assertEquals(ResampleOp.VALUE_INTERPOLATION_LANCZOS, hints.get(ResampleOp.KEY_RESAMPLE_INTERPOLATION));
+        assertEquals(ResampleOp.VALUE_BLENDING_LINEAR, hints.get(ResampleOp.KEY_RESAMPLE_BLENDING));
+
+        // Direct is the default
+        assertNull(new ResampleOp(10, 10, createBlendingHints(ResampleOp.VALUE_BLENDING_DIRECT)).getRenderingHints().get(ResampleOp.KEY_RESAMPLE_BLENDING));
+
+        assertFalse(ResampleOp.KEY_RESAMPLE_BLENDING.isCompatibleValue(ResampleOp.VALUE_INTERPOLATION_LANCZOS));
+        assertFalse(ResampleOp.KEY_RESAMPLE_INTERPOLATION.isCompatibleValue(ResampleOp.VALUE_BLENDING_PREMULTIPLIED));
+    }
+
+    public void testBlendingLinearUniformUnchanged() {
+        // Converting to linear light and back must not change any sample value
+        int[] imageTypes = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB_PRE};
+        RenderingHints hints = createBlendingHints(ResampleOp.VALUE_BLENDING_LINEAR);
+
+        for (int imageType : imageTypes) {
+            for (int value = 0; value < 256; value++) {
+                BufferedImage image = new BufferedImage(23, 19, imageType);
+                Graphics2D g = image.createGraphics();
+                try {
+                    g.setColor(new Color(value, 255 - value, value / 2));
+                    g.fillRect(0, 0, image.getWidth(), image.getHeight());
+                }
+                finally {
+                    g.dispose();
+                }
+
+                BufferedImage result = new ResampleOp(7, 11, hints).filter(image, null);
+
+                assertEquals(imageType, result.getType());
+                for (int y = 0; y < result.getHeight(); y++) {
+                    for (int x = 0; x < result.getWidth(); x++) {
+                        assertEquals(image.getRGB(0, 0), result.getRGB(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testBlendingLinearCheckerboard() {
+        // Black and white pixels averages to 50% light, which is much lighter than 50% gray in sRGB
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x + y) % 2 == 0 ? 0xffffff : 0x000000);
+            }
+        }
+
+        BufferedImage direct = new ResampleOp(16, 16, ResampleOp.FILTER_LANCZOS).filter(image, null);
+        BufferedImage linear = new ResampleOp(16, 16, createBlendingHints(ResampleOp.VALUE_BLENDING_LINEAR)).filter(image, null);
+
+        for (int y = 4; y < 12; y++) {
+            for (int x = 4; x < 12; x++) {
+                int directGray = direct.getRGB(x, y) & 0xff;
+                int linearGray = linear.getRGB(x, y) & 0xff;
+
+                assertTrue(String.valueOf(directGray), Math.abs(directGray - 128) <= 2);
+                assertTrue(String.valueOf(linearGray), Math.abs(linearGray - 188) <= 2);
+            }
+        }
+    }
+
+    private void assertBlendingNoFringes(final int pImageType, final Object pBlending) {
+        // Opaque red next to transparent green, the green must not bleed into the partially transparent edge
+        BufferedImage image = new BufferedImage(50, 40, pImageType);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x < 25 ? 0xffff0000 : 0x0000ff00);
+            }
+        }
+
+        BufferedImage result = new ResampleOp(17, 13, createBlendingHints(pBlending)).filter(image, null);
+
+        boolean edge = false;
+        for (int y = 0; y < result.getHeight(); y++) {
+            for (int x = 0; x < result.getWidth(); x++) {
+                int argb = result.getRGB(x, y);
+                int alpha = argb >>> 24;
+
+                if (alpha != 0) {
+                    assertEquals(String.format("Green fringe at (%d, %d): %08x", x, y, argb), 0, argb & 0xff00);
+                }
+                if (alpha > 0 && alpha < 255) {
+                    edge = true;
+                }
+            }
+        }
+
+        assertTrue("No partially transparent edge", edge);
+    }
+
+    public void testBlendingPremultipliedNoFringes() {
+        assertBlendingNoFringes(BufferedImage.TYPE_INT_ARGB, ResampleOp.VALUE_BLENDING_PREMULTIPLIED);
+        assertBlendingNoFringes(BufferedImage.TYPE_4BYTE_ABGR, ResampleOp.VALUE_BLENDING_PREMULTIPLIED);
+        assertBlendingNoFringes(BufferedImage.TYPE_INT_ARGB_PRE, ResampleOp.VALUE_BLENDING_PREMULTIPLIED);
+    }
+
+    public void testBlendingLinearNoFringes() {
+        assertBlendingNoFringes(BufferedImage.TYPE_INT_ARGB, ResampleOp.VALUE_BLENDING_LINEAR);
+        assertBlendingNoFringes(BufferedImage.TYPE_4BYTE_ABGR, ResampleOp.VALUE_BLENDING_LINEAR);
+        assertBlendingNoFringes(BufferedImage.TYPE_INT_ARGB_PRE, ResampleOp.VALUE_BLENDING_LINEAR);
+    }
+
+    public void testBlendingUnsupportedLayout() {
+        // Layouts not supported by the fast path are converted, and blended the same way
+        BufferedImage image = createImage(97, 83, BufferedImage.TYPE_INT_ARGB);
+        RenderingHints hints = createBlendingHints(ResampleOp.VALUE_BLENDING_LINEAR);
+
+        BufferedImage expected = new ResampleOp(31, 29, hints).filter(image, null);
+        BufferedImage actual = new ResampleOp(31, 29, hints).filter(createPaddedCopy(image), null);
+
+        for (int y = 0; y < 29; y++) {
+            for (int x = 0; x < 31; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testBlendingSmallImage() {
+        // Images smaller than the filter support must also be blended, not just bilinearly scaled
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xffff0000);
+        image.setRGB(1, 0, 0x0000ff00);
+        image.setRGB(0, 1, 0xffff0000);
+        image.setRGB(1, 1, 0x0000ff00);
+
+        BufferedImage result = new ResampleOp(3, 1, createBlendingHints(ResampleOp.VALUE_BLENDING_PREMULTIPLIED)).filter(image, null);
+
+        for (int x = 0; x < result.getWidth(); x++) {
+            int argb = result.getRGB(x, 0);
+            if (argb >>> 24 != 0) {
+                assertEquals(String.format("Green fringe at (%d, 0): %08x", x, argb), 0, argb & 0xff00);
+            }
+        }
+    }
+}
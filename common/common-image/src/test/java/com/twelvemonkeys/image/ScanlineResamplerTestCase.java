@@ -0,0 +1,127 @@
+package com.twelvemonkeys.image;
+
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ScanlineResamplerTestCase
+ */
+public class ScanlineResamplerTestCase {
+    private static BufferedImage createImage(final int width, final int height, final int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+
+        try {
+            g.setPaint(new GradientPaint(0, 0, Color.RED, width, height, new Color(0x00000000, true)));
+            g.fillRect(0, 0, width, height);
+            g.setColor(Color.BLUE);
+            g.drawOval(width / 4, height / 4, width / 2, height / 2);
+        }
+        finally {
+            g.dispose();
+        }
+
+        return image;
+    }
+
+    private static void assertSameAsResampleOp(final int type, final int dstWidth, final int dstHeight, final int filterType, final int band) {
+        BufferedImage image = createImage(131, 97, type);
+        Raster expected = new ResampleOp(dstWidth, dstHeight, filterType).filter(image, null).getRaster();
+
+        WritableRaster actual = expected.createCompatibleWritableRaster();
+        ScanlineResampler resampler = new ScanlineResampler(image.getWidth(), image.getHeight(), actual, filterType);
+
+        // Write the source in bands, like reading with consecutive source regions
+        for (int y = 0; y < image.getHeight(); y += band) {
+            resampler.writeRows(image.getRaster().createChild(0, y, image.getWidth(), Math.min(band, image.getHeight() - y), 0, 0, null));
+        }
+
+        assertTrue(resampler.isComplete());
+        assertEquals(image.getHeight(), resampler.getRowsWritten());
+
+        int[] expectedPixels = expected.getPixels(0, 0, dstWidth, dstHeight, (int[]) null);
+        int[] actualPixels = actual.getPixels(0, 0, dstWidth, dstHeight, (int[]) null);
+        assertArrayEquals(expectedPixels, actualPixels);
+    }
+
+    @Test
+    public void testSameAsResampleOp() {
+        int[] filterTypes = {ResampleOp.FILTER_BOX, ResampleOp.FILTER_LANCZOS, ResampleOp.FILTER_MITCHELL, ResampleOp.FILTER_BLACKMAN_SINC};
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY};
+
+        for (int filterType : filterTypes) {
+            for (int type : types) {
+                assertSameAsResampleOp(type, 31, 23, filterType, 1);   // Down
+                assertSameAsResampleOp(type, 200, 150, filterType, 7); // Up
+                assertSameAsResampleOp(type, 19, 180, filterType, 64); // Mixed
+            }
+        }
+    }
+
+    @Test
+    public void testRowsConsumedInOrderAsSoonAsComplete() {
+        final List<Integer> consumed = new ArrayList<Integer>();
+        final int[] rowsWrittenWhenConsumed = new int[25];
+
+        final ScanlineResampler[] resampler = new ScanlineResampler[1];
+        resampler[0] = new ScanlineResampler(200, 1000, 20, 25, 1, 8, ResampleOp.FILTER_LANCZOS, new ScanlineResampler.RowConsumer() {
+            public void consumeRow(final int y, final int[] samples) {
+                assertEquals(20, samples.length);
+                rowsWrittenWhenConsumed[y] = resampler[0].getRowsWritten();
+                consumed.add(y);
+            }
+        });
+
+        int[] row = new int[200];
+
+        for (int y = 0; y < 1000; y++) {
+            resampler[0].writeRow(row);
+        }
+
+        assertEquals(25, consumed.size());
+
+        for (int y = 0; y < 25; y++) {
+            assertEquals(y, (int) consumed.get(y));
+
+            // Row y covers source rows around y * 40, Lanczos 3 window is +/- 120 source rows
+            assertTrue(String.format("Row %d consumed late: %d", y, rowsWrittenWhenConsumed[y]), rowsWrittenWhenConsumed[y] <= Math.min(1000, y * 40 + 121));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteTooManyRows() {
+        ScanlineResampler resampler = new ScanlineResampler(10, 2, 5, 1, 1, 8, ResampleOp.FILTER_BOX, new ScanlineResampler.RowConsumer() {
+            public void consumeRow(final int y, final int[] samples) {
+            }
+        });
+
+        int[] row = new int[10];
+        resampler.writeRow(row);
+        resampler.writeRow(row);
+        resampler.writeRow(row);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteRowsWrongWidth() {
+        WritableRaster destination = Raster.createInterleavedRaster(0, 5, 5, 3, null);
+        new ScanlineResampler(10, 10, destination, ResampleOp.FILTER_LANCZOS).writeRows(Raster.createInterleavedRaster(0, 9, 1, 3, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateUnknownFilter() {
+        new ScanlineResampler(10, 10, Raster.createInterleavedRaster(0, 5, 5, 3, null), -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateNullConsumer() {
+        new ScanlineResampler(10, 10, 5, 5, 3, 8, ResampleOp.FILTER_LANCZOS, null);
+    }
+}
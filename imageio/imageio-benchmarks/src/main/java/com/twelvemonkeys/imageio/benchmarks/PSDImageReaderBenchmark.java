@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import com.twelvemonkeys.imageio.plugins.psd.PSDImageReaderSpi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import javax.imageio.spi.ImageReaderSpi;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Benchmarks for {@code PSDImageReader}, using a minimal RGB document, uncompressed or RLE compressed.
+ */
+@State(Scope.Thread)
+public class PSDImageReaderBenchmark extends ReaderBenchmarkSupport {
+    @Param({"Raw", "RLE"})
+    public String compression;
+
+    @Override
+    protected ImageReaderSpi createProvider() {
+        return new PSDImageReaderSpi();
+    }
+
+    @Override
+    protected byte[] createData(final BufferedImage image) throws IOException {
+        return SyntheticImages.writePSD(image, "RLE".equals(compression));
+    }
+
+    @Benchmark
+    public BufferedImage full() throws IOException {
+        return readFull();
+    }
+
+    @Benchmark
+    public BufferedImage subsampled() throws IOException {
+        return readSubsampled();
+    }
+
+    @Benchmark
+    public BufferedImage region() throws IOException {
+        return readRegion();
+    }
+}
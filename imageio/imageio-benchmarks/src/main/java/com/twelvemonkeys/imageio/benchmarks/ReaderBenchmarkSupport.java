@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abstract base class for {@code ImageReader} benchmarks.
+ * <p/>
+ * Subclasses provide the reader provider and the encoded (synthetic) input,
+ * and declare the benchmark methods using {@link #readFull()}, {@link #readSubsampled()} and {@link #readRegion()}.
+ * The reader instance is reused between invocations, like a typical server side application would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class ReaderBenchmarkSupport {
+    private byte[] data;
+    private ImageReader reader;
+
+    /**
+     * Returns the provider of the reader to benchmark.
+     *
+     * @return the reader provider
+     */
+    protected abstract ImageReaderSpi createProvider();
+
+    /**
+     * Encodes the image in the format of the reader.
+     *
+     * @param image the image to encode
+     * @return the encoded image
+     * @throws IOException if an I/O exception occurs during writing
+     */
+    protected abstract byte[] createData(BufferedImage image) throws IOException;
+
+    @Setup
+    public void setup() throws IOException {
+        data = createData(SyntheticImages.createRGB(SyntheticImages.WIDTH, SyntheticImages.HEIGHT));
+        reader = createProvider().createReaderInstance();
+
+        // Sanity check, fail early rather than benchmarking failures
+        BufferedImage image = readFull();
+        if (image.getWidth() != SyntheticImages.WIDTH || image.getHeight() != SyntheticImages.HEIGHT) {
+            throw new IllegalStateException(String.format("Unexpected image size: %dx%d", image.getWidth(), image.getHeight()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        reader.dispose();
+    }
+
+    protected final BufferedImage readFull() throws IOException {
+        return read(null);
+    }
+
+    protected final BufferedImage readSubsampled() throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(4, 4, 0, 0);
+
+        return read(param);
+    }
+
+    protected final BufferedImage readRegion() throws IOException {
+        // The center quarter of the image
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(SyntheticImages.WIDTH / 4, SyntheticImages.HEIGHT / 4, SyntheticImages.WIDTH / 2, SyntheticImages.HEIGHT / 2));
+
+        return read(param);
+    }
+
+    private BufferedImage read(final ImageReadParam param) throws IOException {
+        ByteArrayImageInputStream input = new ByteArrayImageInputStream(data);
+
+        try {
+            reader.setInput(input);
+            return reader.read(0, param);
+        }
+        finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import com.twelvemonkeys.io.enc.EncoderStream;
+import com.twelvemonkeys.io.enc.PackBitsEncoder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Creates the synthetic benchmark input, so that no external files are needed.
+ * <p/>
+ * Images are smooth gradients with some noise, and a few sharp edges, to compress somewhat like photographic content.
+ * The content is deterministic, so results are comparable between runs.
+ */
+public final class SyntheticImages {
+    /** Default width of benchmark images. */
+    public static final int WIDTH = 1024;
+    /** Default height of benchmark images. */
+    public static final int HEIGHT = 768;
+
+    private SyntheticImages() {}
+
+    /**
+     * Creates a {@code TYPE_3BYTE_BGR} image with deterministic content.
+     *
+     * @param width the image width
+     * @param height the image height
+     * @return a new image
+     */
+    public static BufferedImage createRGB(final int width, final int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int off = (y * width + x) * 3;
+                int noise = random.nextInt(8);
+                boolean block = ((x / 64) + (y / 64)) % 5 == 0;
+
+                data[off    ] = (byte) (block ? 32 : (x * 255 / width) + noise);      // Blue
+                data[off + 1] = (byte) (block ? 224 : (y * 255 / height) + noise);    // Green
+                data[off + 2] = (byte) (((x + y) * 255 / (width + height)) + noise);  // Red
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * Creates deterministic sample bytes, with runs and gradients, similar to uncompressed image data.
+     *
+     * @param length the number of bytes
+     * @return a new byte array
+     */
+    public static byte[] createSamples(final int length) {
+        byte[] samples = new byte[length];
+        Random random = new Random(42);
+
+        for (int i = 0; i < length; ) {
+            int run = 1 + random.nextInt(64);
+
+            if (random.nextBoolean()) {
+                // Run of equal bytes
+                byte value = (byte) random.nextInt(256);
+                for (int end = Math.min(length, i + run); i < end; i++) {
+                    samples[i] = value;
+                }
+            }
+            else {
+                // Gradient with noise
+                int value = random.nextInt(256);
+                for (int end = Math.min(length, i + run); i < end; i++) {
+                    samples[i] = (byte) (value++ + random.nextInt(4));
+                }
+            }
+        }
+
+        return samples;
+    }
+
+    /**
+     * Encodes the image using the given writer provider.
+     *
+     * @param image the image to encode
+     * @param provider the writer provider
+     * @param compression the compression type name, or {@code null} for the writer default
+     * @return the encoded image
+     * @throws IOException if an I/O exception occurs during writing
+     */
+    public static byte[] write(final BufferedImage image, final ImageWriterSpi provider, final String compression) throws IOException {
+        return write(image, provider.createWriterInstance(), compression);
+    }
+
+    /**
+     * Encodes the image using the first registered writer for the given format.
+     *
+     * @param image the image to encode
+     * @param formatName the format name
+     * @param compression the compression type name, or {@code null} for the writer default
+     * @return the encoded image
+     * @throws IOException if an I/O exception occurs during writing
+     */
+    public static byte[] write(final BufferedImage image, final String formatName, final String compression) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+
+        if (!writers.hasNext()) {
+            throw new IllegalArgumentException("No writer for format: " + formatName);
+        }
+
+        return write(image, writers.next(), compression);
+    }
+
+    private static byte[] write(final BufferedImage image, final ImageWriter writer, final String compression) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream output = ImageIO.createImageOutputStream(bytes);
+
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+
+            if (compression != null) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionType(compression);
+            }
+
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            writer.dispose();
+            output.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Creates a minimal 8 bit RGB Photoshop document, with no image resources or layers.
+     *
+     * @param image the {@code TYPE_3BYTE_BGR} image to encode
+     * @param rle {@code true} for RLE (PackBits) compressed image data, otherwise uncompressed
+     * @return the encoded image
+     * @throws IOException if an I/O exception occurs during writing
+     */
+    public static byte[] writePSD(final BufferedImage image, final boolean rle) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        // Header
+        out.writeInt(0x38425053); // 8BPS
+        out.writeShort(1); // Version
+        out.write(new byte[6]); // Reserved
+        out.writeShort(3); // Channels
+        out.writeInt(height);
+        out.writeInt(width);
+        out.writeShort(8); // Bits per channel
+        out.writeShort(3); // Color mode RGB
+
+        out.writeInt(0); // Color mode data
+        // Image resources, a single background color resource, as the reader expects at least one resource
+        out.writeInt(22);
+        out.writeInt(0x3842494d); // 8BIM
+        out.writeShort(0x03f2); // Background color
+        out.writeShort(0); // Empty name, padded
+        out.writeInt(10);
+        out.write(new byte[10]); // Color space RGB, black
+
+        out.writeInt(0); // Layer and mask information
+
+        // Image data, planar, in R, G, B order
+        byte[][] rows = new byte[3 * height][width];
+
+        for (int c = 0; c < 3; c++) {
+            for (int y = 0; y < height; y++) {
+                byte[] row = rows[c * height + y];
+
+                for (int x = 0; x < width; x++) {
+                    row[x] = data[(y * width + x) * 3 + 2 - c];
+                }
+            }
+        }
+
+        out.writeShort(rle ? 1 : 0);
+
+        if (rle) {
+            byte[][] packed = new byte[rows.length][];
+
+            for (int i = 0; i < rows.length; i++) {
+                packed[i] = packBits(rows[i]);
+                out.writeShort(packed[i].length);
+            }
+
+            for (byte[] row : packed) {
+                out.write(row);
+            }
+        }
+        else {
+            for (byte[] row : rows) {
+                out.write(row);
+            }
+        }
+
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * PackBits encodes the data.
+     *
+     * @param data the data to encode
+     * @return the encoded data
+     * @throws IOException if an I/O exception occurs during encoding
+     */
+    public static byte[] packBits(final byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream stream = new EncoderStream(bytes, new PackBitsEncoder(), true);
+        stream.write(data);
+        stream.close();
+
+        return bytes.toByteArray();
+    }
+}
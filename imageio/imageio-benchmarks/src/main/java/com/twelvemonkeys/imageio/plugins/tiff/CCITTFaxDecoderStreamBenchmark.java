@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark for {@link CCITTFaxDecoderStream}, decoding a synthetic A4 fax page (1728 x 2200 pixels)
+ * in Modified Huffman, T.4 (1D and 2D) and T.6 compression.
+ * The page is encoded using the {@link CCITTFaxTestEncoder} from the TIFF plugin tests.
+ * This measures the decoder stream alone, see {@link CCITTFaxTIFFImageReaderBenchmark} for reading complete
+ * multi-page fax documents.
+ * <p/>
+ * NOTE: In the TIFF plugin package, as the stream is package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CCITTFaxDecoderStreamBenchmark {
+    private static final int COLUMNS = 1728;
+    private static final int ROWS = 2200;
+
+    @Param({"MH", "T4", "T4-2D", "T6"})
+    public String coding;
+
+    private int compression;
+    private int options;
+    private byte[] data;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() {
+        if ("MH".equals(coding)) {
+            compression = TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE;
+        }
+        else if ("T6".equals(coding)) {
+            compression = TIFFExtension.COMPRESSION_CCITT_T6;
+        }
+        else {
+            compression = TIFFExtension.COMPRESSION_CCITT_T4;
+            options = "T4-2D".equals(coding) ? CCITTFaxDecoderStream.OPTION_2D : 0;
+        }
+
+        data = CCITTFaxTestEncoder.encode(createPage(COLUMNS, ROWS, 42), COLUMNS, compression, options);
+        buffer = new byte[8192];
+    }
+
+    @Benchmark
+    public long decode() throws IOException {
+        InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(data), COLUMNS, compression, 1, options);
+        long bytes = 0;
+        int read;
+
+        while ((read = stream.read(buffer)) >= 0) {
+            bytes += read;
+        }
+
+        return bytes;
+    }
+
+    // Lines of "text": short black runs, with white space between words and lines (white pixels are 1 bits)
+    static byte[][] createPage(final int columns, final int height, final long seed) {
+        Random random = new Random(seed);
+        byte[][] rows = new byte[height][(columns + 7) / 8];
+
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(rows[y], (byte) 0xff);
+
+            if (y % 40 >= 24) {
+                // Line spacing
+                continue;
+            }
+
+            for (int x = 100 + random.nextInt(8); x < columns - 100; ) {
+                int black = 1 + random.nextInt(6);
+
+                for (int end = x + black; x < end; x++) {
+                    rows[y][x / 8] &= ~(0x80 >> (x % 8));
+                }
+
+                x += 2 + random.nextInt(random.nextInt(10) == 0 ? 40 : 8);
+            }
+        }
+
+        return rows;
+    }
+}
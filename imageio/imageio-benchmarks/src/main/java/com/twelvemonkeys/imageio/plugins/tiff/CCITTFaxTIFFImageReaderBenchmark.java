@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.imageio.metadata.exif.TIFF;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for reading multi-page fax documents using {@link TIFFImageReader}, in T.4 2D and T.6 compression.
+ * Reads every page of a small corpus of synthetic documents (1, 4 and 12 A4 pages, 1728 x 2200 pixels,
+ * one strip per page), so that IFD parsing and page handling is measured, as well as decoding.
+ * The pages are encoded using the {@link CCITTFaxTestEncoder} from the TIFF plugin tests,
+ * as {@code TIFFImageWriter} does not support CCITT compression or multiple pages.
+ * <p/>
+ * NOTE: In the TIFF plugin package, as the CCITT options are package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CCITTFaxTIFFImageReaderBenchmark {
+    private static final int COLUMNS = 1728;
+    private static final int ROWS = 2200;
+    private static final int[] PAGE_COUNTS = {1, 4, 12};
+
+    @Param({"T4-2D", "T6"})
+    public String coding;
+
+    private byte[][] documents;
+    private ImageReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        int compression = "T6".equals(coding) ? TIFFExtension.COMPRESSION_CCITT_T6 : TIFFExtension.COMPRESSION_CCITT_T4;
+        int options = "T6".equals(coding) ? 0 : CCITTFaxDecoderStream.OPTION_2D;
+
+        documents = new byte[PAGE_COUNTS.length][];
+        int seed = 0;
+
+        for (int i = 0; i < PAGE_COUNTS.length; i++) {
+            byte[][] pages = new byte[PAGE_COUNTS[i]][];
+
+            for (int page = 0; page < pages.length; page++) {
+                pages[page] = CCITTFaxTestEncoder.encode(CCITTFaxDecoderStreamBenchmark.createPage(COLUMNS, ROWS, seed++), COLUMNS, compression, options);
+            }
+
+            documents[i] = createTIFF(pages, compression, options);
+        }
+
+        reader = new TIFFImageReaderSpi().createReaderInstance(null);
+
+        // Sanity check, fail early rather than benchmarking failures
+        int pages = readAllPages();
+        if (pages != seed) {
+            throw new IllegalStateException(String.format("Unexpected page count: %d (expected %d)", pages, seed));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        reader.dispose();
+    }
+
+    @Benchmark
+    public int readAllPages() throws IOException {
+        int pages = 0;
+
+        for (byte[] document : documents) {
+            ByteArrayImageInputStream input = new ByteArrayImageInputStream(document);
+
+            try {
+                reader.setInput(input);
+                int numImages = reader.getNumImages(true);
+
+                for (int i = 0; i < numImages; i++) {
+                    BufferedImage image = reader.read(i);
+
+                    if (image.getWidth() != COLUMNS || image.getHeight() != ROWS) {
+                        throw new IllegalStateException(String.format("Unexpected image size: %dx%d", image.getWidth(), image.getHeight()));
+                    }
+
+                    pages++;
+                }
+            }
+            finally {
+                input.close();
+            }
+        }
+
+        return pages;
+    }
+
+    // Big endian TIFF, each page is a single strip, followed by its IFD
+    private static byte[] createTIFF(final byte[][] pages, final int compression, final int options) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+
+        stream.writeShort(TIFF.BYTE_ORDER_MARK_BIG_ENDIAN);
+        stream.writeShort(TIFF.TIFF_MAGIC);
+        stream.writeInt(8 + padded(pages[0].length));
+
+        final int entryCount = 11;
+
+        for (int page = 0; page < pages.length; page++) {
+            int stripOffset = stream.size();
+            stream.write(pages[page]);
+
+            if (pages[page].length % 2 != 0) {
+                stream.writeByte(0); // IFD must begin on a word boundary
+            }
+
+            int nextIFD = page < pages.length - 1 ? stream.size() + 2 + entryCount * 12 + 4 + padded(pages[page + 1].length) : 0;
+
+            stream.writeShort(entryCount);
+            writeEntry(stream, TIFF.TAG_IMAGE_WIDTH, TIFF.TYPE_LONG, COLUMNS);
+            writeEntry(stream, TIFF.TAG_IMAGE_HEIGHT, TIFF.TYPE_LONG, ROWS);
+            writeEntry(stream, TIFF.TAG_BITS_PER_SAMPLE, TIFF.TYPE_SHORT, 1);
+            writeEntry(stream, TIFF.TAG_COMPRESSION, TIFF.TYPE_SHORT, compression);
+            writeEntry(stream, TIFF.TAG_PHOTOMETRIC_INTERPRETATION, TIFF.TYPE_SHORT, TIFFBaseline.PHOTOMETRIC_BLACK_IS_ZERO); // White pixels are 1 bits
+            writeEntry(stream, TIFF.TAG_STRIP_OFFSETS, TIFF.TYPE_LONG, stripOffset);
+            writeEntry(stream, TIFF.TAG_SAMPLES_PER_PIXEL, TIFF.TYPE_SHORT, 1);
+            writeEntry(stream, TIFF.TAG_ROWS_PER_STRIP, TIFF.TYPE_LONG, ROWS);
+            writeEntry(stream, TIFF.TAG_STRIP_BYTE_COUNTS, TIFF.TYPE_LONG, pages[page].length);
+            writeEntry(stream, compression == TIFFExtension.COMPRESSION_CCITT_T6 ? TIFF.TAG_T6_OPTIONS : TIFF.TAG_T4_OPTIONS, TIFF.TYPE_LONG, options);
+
+            // PageNumber is two SHORT values: page number, number of pages
+            stream.writeShort(TIFF.TAG_PAGE_NUMBER);
+            stream.writeShort(TIFF.TYPE_SHORT);
+            stream.writeInt(2);
+            stream.writeShort(page);
+            stream.writeShort(pages.length);
+
+            stream.writeInt(nextIFD);
+        }
+
+        stream.close();
+
+        return bytes.toByteArray();
+    }
+
+    private static int padded(final int length) {
+        return length + length % 2;
+    }
+
+    private static void writeEntry(final DataOutputStream stream, final int tag, final short type, final int value) throws IOException {
+        stream.writeShort(tag);
+        stream.writeShort(type);
+        stream.writeInt(1);
+
+        if (type == TIFF.TYPE_SHORT) {
+            stream.writeShort(value);
+            stream.writeShort(0);
+        }
+        else {
+            stream.writeInt(value);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.imageio.benchmarks.SyntheticImages;
+import com.twelvemonkeys.io.FileUtil;
+import com.twelvemonkeys.io.enc.DecodeException;
+import com.twelvemonkeys.io.enc.Decoder;
+import com.twelvemonkeys.io.enc.DecoderStream;
+import com.twelvemonkeys.io.enc.EncoderStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark for {@link LZWDecoder}, compared to the previous implementation,
+ * keeping the string table as a linked chain of objects.
+ * Measures both normal (spec) and old style bit reversed (compatibility) streams.
+ * <p/>
+ * NOTE: In the TIFF plugin package, as the decoder is package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LZWDecoderStreamBenchmark {
+    private byte[] data;
+    private byte[] reversed;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] samples = SyntheticImages.createSamples(1024 * 1024);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream stream = new EncoderStream(bytes, new LZWEncoder(samples.length), true);
+        stream.write(samples);
+        stream.close();
+
+        data = bytes.toByteArray();
+
+        // There's no encoder for the old style bit reversed streams, use the sample from the TIFF plugin tests
+        reversed = FileUtil.read(getClass().getResourceAsStream("/lzw/lzw-short.bin"));
+
+        buffer = new byte[8192];
+    }
+
+    @Benchmark
+    public long decode() throws IOException {
+        return decode(data, LZWDecoder.create(false));
+    }
+
+    @Benchmark
+    public long decodeLegacy() throws IOException {
+        return decode(data, new LinkedStringLZWDecoder(false));
+    }
+
+    @Benchmark
+    public long decodeCompatibility() throws IOException {
+        return decode(reversed, LZWDecoder.create(true));
+    }
+
+    @Benchmark
+    public long decodeCompatibilityLegacy() throws IOException {
+        return decode(reversed, new LinkedStringLZWDecoder(true));
+    }
+
+    private long decode(final byte[] data, final Decoder decoder) throws IOException {
+        InputStream stream = new DecoderStream(new ByteArrayInputStream(data), decoder, 1024);
+        long bytes = 0;
+        int read;
+
+        while ((read = stream.read(buffer)) >= 0) {
+            bytes += read;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * The previous {@code LZWDecoder} implementation, keeping the string table as a linked chain of objects.
+     * Kept here for comparison only.
+     */
+    private static final class LinkedStringLZWDecoder implements Decoder {
+        private static final int CLEAR_CODE = 256;
+        private static final int EOI_CODE = 257;
+        private static final int MIN_BITS = 9;
+        private static final int MAX_BITS = 12;
+        private static final int TABLE_SIZE = 1 << MAX_BITS;
+
+        private final boolean compatibilityMode;
+
+        private final LZWString[] table;
+        private int tableLength;
+        private int bitsPerCode;
+        private int oldCode = CLEAR_CODE;
+        private int maxCode;
+        private int bitMask;
+        private int maxString;
+        private boolean eofReached;
+        private int nextData;
+        private int nextBits;
+
+        LinkedStringLZWDecoder(final boolean compatibilityMode) {
+            this.compatibilityMode = compatibilityMode;
+
+            table = new LZWString[compatibilityMode ? TABLE_SIZE + 1024 : TABLE_SIZE];
+
+            for (int i = 0; i < 256; i++) {
+                table[i] = new LZWString((byte) i);
+            }
+
+            init();
+        }
+
+        private void init() {
+            tableLength = 258;
+            bitsPerCode = MIN_BITS;
+            bitMask = (1 << bitsPerCode) - 1;
+            maxCode = maxCode();
+            maxString = 1;
+        }
+
+        private int maxCode() {
+            return compatibilityMode ? bitMask : bitMask - 1;
+        }
+
+        public int decode(final InputStream stream, final ByteBuffer buffer) throws IOException {
+            int code;
+
+            while ((code = getNextCode(stream)) != EOI_CODE) {
+                if (code == CLEAR_CODE) {
+                    init();
+                    code = getNextCode(stream);
+
+                    if (code == EOI_CODE) {
+                        break;
+                    }
+
+                    table[code].writeTo(buffer);
+                }
+                else {
+                    if (code < tableLength) {
+                        table[code].writeTo(buffer);
+                        addStringToTable(table[oldCode].concatenate(table[code].firstChar));
+                    }
+                    else {
+                        LZWString outString = table[oldCode].concatenate(table[oldCode].firstChar);
+
+                        outString.writeTo(buffer);
+                        addStringToTable(outString);
+                    }
+                }
+
+                oldCode = code;
+
+                if (buffer.remaining() < maxString + 1) {
+                    break;
+                }
+            }
+
+            return buffer.position();
+        }
+
+        private void addStringToTable(final LZWString string) throws IOException {
+            table[tableLength++] = string;
+
+            if (tableLength > maxCode) {
+                bitsPerCode++;
+
+                if (bitsPerCode > MAX_BITS) {
+                    if (compatibilityMode) {
+                        bitsPerCode--;
+                    }
+                    else {
+                        throw new DecodeException(String.format("TIFF LZW with more than %d bits per code encountered (table overflow)", MAX_BITS));
+                    }
+                }
+
+                bitMask = (1 << bitsPerCode) - 1;
+                maxCode = maxCode();
+            }
+
+            if (string.length > maxString) {
+                maxString = string.length;
+            }
+        }
+
+        private int getNextCode(final InputStream stream) throws IOException {
+            if (eofReached) {
+                return EOI_CODE;
+            }
+
+            int read = stream.read();
+            if (read < 0) {
+                eofReached = true;
+                return EOI_CODE;
+            }
+
+            if (compatibilityMode) {
+                nextData |= read << nextBits;
+            }
+            else {
+                nextData = (nextData << 8) | read;
+            }
+            nextBits += 8;
+
+            if (nextBits < bitsPerCode) {
+                read = stream.read();
+                if (read < 0) {
+                    eofReached = true;
+                    return EOI_CODE;
+                }
+
+                if (compatibilityMode) {
+                    nextData |= read << nextBits;
+                }
+                else {
+                    nextData = (nextData << 8) | read;
+                }
+                nextBits += 8;
+            }
+
+            int code;
+
+            if (compatibilityMode) {
+                code = nextData & bitMask;
+                nextData >>= bitsPerCode;
+            }
+            else {
+                code = (nextData >> (nextBits - bitsPerCode)) & bitMask;
+            }
+            nextBits -= bitsPerCode;
+
+            return code;
+        }
+    }
+
+    private static final class LZWString {
+        final LZWString previous;
+
+        final int length;
+        final byte value;
+        final byte firstChar;
+
+        LZWString(final byte code) {
+            this(code, code, 1, null);
+        }
+
+        private LZWString(final byte value, final byte firstChar, final int length, final LZWString previous) {
+            this.value = value;
+            this.firstChar = firstChar;
+            this.length = length;
+            this.previous = previous;
+        }
+
+        LZWString concatenate(final byte firstChar) {
+            return new LZWString(firstChar, this.firstChar, length + 1, this);
+        }
+
+        void writeTo(final ByteBuffer buffer) {
+            if (length == 1) {
+                buffer.put(value);
+            }
+            else {
+                LZWString e = this;
+                final int offset = buffer.position();
+
+                for (int i = length - 1; i >= 0; i--) {
+                    buffer.put(offset + i, e.value);
+                    e = e.previous;
+                }
+
+                buffer.position(offset + length);
+            }
+        }
+    }
+}
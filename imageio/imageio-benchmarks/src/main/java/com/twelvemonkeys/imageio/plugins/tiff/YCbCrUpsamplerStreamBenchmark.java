@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput benchmark for {@link YCbCrUpsamplerStream}, for 4:2:0 and 4:2:2 subsampling,
+ * with the default (CCIR 601-1) and custom (ITU-R BT.709) coefficients.
+ * <p/>
+ * NOTE: In the TIFF plugin package, as the stream is package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YCbCrUpsamplerStreamBenchmark {
+    private static final int COLUMNS = 1024;
+    private static final int ROWS = 768;
+
+    @Param({"4:2:0", "4:2:2"})
+    public String subsampling;
+
+    @Param({"CCIR601", "BT709"})
+    public String coefficients;
+
+    private int[] chromaSub;
+    private double[] yCbCrCoefficients;
+    private byte[] data;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() {
+        chromaSub = "4:2:0".equals(subsampling) ? new int[] {2, 2} : new int[] {2, 1};
+        yCbCrCoefficients = "BT709".equals(coefficients) ? new double[] {0.2126, 0.7152, 0.0722} : YCbCrUpsamplerStream.CCIR_601_1_COEFFICIENTS;
+
+        data = new byte[(COLUMNS / chromaSub[0]) * (ROWS / chromaSub[1]) * (chromaSub[0] * chromaSub[1] + 2)];
+        new Random(42).nextBytes(data);
+
+        buffer = new byte[COLUMNS * 3 * chromaSub[1]];
+    }
+
+    @Benchmark
+    public long upsample() throws IOException {
+        InputStream stream = new YCbCrUpsamplerStream(new ByteArrayInputStream(data), chromaSub, TIFFExtension.YCBCR_POSITIONING_CENTERED, COLUMNS, yCbCrCoefficients);
+        long bytes = 0;
+        int read;
+
+        while ((read = stream.read(buffer)) >= 0) {
+            bytes += read;
+        }
+
+        return bytes;
+    }
+}
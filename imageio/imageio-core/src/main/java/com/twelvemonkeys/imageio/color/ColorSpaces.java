@@ -93,6 +93,11 @@ public final class ColorSpaces {
     // Cache for the latest used color spaces
     private static final Map<Key, ICC_ColorSpace> cache = new LRUHashMap<Key, ICC_ColorSpace>(10);
 
+    // Cache for the latest used sRGB lookup tables, keyed by profile header (includes rendering intent and profile id)
+    private static final Map<Key, SRGBLookupTable> lookupTables = new LRUHashMap<Key, SRGBLookupTable>(10);
+    private static long lookupTableHits;
+    private static long lookupTableMisses;
+
     private ColorSpaces() {}
 
     /**
@@ -173,6 +178,73 @@ public final class ColorSpaces {
         }
     }
 
+    /**
+     * Returns a lookup table for fast conversion from the given color space to sRGB.
+     * <p />
+     * Creating the table requires converting a few hundred thousand values, so tables are cached, and the same
+     * instance is returned for color spaces with equal profile headers (and thus rendering intents).
+     *
+     * @param colorSpace an ICC color space with 3 or 4 components. May not be {@code null}.
+     * @return a lookup table for conversion from {@code colorSpace} to sRGB.
+     * @throws IllegalArgumentException if {@code colorSpace} is {@code null}, or does not have 3 or 4 components.
+     *
+     * @see #getLookupTableCacheHits()
+     * @see #getLookupTableCacheMisses()
+     */
+    public static SRGBLookupTable getSRGBLookupTable(final ICC_ColorSpace colorSpace) {
+        Validate.notNull(colorSpace, "colorSpace");
+
+        Key key = new Key(colorSpace.getProfile().getData(ICC_Profile.icSigHead));
+
+        synchronized (lookupTables) {
+            SRGBLookupTable table = lookupTables.get(key);
+
+            if (table != null) {
+                lookupTableHits++;
+                return table;
+            }
+
+            lookupTableMisses++;
+        }
+
+        // Create the table without holding the lock, as it is slow, and would block lookups for other color spaces.
+        // If another thread created a table for the same color space in the mean time, that table is used.
+        SRGBLookupTable created = new SRGBLookupTable(colorSpace);
+
+        synchronized (lookupTables) {
+            SRGBLookupTable table = lookupTables.get(key);
+
+            if (table == null) {
+                table = created;
+                lookupTables.put(key, table);
+            }
+
+            return table;
+        }
+    }
+
+    /**
+     * Returns the number of times {@link #getSRGBLookupTable(ICC_ColorSpace)} returned a cached table.
+     *
+     * @return the number of lookup table cache hits.
+     */
+    public static long getLookupTableCacheHits() {
+        synchronized (lookupTables) {
+            return lookupTableHits;
+        }
+    }
+
+    /**
+     * Returns the number of times {@link #getSRGBLookupTable(ICC_ColorSpace)} had to create a new table.
+     *
+     * @return the number of lookup table cache misses.
+     */
+    public static long getLookupTableCacheMisses() {
+        synchronized (lookupTables) {
+            return lookupTableMisses;
+        }
+    }
+
     /**
      * Tests whether an ICC color profile is equal to the default sRGB profile.
      *
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *  Neither the name "TwelveMonkeys" nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.color;
+
+import com.twelvemonkeys.lang.Validate;
+
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.*;
+
+/**
+ * A precomputed conversion from a 3 or 4 component (typically RGB or CMYK) color space to sRGB.
+ * <p />
+ * The table holds the sRGB values of a regular grid of source values, converted once using {@link ColorConvertOp}.
+ * Other values are interpolated, using tetrahedral interpolation for the first three components,
+ * and linear interpolation between the two nearest grid points for the fourth component.
+ * Tables are immutable, and may be shared between threads.
+ *
+ * @see ColorSpaces#getSRGBLookupTable(java.awt.color.ICC_ColorSpace)
+ */
+public final class SRGBLookupTable implements RasterOp {
+    // Distance between grid points, 52 grid points per axis for 3 components, 18 for 4 components
+    private static final int STEP_3 = 5;
+    private static final int STEP_4 = 15;
+
+    private final int numComponents;
+    private final int step;
+
+    // Grid cell and position inside the cell (0...step), for each sample value
+    private final int[] cell = new int[256];
+    private final int[] fraction = new int[256];
+
+    // Table offsets between neighbouring grid points
+    private final int stride0;
+    private final int stride1;
+    private final int stride2;
+    private final int stride3;
+
+    private final int[] table; // Packed RGB
+
+    SRGBLookupTable(final ColorSpace colorSpace) {
+        Validate.notNull(colorSpace, "colorSpace");
+        Validate.isTrue(colorSpace.getNumComponents() == 3 || colorSpace.getNumComponents() == 4, colorSpace.getNumComponents(), "only 3 or 4 component color spaces supported: %s");
+
+        numComponents = colorSpace.getNumComponents();
+        step = numComponents == 3 ? STEP_3 : STEP_4;
+
+        int gridSize = 255 / step + 1;
+
+        for (int i = 0; i < 256; i++) {
+            cell[i] = Math.min(i / step, gridSize - 2);
+            fraction[i] = i - cell[i] * step;
+        }
+
+        stride0 = 1;
+        stride1 = stride0 * gridSize;
+        stride2 = stride1 * gridSize;
+        stride3 = stride2 * gridSize;
+
+        table = createTable(colorSpace, gridSize);
+    }
+
+    /**
+     * Converts the grid values all at once, first component varying fastest.
+     */
+    private int[] createTable(final ColorSpace colorSpace, final int gridSize) {
+        int entries = 1;
+        for (int i = 0; i < numComponents; i++) {
+            entries *= gridSize;
+        }
+
+        byte[] samples = new byte[entries * numComponents];
+
+        for (int i = 0; i < entries; i++) {
+            for (int c = 0, index = i; c < numComponents; c++, index /= gridSize) {
+                samples[i * numComponents + c] = (byte) (index % gridSize * step);
+            }
+        }
+
+        int[] bandOffsets = numComponents == 3 ? new int[] {0, 1, 2} : new int[] {0, 1, 2, 3};
+        WritableRaster source = Raster.createInterleavedRaster(new DataBufferByte(samples, samples.length), entries, 1, entries * numComponents, numComponents, bandOffsets, null);
+        WritableRaster destination = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, entries, 1, 3, null);
+
+        new ColorConvertOp(colorSpace, ColorSpace.getInstance(ColorSpace.CS_sRGB), null).filter(source, destination);
+
+        byte[] rgb = ((DataBufferByte) destination.getDataBuffer()).getData();
+        int[] table = new int[entries];
+
+        for (int i = 0; i < entries; i++) {
+            table[i] = (rgb[i * 3] & 0xFF) << 16 | (rgb[i * 3 + 1] & 0xFF) << 8 | rgb[i * 3 + 2] & 0xFF;
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the number of color components of the source color space.
+     *
+     * @return the number of color components of the source color space, either 3 or 4.
+     */
+    public int getNumComponents() {
+        return numComponents;
+    }
+
+    /**
+     * Converts a 3 component color value to sRGB.
+     *
+     * @param c0 first component, in the range 0...255
+     * @param c1 second component, in the range 0...255
+     * @param c2 third component, in the range 0...255
+     * @return the sRGB value, packed as {@code 0x00RRGGBB}
+     */
+    public int toRGB(final int c0, final int c1, final int c2) {
+        return toRGB(c0, c1, c2, 0);
+    }
+
+    /**
+     * Converts a 4 component color value to sRGB.
+     * For 3 component tables, the last component is ignored.
+     *
+     * @param c0 first component, in the range 0...255
+     * @param c1 second component, in the range 0...255
+     * @param c2 third component, in the range 0...255
+     * @param c3 fourth component, in the range 0...255
+     * @return the sRGB value, packed as {@code 0x00RRGGBB}
+     */
+    public int toRGB(final int c0, final int c1, final int c2, final int c3) {
+        final int f0 = fraction[c0];
+        final int f1 = fraction[c1];
+        final int f2 = fraction[c2];
+        final int f3 = numComponents == 4 ? fraction[c3] : 0;
+
+        final int base = cell[c0] * stride0 + cell[c1] * stride1 + cell[c2] * stride2 + (numComponents == 4 ? cell[c3] * stride3 : 0);
+
+        // Find the tetrahedron containing the point, from the order of the fractions.
+        // Vertices are base, base + v1, base + v2 and the opposite corner, with weights w0...w3.
+        final int v1, v2;
+        final int w0, w1, w2, w3;
+
+        if (f0 >= f1) {
+            if (f1 >= f2) {
+                v1 = stride0; v2 = stride0 + stride1;
+                w0 = step - f0; w1 = f0 - f1; w2 = f1 - f2; w3 = f2;
+            }
+            else if (f0 >= f2) {
+                v1 = stride0; v2 = stride0 + stride2;
+                w0 = step - f0; w1 = f0 - f2; w2 = f2 - f1; w3 = f1;
+            }
+            else {
+                v1 = stride2; v2 = stride2 + stride0;
+                w0 = step - f2; w1 = f2 - f0; w2 = f0 - f1; w3 = f1;
+            }
+        }
+        else {
+            if (f0 >= f2) {
+                v1 = stride1; v2 = stride1 + stride0;
+                w0 = step - f1; w1 = f1 - f0; w2 = f0 - f2; w3 = f2;
+            }
+            else if (f1 >= f2) {
+                v1 = stride1; v2 = stride1 + stride2;
+                w0 = step - f1; w1 = f1 - f2; w2 = f2 - f0; w3 = f0;
+            }
+            else {
+                v1 = stride2; v2 = stride2 + stride1;
+                w0 = step - f2; w1 = f2 - f1; w2 = f1 - f0; w3 = f0;
+            }
+        }
+
+        final int v3 = stride0 + stride1 + stride2;
+
+        final int p0 = table[base];
+        final int p1 = table[base + v1];
+        final int p2 = table[base + v2];
+        final int p3 = table[base + v3];
+
+        if (f3 == 0) {
+            return interpolate(p0, p1, p2, p3, w0, w1, w2, w3, 16, step) << 16
+                    | interpolate(p0, p1, p2, p3, w0, w1, w2, w3, 8, step) << 8
+                    | interpolate(p0, p1, p2, p3, w0, w1, w2, w3, 0, step);
+        }
+
+        // Interpolate between this and the next grid plane of the fourth component
+        final int next = base + stride3;
+        final int n0 = table[next];
+        final int n1 = table[next + v1];
+        final int n2 = table[next + v2];
+        final int n3 = table[next + v3];
+
+        final int w = step - f3;
+        final int divisor = step * step;
+
+        return (interpolate(p0, p1, p2, p3, w0, w1, w2, w3, 16, 1) * w + interpolate(n0, n1, n2, n3, w0, w1, w2, w3, 16, 1) * f3 + divisor / 2) / divisor << 16
+                | (interpolate(p0, p1, p2, p3, w0, w1, w2, w3, 8, 1) * w + interpolate(n0, n1, n2, n3, w0, w1, w2, w3, 8, 1) * f3 + divisor / 2) / divisor << 8
+                | (interpolate(p0, p1, p2, p3, w0, w1, w2, w3, 0, 1) * w + interpolate(n0, n1, n2, n3, w0, w1, w2, w3, 0, 1) * f3 + divisor / 2) / divisor;
+    }
+
+    private static int interpolate(final int p0, final int p1, final int p2, final int p3,
+                                   final int w0, final int w1, final int w2, final int w3,
+                                   final int shift, final int divisor) {
+        int value = w0 * (p0 >> shift & 0xFF) + w1 * (p1 >> shift & 0xFF) + w2 * (p2 >> shift & 0xFF) + w3 * (p3 >> shift & 0xFF);
+        return divisor == 1 ? value : (value + divisor / 2) / divisor;
+    }
+
+    /**
+     * Converts the source raster to sRGB.
+     *
+     * @param src a {@code TYPE_BYTE} raster, with at least as many bands as the source color space.
+     *            Any extra bands are ignored.
+     * @param dest a raster with at least 3 bands, or {@code null}. Any fourth band is set to fully opaque.
+     * @return {@code dest}, or a new {@link WritableRaster} if {@code dest} is {@code null}.
+     */
+    public WritableRaster filter(final Raster src, WritableRaster dest) {
+        Validate.notNull(src, "src may not be null");
+        Validate.isTrue(src != dest, "src and dest raster may not be same");
+        Validate.isTrue(src.getTransferType() == DataBuffer.TYPE_BYTE, src, "only TYPE_BYTE rasters supported as src: %s");
+        Validate.isTrue(src.getNumBands() >= numComponents, src.getNumBands(), "src raster must have at least " + numComponents + " bands: %s");
+
+        if (dest == null) {
+            dest = createCompatibleDestRaster(src);
+        }
+        else {
+            Validate.isTrue(dest.getNumBands() >= 3, dest.getNumBands(), "dest raster must have at least 3 bands: %s");
+        }
+
+        final int width = src.getWidth();
+        final int height = src.getHeight();
+        final int srcBands = src.getNumBands();
+        final int destBands = dest.getNumBands();
+
+        final int[] rgb = new int[width];
+
+        // Read and write the data arrays directly if possible, otherwise use rows of samples
+        boolean srcDirect = src.getSampleModel() instanceof PixelInterleavedSampleModel && src.getDataBuffer() instanceof DataBufferByte;
+        boolean destDirect = dest.getSampleModel() instanceof PixelInterleavedSampleModel && dest.getDataBuffer() instanceof DataBufferByte;
+
+        int[] samples = srcDirect && destDirect ? null : new int[width * Math.max(srcBands, destBands)];
+
+        for (int y = 0; y < height; y++) {
+            if (srcDirect) {
+                PixelInterleavedSampleModel sampleModel = (PixelInterleavedSampleModel) src.getSampleModel();
+                int[] offsets = sampleModel.getBandOffsets();
+                int pixelStride = sampleModel.getPixelStride();
+                int offset = offset(src, sampleModel.getScanlineStride(), pixelStride, y);
+
+                convertRow(((DataBufferByte) src.getDataBuffer()).getData(), offset, pixelStride, offsets, rgb);
+            }
+            else {
+                src.getPixels(src.getMinX(), src.getMinY() + y, width, 1, samples);
+
+                for (int x = 0, i = 0; x < width; x++, i += srcBands) {
+                    rgb[x] = toRGB(samples[i], samples[i + 1], samples[i + 2], numComponents == 4 ? samples[i + 3] : 0);
+                }
+            }
+
+            if (destDirect) {
+                PixelInterleavedSampleModel sampleModel = (PixelInterleavedSampleModel) dest.getSampleModel();
+                int[] offsets = sampleModel.getBandOffsets();
+                int pixelStride = sampleModel.getPixelStride();
+                int offset = offset(dest, sampleModel.getScanlineStride(), pixelStride, y);
+
+                storeRow(rgb, ((DataBufferByte) dest.getDataBuffer()).getData(), offset, pixelStride, offsets);
+            }
+            else {
+                for (int x = 0, i = 0; x < width; x++, i += destBands) {
+                    samples[i    ] = rgb[x] >> 16 & 0xFF;
+                    samples[i + 1] = rgb[x] >> 8 & 0xFF;
+                    samples[i + 2] = rgb[x] & 0xFF;
+
+                    if (destBands > 3) {
+                        samples[i + 3] = 0xFF;
+                    }
+                }
+
+                dest.setPixels(dest.getMinX(), dest.getMinY() + y, width, 1, samples);
+            }
+        }
+
+        return dest;
+    }
+
+    private static int offset(final Raster raster, final int scanlineStride, final int pixelStride, final int y) {
+        return raster.getDataBuffer().getOffset()
+                + (raster.getMinY() + y - raster.getSampleModelTranslateY()) * scanlineStride
+                + (raster.getMinX() - raster.getSampleModelTranslateX()) * pixelStride;
+    }
+
+    private void convertRow(final byte[] data, final int offset, final int pixelStride, final int[] bandOffsets, final int[] rgb) {
+        final int o0 = bandOffsets[0];
+        final int o1 = bandOffsets[1];
+        final int o2 = bandOffsets[2];
+        final int o3 = numComponents == 4 ? bandOffsets[3] : o2;
+
+        for (int x = 0, i = offset; x < rgb.length; x++, i += pixelStride) {
+            rgb[x] = toRGB(data[i + o0] & 0xFF, data[i + o1] & 0xFF, data[i + o2] & 0xFF, data[i + o3] & 0xFF);
+        }
+    }
+
+    private static void storeRow(final int[] rgb, final byte[] data, final int offset, final int pixelStride, final int[] bandOffsets) {
+        final int r = bandOffsets[0];
+        final int g = bandOffsets[1];
+        final int b = bandOffsets[2];
+        final int a = bandOffsets.length > 3 ? bandOffsets[3] : -1;
+
+        for (int x = 0, i = offset; x < rgb.length; x++, i += pixelStride) {
+            data[i + r] = (byte) (rgb[x] >> 16);
+            data[i + g] = (byte) (rgb[x] >> 8);
+            data[i + b] = (byte) rgb[x];
+
+            if (a >= 0) {
+                data[i + a] = (byte) 0xFF;
+            }
+        }
+    }
+
+    public Rectangle2D getBounds2D(final Raster src) {
+        return src.getBounds();
+    }
+
+    public WritableRaster createCompatibleDestRaster(final Raster src) {
+        return Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, src.getWidth(), src.getHeight(), 3, new Point(src.getMinX(), src.getMinY()));
+    }
+
+    public Point2D getPoint2D(final Point2D srcPt, Point2D dstPt) {
+        if (dstPt == null) {
+            dstPt = new Point2D.Double(srcPt.getX(), srcPt.getY());
+        }
+        else {
+            dstPt.setLocation(srcPt);
+        }
+
+        return dstPt;
+    }
+
+    public RenderingHints getRenderingHints() {
+        return null;
+    }
+}
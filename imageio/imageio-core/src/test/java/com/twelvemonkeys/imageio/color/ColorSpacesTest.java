@@ -33,6 +33,12 @@ import org.junit.Test;
 import java.awt.color.ColorSpace;
 import java.awt.color.ICC_ColorSpace;
 import java.awt.color.ICC_Profile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -184,4 +190,66 @@ public class ColorSpacesTest {
     public void testIsCS_sRGBNull() {
         ColorSpaces.isCS_sRGB(null);
     }
+
+    @Test
+    public void testGetSRGBLookupTableCached() {
+        ICC_ColorSpace cs = (ICC_ColorSpace) ColorSpaces.getColorSpace(ColorSpaces.CS_ADOBE_RGB_1998);
+
+        SRGBLookupTable table = ColorSpaces.getSRGBLookupTable(cs);
+        assertNotNull(table);
+        assertEquals(3, table.getNumComponents());
+
+        long hits = ColorSpaces.getLookupTableCacheHits();
+        long misses = ColorSpaces.getLookupTableCacheMisses();
+
+        // Equal profile, different instance
+        ICC_ColorSpace other = new ICC_ColorSpace(ICC_Profile.getInstance(cs.getProfile().getData()));
+        assertNotSame(cs, other);
+
+        assertSame(table, ColorSpaces.getSRGBLookupTable(other));
+        assertEquals(hits + 1, ColorSpaces.getLookupTableCacheHits());
+        assertEquals(misses, ColorSpaces.getLookupTableCacheMisses());
+    }
+
+    @Test
+    public void testGetSRGBLookupTableConcurrent() throws Exception {
+        // A profile not used by other tests, as the cache is shared: Adobe RGB, with a different creation date
+        final byte[] profileData = ((ICC_ColorSpace) ColorSpaces.getColorSpace(ColorSpaces.CS_ADOBE_RGB_1998)).getProfile().getData();
+        profileData[24] = 0x07;
+        profileData[25] = (byte) 0xdd; // Year 2013
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<SRGBLookupTable>> tables = new ArrayList<Future<SRGBLookupTable>>();
+
+            for (int i = 0; i < 4; i++) {
+                tables.add(executor.submit(new Callable<SRGBLookupTable>() {
+                    public SRGBLookupTable call() {
+                        return ColorSpaces.getSRGBLookupTable(new ICC_ColorSpace(ICC_Profile.getInstance(profileData)));
+                    }
+                }));
+            }
+
+            // Tables created concurrently for the same color space are discarded, all threads get the cached table
+            SRGBLookupTable table = tables.get(0).get();
+            for (Future<SRGBLookupTable> other : tables) {
+                assertSame(table, other.get());
+            }
+
+            assertSame(table, ColorSpaces.getSRGBLookupTable(new ICC_ColorSpace(ICC_Profile.getInstance(profileData))));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetSRGBLookupTableNull() {
+        ColorSpaces.getSRGBLookupTable(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetSRGBLookupTableGray() {
+        ColorSpaces.getSRGBLookupTable((ICC_ColorSpace) ColorSpace.getInstance(ColorSpace.CS_GRAY));
+    }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *  Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ *  Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *  Neither the name "TwelveMonkeys" nor the
+ * names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.imageio.color;
+
+import org.junit.Test;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * SRGBLookupTableTest
+ */
+public class SRGBLookupTableTest {
+    private static WritableRaster createRandomRaster(final int width, final int height, final int bands) {
+        WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height, bands, null);
+        new Random(42).nextBytes(((DataBufferByte) raster.getDataBuffer()).getData());
+        return raster;
+    }
+
+    private static double meanError(final ColorSpace colorSpace, final SRGBLookupTable table) {
+        WritableRaster input = createRandomRaster(100, 100, colorSpace.getNumComponents());
+        WritableRaster expected = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 100, 100, 3, null);
+        new ColorConvertOp(colorSpace, ColorSpace.getInstance(ColorSpace.CS_sRGB), null).filter(input, expected);
+
+        int[] rgb = expected.getPixels(0, 0, 100, 100, (int[]) null);
+        int[] actual = table.filter(input, null).getPixels(0, 0, 100, 100, (int[]) null);
+
+        long error = 0;
+        for (int i = 0; i < rgb.length; i++) {
+            error += Math.abs(rgb[i] - actual[i]);
+        }
+
+        return error / (double) rgb.length;
+    }
+
+    private static void assertGridPointsCorrect(final ColorSpace colorSpace, final SRGBLookupTable table, final int step) {
+        ColorConvertOp convert = new ColorConvertOp(colorSpace, ColorSpace.getInstance(ColorSpace.CS_sRGB), null);
+        int components = colorSpace.getNumComponents();
+
+        WritableRaster input = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 1, 1, components, null);
+        WritableRaster output = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 1, 1, 3, null);
+
+        for (int value = 0; value <= 255; value += step) {
+            int[] color = {value, 255 - value, value / 2, 255 - value / 2};
+            input.setPixel(0, 0, color);
+            int[] expected = convert.filter(input, output).getPixel(0, 0, (int[]) null);
+
+            // Not interpolated, but the CMM results for single pixels may differ slightly from converting many at once
+            int rgb = table.toRGB(color[0], color[1], color[2], color[3]);
+            assertEquals(expected[0], rgb >> 16 & 0xff, 1);
+            assertEquals(expected[1], rgb >> 8 & 0xff, 1);
+            assertEquals(expected[2], rgb & 0xff, 1);
+        }
+    }
+
+    @Test
+    public void testRGB() {
+        ColorSpace adobeRGB = ColorSpaces.getColorSpace(ColorSpaces.CS_ADOBE_RGB_1998);
+        SRGBLookupTable table = new SRGBLookupTable(adobeRGB);
+
+        assertEquals(3, table.getNumComponents());
+        assertEquals(0, meanError(adobeRGB, table), 0.5);
+        assertGridPointsCorrect(adobeRGB, table, 5);
+
+        assertEquals(table.toRGB(10, 200, 99, 0), table.toRGB(10, 200, 99));
+        assertEquals(table.toRGB(10, 200, 99, 0), table.toRGB(10, 200, 99, 255)); // Fourth component ignored
+    }
+
+    @Test
+    public void testCMYK() {
+        ColorSpace cmyk = CMYKColorSpace.getInstance();
+        SRGBLookupTable table = new SRGBLookupTable(cmyk);
+
+        assertEquals(4, table.getNumComponents());
+        assertEquals(0, meanError(cmyk, table), 1.0);
+        assertGridPointsCorrect(cmyk, table, 15);
+    }
+
+    @Test
+    public void testFilterLayouts() {
+        SRGBLookupTable table = new SRGBLookupTable(ColorSpaces.getColorSpace(ColorSpaces.CS_ADOBE_RGB_1998));
+
+        WritableRaster input = createRandomRaster(31, 17, 3);
+        int[] expected = table.filter(input, null).getPixels(0, 0, 31, 17, (int[]) null);
+
+        // Banded and translated source
+        WritableRaster banded = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, 31, 17, 3, null);
+        banded.setRect(input);
+        Raster translated = input.createTranslatedChild(100, 200);
+
+        WritableRaster[] destinations = {
+                new BufferedImage(31, 17, BufferedImage.TYPE_3BYTE_BGR).getRaster(),
+                new BufferedImage(31, 17, BufferedImage.TYPE_INT_RGB).getRaster(),
+                new BufferedImage(31, 17, BufferedImage.TYPE_4BYTE_ABGR).getRaster()
+        };
+
+        for (Raster source : new Raster[] {banded, translated}) {
+            for (WritableRaster destination : destinations) {
+                assertSame(destination, table.filter(source, destination));
+
+                for (int band = 0; band < 3; band++) {
+                    int[] samples = destination.getSamples(0, 0, 31, 17, band, (int[]) null);
+
+                    for (int i = 0; i < samples.length; i++) {
+                        assertEquals(expected[i * 3 + band], samples[i]);
+                    }
+                }
+
+                if (destination.getNumBands() > 3) {
+                    assertEquals(255, destination.getSample(30, 16, 3));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateGray() {
+        new SRGBLookupTable(ColorSpace.getInstance(ColorSpace.CS_GRAY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFilterTooFewBands() {
+        new SRGBLookupTable(CMYKColorSpace.getInstance()).filter(createRandomRaster(10, 10, 3), null);
+    }
+}
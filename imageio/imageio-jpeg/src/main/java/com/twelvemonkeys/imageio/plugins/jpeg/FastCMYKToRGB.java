@@ -28,17 +28,27 @@
 
 package com.twelvemonkeys.imageio.plugins.jpeg;
 
+import com.twelvemonkeys.imageio.color.ColorSpaces;
+import com.twelvemonkeys.imageio.color.SRGBLookupTable;
 import com.twelvemonkeys.lang.Validate;
 
 import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_ColorSpace;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.*;
 
+import static com.twelvemonkeys.imageio.plugins.jpeg.JPEGImageReader.YCbCrConverter.*;
+
 /**
  * This class performs a pixel by pixel conversion of the source image, from CMYK to RGB.
  * <p/>
- * The conversion is fast, but performed without any color space conversion.
+ * The conversion is fast, but performed without any color space conversion, unless an ICC CMYK color space
+ * is given. In that case, colors are interpolated from a (cached) table of sRGB values for the color space.
+ * <p/>
+ * The source may also be the raw (inverted) CMYK or YCCK samples of an Adobe JPEG, in which case
+ * the samples are decoded in the same pass as the conversion to RGB.
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -48,7 +58,48 @@ import java.awt.image.*;
 class FastCMYKToRGB implements /*BufferedImageOp,*/ RasterOp {
     // TODO: Force dest alpha to match source alpha?
 
+    // Clamps YCC to RGB results, that are in the range -227...482
+    private static final int CLAMP_OFFSET = 256;
+    private static final int[] CLAMP = new int[1024];
+
+    static {
+        for (int i = 0; i < CLAMP.length; i++) {
+            CLAMP[i] = Math.max(0, Math.min(255, i - CLAMP_OFFSET));
+        }
+    }
+
+    private static final int[] CMYK_OFFSETS = {0, 1, 2, 3};
+
+    private final JPEGColorSpace sourceCS;
+    private final SRGBLookupTable table;
+
     public FastCMYKToRGB() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a conversion from the raw samples of an Adobe JPEG.
+     *
+     * @param sourceCS the encoding of the source samples, either {@code CMYK} (inverted CMYK) or {@code YCCK},
+     * or {@code null} for plain CMYK.
+     */
+    FastCMYKToRGB(final JPEGColorSpace sourceCS) {
+        this(sourceCS, null);
+    }
+
+    /**
+     * Creates a conversion from the raw samples of an Adobe JPEG, through the given CMYK color space, to sRGB.
+     *
+     * @param sourceCS the encoding of the source samples, either {@code CMYK} (inverted CMYK) or {@code YCCK},
+     * or {@code null} for plain CMYK.
+     * @param cmykCS the CMYK color space of the (decoded) source, or {@code null} for a naive conversion.
+     */
+    FastCMYKToRGB(final JPEGColorSpace sourceCS, final ICC_ColorSpace cmykCS) {
+        Validate.isTrue(sourceCS == null || sourceCS == JPEGColorSpace.CMYK || sourceCS == JPEGColorSpace.YCCK, sourceCS, "only CMYK or YCCK source supported: %s");
+        Validate.isTrue(cmykCS == null || cmykCS.getType() == ColorSpace.TYPE_CMYK, cmykCS, "not a CMYK color space: %s");
+
+        this.sourceCS = sourceCS;
+        this.table = cmykCS != null ? ColorSpaces.getSRGBLookupTable(cmykCS) : null;
     }
 
     /**
@@ -81,62 +132,193 @@ class FastCMYKToRGB implements /*BufferedImageOp,*/ RasterOp {
         final int height = src.getHeight();
         final int width = src.getWidth();
 
-        final byte[] in = new byte[src.getNumDataElements()]; // CMYK
+        final int[] rgb = new int[width];
 
-        if (dest.getTransferType() == DataBuffer.TYPE_BYTE) {
-            final byte[] out = new byte[dest.getNumDataElements()];
+        // Source is read directly from the data array if possible, otherwise through a row of data elements
+        byte[] srcData = null;
+        byte[] srcRow = null;
+        int srcOffset = 0;
+        int srcPixelStride = src.getNumDataElements();
+        int srcScanlineStride = 0;
+        int[] srcBandOffsets = CMYK_OFFSETS;
 
-            if (out.length > 3) {
-                out[3] = (byte) 0xFF;
-            }
+        if (src.getSampleModel() instanceof PixelInterleavedSampleModel && src.getDataBuffer() instanceof DataBufferByte) {
+            PixelInterleavedSampleModel sampleModel = (PixelInterleavedSampleModel) src.getSampleModel();
 
-            for (int y = dest.getMinY(); y < height; y++) {
-                for (int x = dest.getMinX(); x < width; x++) {
-                    src.getDataElements(x, y, in);
-                    convertCMYKToRGB(in, out);
-                    dest.setDataElements(x, y, out);
-                }
-            }
+            srcData = ((DataBufferByte) src.getDataBuffer()).getData();
+            srcPixelStride = sampleModel.getPixelStride();
+            srcScanlineStride = sampleModel.getScanlineStride();
+            srcBandOffsets = sampleModel.getBandOffsets();
+            srcOffset = src.getDataBuffer().getOffset()
+                    + (src.getMinY() - src.getSampleModelTranslateY()) * srcScanlineStride
+                    + (src.getMinX() - src.getSampleModelTranslateX()) * srcPixelStride;
         }
-        else if (dest.getTransferType() == DataBuffer.TYPE_INT) {
-            final int[] out = new int[dest.getNumDataElements()];
-            final byte[] temp = new byte[3]; // RGB
 
-            // Special case for INT_BGR types, as bit offsets are not handled in setDataElements like for the byte raster case
-            int[] bitOffsets;
-            SampleModel sm = dest.getSampleModel();
-            if (sm instanceof SinglePixelPackedSampleModel) {
-                bitOffsets = ((SinglePixelPackedSampleModel) sm).getBitOffsets();
+        // Destination is written directly to the data array if possible, otherwise as a row of samples
+        Object destData = null;
+        int[] destRow = null;
+        int destOffset = 0;
+        int destPixelStride = 1;
+        int destScanlineStride = 0;
+        int[] destOffsets = null; // Band offsets for byte data, bit offsets for int data
+        int destBands = dest.getNumBands();
+
+        if (dest.getSampleModel() instanceof PixelInterleavedSampleModel && dest.getDataBuffer() instanceof DataBufferByte) {
+            PixelInterleavedSampleModel sampleModel = (PixelInterleavedSampleModel) dest.getSampleModel();
+
+            destData = ((DataBufferByte) dest.getDataBuffer()).getData();
+            destPixelStride = sampleModel.getPixelStride();
+            destScanlineStride = sampleModel.getScanlineStride();
+            destOffsets = sampleModel.getBandOffsets();
+        }
+        else if (dest.getSampleModel() instanceof SinglePixelPackedSampleModel && dest.getDataBuffer() instanceof DataBufferInt
+                && hasByteSamples(dest.getSampleModel())) {
+            SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) dest.getSampleModel();
+
+            destData = ((DataBufferInt) dest.getDataBuffer()).getData();
+            destScanlineStride = sampleModel.getScanlineStride();
+            destOffsets = sampleModel.getBitOffsets();
+        }
+        else {
+            destRow = new int[width * destBands];
+        }
+
+        if (destData != null) {
+            destOffset = dest.getDataBuffer().getOffset()
+                    + (dest.getMinY() - dest.getSampleModelTranslateY()) * destScanlineStride
+                    + (dest.getMinX() - dest.getSampleModelTranslateX()) * destPixelStride;
+        }
+
+        for (int y = 0; y < height; y++) {
+            if (srcData != null) {
+                convertRow(srcData, srcOffset + y * srcScanlineStride, srcPixelStride, srcBandOffsets, rgb);
             }
             else {
-                bitOffsets = new int[]{0, 8, 16};
+                srcRow = (byte[]) src.getDataElements(src.getMinX(), src.getMinY() + y, width, 1, srcRow);
+                convertRow(srcRow, 0, srcPixelStride, srcBandOffsets, rgb);
             }
 
-            final int alpha = bitOffsets.length > 3 ? 0xFF : 0x00;
+            if (destData instanceof byte[]) {
+                storeRow(rgb, (byte[]) destData, destOffset + y * destScanlineStride, destPixelStride, destOffsets, destBands);
+            }
+            else if (destData instanceof int[]) {
+                storeRow(rgb, (int[]) destData, destOffset + y * destScanlineStride, destOffsets, destBands);
+            }
+            else {
+                for (int x = 0, i = 0; x < width; x++, i += destBands) {
+                    destRow[i    ] = rgb[x] >> 16 & 0xFF;
+                    destRow[i + 1] = rgb[x] >> 8 & 0xFF;
+                    destRow[i + 2] = rgb[x] & 0xFF;
 
-            for (int y = dest.getMinY(); y < height; y++) {
-                for (int x = dest.getMinX(); x < width; x++) {
-                    src.getDataElements(x, y, in);
-                    convertCMYKToRGB(in, temp);
-                    out[0] = alpha << 24 | (temp[0] & 0xFF) << bitOffsets[0] | (temp[1] & 0xFF) << bitOffsets[1] | (temp[2] & 0xFF) << bitOffsets[2];
-                    dest.setDataElements(x, y, out);
+                    if (destBands > 3) {
+                        destRow[i + 3] = 0xFF;
+                    }
                 }
+
+                dest.setPixels(dest.getMinX(), dest.getMinY() + y, width, 1, destRow);
             }
         }
+
+        return dest;
+    }
+
+    private static boolean hasByteSamples(final SampleModel sampleModel) {
+        for (int sampleSize : sampleModel.getSampleSize()) {
+            if (sampleSize != 8) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void convertRow(final byte[] data, final int offset, final int pixelStride, final int[] bandOffsets, final int[] rgb) {
+        // One loop per source encoding, to keep the inner loops small
+        if (sourceCS == JPEGColorSpace.YCCK) {
+            convertYCCKRow(data, offset, pixelStride, bandOffsets, rgb);
+        }
         else {
-            // This is already tested for
-            throw new AssertionError();
+            convertCMYKRow(data, offset, pixelStride, bandOffsets, rgb, sourceCS == JPEGColorSpace.CMYK ? 0xFF : 0);
         }
+    }
 
-        return dest;
+    private void convertCMYKRow(final byte[] data, final int offset, final int pixelStride, final int[] bandOffsets, final int[] rgb, final int invert) {
+        final int o0 = bandOffsets[0];
+        final int o1 = bandOffsets[1];
+        final int o2 = bandOffsets[2];
+        final int o3 = bandOffsets[3];
+
+        for (int x = 0, i = offset; x < rgb.length; x++, i += pixelStride) {
+            int c = (data[i + o0] ^ invert) & 0xFF;
+            int m = (data[i + o1] ^ invert) & 0xFF;
+            int y = (data[i + o2] ^ invert) & 0xFF;
+            int k = (data[i + o3] ^ invert) & 0xFF;
+
+            rgb[x] = table != null ? table.toRGB(c, m, y, k) : convertCMYKToRGB(c, m, y, k);
+        }
     }
 
-    private void convertCMYKToRGB(byte[] cmyk, byte[] rgb) {
+    private void convertYCCKRow(final byte[] data, final int offset, final int pixelStride, final int[] bandOffsets, final int[] rgb) {
+        final int o0 = bandOffsets[0];
+        final int o1 = bandOffsets[1];
+        final int o2 = bandOffsets[2];
+        final int o3 = bandOffsets[3];
+
+        for (int x = 0, i = offset; x < rgb.length; x++, i += pixelStride) {
+            // Inverted YCC, same as YCbCrConverter.convertYCCK2CMYK
+            int luma = ~data[i + o0] & 0xFF;
+            int cb = ~data[i + o1] & 0xFF;
+            int cr = ~data[i + o2] & 0xFF;
+
+            int c = clamp(MAXJSAMPLE - (luma + Cr_R_LUT[cr]));
+            int m = clamp(MAXJSAMPLE - (luma + (Cb_G_LUT[cb] + Cr_G_LUT[cr] >> SCALEBITS)));
+            int y = clamp(MAXJSAMPLE - (luma + Cb_B_LUT[cb]));
+            int k = ~data[i + o3] & 0xFF; // K passes through unchanged
+
+            rgb[x] = table != null ? table.toRGB(c, m, y, k) : convertCMYKToRGB(c, m, y, k);
+        }
+    }
+
+    private static int clamp(final int value) {
+        // Table lookup, as branches are unpredictable for noisy data
+        return CLAMP[value + CLAMP_OFFSET];
+    }
+
+    private static void storeRow(final int[] rgb, final byte[] data, final int offset, final int pixelStride, final int[] bandOffsets, final int bands) {
+        final int r = bandOffsets[0];
+        final int g = bandOffsets[1];
+        final int b = bandOffsets[2];
+        final int a = bands > 3 ? bandOffsets[3] : -1;
+
+        for (int x = 0, i = offset; x < rgb.length; x++, i += pixelStride) {
+            data[i + r] = (byte) (rgb[x] >> 16);
+            data[i + g] = (byte) (rgb[x] >> 8);
+            data[i + b] = (byte) rgb[x];
+
+            if (a >= 0) {
+                data[i + a] = (byte) 0xFF;
+            }
+        }
+    }
+
+    private static void storeRow(final int[] rgb, final int[] data, final int offset, final int[] bitOffsets, final int bands) {
+        final int r = bitOffsets[0];
+        final int g = bitOffsets[1];
+        final int b = bitOffsets[2];
+        final int alpha = bands > 3 ? 0xFF << bitOffsets[3] : 0;
+
+        for (int x = 0; x < rgb.length; x++) {
+            data[offset + x] = alpha | (rgb[x] >> 16 & 0xFF) << r | (rgb[x] >> 8 & 0xFF) << g | (rgb[x] & 0xFF) << b;
+        }
+    }
+
+    private static int convertCMYKToRGB(final int c, final int m, final int y, final int k) {
         // Adapted from http://www.easyrgb.com/index.php?X=MATH
-        final int k = cmyk[3] & 0xFF;
-        rgb[0] = (byte) (255 - (((cmyk[0] & 0xFF) * (255 - k) / 255) + k));
-        rgb[1] = (byte) (255 - (((cmyk[1] & 0xFF) * (255 - k) / 255) + k));
-        rgb[2] = (byte) (255 - (((cmyk[2] & 0xFF) * (255 - k) / 255) + k));
+        int r = 255 - (c * (255 - k) / 255 + k);
+        int g = 255 - (m * (255 - k) / 255 + k);
+        int b = 255 - (y * (255 - k) / 255 + k);
+
+        return r << 16 | g << 8 | b;
     }
 
     public Rectangle2D getBounds2D(Raster src) {
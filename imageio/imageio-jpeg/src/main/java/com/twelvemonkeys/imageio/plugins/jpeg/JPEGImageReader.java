@@ -102,6 +102,13 @@ public class JPEGImageReader extends ImageReaderBase {
 
     final static boolean DEBUG = "true".equalsIgnoreCase(System.getProperty("com.twelvemonkeys.imageio.plugins.jpeg.debug"));
 
+    /**
+     * Convert CMYK and YCCK images using an interpolated color table, instead of {@code ColorConvertOp}.
+     * Applies to images with embedded ICC profiles, and to images converted using the "generic" CMYK profile.
+     * Many times faster, but colors may differ slightly from the exact conversion.
+     */
+    final static boolean FAST_ICC_CMYK = "true".equalsIgnoreCase(System.getProperty("com.twelvemonkeys.imageio.plugins.jpeg.fastICCCMYK"));
+
     /** Internal constant for referring all APP segments */
     static final int ALL_APP_MARKERS = -1;
 
@@ -389,7 +396,13 @@ public class JPEGImageReader extends ImageReaderBase {
                 if (DEBUG) {
                     System.err.println("Converting from " + intendedCS + " to " + (image.getColorModel().getColorSpace().isCS_sRGB() ? "sRGB" : image.getColorModel().getColorSpace()));
                 }
-                convert = new ColorConvertOp(intendedCS, image.getColorModel().getColorSpace(), null);
+
+                if (FAST_ICC_CMYK && isCMYKToSRGB(csType, intendedCS, image)) {
+                    convert = new FastCMYKToRGB(csType, intendedCS);
+                }
+                else {
+                    convert = new ColorConvertOp(intendedCS, image.getColorModel().getColorSpace(), null);
+                }
             }
             // Else, pass through with no conversion
         }
@@ -402,7 +415,12 @@ public class JPEGImageReader extends ImageReaderBase {
                                 "Colors may look incorrect."
                 );
 
-                convert = new ColorConvertOp(cmykCS, image.getColorModel().getColorSpace(), null);
+                if (FAST_ICC_CMYK && isCMYKToSRGB(csType, cmykCS, image)) {
+                    convert = new FastCMYKToRGB(csType, (ICC_ColorSpace) cmykCS);
+                }
+                else {
+                    convert = new ColorConvertOp(cmykCS, image.getColorModel().getColorSpace(), null);
+                }
             }
             else {
                 // ColorConvertOp using non-ICC CS is deadly slow, fall back to fast conversion instead
@@ -411,7 +429,7 @@ public class JPEGImageReader extends ImageReaderBase {
                                 "Colors may look incorrect."
                 );
 
-                convert = new FastCMYKToRGB();
+                convert = new FastCMYKToRGB(csType);
             }
         }
         else if (profile != null) {
@@ -453,7 +471,10 @@ public class JPEGImageReader extends ImageReaderBase {
                 Raster raster = delegate.readRaster(imageIndex, param); // non-converted
 
                 // Apply source color conversion from implicit color space
-                if (csType == JPEGColorSpace.YCbCr || csType == JPEGColorSpace.YCbCrA) {
+                if (convert instanceof FastCMYKToRGB) {
+                    // YCCK/CMYK decoding is done in the same pass as the conversion to RGB
+                }
+                else if (csType == JPEGColorSpace.YCbCr || csType == JPEGColorSpace.YCbCrA) {
                     YCbCrConverter.convertYCbCr2RGB(raster);
                 }
                 else if (csType == JPEGColorSpace.YCCK) {
@@ -1063,6 +1084,12 @@ public class JPEGImageReader extends ImageReaderBase {
         super.processWarningOccurred(warning);
     }
 
+    private static boolean isCMYKToSRGB(final JPEGColorSpace csType, final ColorSpace cmykCS, final BufferedImage image) {
+        return (csType == JPEGColorSpace.CMYK || csType == JPEGColorSpace.YCCK)
+                && cmykCS instanceof ICC_ColorSpace && cmykCS.getType() == ColorSpace.TYPE_CMYK
+                && image.getColorModel().getColorSpace().isCS_sRGB();
+    }
+
     private static void invertCMYK(final Raster raster) {
         byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
 
@@ -1076,15 +1103,16 @@ public class JPEGImageReader extends ImageReaderBase {
      */
     static final class YCbCrConverter {
         /** Define tables for YCC->RGB color space conversion. */
-        private final static int SCALEBITS = 16;
-        private final static int MAXJSAMPLE = 255;
+        final static int SCALEBITS = 16;
+        final static int MAXJSAMPLE = 255;
         private final static int CENTERJSAMPLE = 128;
         private final static int ONE_HALF = 1 << (SCALEBITS - 1);
 
-        private final static int[] Cr_R_LUT = new int[MAXJSAMPLE + 1];
-        private final static int[] Cb_B_LUT = new int[MAXJSAMPLE + 1];
-        private final static int[] Cr_G_LUT = new int[MAXJSAMPLE + 1];
-        private final static int[] Cb_G_LUT = new int[MAXJSAMPLE + 1];
+        // Package access, for FastCMYKToRGB
+        final static int[] Cr_R_LUT = new int[MAXJSAMPLE + 1];
+        final static int[] Cb_B_LUT = new int[MAXJSAMPLE + 1];
+        final static int[] Cr_G_LUT = new int[MAXJSAMPLE + 1];
+        final static int[] Cb_G_LUT = new int[MAXJSAMPLE + 1];
 
         /**
          * Initializes tables for YCC->RGB color space conversion.
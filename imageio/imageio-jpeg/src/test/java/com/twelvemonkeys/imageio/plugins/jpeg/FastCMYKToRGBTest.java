@@ -30,11 +30,9 @@ package com.twelvemonkeys.imageio.plugins.jpeg;
 
 import org.junit.Test;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBuffer;
-import java.awt.image.Raster;
-import java.awt.image.WritableRaster;
+import java.awt.image.*;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -232,4 +230,91 @@ public class FastCMYKToRGBTest {
             assertEquals(String.format("Was: 0x%08x, expected: 0x%08x", pixel[0], expected), expected, pixel[0]);
         }
     }
+
+    private static WritableRaster createRandomRaster(final int width, final int height) {
+        WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, width, height, 4, null);
+        new Random(42).nextBytes(((DataBufferByte) raster.getDataBuffer()).getData());
+        return raster;
+    }
+
+    private static WritableRaster copy(final Raster raster) {
+        WritableRaster copy = raster.createCompatibleWritableRaster();
+        copy.setRect(raster);
+        return copy;
+    }
+
+    private static void assertPixelsEqual(final Raster expected, final Raster actual) {
+        // Compare RGB, ignore alpha
+        for (int band = 0; band < 3; band++) {
+            assertArrayEquals(
+                    expected.getSamples(expected.getMinX(), expected.getMinY(), expected.getWidth(), expected.getHeight(), band, (int[]) null),
+                    actual.getSamples(actual.getMinX(), actual.getMinY(), actual.getWidth(), actual.getHeight(), band, (int[]) null)
+            );
+        }
+    }
+
+    @Test
+    public void testConvertYCCKSameAsTwoPass() {
+        WritableRaster ycck = createRandomRaster(67, 31);
+
+        WritableRaster cmyk = copy(ycck);
+        JPEGImageReader.YCbCrConverter.convertYCCK2CMYK(cmyk);
+        WritableRaster expected = new FastCMYKToRGB().filter(cmyk, null);
+
+        assertPixelsEqual(expected, new FastCMYKToRGB(JPEGColorSpace.YCCK).filter(ycck, null));
+    }
+
+    @Test
+    public void testConvertInvertedCMYKSameAsTwoPass() {
+        WritableRaster inverted = createRandomRaster(67, 31);
+
+        WritableRaster cmyk = copy(inverted);
+        byte[] data = ((DataBufferByte) cmyk.getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (255 - data[i] & 0xff);
+        }
+        WritableRaster expected = new FastCMYKToRGB().filter(cmyk, null);
+
+        assertPixelsEqual(expected, new FastCMYKToRGB(JPEGColorSpace.CMYK).filter(inverted, null));
+    }
+
+    @Test
+    public void testConvertChildRasters() {
+        WritableRaster input = createRandomRaster(50, 40);
+        WritableRaster expected = new FastCMYKToRGB().filter(input.createChild(10, 5, 20, 30, 0, 0, null), null);
+
+        // Translated and offset source and destination
+        Raster child = input.createChild(10, 5, 20, 30, 100, 200, null);
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR};
+
+        for (int type : types) {
+            WritableRaster dest = new BufferedImage(40, 40, type).getRaster().createWritableChild(7, 3, 20, 30, 0, 0, null);
+            WritableRaster result = new FastCMYKToRGB().filter(child, dest);
+
+            assertSame(dest, result);
+            assertPixelsEqual(expected, result);
+
+            if (result.getNumBands() > 3) {
+                assertEquals(255, result.getSample(19, 29, 3));
+            }
+        }
+    }
+
+    @Test
+    public void testConvertBandedRasters() {
+        // Not interleaved, converted using the general raster methods
+        WritableRaster input = createRandomRaster(23, 17);
+        WritableRaster expected = new FastCMYKToRGB().filter(input, null);
+
+        WritableRaster banded = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, 23, 17, 4, null);
+        banded.setRect(input);
+
+        WritableRaster result = new FastCMYKToRGB().filter(banded, Raster.createBandedRaster(DataBuffer.TYPE_BYTE, 23, 17, 3, null));
+        assertPixelsEqual(expected, result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateUnsupportedSource() {
+        new FastCMYKToRGB(JPEGColorSpace.YCbCr);
+    }
 }
@@ -82,6 +82,8 @@ public abstract class AbstractEntry implements Entry {
     }
 
     public String getValueAsString() {
+        Object value = getValue();
+
         if (valueCount() > 1) {
             if (valueCount() < 16) {
                 return arrayToString(value);
@@ -139,6 +141,8 @@ public abstract class AbstractEntry implements Entry {
     }
 
     public String getTypeName() {
+        Object value = getValue();
+
         if (value == null) {
             return null;
         }
@@ -148,6 +152,8 @@ public abstract class AbstractEntry implements Entry {
 
     public int valueCount() {
         // TODO: Collection support?
+        Object value = getValue();
+
         if (value != null && value.getClass().isArray()) {
             return Array.getLength(value);
         }
@@ -159,6 +165,8 @@ public abstract class AbstractEntry implements Entry {
 
     @Override
     public int hashCode() {
+        Object value = getValue();
+
         return identifier.hashCode() + (value != null ? 31 * value.hashCode() : 0);
     }
 
@@ -172,9 +180,11 @@ public abstract class AbstractEntry implements Entry {
         }
 
         AbstractEntry other = (AbstractEntry) pOther;
-        
+        Object value = getValue();
+        Object otherValue = other.getValue();
+
         return identifier.equals(other.identifier) && (
-                value == null && other.value == null || value != null && value.equals(other.value)
+                value == null && otherValue == null || value != null && value.equals(otherValue)
         );
     }
 
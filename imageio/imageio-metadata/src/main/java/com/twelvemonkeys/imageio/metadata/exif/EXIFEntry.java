@@ -56,6 +56,18 @@ final class EXIFEntry extends AbstractEntry {
         return type;
     }
 
+    @Override
+    public Object getValue() {
+        Object value = super.getValue();
+
+        // Large values in lazily read directories are read from the stream on first access
+        if (value instanceof EXIFReader.DeferredValue) {
+            return ((EXIFReader.DeferredValue) value).getValue();
+        }
+
+        return value;
+    }
+
     @Override
     public String getFieldName() {
         switch ((Integer) getIdentifier()) {
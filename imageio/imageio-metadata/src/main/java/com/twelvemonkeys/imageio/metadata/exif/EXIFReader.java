@@ -28,7 +28,6 @@
 
 package com.twelvemonkeys.imageio.metadata.exif;
 
-import com.twelvemonkeys.imageio.metadata.AbstractCompoundDirectory;
 import com.twelvemonkeys.imageio.metadata.Directory;
 import com.twelvemonkeys.imageio.metadata.Entry;
 import com.twelvemonkeys.imageio.metadata.MetadataReader;
@@ -38,6 +37,7 @@ import com.twelvemonkeys.lang.Validate;
 import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteOrder;
@@ -54,8 +54,32 @@ import java.util.*;
 public final class EXIFReader extends MetadataReader {
     static final Collection<Integer> KNOWN_IFDS = Collections.unmodifiableCollection(Arrays.asList(TIFF.TAG_EXIF_IFD, TIFF.TAG_GPS_IFD, TIFF.TAG_INTEROP_IFD));
 
+    /**
+     * Values larger than this (in bytes) are not read up front, when reading lazily.
+     */
+    static final int DEFERRED_VALUE_LENGTH = 64;
+
     @Override
     public Directory read(final ImageInputStream input) throws IOException {
+        return read(input, false);
+    }
+
+    /**
+     * Reads the TIFF structure from the given stream.
+     * <p/>
+     * If {@code lazy} is {@code true}, only the offsets of the linked IFDs are read up front,
+     * and each IFD is parsed the first time it is accessed.
+     * Values larger than {@value #DEFERRED_VALUE_LENGTH} bytes, like the {@code StripOffsets} of a
+     * large image, are not read until the value of the entry is requested.
+     * The stream must be kept open, and not flushed, as long as a lazily read directory is in use.
+     * Stream position and byte order is restored after each read.
+     *
+     * @param input the input stream.
+     * @param lazy {@code true} if the IFDs and large values should be read on demand.
+     * @return a {@code CompoundDirectory} with one {@code Directory} per IFD.
+     * @throws IOException if an I/O error occurs while reading the TIFF header or the chain of IFD offsets.
+     */
+    public Directory read(final ImageInputStream input, final boolean lazy) throws IOException {
         Validate.notNull(input, "input");
 
         byte[] bom = new byte[2];
@@ -80,19 +104,76 @@ public final class EXIFReader extends MetadataReader {
 
         long directoryOffset = input.readUnsignedInt();
 
-        return readDirectory(input, directoryOffset);
+        return lazy ? readDirectoryLazy(input, directoryOffset) : readDirectory(input, directoryOffset);
     }
 
     private Directory readDirectory(final ImageInputStream pInput, final long pOffset) throws IOException {
         List<IFD> ifds = new ArrayList<IFD>();
-        List<Entry> entries = new ArrayList<Entry>();
+        Set<Long> offsets = new HashSet<Long>();
+
+        // Read linked IFDs, until end of chain, or an IFD links back to an IFD already read
+        long nextOffset = pOffset;
+
+        while (nextOffset != 0 && offsets.add(nextOffset)) {
+            List<Entry> entries = new ArrayList<Entry>();
+            nextOffset = readIFD(pInput, nextOffset, entries, false);
+
+            ifds.add(new IFD(entries));
+        }
 
+        return new EXIFDirectory(ifds);
+    }
+
+    private Directory readDirectoryLazy(final ImageInputStream pInput, final long pOffset) throws IOException {
+        List<LazyIFD> ifds = new ArrayList<LazyIFD>();
+        Set<Long> offsets = new HashSet<Long>();
+        long length = pInput.length();
+
+        // Only record the offset of each IFD, skipping the entries
+        long nextOffset = pOffset;
+
+        while (nextOffset != 0 && offsets.add(nextOffset)) {
+            if (!ifds.isEmpty() && length >= 0 && nextOffset + 2 > length) {
+                // Link to an IFD outside the stream, ignore it, like the chain ends after a truncated IFD
+                break;
+            }
+
+            long offset = nextOffset;
+            pInput.seek(offset);
+            int entryCount = pInput.readUnsignedShort();
+
+            try {
+                pInput.seek(offset + 2 + entryCount * 12L);
+                nextOffset = pInput.readUnsignedInt();
+            }
+            catch (EOFException e) {
+                // The last IFD is truncated, or the entry count is wrong, it will be read as far as possible
+                nextOffset = 0;
+            }
+
+            ifds.add(new LazyIFD(this, pInput, offset));
+        }
+
+        return new EXIFDirectory(ifds);
+    }
+
+    /**
+     * Reads a single IFD, starting at the given offset.
+     *
+     * @param pInput the input stream.
+     * @param pOffset the offset of the IFD.
+     * @param pEntries the list to add the entries to.
+     * @param pLazy {@code true} if large values should be read on demand.
+     * @return the offset of the next IFD, or {@code 0} if this is the last IFD.
+     * @throws IOException if an I/O error occurs.
+     */
+    long readIFD(final ImageInputStream pInput, final long pOffset, final List<Entry> pEntries, final boolean pLazy) throws IOException {
         pInput.seek(pOffset);
         long nextOffset = -1;
         int entryCount = pInput.readUnsignedShort();
 
         for (int i = 0; i < entryCount; i++) {
-            EXIFEntry entry = readEntry(pInput);
+            EXIFEntry entry = readEntry(pInput, pLazy);
 
             if (entry == null) {
 //                System.err.println("Expected: " + entryCount + " values, found only " + i);
@@ -101,35 +182,26 @@ public final class EXIFReader extends MetadataReader {
                 break;
             }
 
-            entries.add(entry);
+            pEntries.add(entry);
         }
 
         if (nextOffset == -1) {
             nextOffset = pInput.readUnsignedInt();
         }
 
-        // Read linked IFDs
-        if (nextOffset != 0) {
-            AbstractCompoundDirectory next = (AbstractCompoundDirectory) readDirectory(pInput, nextOffset);
-            for (int i = 0; i < next.directoryCount(); i++) {
-                ifds.add((IFD) next.getDirectory(i));
-            }
-        }
-
         // TODO: Make what sub-IFDs to parse optional? Or leave this to client code? At least skip the non-TIFF data?
         // TODO: Put it in the constructor?
-        readSubdirectories(pInput, entries,
+        readSubdirectories(pInput, pEntries,
                 Arrays.asList(TIFF.TAG_EXIF_IFD, TIFF.TAG_GPS_IFD, TIFF.TAG_INTEROP_IFD
 //                        , TIFF.TAG_IPTC, TIFF.TAG_XMP
 //                        , TIFF.TAG_ICC_PROFILE
 //                        , TIFF.TAG_PHOTOSHOP
 //                        ,TIFF.TAG_MODI_OLE_PROPERTY_SET
-                )
+                ),
+                pLazy
         );
 
-        ifds.add(0, new IFD(entries));
-        
-        return new EXIFDirectory(ifds);
+        return nextOffset;
     }
 
 //    private Directory readForeignMetadata(final MetadataReader reader, final byte[] bytes) throws IOException {
@@ -137,7 +209,7 @@ public final class EXIFReader extends MetadataReader {
 //    }
 
     // TODO: Might be better to leave this for client code, as it's tempting go really overboard and support any possible embedded format..
-    private void readSubdirectories(ImageInputStream input, List<Entry> entries, List<Integer> subIFDs) throws IOException {
+    private void readSubdirectories(ImageInputStream input, List<Entry> entries, List<Integer> subIFDs, boolean lazy) throws IOException {
         if (subIFDs == null || subIFDs.isEmpty()) {
             return;
         }
@@ -177,7 +249,9 @@ public final class EXIFReader extends MetadataReader {
                         directory = new CompoundDocument(new ByteArrayInputStream((byte[]) entry.getValue())).getRootEntry();
                     }
                     else*/ if (KNOWN_IFDS.contains(tagId)) {
-                        directory = ((AbstractCompoundDirectory) readDirectory(input, getPointerOffset(entry))).getDirectory(0);
+                        List<Entry> subEntries = new ArrayList<Entry>();
+                        readIFD(input, getPointerOffset(entry), subEntries, lazy);
+                        directory = new IFD(subEntries);
                     }
                     else {
                         continue;
@@ -217,7 +291,7 @@ public final class EXIFReader extends MetadataReader {
         return offset;
     }
 
-    private EXIFEntry readEntry(final ImageInputStream pInput) throws IOException {
+    private EXIFEntry readEntry(final ImageInputStream pInput, final boolean pLazy) throws IOException {
         // TODO: BigTiff entries are different
         int tagId = pInput.readUnsignedShort();
         short type = pInput.readShort();
@@ -270,13 +344,19 @@ public final class EXIFReader extends MetadataReader {
         }
         else {
             long valueOffset = pInput.readUnsignedInt(); // This is the *value* iff the value size is <= 4 bytes
-            value = readValueAt(pInput, valueOffset, type, count);
+
+            if (pLazy && valueLength > DEFERRED_VALUE_LENGTH) {
+                value = new DeferredValue(pInput, pInput.getByteOrder(), valueOffset, type, count);
+            }
+            else {
+                value = readValueAt(pInput, valueOffset, type, count);
+            }
         }
 
         return new EXIFEntry(tagId, value, type);
     }
 
-    private Object readValueAt(final ImageInputStream pInput, final long pOffset, final short pType, final int pCount) throws IOException {
+    private static Object readValueAt(final ImageInputStream pInput, final long pOffset, final short pType, final int pCount) throws IOException {
         long pos = pInput.getStreamPosition();
         try {
             pInput.seek(pOffset);
@@ -446,6 +526,50 @@ public final class EXIFReader extends MetadataReader {
         return new Rational(numerator, denominator);
     }
 
+    /**
+     * A value that is read from the stream the first time it is requested.
+     */
+    static final class DeferredValue {
+        private final ImageInputStream input;
+        private final ByteOrder byteOrder;
+        private final long offset;
+        private final short type;
+        private final int count;
+
+        private Object value;
+
+        DeferredValue(final ImageInputStream input, final ByteOrder byteOrder, final long offset, final short type, final int count) {
+            this.input = input;
+            this.byteOrder = byteOrder;
+            this.offset = offset;
+            this.type = type;
+            this.count = count;
+        }
+
+        synchronized Object getValue() {
+            if (value == null) {
+                synchronized (input) {
+                    try {
+                        ByteOrder originalOrder = input.getByteOrder();
+                        input.setByteOrder(byteOrder);
+
+                        try {
+                            value = readValueAt(input, offset, type, count);
+                        }
+                        finally {
+                            input.setByteOrder(originalOrder);
+                        }
+                    }
+                    catch (IOException e) {
+                        throw new IllegalStateException(String.format("Could not read value @%08x: %s", offset, e.getMessage()), e);
+                    }
+                }
+            }
+
+            return value;
+        }
+    }
+
     static int getValueLength(final int pType, final int pCount) {
         if (pType > 0 && pType <= TIFF.TYPE_LENGTHS.length) {
             return TIFF.TYPE_LENGTHS[pType - 1] * pCount;
@@ -0,0 +1,600 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.metadata.exif;
+
+import com.twelvemonkeys.imageio.metadata.CompoundDirectory;
+import com.twelvemonkeys.imageio.metadata.Directory;
+import com.twelvemonkeys.imageio.metadata.Entry;
+import com.twelvemonkeys.imageio.metadata.MetadataWriter;
+import com.twelvemonkeys.lang.Validate;
+
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Writes TIFF structured metadata, like the contents of an EXIF segment.
+ * <p/>
+ * All offsets are relative to the start of the TIFF header, which is the current stream position when writing starts.
+ * The byte order of the stream is used.
+ * Entries whose value is a {@code Directory} (the EXIF, GPS and Interoperability IFDs) are written as sub-IFDs,
+ * following the values of the IFD that contains them.
+ * <p/>
+ * The data referenced by the {@code StripOffsets}, {@code TileOffsets} and {@code JPEGInterchangeFormat} entries
+ * (like the JPEG thumbnail in IFD1) is not part of the directory. It is copied from the stream the directory was read
+ * from, and written after the values of the IFD, with new offsets.
+ * Without the source stream, the {@code JPEGInterchangeFormat} and {@code JPEGInterchangeFormatLength} entries
+ * are not written, so an IFD1 is written without its thumbnail.
+ * Other entries with offsets to data outside the IFD, like {@code SubIFDs} that are not parsed by the reader,
+ * can't be written.
+ * <p/>
+ * Values are written as is, wherever they end up in the output. The {@code MakerNote} is not supported, in the sense
+ * that offsets inside it are not relocated. Maker notes that contain offsets relative to the TIFF header will not be
+ * readable from the written data.
+ *
+ * @see EXIFReader
+ */
+public final class EXIFWriter extends MetadataWriter {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Entries with offsets to data outside the IFD, and the entries with the lengths of the same data
+    private static final int[][] DATA_TAGS = {
+            {TIFF.TAG_STRIP_OFFSETS, TIFF.TAG_STRIP_BYTE_COUNTS},
+            {TIFF.TAG_TILE_OFFSETS, TIFF.TAG_TILE_BYTE_COUNTS},
+            {TIFF.TAG_JPEG_INTERCHANGE_FORMAT, TIFF.TAG_JPEG_INTERCHANGE_FORMAT_LENGTH}
+    };
+
+    // Entries with offsets to data of unknown length, that can only be written if the value is a Directory
+    private static final Collection<Integer> OFFSET_TAGS = Collections.unmodifiableCollection(Arrays.asList(
+            TIFF.TAG_SUB_IFD, TIFF.TAG_EXIF_IFD, TIFF.TAG_GPS_IFD, TIFF.TAG_INTEROP_IFD,
+            TIFF.TAG_OLD_JPEG_Q_TABLES, TIFF.TAG_OLD_JPEG_DC_TABLES, TIFF.TAG_OLD_JPEG_AC_TABLES
+    ));
+
+    /**
+     * Writes the TIFF header, followed by the IFDs of the given directory.
+     * If the directory is a {@code CompoundDirectory}, each of its directories is written as a linked IFD.
+     * Any JPEG thumbnail is left out, as the data can't be copied without the source stream.
+     *
+     * @param directory the directory to write.
+     * @param output the stream to write to.
+     * @throws IOException if an I/O error occurs, or if an entry has a value that can't be written,
+     *                     or references strip or tile data outside the IFD.
+     *
+     * @see #write(Directory, ImageOutputStream, ImageInputStream)
+     */
+    @Override
+    public void write(final Directory directory, final ImageOutputStream output) throws IOException {
+        write(directory, output, null);
+    }
+
+    /**
+     * Writes the TIFF header, followed by the IFDs of the given directory, and the data referenced by the
+     * {@code StripOffsets}, {@code TileOffsets} and {@code JPEGInterchangeFormat} entries.
+     * If the directory is a {@code CompoundDirectory}, each of its directories is written as a linked IFD.
+     * <p/>
+     * The referenced data is copied as is from {@code source}, so image data with more than 8 bits per sample
+     * should be written in the byte order of the source.
+     * The position of the source stream is restored after writing.
+     *
+     * @param directory the directory to write.
+     * @param output the stream to write to.
+     * @param source the stream the directory was read from, or {@code null} to leave out any JPEG thumbnail.
+     *               Offsets in the directory are positions in this stream, as for directories read by {@link EXIFReader}.
+     * @throws IOException if an I/O error occurs, if an entry has a value that can't be written, or references data
+     *                     outside the IFD that can't be copied.
+     */
+    public void write(final Directory directory, final ImageOutputStream output, final ImageInputStream source) throws IOException {
+        Validate.notNull(directory, "directory");
+        Validate.notNull(output, "output");
+
+        long sourcePosition = source != null ? source.getStreamPosition() : -1;
+
+        try {
+            writeIFDs(directory, output, source);
+        }
+        finally {
+            if (source != null) {
+                source.seek(sourcePosition);
+            }
+        }
+    }
+
+    private void writeIFDs(final Directory directory, final ImageOutputStream output, final ImageInputStream source) throws IOException {
+        long start = output.getStreamPosition();
+
+        output.writeShort(output.getByteOrder() == ByteOrder.BIG_ENDIAN ? TIFF.BYTE_ORDER_MARK_BIG_ENDIAN : TIFF.BYTE_ORDER_MARK_LITTLE_ENDIAN);
+        output.writeShort(TIFF.TIFF_MAGIC);
+        output.writeInt(8);
+
+        List<Directory> ifds = new ArrayList<Directory>();
+
+        if (directory instanceof CompoundDirectory) {
+            CompoundDirectory compound = (CompoundDirectory) directory;
+
+            for (int i = 0; i < compound.directoryCount(); i++) {
+                ifds.add(compound.getDirectory(i));
+            }
+        }
+        else {
+            ifds.add(directory);
+        }
+
+        long offset = 8;
+
+        for (int i = 0; i < ifds.size(); i++) {
+            WritableIFD ifd = getWritableIFD(ifds.get(i), source);
+            long nextOffset = i < ifds.size() - 1 ? offset + computeIFDLength(ifd, source) : 0;
+
+            writeIFD(ifd, output, source, start, nextOffset);
+            offset = nextOffset;
+        }
+    }
+
+    // The number of bytes needed to write the IFD, including values, referenced data and sub-IFDs
+    private long computeIFDLength(final WritableIFD ifd, final ImageInputStream source) throws IOException {
+        long length = getDirectoryLength(ifd.entries.size()) + getValuesLength(ifd.entries) + ifd.getDataLength();
+
+        for (Entry entry : ifd.entries) {
+            Object value = entry.getValue();
+
+            if (value instanceof Directory) {
+                length += computeIFDLength(getWritableIFD((Directory) value, source), source);
+            }
+        }
+
+        return length;
+    }
+
+    // The number of bytes needed for the values that does not fit in the entries
+    private static long getValuesLength(final List<Entry> entries) throws IOException {
+        long length = 0;
+
+        for (Entry entry : entries) {
+            Object value = entry.getValue();
+
+            if (!(value instanceof Directory)) {
+                long valueLength = getValueLength(getType(entry), value);
+
+                if (valueLength > 4) {
+                    length += valueLength + (valueLength & 1);
+                }
+            }
+        }
+
+        return length;
+    }
+
+    private static long getDirectoryLength(final int entryCount) {
+        return 2 + entryCount * 12L + 4;
+    }
+
+    private static WritableIFD getWritableIFD(final Directory directory, final ImageInputStream source) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>(directory.size());
+        List<DataReference> references = new ArrayList<DataReference>();
+
+        for (Entry entry : directory) {
+            Object value = entry.getValue();
+
+            // Values of unknown types are not kept by the reader, and can't be written
+            if (value instanceof Unknown) {
+                continue;
+            }
+
+            int tag = getTag(entry);
+
+            // The thumbnail is optional, leave it out if we can't copy it
+            if (source == null && (tag == TIFF.TAG_JPEG_INTERCHANGE_FORMAT || tag == TIFF.TAG_JPEG_INTERCHANGE_FORMAT_LENGTH)) {
+                continue;
+            }
+
+            if (OFFSET_TAGS.contains(tag) && !(value instanceof Directory)) {
+                throw new IIOException(String.format("Can't write tag %d, it references data of unknown length outside the IFD", tag));
+            }
+
+            entries.add(entry);
+        }
+
+        // Replace the offsets to data outside the IFD, with the offsets of the copied data
+        for (int[] tags : DATA_TAGS) {
+            Entry offsetsEntry = directory.getEntryById(tags[0]);
+
+            if (offsetsEntry == null || source == null && tags[0] == TIFF.TAG_JPEG_INTERCHANGE_FORMAT) {
+                continue;
+            }
+
+            if (source == null) {
+                throw new IIOException(String.format("Can't write tag %d without the source stream, it references data outside the IFD", tags[0]));
+            }
+
+            Entry lengthsEntry = directory.getEntryById(tags[1]);
+
+            if (lengthsEntry == null) {
+                throw new IIOException(String.format("Can't write tag %d, the length of the data is missing (tag %d)", tags[0], tags[1]));
+            }
+
+            long[] sourceOffsets = toLongs(offsetsEntry);
+            long[] lengths = toLongs(lengthsEntry);
+
+            if (sourceOffsets.length != lengths.length) {
+                throw new IIOException(String.format("Can't write tag %d, %d offsets, but %d lengths (tag %d)", tags[0], sourceOffsets.length, lengths.length, tags[1]));
+            }
+
+            DataReference reference = new DataReference(sourceOffsets, lengths);
+            references.add(reference);
+
+            for (int i = 0; i < entries.size(); i++) {
+                if (getTag(entries.get(i)) == tags[0]) {
+                    entries.set(i, new EXIFEntry(tags[0], reference.offsets, TIFF.TYPE_LONG));
+                }
+            }
+        }
+
+        // TIFF requires entries to be sorted by tag, in ascending order
+        Collections.sort(entries, new Comparator<Entry>() {
+            public int compare(final Entry left, final Entry right) {
+                return getTag(left) - getTag(right);
+            }
+        });
+
+        return new WritableIFD(entries, references);
+    }
+
+    private static long[] toLongs(final Entry entry) throws IIOException {
+        Object value = entry.getValue();
+
+        if (value instanceof Number) {
+            return new long[] {((Number) value).longValue()};
+        }
+        else if (value instanceof short[]) {
+            short[] shorts = (short[]) value;
+            long[] longs = new long[shorts.length];
+
+            for (int i = 0; i < shorts.length; i++) {
+                longs[i] = shorts[i] & 0xffff;
+            }
+
+            return longs;
+        }
+        else if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            long[] longs = new long[ints.length];
+
+            for (int i = 0; i < ints.length; i++) {
+                longs[i] = ints[i] & 0xffffffffL;
+            }
+
+            return longs;
+        }
+        else if (value instanceof long[]) {
+            return (long[]) value;
+        }
+
+        throw new IIOException(String.format("Unsupported value for tag %s: %s", entry.getIdentifier(), value != null ? value.getClass() : null));
+    }
+
+    private void writeIFD(final WritableIFD ifd, final ImageOutputStream output, final ImageInputStream source, final long start, final long nextOffset) throws IOException {
+        List<Entry> entries = ifd.entries;
+
+        // Values that does not fit in the entry are written after the IFD, aligned on word boundaries,
+        // followed by the referenced data, and sub-IFDs
+        long valueOffset = output.getStreamPosition() - start + getDirectoryLength(entries.size());
+        long dataOffset = valueOffset + getValuesLength(entries);
+
+        for (DataReference reference : ifd.references) {
+            for (int i = 0; i < reference.offsets.length; i++) {
+                reference.offsets[i] = dataOffset;
+                dataOffset += reference.lengths[i] + (reference.lengths[i] & 1);
+            }
+        }
+
+        long subIFDOffset = dataOffset;
+
+        output.writeShort(entries.size());
+
+        for (Entry entry : entries) {
+            Object value = entry.getValue();
+
+            output.writeShort(getTag(entry));
+
+            if (value instanceof Directory) {
+                short type = entry instanceof EXIFEntry ? ((EXIFEntry) entry).getType() : TIFF.TYPE_LONG;
+
+                output.writeShort(type == TIFF.TYPE_IFD ? TIFF.TYPE_IFD : TIFF.TYPE_LONG);
+                output.writeInt(1);
+                output.writeInt((int) subIFDOffset);
+
+                subIFDOffset += computeIFDLength(getWritableIFD((Directory) value, source), source);
+            }
+            else {
+                short type = getType(entry);
+                long length = getValueLength(type, value);
+
+                output.writeShort(type);
+                output.writeInt(getCount(type, value));
+
+                if (length <= 4) {
+                    writeValue(type, value, output);
+
+                    for (long i = length; i < 4; i++) {
+                        output.writeByte(0);
+                    }
+                }
+                else {
+                    output.writeInt((int) valueOffset);
+                    valueOffset += length + (length & 1);
+                }
+            }
+        }
+
+        output.writeInt((int) nextOffset);
+
+        for (Entry entry : entries) {
+            Object value = entry.getValue();
+
+            if (!(value instanceof Directory)) {
+                short type = getType(entry);
+                long length = getValueLength(type, value);
+
+                if (length > 4) {
+                    writeValue(type, value, output);
+
+                    if ((length & 1) != 0) {
+                        output.writeByte(0);
+                    }
+                }
+            }
+        }
+
+        for (DataReference reference : ifd.references) {
+            for (int i = 0; i < reference.offsets.length; i++) {
+                copy(source, reference.sourceOffsets[i], reference.lengths[i], output);
+
+                if ((reference.lengths[i] & 1) != 0) {
+                    output.writeByte(0);
+                }
+            }
+        }
+
+        for (Entry entry : entries) {
+            Object value = entry.getValue();
+
+            if (value instanceof Directory) {
+                writeIFD(getWritableIFD((Directory) value, source), output, source, start, 0);
+            }
+        }
+    }
+
+    private static void copy(final ImageInputStream source, final long offset, final long length, final ImageOutputStream output) throws IOException {
+        source.seek(offset);
+
+        byte[] buffer = new byte[(int) Math.min(length, 8192)];
+        long remaining = length;
+
+        while (remaining > 0) {
+            int count = (int) Math.min(buffer.length, remaining);
+            source.readFully(buffer, 0, count);
+            output.write(buffer, 0, count);
+            remaining -= count;
+        }
+    }
+
+    private static int getTag(final Entry entry) {
+        Object identifier = entry.getIdentifier();
+
+        if (!(identifier instanceof Integer) || (Integer) identifier < 0 || (Integer) identifier > 0xffff) {
+            throw new IllegalArgumentException(String.format("Not a TIFF tag: %s", identifier));
+        }
+
+        return (Integer) identifier;
+    }
+
+    private static short getType(final Entry entry) throws IIOException {
+        if (entry instanceof EXIFEntry) {
+            return ((EXIFEntry) entry).getType();
+        }
+
+        // Best guess, from the value types created by the reader
+        Object value = entry.getValue();
+
+        if (value instanceof String) {
+            return TIFF.TYPE_ASCII;
+        }
+        else if (value instanceof Byte || value instanceof byte[]) {
+            return TIFF.TYPE_BYTE;
+        }
+        else if (value instanceof Short || value instanceof short[]) {
+            return TIFF.TYPE_SSHORT;
+        }
+        else if (value instanceof Integer || value instanceof int[]) {
+            return TIFF.TYPE_SLONG;
+        }
+        else if (value instanceof Long || value instanceof long[]) {
+            return TIFF.TYPE_LONG;
+        }
+        else if (value instanceof Rational || value instanceof Rational[]) {
+            return TIFF.TYPE_RATIONAL;
+        }
+        else if (value instanceof Float || value instanceof float[]) {
+            return TIFF.TYPE_FLOAT;
+        }
+        else if (value instanceof Double || value instanceof double[]) {
+            return TIFF.TYPE_DOUBLE;
+        }
+
+        throw new IIOException(String.format("Unsupported value for tag %s: %s", entry.getIdentifier(), value != null ? value.getClass() : null));
+    }
+
+    private static int getCount(final short type, final Object value) {
+        if (type == TIFF.TYPE_ASCII) {
+            return ((String) value).getBytes(UTF8).length + 1; // Null-terminated
+        }
+
+        return value.getClass().isArray() ? Array.getLength(value) : 1;
+    }
+
+    private static long getValueLength(final short type, final Object value) throws IIOException {
+        if (type < 1 || type > TIFF.TYPE_IFD) {
+            throw new IIOException(String.format("Unsupported TIFF type: %d", type));
+        }
+
+        return (long) TIFF.TYPE_LENGTHS[type - 1] * getCount(type, value);
+    }
+
+    private static void writeValue(final short type, final Object value, final ImageOutputStream output) throws IOException {
+        switch (type) {
+            case TIFF.TYPE_ASCII:
+                output.write(((String) value).getBytes(UTF8));
+                output.writeByte(0);
+                break;
+
+            case TIFF.TYPE_BYTE:
+            case TIFF.TYPE_SBYTE:
+            case TIFF.TYPE_UNDEFINED:
+                if (value instanceof byte[]) {
+                    output.write((byte[]) value);
+                }
+                else {
+                    output.writeByte(((Number) value).intValue());
+                }
+                break;
+
+            case TIFF.TYPE_SHORT:
+            case TIFF.TYPE_SSHORT:
+                if (value instanceof short[]) {
+                    short[] shorts = (short[]) value;
+                    output.writeShorts(shorts, 0, shorts.length);
+                }
+                else if (value instanceof int[]) {
+                    for (int v : (int[]) value) {
+                        output.writeShort(v);
+                    }
+                }
+                else {
+                    output.writeShort(((Number) value).intValue());
+                }
+                break;
+
+            case TIFF.TYPE_LONG:
+            case TIFF.TYPE_SLONG:
+            case TIFF.TYPE_IFD:
+                if (value instanceof int[]) {
+                    int[] ints = (int[]) value;
+                    output.writeInts(ints, 0, ints.length);
+                }
+                else if (value instanceof long[]) {
+                    for (long v : (long[]) value) {
+                        output.writeInt((int) v);
+                    }
+                }
+                else {
+                    output.writeInt((int) ((Number) value).longValue());
+                }
+                break;
+
+            case TIFF.TYPE_RATIONAL:
+            case TIFF.TYPE_SRATIONAL:
+                Rational[] rationals = value instanceof Rational[] ? (Rational[]) value : new Rational[] {(Rational) value};
+
+                for (Rational rational : rationals) {
+                    output.writeInt((int) rational.numerator());
+                    output.writeInt((int) rational.denominator());
+                }
+                break;
+
+            case TIFF.TYPE_FLOAT:
+                if (value instanceof float[]) {
+                    float[] floats = (float[]) value;
+                    output.writeFloats(floats, 0, floats.length);
+                }
+                else {
+                    output.writeFloat(((Number) value).floatValue());
+                }
+                break;
+
+            case TIFF.TYPE_DOUBLE:
+                if (value instanceof double[]) {
+                    double[] doubles = (double[]) value;
+                    output.writeDoubles(doubles, 0, doubles.length);
+                }
+                else {
+                    output.writeDouble(((Number) value).doubleValue());
+                }
+                break;
+
+            default:
+                throw new IIOException(String.format("Unsupported TIFF type: %d", type));
+        }
+    }
+
+    /**
+     * The entries of an IFD, as written, and the data referenced by its offset entries.
+     */
+    private static final class WritableIFD {
+        final List<Entry> entries;
+        final List<DataReference> references;
+
+        WritableIFD(final List<Entry> entries, final List<DataReference> references) {
+            this.entries = entries;
+            this.references = references;
+        }
+
+        long getDataLength() {
+            long length = 0;
+
+            for (DataReference reference : references) {
+                for (long dataLength : reference.lengths) {
+                    length += dataLength + (dataLength & 1);
+                }
+            }
+
+            return length;
+        }
+    }
+
+    /**
+     * Data outside the IFD, copied from the source stream.
+     * The offsets are the value of the written entry, and are filled in when the IFD is written.
+     */
+    private static final class DataReference {
+        final long[] sourceOffsets;
+        final long[] lengths;
+        final long[] offsets;
+
+        DataReference(final long[] sourceOffsets, final long[] lengths) {
+            this.sourceOffsets = sourceOffsets;
+            this.lengths = lengths;
+            this.offsets = new long[sourceOffsets.length];
+        }
+    }
+}
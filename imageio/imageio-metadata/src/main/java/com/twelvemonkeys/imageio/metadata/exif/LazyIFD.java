@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.metadata.exif;
+
+import com.twelvemonkeys.imageio.metadata.Directory;
+import com.twelvemonkeys.imageio.metadata.Entry;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An IFD that is parsed from the stream the first time it is accessed.
+ *
+ * @see EXIFReader#read(javax.imageio.stream.ImageInputStream, boolean)
+ */
+final class LazyIFD implements Directory {
+    private final EXIFReader reader;
+    private final ImageInputStream input;
+    private final ByteOrder byteOrder;
+    private final long offset;
+
+    private IFD ifd;
+
+    LazyIFD(final EXIFReader reader, final ImageInputStream input, final long offset) {
+        this.reader = reader;
+        this.input = input;
+        this.byteOrder = input.getByteOrder();
+        this.offset = offset;
+    }
+
+    boolean isParsed() {
+        return ifd != null;
+    }
+
+    private synchronized IFD getIFD() {
+        if (ifd == null) {
+            synchronized (input) {
+                try {
+                    long pos = input.getStreamPosition();
+                    ByteOrder originalOrder = input.getByteOrder();
+                    input.setByteOrder(byteOrder);
+
+                    try {
+                        List<Entry> entries = new ArrayList<Entry>();
+                        reader.readIFD(input, offset, entries, true);
+                        ifd = new IFD(entries);
+                    }
+                    finally {
+                        input.seek(pos);
+                        input.setByteOrder(originalOrder);
+                    }
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(String.format("Could not read IFD @%08x: %s", offset, e.getMessage()), e);
+                }
+            }
+        }
+
+        return ifd;
+    }
+
+    public Entry getEntryById(final Object identifier) {
+        return getIFD().getEntryById(identifier);
+    }
+
+    public Entry getEntryByFieldName(final String fieldName) {
+        return getIFD().getEntryByFieldName(fieldName);
+    }
+
+    public Iterator<Entry> iterator() {
+        return getIFD().iterator();
+    }
+
+    public boolean add(final Entry entry) {
+        return getIFD().add(entry);
+    }
+
+    public boolean remove(final Object entry) {
+        return getIFD().remove(entry);
+    }
+
+    public int size() {
+        return getIFD().size();
+    }
+
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    /// Standard object support
+
+    @Override
+    public int hashCode() {
+        return getIFD().hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object pOther) {
+        if (this == pOther) {
+            return true;
+        }
+
+        if (pOther instanceof LazyIFD) {
+            return getIFD().equals(((LazyIFD) pOther).getIFD());
+        }
+
+        return getIFD().equals(pOther);
+    }
+
+    @Override
+    public String toString() {
+        return getIFD().toString();
+    }
+}
@@ -120,6 +120,8 @@ public interface TIFF {
     int TAG_ORIENTATION = 274;
     int TAG_SAMPLES_PER_PIXEL = 277;
     int TAG_PLANAR_CONFIGURATION = 284;
+    int TAG_T4_OPTIONS = 292;
+    int TAG_T6_OPTIONS = 293;
     int TAG_SAMPLE_FORMAT = 339;
     int TAG_YCBCR_SUB_SAMPLING = 530;
     int TAG_YCBCR_POSITIONING = 531;
@@ -49,6 +49,9 @@ public interface JPEG {
     /** Define Huffman Tables segment marker (DHT). */
     int DHT = 0xFFC4;
 
+    /** Comment segment marker (COM). */
+    int COM = 0xFFFE;
+
     // App segment markers (APPn).
     int APP0 = 0xFFE0;
     int APP1 = 0xFFE1;
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.metadata.jpeg;
+
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.twelvemonkeys.lang.Validate.isTrue;
+import static com.twelvemonkeys.lang.Validate.notNull;
+
+/**
+ * Copies a JPEG stream, while keeping, removing or replacing APPn and COM segments, without decoding the image.
+ * <p/>
+ * Segments are matched against the rules in the order they were added, and the first matching rule decides what
+ * happens to the segment. Segments not matched by any rule are kept, unless the rewriter is created with
+ * {@code keepUnmatched == false}. All other segments (tables, frame headers etc) are always kept.
+ * The entropy coded data following each SOS segment is copied byte for byte. Segments between the scans
+ * (like in progressive JPEGs) are rewritten the same way as the segments before the first scan, up to the EOI marker.
+ * Anything following the EOI marker is copied byte for byte.
+ * Only a single segment is held in memory at any time.
+ * <p/>
+ * For example, to remove all metadata except the JFIF and Adobe segments:
+ * <pre>
+ * new JPEGSegmentRewriter(false)
+ *         .keep(JPEG.APP0, "JFIF")
+ *         .keep(JPEG.APP14, "Adobe")
+ *         .rewrite(input, output);
+ * </pre>
+ * <p/>
+ * A rewriter may be reused, but should not be modified while rewriting.
+ *
+ * @see JPEGSegmentUtil#replaceSegments(ImageInputStream, ImageOutputStream, int, String, byte[])
+ */
+public final class JPEGSegmentRewriter {
+    private static final int KEEP = 0;
+    private static final int REMOVE = 1;
+    private static final int REPLACE = 2;
+
+    private final boolean keepUnmatched;
+    private final List<Rule> rules = new ArrayList<Rule>();
+
+    /**
+     * Creates a rewriter that keeps all segments not matched by a rule.
+     */
+    public JPEGSegmentRewriter() {
+        this(true);
+    }
+
+    /**
+     * Creates a rewriter.
+     *
+     * @param keepUnmatched {@code true} if APPn and COM segments not matched by a rule should be kept,
+     *                      {@code false} if they should be removed.
+     */
+    public JPEGSegmentRewriter(final boolean keepUnmatched) {
+        this.keepUnmatched = keepUnmatched;
+    }
+
+    /**
+     * Keeps the segments with the given marker and identifier.
+     *
+     * @param marker an APPn or COM marker.
+     * @param identifier the segment identifier, or {@code null} to match any segment with the given marker.
+     *                   Must be {@code null} for COM, as comments have no identifier.
+     * @return this rewriter.
+     * @throws IllegalArgumentException if {@code marker} is not an APPn or COM marker, or if {@code identifier} is
+     *                                  not {@code null} for COM.
+     */
+    public JPEGSegmentRewriter keep(final int marker, final String identifier) {
+        rules.add(new Rule(KEEP, marker, identifier, null));
+        return this;
+    }
+
+    /**
+     * Removes the segments with the given marker and identifier.
+     *
+     * @param marker an APPn or COM marker.
+     * @param identifier the segment identifier, or {@code null} to match any segment with the given marker.
+     *                   Must be {@code null} for COM, as comments have no identifier.
+     * @return this rewriter.
+     * @throws IllegalArgumentException if {@code marker} is not an APPn or COM marker, or if {@code identifier} is
+     *                                  not {@code null} for COM.
+     */
+    public JPEGSegmentRewriter remove(final int marker, final String identifier) {
+        rules.add(new Rule(REMOVE, marker, identifier, null));
+        return this;
+    }
+
+    /**
+     * Replaces the segments with the given marker and identifier with a single new segment.
+     * All matching segments are removed, and the new segment is written after any leading APPn segments with a lower
+     * marker (like the JFIF APP0 segment), before the first other segment.
+     * This keeps the segments in the order they are normally written, without having to read ahead in the stream.
+     *
+     * @param marker an APPn or COM marker.
+     * @param identifier the segment identifier, or {@code null} to match any segment with the given marker.
+     *                   Must be {@code null} for COM, as comments have no identifier.
+     * @param data the new segment data, including the identifier.
+     * @return this rewriter.
+     * @throws IllegalArgumentException if {@code marker} is not an APPn or COM marker, if {@code identifier} is
+     *                                  not {@code null} for COM, or if {@code data} is {@code null} or too long.
+     */
+    public JPEGSegmentRewriter replace(final int marker, final String identifier, final byte[] data) {
+        notNull(data, "data");
+        isTrue(data.length <= 0xffff - 2, data.length, "Segment data too long: %d");
+
+        rules.add(new Rule(REPLACE, marker, identifier, data));
+        return this;
+    }
+
+    /**
+     * Copies the JPEG stream from {@code input} to {@code output}, applying the rules of this rewriter.
+     * The input stream position must be directly before the SOI marker.
+     * The rest of the input stream is copied, once the EOI marker is found.
+     *
+     * @param input the JPEG stream to read from.
+     * @param output the stream to write to.
+     * @throws IIOException if a JPEG format exception occurs during reading
+     * @throws IOException if an I/O exception occurs during reading or writing
+     */
+    public void rewrite(final ImageInputStream input, final ImageOutputStream output) throws IOException {
+        notNull(input, "input");
+        notNull(output, "output");
+
+        JPEGSegmentUtil.readSOI(input);
+        output.writeShort(JPEG.SOI);
+
+        boolean[] written = new boolean[rules.size()];
+
+        while (true) {
+            int marker = input.readUnsignedShort();
+
+            // Skip over 0xff padding between markers
+            while (marker == 0xffff) {
+                marker = 0xff00 | input.readUnsignedByte();
+            }
+
+            if ((marker >> 8 & 0xff) != 0xff) {
+                throw new IIOException(String.format("Bad marker: %04x", marker));
+            }
+
+            writeReplacements(marker, written, output);
+
+            if (marker == JPEG.EOI) {
+                output.writeShort(marker);
+                copy(input, output);
+
+                break;
+            }
+
+            int length = input.readUnsignedShort(); // Length including length field itself
+            byte[] data = new byte[length - 2];
+            input.readFully(data);
+
+            JPEGSegment segment = new JPEGSegment(marker, data, length);
+
+            if (isKept(segment)) {
+                output.writeShort(marker);
+                output.writeShort(length);
+                output.write(data);
+            }
+
+            if (marker == JPEG.SOS && !copyEntropyCodedData(input, output)) {
+                // Truncated stream, no more markers
+                break;
+            }
+        }
+    }
+
+    /**
+     * Copies the entropy coded data following a SOS segment, and leaves the input positioned at the next marker.
+     * Stuffed zero bytes ({@code 0xff00}) and RSTn markers are part of the entropy coded data.
+     *
+     * @return {@code true} if a marker follows, {@code false} if the end of the stream was reached.
+     */
+    private static boolean copyEntropyCodedData(final ImageInputStream input, final ImageOutputStream output) throws IOException {
+        byte[] buffer = new byte[8192];
+        int count = 0;
+        int read;
+
+        while ((read = input.read(buffer, count, buffer.length - count)) > 0) {
+            count += read;
+
+            // The last byte is kept for the next round, as we need the byte following 0xff to tell markers from data
+            int i = 0;
+
+            for (; i < count - 1; i++) {
+                if (buffer[i] == (byte) 0xff) {
+                    int next = buffer[i + 1] & 0xff;
+
+                    if (next != 0 && (next < 0xd0 || next > 0xd7)) {
+                        output.write(buffer, 0, i);
+                        input.seek(input.getStreamPosition() - (count - i));
+
+                        return true;
+                    }
+
+                    i++;
+                }
+            }
+
+            output.write(buffer, 0, i);
+
+            count -= i;
+            if (count > 0) {
+                buffer[0] = buffer[i];
+            }
+        }
+
+        output.write(buffer, 0, count);
+
+        return false;
+    }
+
+    private void writeReplacements(final int marker, final boolean[] written, final ImageOutputStream output) throws IOException {
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+
+            if (rule.action == REPLACE && !written[i] && (!JPEGSegment.isAppSegmentMarker(marker) || marker >= rule.marker)) {
+                output.writeShort(rule.marker);
+                output.writeShort(rule.data.length + 2);
+                output.write(rule.data);
+
+                written[i] = true;
+            }
+        }
+    }
+
+    private boolean isKept(final JPEGSegment segment) {
+        if (!isRewritable(segment.marker)) {
+            return true;
+        }
+
+        for (Rule rule : rules) {
+            if (rule.matches(segment)) {
+                // Replaced segments are already written
+                return rule.action == KEEP;
+            }
+        }
+
+        return keepUnmatched;
+    }
+
+    private static void copy(final ImageInputStream input, final ImageOutputStream output) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while ((read = input.read(buffer)) > 0) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    private static boolean isRewritable(final int marker) {
+        return JPEGSegment.isAppSegmentMarker(marker) || marker == JPEG.COM;
+    }
+
+    private static final class Rule {
+        final int action;
+        final int marker;
+        final String identifier;
+        final byte[] data;
+
+        Rule(final int action, final int marker, final String identifier, final byte[] data) {
+            isTrue(isRewritable(marker), marker, "Not an APPn or COM marker: %04x");
+            isTrue(marker != JPEG.COM || identifier == null, identifier, "COM segments have no identifier: %s");
+
+            this.action = action;
+            this.marker = marker;
+            this.identifier = identifier;
+            this.data = data;
+        }
+
+        boolean matches(final JPEGSegment segment) {
+            return segment.marker == marker && (identifier == null || identifier.equals(segment.identifier()));
+        }
+    }
+}
@@ -38,10 +38,12 @@ import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
 import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.util.*;
 
+import static com.twelvemonkeys.lang.Validate.isTrue;
 import static com.twelvemonkeys.lang.Validate.notNull;
 
 /**
@@ -119,6 +121,43 @@ public final class JPEGSegmentUtil {
         return segments;
     }
 
+    /**
+     * Copies a JPEG stream, replacing the APPn segments with the given marker and identifier.
+     * All matching segments are removed, and a single new segment with the given data is inserted after any leading
+     * APPn segments with a lower marker (like the JFIF APP0 segment), before the first other segment.
+     * Matching segments between the scans of progressive JPEGs are removed as well. The entropy coded data is copied as-is.
+     * <p/>
+     * For example, to replace the EXIF metadata, use marker {@code JPEG.APP1}, identifier {@code "Exif"}
+     * and the bytes {@code "Exif\0\0"} followed by the TIFF structure written by {@code EXIFWriter}.
+     * <p/>
+     * The input stream position must be directly before the SOI marker.
+     *
+     * @param input the JPEG stream to read from.
+     * @param output the stream to write to.
+     * @param marker the APPn segment marker.
+     * @param identifier the identifier of the segments to replace, or {@code null} to replace any segment with the given marker.
+     * @param data the new segment data, including the identifier, or {@code null} to just remove the matching segments.
+     * @throws IIOException if a JPEG format exception occurs during reading
+     * @throws IOException if an I/O exception occurs during reading or writing
+     * @throws IllegalArgumentException if {@code marker} is not an APPn marker, or {@code data} is too long for a single segment.
+     *
+     * @see JPEGSegmentRewriter
+     */
+    public static void replaceSegments(final ImageInputStream input, final ImageOutputStream output, final int marker, final String identifier, final byte[] data) throws IOException {
+        isTrue(JPEGSegment.isAppSegmentMarker(marker), marker, "Not an APPn marker: %04x");
+
+        JPEGSegmentRewriter rewriter = new JPEGSegmentRewriter();
+
+        if (data != null) {
+            rewriter.replace(marker, identifier, data);
+        }
+        else {
+            rewriter.remove(marker, identifier);
+        }
+
+        rewriter.rewrite(input, output);
+    }
+
     private static boolean isRequested(JPEGSegment segment, Map<Integer, List<String>> segmentIdentifiers) {
         return (segmentIdentifiers.containsKey(segment.marker) &&
                 (segment.identifier() == null && segmentIdentifiers.get(segment.marker) == null || containsSafe(segment, segmentIdentifiers)));
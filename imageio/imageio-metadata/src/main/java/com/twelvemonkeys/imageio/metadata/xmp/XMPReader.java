@@ -33,23 +33,26 @@ import com.twelvemonkeys.imageio.metadata.Entry;
 import com.twelvemonkeys.imageio.metadata.MetadataReader;
 import com.twelvemonkeys.imageio.util.IIOUtil;
 import com.twelvemonkeys.lang.Validate;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import javax.imageio.IIOException;
 import javax.imageio.stream.ImageInputStream;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.IOException;
 import java.util.*;
 
 /**
  * XMPReader
+ * <p/>
+ * The XMP packet is parsed in a single pass, using SAX.
+ * Only the properties of the {@code rdf:Description} elements are kept in memory, other parts of the
+ * document, like the packet wrapper, is skipped.
+ * If the reader is created with a set of namespaces, properties in other namespaces are skipped as well.
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -60,28 +63,40 @@ public final class XMPReader extends MetadataReader {
 
     // TODO: Types? Probably defined in XMP/RDF XML schema. Or are we happy that everything is a string?
 
+    private final Set<String> namespaces;
+
+    /**
+     * Creates a reader that reads properties in all namespaces.
+     */
+    public XMPReader() {
+        namespaces = null;
+    }
+
+    /**
+     * Creates a reader that reads only properties in the given namespaces.
+     * Properties in other namespaces are skipped while parsing.
+     *
+     * @param namespaces the namespace URIs of the properties to read, for example {@link XMP#NS_DC}.
+     */
+    public XMPReader(final Collection<String> namespaces) {
+        this.namespaces = Collections.unmodifiableSet(new HashSet<String>(Validate.noNullElements(namespaces, "namespaces")));
+    }
+
     @Override
     public Directory read(final ImageInputStream input) throws IOException {
         Validate.notNull(input, "input");
 
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(true);
 
         try {
-            // TODO: Consider parsing using SAX?
             // TODO: Determine encoding and parse using a Reader...
             // TODO: Refactor scanner to return inputstream?
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(new InputSource(IIOUtil.createStreamAdapter(input)));
-
-//            XMLSerializer serializer = new XMLSerializer(System.err, System.getProperty("file.encoding"));
-//            serializer.serialize(document);
+            SAXParser parser = factory.newSAXParser();
+            XMPHandler handler = new XMPHandler();
+            parser.parse(new InputSource(IIOUtil.createStreamAdapter(input)), handler);
 
-            String toolkit = getToolkit(document);
-            Node rdfRoot = document.getElementsByTagNameNS(XMP.NS_RDF, "RDF").item(0);
-            NodeList descriptions = document.getElementsByTagNameNS(XMP.NS_RDF, "Description");
-
-            return parseDirectories(rdfRoot, descriptions, toolkit);
+            return handler.getDirectory();
         }
         catch (SAXException e) {
             throw new IIOException(e.getMessage(), e);
@@ -91,144 +106,202 @@ public final class XMPReader extends MetadataReader {
         }
     }
 
-    private String getToolkit(Document document) {
-        NodeList xmpmeta = document.getElementsByTagNameNS(XMP.NS_X, "xmpmeta");
-
-        if (xmpmeta == null || xmpmeta.getLength() <= 0) {
-            return null;
-        }
+    private boolean isIncluded(final String namespace) {
+        return namespaces == null || namespaces.contains(namespace);
+    }
 
-        Node toolkit = xmpmeta.item(0).getAttributes().getNamedItemNS(XMP.NS_X, "xmptk");
+    /**
+     * Collects the properties of the top level {@code rdf:Description} elements.
+     * Each property element is kept as a small tree of {@code Element}s until it ends, and is then converted to an
+     * {@code XMPEntry}. Everything outside the properties, and properties not included, are skipped.
+     */
+    private final class XMPHandler extends DefaultHandler {
+        private final Map<String, List<Entry>> subdirs = new LinkedHashMap<String, List<Entry>>();
+        private String toolkit;
+        private boolean xmpmetaSeen;
+
+        private int depth;
+        private int rdfDepth = -1; // Depth of the first rdf:RDF element, if inside it
+        private boolean rdfDone;
+        private boolean inDescription;
+
+        private int skipDepth = -1; // Depth of the outermost element being skipped
+        private final LinkedList<Element> elements = new LinkedList<Element>();
+
+        XMPDirectory getDirectory() {
+            List<Directory> entries = new ArrayList<Directory>();
+
+            // TODO: Should we still allow asking for a subdirectory by item id?
+            for (Map.Entry<String, List<Entry>> entry : subdirs.entrySet()) {
+                entries.add(new RDFDescription(entry.getKey(), entry.getValue()));
+            }
 
-        return toolkit != null ? toolkit.getNodeValue() : null;
-    }
+            return new XMPDirectory(entries, toolkit);
+        }
 
-    private XMPDirectory parseDirectories(final Node pParentNode, NodeList pNodes, String toolkit) {
-        Map<String, List<Entry>> subdirs = new LinkedHashMap<String, List<Entry>>();
+        @Override
+        public void startElement(final String namespaceURI, final String localName, final String qName, final Attributes attributes) {
+            String uri = namespaceURI(namespaceURI);
+            depth++;
 
-        for (Node desc : asIterable(pNodes)) {
-            if (desc.getParentNode() != pParentNode) {
-                continue;
+            if (skipDepth >= 0) {
+                return;
             }
 
-            // Support attribute short-hand syntax
-            parseAttributesForKnownElements(subdirs, desc);
-
-            for (Node node : asIterable(desc.getChildNodes())) {
-                if (node.getNodeType() != Node.ELEMENT_NODE) {
-                    continue;
+            if (!elements.isEmpty()) {
+                Element element = new Element(uri, localName, attributes);
+                elements.getLast().add(element);
+                elements.add(element);
+            }
+            else if (inDescription && depth == rdfDepth + 2) {
+                if (isIncluded(uri)) {
+                    elements.add(new Element(uri, localName, attributes));
                 }
-
-                // Lookup
-                List<Entry> dir = subdirs.get(node.getNamespaceURI());
-                if (dir == null) {
-                    dir = new ArrayList<Entry>();
-                    subdirs.put(node.getNamespaceURI(), dir);
+                else {
+                    skipDepth = depth;
                 }
+            }
+            else if (rdfDepth >= 0 && depth == rdfDepth + 1) {
+                if (XMP.NS_RDF.equals(uri) && "Description".equals(localName)) {
+                    inDescription = true;
 
-                Object value;
-
-                if (isResourceType(node)) {
-                    value = parseAsResource(node);
+                    // Support attribute short-hand syntax
+                    parseAttributesForKnownElements(subdirs, new Element(uri, localName, attributes));
                 }
                 else {
-                    // TODO: This method contains loads of duplication an should be cleaned up...
-                    // Support attribute short-hand syntax
-                    Map<String, List<Entry>> subsubdirs = new LinkedHashMap<String, List<Entry>>();
-
-                    parseAttributesForKnownElements(subsubdirs, node);
-
-                    if (!subsubdirs.isEmpty()) {
-                        List<Entry> entries = new ArrayList<Entry>();
+                    skipDepth = depth;
+                }
+            }
+            else if (rdfDepth < 0 && !rdfDone && XMP.NS_RDF.equals(uri) && "RDF".equals(localName)) {
+                rdfDepth = depth;
+            }
+            else if (!xmpmetaSeen && XMP.NS_X.equals(uri) && "xmpmeta".equals(localName)) {
+                xmpmetaSeen = true;
+                toolkit = attributes.getValue(XMP.NS_X, "xmptk");
+            }
+        }
 
-                        for (Map.Entry<String, List<Entry>> entry : subsubdirs.entrySet()) {
-                            entries.addAll(entry.getValue());
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            if (skipDepth == depth) {
+                skipDepth = -1;
+            }
+            else if (skipDepth < 0) {
+                if (!elements.isEmpty()) {
+                    Element element = elements.removeLast();
+
+                    if (elements.isEmpty()) {
+                        // End of property
+                        List<Entry> dir = subdirs.get(element.namespace);
+                        if (dir == null) {
+                            dir = new ArrayList<Entry>();
+                            subdirs.put(element.namespace, dir);
                         }
 
-                        value = new RDFDescription(entries);
-                    }
-                    else {
-                        value = getChildTextValue(node);
+                        dir.add(new XMPEntry(element.namespace + element.localName, element.localName, parseValue(element)));
                     }
                 }
+                else if (inDescription && depth == rdfDepth + 1) {
+                    inDescription = false;
+                }
+                else if (depth == rdfDepth) {
+                    rdfDepth = -1;
+                    rdfDone = true;
+                }
+            }
+
+            depth--;
+        }
 
-                dir.add(new XMPEntry(node.getNamespaceURI() + node.getLocalName(), node.getLocalName(), value));
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            if (skipDepth < 0 && !elements.isEmpty()) {
+                elements.getLast().append(ch, start, length);
             }
         }
 
-        List<Directory> entries = new ArrayList<Directory>();
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+            characters(ch, start, length);
+        }
+    }
 
-        // TODO: Should we still allow asking for a subdirectory by item id?
-        for (Map.Entry<String, List<Entry>> entry : subdirs.entrySet()) {
-            entries.add(new RDFDescription(entry.getKey(), entry.getValue()));
+    private Object parseValue(final Element node) {
+        if (isResourceType(node)) {
+            return parseAsResource(node);
         }
 
-        return new XMPDirectory(entries, toolkit);
-    }
+        // TODO: This method contains loads of duplication an should be cleaned up...
+        // Support attribute short-hand syntax
+        Map<String, List<Entry>> subsubdirs = new LinkedHashMap<String, List<Entry>>();
 
-    private boolean isResourceType(Node node) {
-        Node parseType = node.getAttributes().getNamedItemNS(XMP.NS_RDF, "parseType");
+        parseAttributesForKnownElements(subsubdirs, node);
 
-        return parseType != null && "Resource".equals(parseType.getNodeValue());
+        if (!subsubdirs.isEmpty()) {
+            List<Entry> entries = new ArrayList<Entry>();
+
+            for (Map.Entry<String, List<Entry>> entry : subsubdirs.entrySet()) {
+                entries.addAll(entry.getValue());
+            }
+
+            return new RDFDescription(entries);
+        }
+
+        return getChildTextValue(node);
     }
 
-    private RDFDescription parseAsResource(Node node) {
+    private boolean isResourceType(final Element node) {
+        return "Resource".equals(node.getAttribute(XMP.NS_RDF, "parseType"));
+    }
+
+    private RDFDescription parseAsResource(final Element node) {
         // See: http://www.w3.org/TR/REC-rdf-syntax/#section-Syntax-parsetype-resource
         List<Entry> entries = new ArrayList<Entry>();
 
-        for (Node child : asIterable(node.getChildNodes())) {
-            if (child.getNodeType() != Node.ELEMENT_NODE) {
-                continue;
-            }
-
-            entries.add(new XMPEntry(child.getNamespaceURI() + child.getLocalName(), child.getLocalName(), getChildTextValue(child)));
+        for (Element child : node.children) {
+            entries.add(new XMPEntry(child.namespace + child.localName, child.localName, getChildTextValue(child)));
         }
 
         return new RDFDescription(entries);
     }
 
-    private void parseAttributesForKnownElements(Map<String, List<Entry>> subdirs, Node desc) {
-        // NOTE: NamedNodeMap does not have any particular order...
-        NamedNodeMap attributes = desc.getAttributes();
-
-        for (Node attr : asIterable(attributes)) {
-            if (!XMP.ELEMENTS.contains(attr.getNamespaceURI())) {
+    private void parseAttributesForKnownElements(final Map<String, List<Entry>> subdirs, final Element node) {
+        for (Attribute attr : node.attributes) {
+            if (!XMP.ELEMENTS.contains(attr.namespace) || !isIncluded(attr.namespace)) {
                 continue;
             }
 
-            List<Entry> dir = subdirs.get(attr.getNamespaceURI());
+            List<Entry> dir = subdirs.get(attr.namespace);
 
             if (dir == null) {
                 dir = new ArrayList<Entry>();
-                subdirs.put(attr.getNamespaceURI(), dir);
+                subdirs.put(attr.namespace, dir);
             }
 
-            dir.add(new XMPEntry(attr.getNamespaceURI() + attr.getLocalName(), attr.getLocalName(), attr.getNodeValue()));
+            dir.add(new XMPEntry(attr.namespace + attr.localName, attr.localName, attr.value));
         }
     }
 
-    private Object getChildTextValue(final Node node) {
-        for (Node child : asIterable(node.getChildNodes())) {
-            if (XMP.NS_RDF.equals(child.getNamespaceURI()) && "Alt".equals(child.getLocalName())) {
+    private Object getChildTextValue(final Element node) {
+        for (Element child : node.children) {
+            if (XMP.NS_RDF.equals(child.namespace) && "Alt".equals(child.localName)) {
                 // Support for <rdf:Alt><rdf:li> -> return a Map<String, Object> keyed on xml:lang
                 Map<String, Object> alternatives = new LinkedHashMap<String, Object>();
-                for (Node alternative : asIterable(child.getChildNodes())) {
-                    if (XMP.NS_RDF.equals(alternative.getNamespaceURI()) && "li".equals(alternative.getLocalName())) {
-                        NamedNodeMap attributes = alternative.getAttributes();
-                        Node key = attributes.getNamedItem("xml:lang");
-                        alternatives.put(key == null ? null : key.getTextContent(), getChildTextValue(alternative));
+                for (Element alternative : child.children) {
+                    if (XMP.NS_RDF.equals(alternative.namespace) && "li".equals(alternative.localName)) {
+                        alternatives.put(alternative.getAttribute("xml:lang"), getChildTextValue(alternative));
                     }
                 }
 
                 return alternatives;
             }
-            else if (XMP.NS_RDF.equals(child.getNamespaceURI()) && ("Seq".equals(child.getLocalName()) || "Bag".equals(child.getLocalName()))) {
+            else if (XMP.NS_RDF.equals(child.namespace) && ("Seq".equals(child.localName) || "Bag".equals(child.localName))) {
                 // Support for <rdf:Seq><rdf:li> -> return array
                 // Support for <rdf:Bag><rdf:li> -> return array/unordered collection (how can a serialized collection not have order?)
                 List<Object> seq = new ArrayList<Object>();
 
-                for (Node sequence : asIterable(child.getChildNodes())) {
-                    if (XMP.NS_RDF.equals(sequence.getNamespaceURI()) && "li".equals(sequence.getLocalName())) {
+                for (Element sequence : child.children) {
+                    if (XMP.NS_RDF.equals(sequence.namespace) && "li".equals(sequence.localName)) {
                         Object value = getChildTextValue(sequence);
                         seq.add(value);
                     }
@@ -247,52 +320,93 @@ public final class XMPReader extends MetadataReader {
             return parseAsResource(node);
         }
 
-        Node child = node.getFirstChild();
-        String strVal = child != null ? child.getNodeValue() : null;
-        return strVal != null ? strVal.trim() : "";
+        // Only the text before the first child element is used
+        return node.text != null ? node.text.toString().trim() : "";
     }
 
-    private Iterable<? extends Node> asIterable(final NamedNodeMap pNodeList) {
-        return new Iterable<Node>() {
-            public Iterator<Node> iterator() {
-                return new Iterator<Node>() {
-                    private int index;
+    // SAX uses the empty string for no namespace, DOM uses null
+    private static String namespaceURI(final String uri) {
+        return uri == null || uri.length() == 0 ? null : uri;
+    }
 
-                    public boolean hasNext() {
-                        return pNodeList != null && pNodeList.getLength() > index;
-                    }
+    /**
+     * The parts of an XML element needed to create an entry value.
+     */
+    private static final class Element {
+        final String namespace;
+        final String localName;
+        final List<Attribute> attributes;
+        final List<Element> children = new ArrayList<Element>(2);
 
-                    public Node next() {
-                        return pNodeList.item(index++);
-                    }
+        StringBuilder text;
+        boolean textDone;
 
-                    public void remove() {
-                        throw new UnsupportedOperationException("Method remove not supported");
-                    }
-                };
+        Element(final String namespace, final String localName, final Attributes attributes) {
+            this.namespace = namespaceURI(namespace);
+            this.localName = localName;
+
+            int length = attributes.getLength();
+            this.attributes = new ArrayList<Attribute>(length);
+
+            for (int i = 0; i < length; i++) {
+                this.attributes.add(new Attribute(namespaceURI(attributes.getURI(i)), attributes.getLocalName(i), attributes.getQName(i), attributes.getValue(i)));
             }
-        };
-    }
 
-    private Iterable<? extends Node> asIterable(final NodeList pNodeList) {
-        return new Iterable<Node>() {
-            public Iterator<Node> iterator() {
-                return new Iterator<Node>() {
-                    private int index;
+            // Keep attributes sorted by name, as in a DOM NamedNodeMap
+            Collections.sort(this.attributes);
+        }
 
-                    public boolean hasNext() {
-                        return pNodeList != null && pNodeList.getLength() > index;
-                    }
+        void add(final Element child) {
+            children.add(child);
+            textDone = true;
+        }
 
-                    public Node next() {
-                        return pNodeList.item(index++);
-                    }
+        void append(final char[] ch, final int start, final int length) {
+            if (!textDone) {
+                if (text == null) {
+                    text = new StringBuilder(length);
+                }
 
-                    public void remove() {
-                        throw new UnsupportedOperationException("Method remove not supported");
-                    }
-                };
+                text.append(ch, start, length);
             }
-        };
+        }
+
+        String getAttribute(final String namespace, final String localName) {
+            for (Attribute attribute : attributes) {
+                if (namespace.equals(attribute.namespace) && localName.equals(attribute.localName)) {
+                    return attribute.value;
+                }
+            }
+
+            return null;
+        }
+
+        String getAttribute(final String qName) {
+            for (Attribute attribute : attributes) {
+                if (qName.equals(attribute.qName)) {
+                    return attribute.value;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private static final class Attribute implements Comparable<Attribute> {
+        final String namespace;
+        final String localName;
+        final String qName;
+        final String value;
+
+        Attribute(final String namespace, final String localName, final String qName, final String value) {
+            this.namespace = namespace;
+            this.localName = localName;
+            this.qName = qName;
+            this.value = value;
+        }
+
+        public int compareTo(final Attribute other) {
+            return qName.compareTo(other.qName);
+        }
     }
 }
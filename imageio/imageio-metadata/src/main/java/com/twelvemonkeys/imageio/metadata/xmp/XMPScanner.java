@@ -28,16 +28,25 @@
 
 package com.twelvemonkeys.imageio.metadata.xmp;
 
-import com.twelvemonkeys.imageio.stream.BufferedImageInputStream;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
 import com.twelvemonkeys.imageio.util.IIOUtil;
+import com.twelvemonkeys.lang.Validate;
+import com.twelvemonkeys.util.LRUHashMap;
 
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * XMPScanner
+ * <p/>
+ * Streams are read in large blocks, files are memory mapped, and both are searched in memory,
+ * using a Boyer-Moore-Horspool skip table for each of the 8, 16 and 32 bit encodings of the packet markers.
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -75,6 +84,18 @@ public final class XMPScanner {
             0x65, 0x6E, 0x64, 0x3D
     };
 
+    private static final Sequence[] PACKET_BEGIN = Sequence.inAllEncodings(XMP_PACKET_BEGIN);
+    private static final Sequence[] PACKET_END = Sequence.inAllEncodings(XMP_PACKET_END);
+
+    // Size of the blocks read from streams
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    // Maximum size of the regions mapped from files
+    static final int MAP_SIZE = 64 * 1024 * 1024;
+
+    // Cache for the packet locations of the latest scanned files
+    private static final Map<File, PacketLocation> locations = new LRUHashMap<File, PacketLocation>(32);
+
     /**
      * Scans the given input for an XML metadata packet.
      * The scanning process involves reading every byte in the file, while searching for an XMP packet.
@@ -88,6 +109,7 @@ public final class XMPScanner {
      * @param pInput the input to scan. The input may be an {@link javax.imageio.stream.ImageInputStream} or
      * any object that can be passed to {@link ImageIO#createImageInputStream(Object)}.
      * Typically this may be a {@link File}, {@link InputStream} or {@link java.io.RandomAccessFile}.
+     * A {@code File} is scanned as described in {@link #scanForXMPPacket(File)}.
      *
      * @return a character Reader
      *
@@ -97,73 +119,193 @@ public final class XMPScanner {
      * @see ImageIO#createImageInputStream(Object)
      */
     static public Reader scanForXMPPacket(final Object pInput) throws IOException {
-        ImageInputStream stream = pInput instanceof ImageInputStream ? (ImageInputStream) pInput : ImageIO.createImageInputStream(pInput);
-
-        // TODO: Consider if BufferedIIS is a good idea
-        if (!(stream instanceof BufferedImageInputStream)) {
-            stream = new BufferedImageInputStream(stream);
+        if (pInput instanceof File) {
+            return scanForXMPPacket((File) pInput);
         }
 
+        ImageInputStream stream = pInput instanceof ImageInputStream ? (ImageInputStream) pInput : ImageIO.createImageInputStream(pInput);
+
         // TODO: Might be more than one XMP block per file (it's possible to re-start for now)..
-        long pos;
-        pos = scanForSequence(stream, XMP_PACKET_BEGIN);
+        long pos = scanForSequence(stream, PACKET_BEGIN);
 
         if (pos >= 0) {
-            // Skip ' OR " (plus possible nulls for 16/32 bit)
-            byte quote = stream.readByte();
+            return readPacket(stream);
+        }
+
+        return null;
+    }
+
+    /**
+     * Scans the given file for an XML metadata packet.
+     * The file is memory mapped and searched directly.
+     * The location of the first packet in the file is cached,
+     * so repeated scans of an unmodified file will only read the packet itself.
+     * <p/>
+     * <em>NOTE: The XMP Specification says this method of reading an XMP packet
+     * should be considered a last resort.</em>
+     *
+     * @param pFile the file to scan.
+     *
+     * @return a character Reader, or {@code null} if no XMP packet is found.
+     *
+     * @throws java.nio.charset.UnsupportedCharsetException if the encoding specified within the BOM is not supported
+     *         by the JRE.
+     * @throws IOException if an I/O exception occurs reading from {@code pFile}.
+     * @see #scanForXMPPacket(Object)
+     */
+    static public Reader scanForXMPPacket(final File pFile) throws IOException {
+        Validate.notNull(pFile, "file");
 
-            if (quote == '\'' || quote == '"') {
-                Charset cs = null;
+        File file = pFile.getAbsoluteFile();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
 
-                // Read BOM
-                byte[] bom = new byte[4];
-                stream.readFully(bom);
+        try {
+            long lastModified = file.lastModified();
+            long length = raf.length();
 
-                // NOTE: Empty string should be treated as UTF-8 for backwards compatibility
-                if (bom[0] == (byte) 0xEF && bom[1] == (byte) 0xBB && bom[2] == (byte) 0xBF && bom[3] == quote ||
-                        bom[0] == quote) {
-                    // UTF-8
-                    cs = Charset.forName("UTF-8");
-                }
-                else if (bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF && bom[2] == 0x00 && bom[3] == quote) {
-                    // UTF-16 BIG endian
-                    cs = Charset.forName("UTF-16BE");
-                }
-                else if (bom[0] == 0x00 && bom[1] == (byte) 0xFF && bom[2] == (byte) 0xFE && bom[3] == quote) {
-                    stream.skipBytes(1); // Alignment
+            PacketLocation location;
+            synchronized (locations) {
+                location = locations.get(file);
+            }
 
-                    // UTF-16 little endian
-                    cs = Charset.forName("UTF-16LE");
-                }
-                else if (bom[0] == 0x00 && bom[1] == 0x00 && bom[2] == (byte) 0xFE && bom[3] == (byte) 0xFF) {
-                    // NOTE: 32-bit character set not supported by default
-                    // UTF 32 BIG endian
-                    cs = Charset.forName("UTF-32BE");
+            if (location == null || location.lastModified != lastModified || location.length != length) {
+                location = locatePacket(raf.getChannel(), lastModified, length);
+
+                synchronized (locations) {
+                    locations.put(file, location);
                 }
-                else if (bom[0] == 0x00 && bom[1] == 0x00 && bom[2] == 0x00 && bom[3] == (byte) 0xFF && stream.read() == 0xFE) {
-                    stream.skipBytes(2); // Alignment
-                    // NOTE: 32-bit character set not supported by default
-                    // UTF 32 little endian
-                    cs = Charset.forName("UTF-32LE");
+            }
+
+            ImageInputStream stream = readPacketBytes(raf, location);
+
+            if (stream == null && location.start >= 0) {
+                // The file was modified without changing length or last modified time (which may have a resolution
+                // of seconds only), and the cached location is stale. Scan again.
+                location = locatePacket(raf.getChannel(), lastModified, length);
+
+                synchronized (locations) {
+                    locations.put(file, location);
                 }
 
-                if (cs != null) {
-                    // Read all bytes until <?xpacket end= up-front or filter stream
-                    stream.mark();
-                    long end = scanForSequence(stream, XMP_PACKET_END);
-                    stream.reset();
+                stream = readPacketBytes(raf, location);
+            }
 
-                    long length = end - stream.getStreamPosition();
-                    Reader reader = new InputStreamReader(IIOUtil.createStreamAdapter(stream, length), cs);
+            return stream != null ? readPacket(stream) : null;
+        }
+        finally {
+            raf.close();
+        }
+    }
 
-                    // Skip until ?>
-                    while (reader.read() != '>') {
-                    }
+    /**
+     * Reads the bytes of the packet at the given location.
+     *
+     * @return a stream positioned right after the {@code &lt;?xpacket begin=} sequence, or {@code null} if
+     * there is no packet, or the packet does not start at the given location.
+     */
+    private static ImageInputStream readPacketBytes(final RandomAccessFile pFile, final PacketLocation pLocation) throws IOException {
+        if (pLocation.start < 0) {
+            return null;
+        }
+
+        byte[] packet = new byte[(int) (pLocation.end - pLocation.start)];
+        pFile.seek(pLocation.start);
+        pFile.readFully(packet);
+
+        ImageInputStream stream = new ByteArrayImageInputStream(packet);
+
+        return scanForSequence(stream, PACKET_BEGIN) == 0 ? stream : null;
+    }
+
+    private static PacketLocation locatePacket(final FileChannel pChannel, final long pLastModified, final long pLength) throws IOException {
+        long start = scanForSequence(pChannel, 0, PACKET_BEGIN);
+
+        if (start >= 0) {
+            long end = scanForSequence(pChannel, start + 1, PACKET_END);
+
+            if (end >= 0) {
+                // Include the end sequence, in any encoding (at most 4 bytes per character)
+                return new PacketLocation(pLastModified, pLength, start, Math.min(end + XMP_PACKET_END.length * 4, pLength));
+            }
+        }
+
+        return new PacketLocation(pLastModified, pLength, -1, -1);
+    }
+
+    /**
+     * Reads the XMP packet, from a stream positioned right after the {@code &lt;?xpacket begin=} sequence.
+     *
+     * @param stream the stream to read from
+     * @return a character Reader, or {@code null} if the packet is not well-formed
+     * @throws IOException if an I/O exception occurs reading from {@code stream}.
+     */
+    private static Reader readPacket(final ImageInputStream stream) throws IOException {
+        // Skip ' OR " (plus possible nulls for 16/32 bit)
+        byte quote = stream.readByte();
+
+        if (quote == '\'' || quote == '"') {
+            Charset cs = null;
+            int charSize = 1;
+
+            // Read BOM
+            byte[] bom = new byte[4];
+            stream.readFully(bom);
+
+            // NOTE: Empty string should be treated as UTF-8 for backwards compatibility
+            if (bom[0] == (byte) 0xEF && bom[1] == (byte) 0xBB && bom[2] == (byte) 0xBF && bom[3] == quote ||
+                    bom[0] == quote) {
+                // UTF-8
+                cs = Charset.forName("UTF-8");
+            }
+            else if (bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF && bom[2] == 0x00 && bom[3] == quote) {
+                // UTF-16 BIG endian
+                cs = Charset.forName("UTF-16BE");
+                charSize = 2;
+            }
+            else if (bom[0] == 0x00 && bom[1] == (byte) 0xFF && bom[2] == (byte) 0xFE && bom[3] == quote) {
+                stream.skipBytes(1); // Alignment
+
+                // UTF-16 little endian
+                cs = Charset.forName("UTF-16LE");
+                charSize = 2;
+            }
+            else if (bom[0] == 0x00 && bom[1] == 0x00 && bom[2] == (byte) 0xFE && bom[3] == (byte) 0xFF) {
+                // NOTE: 32-bit character set not supported by default
+                // UTF 32 BIG endian
+                cs = Charset.forName("UTF-32BE");
+                charSize = 4;
+            }
+            else if (bom[0] == 0x00 && bom[1] == 0x00 && bom[2] == 0x00 && bom[3] == (byte) 0xFF && stream.read() == 0xFE) {
+                stream.skipBytes(2); // Alignment
+                // NOTE: 32-bit character set not supported by default
+                // UTF 32 little endian
+                cs = Charset.forName("UTF-32LE");
+                charSize = 4;
+            }
+
+            if (cs != null) {
+                // Find <?xpacket end= up-front
+                stream.mark();
+                long end = scanForSequence(stream, PACKET_END);
+                stream.reset();
+
+                if (end < 0) {
+                    // Incomplete packet
+                    return null;
+                }
 
-                    // Return reader?
-                    // How to decide between w or r?!
-                    return reader;
+                // The end position is that of the low order byte, exclude the high order bytes for big endian
+                long length = end - stream.getStreamPosition();
+                length -= length % charSize;
+                Reader reader = new InputStreamReader(IIOUtil.createStreamAdapter(stream, length), cs);
+
+                // Skip until ?>
+                while (reader.read() != '>') {
                 }
+
+                // Return reader?
+                // How to decide between w or r?!
+                return reader;
             }
         }
 
@@ -171,55 +313,119 @@ public final class XMPScanner {
     }
 
     /**
-     * Scans for a given ASCII sequence.
+     * Scans for a given ASCII sequence, in any of the encodings given.
+     * The stream is read in blocks, and if found, positioned right after the sequence.
      *
      * @param pStream the stream to scan
-     * @param pSequence the byte sequence to search for
+     * @param pSequences the byte sequence to search for, in all encodings
      *
      * @return the start position of the given sequence.
      *
      * @throws IOException if an I/O exception occurs during scanning
      */
-    private static long scanForSequence(final ImageInputStream pStream, final byte[] pSequence) throws IOException {
-        long start = -1l;
+    private static long scanForSequence(final ImageInputStream pStream, final Sequence[] pSequences) throws IOException {
+        byte[] buffer = new byte[BLOCK_SIZE];
+        ByteBuffer block = ByteBuffer.wrap(buffer);
+        int overlap = maxLength(pSequences) - 1;
 
-        int index = 0;
-        int nullBytes = 0;
+        long position = pStream.getStreamPosition();
+        int length = 0;
+        boolean eof = false;
 
-        for (int read; (read = pStream.read()) >= 0;) {
-            if (pSequence[index] == (byte) read) {
-                // If this is the first byte in the sequence, store position
-                if (start == -1) {
-                    start = pStream.getStreamPosition() - 1;
-                }
+        while (!eof) {
+            // Fill the block, after the bytes kept from the previous block
+            while (length < buffer.length) {
+                int read = pStream.read(buffer, length, buffer.length - length);
 
-                // Inside the sequence, there might be 1 or 3 null bytes, depending on 16/32 byte encoding
-                if (nullBytes == 1 || nullBytes == 3) {
-                    pStream.skipBytes(nullBytes);
+                if (read < 0) {
+                    eof = true;
+                    break;
                 }
 
-                index++;
+                length += read;
+            }
+
+            // Unless at end of stream, only test start positions where all of the sequences fit in the block
+            int limit = eof ? length : length - overlap;
+            int index = indexOf(block, limit, length, pSequences);
 
-                // If we found the entire sequence, we're done, return start position
-                if (index == pSequence.length) {
-                    return start;
+            if (index >= 0) {
+                for (Sequence sequence : pSequences) {
+                    if (sequence.matches(block, index, length)) {
+                        pStream.seek(position + index + sequence.encodedLength);
+                        break;
+                    }
                 }
+
+                return position + index;
             }
-            else if (index == 1 && read == 0 && nullBytes < 3) {
-                // Skip 1 or 3 null bytes for 16/32 bit encoding
-                nullBytes++;
-            }
-            else if (index != 0) {
-                // Start over
-                index = 0;
-                start = -1;
-                nullBytes = 0;
+
+            // Keep the bytes that may be the start of a sequence crossing the block boundary
+            System.arraycopy(buffer, limit, buffer, 0, length - limit);
+            position += limit;
+            length -= limit;
+        }
+
+        return -1l;
+    }
+
+    /**
+     * Scans for a given ASCII sequence, in any of the encodings given.
+     * The file is mapped into memory, in regions of at most {@link #MAP_SIZE} bytes.
+     *
+     * @param pChannel the channel of the file to scan
+     * @param pStart the position to start scanning from
+     * @param pSequences the byte sequence to search for, in all encodings
+     *
+     * @return the start position of the given sequence.
+     *
+     * @throws IOException if an I/O exception occurs during scanning
+     */
+    private static long scanForSequence(final FileChannel pChannel, final long pStart, final Sequence[] pSequences) throws IOException {
+        long size = pChannel.size();
+        int overlap = maxLength(pSequences) - 1;
+
+        for (long position = pStart; position < size;) {
+            int length = (int) Math.min(MAP_SIZE, size - position);
+            int limit = position + length == size ? length : length - overlap;
+
+            int index = indexOf(pChannel.map(FileChannel.MapMode.READ_ONLY, position, length), limit, length, pSequences);
+
+            if (index >= 0) {
+                return position + index;
             }
+
+            position += limit;
         }
 
         return -1l;
     }
 
+    // Returns the index of the first of the sequences starting before limit, or -1 if none is found
+    private static int indexOf(final ByteBuffer pBuffer, final int pLimit, final int pEnd, final Sequence[] pSequences) {
+        int index = -1;
+
+        for (Sequence sequence : pSequences) {
+            int found = sequence.indexOf(pBuffer, index >= 0 ? index : pLimit, pEnd);
+
+            if (found >= 0) {
+                index = found;
+            }
+        }
+
+        return index;
+    }
+
+    private static int maxLength(final Sequence[] pSequences) {
+        int max = 0;
+
+        for (Sequence sequence : pSequences) {
+            max = Math.max(max, sequence.bytes.length);
+        }
+
+        return max;
+    }
+
     public static void main(final String[] pArgs) throws IOException {
         ImageInputStream stream = ImageIO.createImageInputStream(new File(pArgs[0]));
 
@@ -235,4 +441,76 @@ public final class XMPScanner {
 
         stream.close();
     }
+
+    /**
+     * An ASCII sequence in 8, 16 or 32 bit encoding, with a Boyer-Moore-Horspool skip table.
+     * Only the low order byte of each character is part of the pattern,
+     * the null bytes of the first and last character may precede or follow it, depending on byte order.
+     */
+    private static final class Sequence {
+        final byte[] bytes;
+        final int encodedLength;
+        private final int[] skip = new int[256];
+
+        Sequence(final byte[] pSequence, final int pCharSize) {
+            bytes = new byte[(pSequence.length - 1) * pCharSize + 1];
+            encodedLength = pSequence.length * pCharSize;
+
+            for (int i = 0; i < pSequence.length; i++) {
+                bytes[i * pCharSize] = pSequence[i];
+            }
+
+            int last = bytes.length - 1;
+            Arrays.fill(skip, bytes.length);
+
+            for (int i = 0; i < last; i++) {
+                skip[bytes[i] & 0xff] = last - i;
+            }
+        }
+
+        static Sequence[] inAllEncodings(final byte[] pSequence) {
+            return new Sequence[] {new Sequence(pSequence, 1), new Sequence(pSequence, 2), new Sequence(pSequence, 4)};
+        }
+
+        int indexOf(final ByteBuffer pBuffer, final int pLimit, final int pEnd) {
+            int last = bytes.length - 1;
+            int limit = Math.min(pLimit, pEnd - last);
+
+            for (int i = 0; i < limit; i += skip[pBuffer.get(i + last) & 0xff]) {
+                if (pBuffer.get(i + last) == bytes[last] && matches(pBuffer, i, pEnd)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        boolean matches(final ByteBuffer pBuffer, final int pIndex, final int pEnd) {
+            if (pIndex + bytes.length > pEnd) {
+                return false;
+            }
+
+            for (int i = bytes.length - 1; i >= 0; i--) {
+                if (pBuffer.get(pIndex + i) != bytes[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class PacketLocation {
+        final long lastModified;
+        final long length;
+        final long start;
+        final long end;
+
+        PacketLocation(final long pLastModified, final long pLength, final long pStart, final long pEnd) {
+            lastModified = pLastModified;
+            length = pLength;
+            start = pStart;
+            end = pEnd;
+        }
+    }
 }
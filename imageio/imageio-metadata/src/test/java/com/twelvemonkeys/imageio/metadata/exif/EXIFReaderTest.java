@@ -28,6 +28,7 @@
 
 package com.twelvemonkeys.imageio.metadata.exif;
 
+import com.twelvemonkeys.imageio.metadata.AbstractEntry;
 import com.twelvemonkeys.imageio.metadata.CompoundDirectory;
 import com.twelvemonkeys.imageio.metadata.Directory;
 import com.twelvemonkeys.imageio.metadata.Entry;
@@ -37,8 +38,14 @@ import org.junit.Test;
 
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.util.Iterator;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.*;
@@ -190,4 +197,157 @@ public class EXIFReaderTest extends MetadataReaderAbstractTest {
         assertNotNull(exif);
         assertEquals(0, exif.size()); // EXIFTool reports "Warning: Bad ExifIFD directory"
     }
+
+    // Creates a big endian TIFF structure with count IFDs, each with an ImageWidth and a 32 element StripOffsets entry
+    private static ImageInputStream createTIFF(final int count, final int lastLinksTo) throws IOException {
+        final int ifdLength = 2 + 2 * 12 + 4;
+        final int stripCount = 32;
+        final int stride = ifdLength + stripCount * 4;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        data.writeShort(('M' << 8) | 'M');
+        data.writeShort(TIFF.TIFF_MAGIC);
+        data.writeInt(8);
+
+        for (int i = 0; i < count; i++) {
+            int offset = 8 + i * stride;
+
+            data.writeShort(2);
+
+            data.writeShort(TIFF.TAG_IMAGE_WIDTH);
+            data.writeShort(TIFF.TYPE_SHORT);
+            data.writeInt(1);
+            data.writeShort(i + 1);
+            data.writeShort(0);
+
+            data.writeShort(TIFF.TAG_STRIP_OFFSETS);
+            data.writeShort(TIFF.TYPE_LONG);
+            data.writeInt(stripCount);
+            data.writeInt(offset + ifdLength);
+
+            int next = i + 1 < count ? offset + stride : lastLinksTo >= 0 ? 8 + lastLinksTo * stride : 0;
+            data.writeInt(next);
+
+            for (int j = 0; j < stripCount; j++) {
+                data.writeInt(i * 1000 + j);
+            }
+        }
+
+        return new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static void assertSameEntries(final CompoundDirectory expected, final CompoundDirectory actual) {
+        assertEquals(expected.directoryCount(), actual.directoryCount());
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.directoryCount(); i++) {
+            Iterator<Entry> expectedEntries = expected.getDirectory(i).iterator();
+            Iterator<Entry> actualEntries = actual.getDirectory(i).iterator();
+
+            while (expectedEntries.hasNext()) {
+                assertTrue(actualEntries.hasNext());
+
+                Entry expectedEntry = expectedEntries.next();
+                Entry actualEntry = actualEntries.next();
+
+                assertEquals(expectedEntry.getIdentifier(), actualEntry.getIdentifier());
+                assertEquals(expectedEntry.toString(), actualEntry.toString());
+            }
+
+            assertFalse(actualEntries.hasNext());
+        }
+    }
+
+    @Test
+    public void testReadLazySameAsEager() throws IOException {
+        assertSameEntries(
+                (CompoundDirectory) createReader().read(getDataAsIIS()),
+                (CompoundDirectory) createReader().read(getDataAsIIS(), true)
+        );
+
+        assertSameEntries(
+                (CompoundDirectory) createReader().read(ImageIO.createImageInputStream(getResource("/tiff/chifley_logo.tif"))),
+                (CompoundDirectory) createReader().read(ImageIO.createImageInputStream(getResource("/tiff/chifley_logo.tif")), true)
+        );
+
+        assertSameEntries((CompoundDirectory) createReader().read(createTIFF(5, -1)), (CompoundDirectory) createReader().read(createTIFF(5, -1), true));
+    }
+
+    @Test
+    public void testReadLazyBadDirectoryCount() throws IOException {
+        ImageInputStream stream = ImageIO.createImageInputStream(getResource("/jpeg/exif-bad-directory-entry-count.jpg"));
+        stream.seek(4424 + 10);
+
+        Directory directory = createReader().read(new SubImageInputStream(stream, 214 - 6), true);
+        assertEquals(7, directory.size());
+
+        Directory exif = (Directory) directory.getEntryById(TIFF.TAG_EXIF_IFD).getValue();
+        assertNotNull(exif);
+        assertEquals(3, exif.size());
+    }
+
+    @Test
+    public void testReadLazyParsesIFDsOnDemand() throws IOException {
+        ImageInputStream stream = createTIFF(100, -1);
+        CompoundDirectory directory = (CompoundDirectory) createReader().read(stream, true);
+
+        assertEquals(100, directory.directoryCount());
+
+        for (int i = 0; i < directory.directoryCount(); i++) {
+            assertFalse(((LazyIFD) directory.getDirectory(i)).isParsed());
+        }
+
+        stream.seek(17);
+        stream.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+
+        Directory ifd = directory.getDirectory(42);
+        assertEquals(43, ifd.getEntryById(TIFF.TAG_IMAGE_WIDTH).getValue());
+
+        Entry stripOffsets = ifd.getEntryById(TIFF.TAG_STRIP_OFFSETS);
+        assertEquals(32, stripOffsets.valueCount());
+        assertEquals(42031L, ((long[]) stripOffsets.getValue())[31]);
+
+        assertTrue(((LazyIFD) directory.getDirectory(42)).isParsed());
+        assertFalse(((LazyIFD) directory.getDirectory(41)).isParsed());
+        assertFalse(((LazyIFD) directory.getDirectory(43)).isParsed());
+
+        // Stream state should be left untouched
+        assertEquals(17, stream.getStreamPosition());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, stream.getByteOrder());
+    }
+
+    @Test
+    public void testReadLazyDefersLargeValues() throws IOException {
+        CompoundDirectory directory = (CompoundDirectory) createReader().read(createTIFF(1, -1), true);
+        AbstractEntry stripOffsets = (AbstractEntry) directory.getDirectory(0).getEntryById(TIFF.TAG_STRIP_OFFSETS);
+
+        // NOTE: Value is read at most once, and the same instance returned
+        assertSame(stripOffsets.getValue(), stripOffsets.getValue());
+        assertEquals(stripOffsets, directory.getDirectory(0).getEntryById(TIFF.TAG_STRIP_OFFSETS));
+    }
+
+    @Test
+    public void testReadCircularChain() throws IOException {
+        // Last IFD links back to the second, should not loop forever
+        assertEquals(3, ((CompoundDirectory) createReader().read(createTIFF(3, 1))).directoryCount());
+        assertEquals(3, ((CompoundDirectory) createReader().read(createTIFF(3, 1), true)).directoryCount());
+
+        // Last IFD links to itself
+        assertEquals(3, ((CompoundDirectory) createReader().read(createTIFF(3, 2))).directoryCount());
+        assertEquals(3, ((CompoundDirectory) createReader().read(createTIFF(3, 2), true)).directoryCount());
+    }
+
+    @Test
+    public void testReadLongChain() throws IOException {
+        // Deep chains should not overflow the stack
+        CompoundDirectory directory = (CompoundDirectory) createReader().read(createTIFF(20000, -1));
+        assertEquals(20000, directory.directoryCount());
+        assertEquals(20000, directory.getDirectory(19999).getEntryById(TIFF.TAG_IMAGE_WIDTH).getValue());
+
+        directory = (CompoundDirectory) createReader().read(createTIFF(20000, -1), true);
+        assertEquals(20000, directory.directoryCount());
+        assertEquals(20000, directory.getDirectory(19999).getEntryById(TIFF.TAG_IMAGE_WIDTH).getValue());
+    }
 }
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.metadata.exif;
+
+import com.twelvemonkeys.imageio.metadata.AbstractDirectory;
+import com.twelvemonkeys.imageio.metadata.AbstractEntry;
+import com.twelvemonkeys.imageio.metadata.CompoundDirectory;
+import com.twelvemonkeys.imageio.metadata.Directory;
+import com.twelvemonkeys.imageio.metadata.Entry;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+import org.junit.Test;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * EXIFWriterTest
+ */
+public class EXIFWriterTest {
+    private static byte[] write(final Directory directory, final ByteOrder byteOrder) throws IOException {
+        return write(directory, byteOrder, null);
+    }
+
+    private static byte[] write(final Directory directory, final ByteOrder byteOrder, final ImageInputStream source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream output = new MemoryCacheImageOutputStream(bytes);
+
+        try {
+            output.setByteOrder(byteOrder);
+            new EXIFWriter().write(directory, output, source);
+        }
+        finally {
+            output.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static CompoundDirectory read(final byte[] data) throws IOException {
+        return (CompoundDirectory) new EXIFReader().read(new ByteArrayImageInputStream(data));
+    }
+
+    private static void assertSameEntries(final Directory expected, final Directory actual) {
+        assertEquals(expected.size(), actual.size());
+
+        Iterator<Entry> actualEntries = actual.iterator();
+
+        for (Entry expectedEntry : expected) {
+            Entry actualEntry = actualEntries.next();
+
+            assertEquals(expectedEntry.getIdentifier(), actualEntry.getIdentifier());
+
+            if (expectedEntry.getValue() instanceof Directory) {
+                assertSameEntries((Directory) expectedEntry.getValue(), (Directory) actualEntry.getValue());
+            }
+            else if (!isDataOffsets(expectedEntry)) {
+                assertEquals(expectedEntry.toString(), actualEntry.toString());
+            }
+        }
+    }
+
+    // Offsets to data outside the IFD, that is moved when written
+    private static boolean isDataOffsets(final Entry entry) {
+        Object tag = entry.getIdentifier();
+        return tag.equals(TIFF.TAG_STRIP_OFFSETS) || tag.equals(TIFF.TAG_TILE_OFFSETS) || tag.equals(TIFF.TAG_JPEG_INTERCHANGE_FORMAT);
+    }
+
+    private static long[] toLongs(final Entry entry) {
+        Object value = entry.getValue();
+
+        if (value instanceof Number) {
+            return new long[] {((Number) value).longValue()};
+        }
+        else if (value instanceof long[]) {
+            return (long[]) value;
+        }
+
+        long[] longs = new long[entry.valueCount()];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = value instanceof int[] ? ((int[]) value)[i] & 0xffffffffL : ((short[]) value)[i] & 0xffff;
+        }
+
+        return longs;
+    }
+
+    private static byte[] readData(final ImageInputStream stream, final long offset, final int length) throws IOException {
+        byte[] data = new byte[length];
+        stream.seek(offset);
+        stream.readFully(data);
+
+        return data;
+    }
+
+    private static void assertSameIFDs(final CompoundDirectory expected, final CompoundDirectory actual) {
+        assertEquals(expected.directoryCount(), actual.directoryCount());
+
+        for (int i = 0; i < expected.directoryCount(); i++) {
+            assertSameEntries(expected.getDirectory(i), actual.getDirectory(i));
+        }
+    }
+
+    @Test
+    public void testWriteReadRoundTrip() throws IOException {
+        ImageInputStream source = ImageIO.createImageInputStream(getClass().getResourceAsStream("/exif/exif-jpeg-segment.bin"));
+        CompoundDirectory original = (CompoundDirectory) new EXIFReader().read(source);
+        assertEquals(2, original.directoryCount());
+        assertNotNull(original.getEntryById(TIFF.TAG_EXIF_IFD));
+
+        for (ByteOrder byteOrder : Arrays.asList(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+            byte[] data = write(original, byteOrder, source);
+
+            assertEquals(byteOrder == ByteOrder.BIG_ENDIAN ? 'M' : 'I', data[0]);
+            assertEquals(data[0], data[1]);
+
+            assertSameIFDs(original, read(data));
+        }
+    }
+
+    @Test
+    public void testWriteReadRoundTripLazy() throws IOException {
+        ImageInputStream source = ImageIO.createImageInputStream(getClass().getResourceAsStream("/tiff/chifley_logo.tif"));
+        CompoundDirectory original = (CompoundDirectory) new EXIFReader().read(source, true);
+
+        byte[] data = write(original, ByteOrder.BIG_ENDIAN, source);
+        CompoundDirectory written = read(data);
+        assertSameIFDs(original, written);
+
+        // The strips are copied
+        long[] offsets = toLongs(original.getDirectory(0).getEntryById(TIFF.TAG_STRIP_OFFSETS));
+        long[] byteCounts = toLongs(original.getDirectory(0).getEntryById(TIFF.TAG_STRIP_BYTE_COUNTS));
+        long[] writtenOffsets = toLongs(written.getDirectory(0).getEntryById(TIFF.TAG_STRIP_OFFSETS));
+        assertEquals(offsets.length, writtenOffsets.length);
+
+        for (int i = 0; i < offsets.length; i++) {
+            assertArrayEquals(readData(source, offsets[i], (int) byteCounts[i]), readData(new ByteArrayImageInputStream(data), writtenOffsets[i], (int) byteCounts[i]));
+        }
+    }
+
+    @Test
+    public void testWriteJPEGThumbnail() throws IOException {
+        ImageInputStream source = ImageIO.createImageInputStream(getClass().getResourceAsStream("/exif/exif-jpeg-segment.bin"));
+        CompoundDirectory original = (CompoundDirectory) new EXIFReader().read(source);
+
+        Directory ifd1 = original.getDirectory(1);
+        long offset = ((Number) ifd1.getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT).getValue()).longValue();
+        int length = ((Number) ifd1.getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT_LENGTH).getValue()).intValue();
+        byte[] thumbnail = readData(source, offset, length);
+
+        for (ByteOrder byteOrder : Arrays.asList(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+            byte[] data = write(original, byteOrder, source);
+            assertTrue(data.length > length);
+
+            Directory written = read(data).getDirectory(1);
+            long writtenOffset = ((Number) written.getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT).getValue()).longValue();
+            assertEquals(length, ((Number) written.getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT_LENGTH).getValue()).intValue());
+
+            byte[] writtenThumbnail = readData(new ByteArrayImageInputStream(data), writtenOffset, length);
+            assertEquals((byte) 0xff, writtenThumbnail[0]);
+            assertEquals((byte) 0xd8, writtenThumbnail[1]);
+            assertArrayEquals(thumbnail, writtenThumbnail);
+        }
+    }
+
+    @Test
+    public void testWriteJPEGThumbnailWithoutSource() throws IOException {
+        CompoundDirectory original = (CompoundDirectory) new EXIFReader().read(ImageIO.createImageInputStream(getClass().getResourceAsStream("/exif/exif-jpeg-segment.bin")));
+        assertNotNull(original.getDirectory(1).getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream output = new MemoryCacheImageOutputStream(bytes);
+        new EXIFWriter().write(original, output);
+        output.close();
+
+        // IFD1 is written, without the thumbnail
+        CompoundDirectory written = read(bytes.toByteArray());
+        assertEquals(2, written.directoryCount());
+        assertSameEntries(original.getDirectory(0), written.getDirectory(0));
+
+        Directory ifd1 = written.getDirectory(1);
+        assertNull(ifd1.getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT));
+        assertNull(ifd1.getEntryById(TIFF.TAG_JPEG_INTERCHANGE_FORMAT_LENGTH));
+        assertEquals(original.getDirectory(1).size() - 2, ifd1.size());
+
+        for (Entry entry : ifd1) {
+            assertEquals(original.getDirectory(1).getEntryById(entry.getIdentifier()).toString(), entry.toString());
+        }
+    }
+
+    @Test(expected = IIOException.class)
+    public void testWriteDataOffsetsWithoutSource() throws IOException {
+        // Strips are image data, not optional like the thumbnail
+        CompoundDirectory original = (CompoundDirectory) new EXIFReader().read(ImageIO.createImageInputStream(getClass().getResourceAsStream("/tiff/chifley_logo.tif")));
+        write(original, ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test(expected = IIOException.class)
+    public void testWriteDataOffsetsWithoutLength() throws IOException {
+        write(new TestDirectory(Arrays.<Entry>asList(new TestEntry(TIFF.TAG_JPEG_INTERCHANGE_FORMAT, 42L))), ByteOrder.BIG_ENDIAN, new ByteArrayImageInputStream(new byte[64]));
+    }
+
+    @Test(expected = IIOException.class)
+    public void testWriteSubIFDOffsets() throws IOException {
+        // SubIFDs are not parsed by the reader, the offsets can't be written
+        write(new TestDirectory(Arrays.<Entry>asList(new TestEntry(TIFF.TAG_SUB_IFD, new long[] {4711, 4712}))), ByteOrder.BIG_ENDIAN, new ByteArrayImageInputStream(new byte[64]));
+    }
+
+    @Test
+    public void testWriteSubIFDs() throws IOException {
+        IFD gps = new IFD(Arrays.asList(new EXIFEntry(0, new byte[] {2, 2, 0, 0}, TIFF.TYPE_BYTE)));
+        IFD exif = new IFD(Arrays.asList(
+                new EXIFEntry(EXIF.TAG_EXPOSURE_TIME, new Rational(1, 125), TIFF.TYPE_RATIONAL),
+                new EXIFEntry(EXIF.TAG_USER_COMMENT, "Not written in the IFD itself", TIFF.TYPE_ASCII)
+        ));
+        IFD ifd0 = new IFD(Arrays.asList(
+                new EXIFEntry(TIFF.TAG_GPS_IFD, gps, TIFF.TYPE_LONG),
+                new EXIFEntry(TIFF.TAG_IMAGE_WIDTH, 42, TIFF.TYPE_SHORT),
+                new EXIFEntry(TIFF.TAG_EXIF_IFD, exif, TIFF.TYPE_LONG)
+        ));
+
+        CompoundDirectory directory = read(write(ifd0, ByteOrder.BIG_ENDIAN));
+        assertEquals(1, directory.directoryCount());
+
+        // Entries are sorted by tag
+        Iterator<Entry> entries = directory.iterator();
+        assertEquals(TIFF.TAG_IMAGE_WIDTH, entries.next().getIdentifier());
+        assertEquals(TIFF.TAG_EXIF_IFD, entries.next().getIdentifier());
+        assertEquals(TIFF.TAG_GPS_IFD, entries.next().getIdentifier());
+        assertFalse(entries.hasNext());
+
+        assertEquals(42, directory.getEntryById(TIFF.TAG_IMAGE_WIDTH).getValue());
+
+        Directory exifRead = (Directory) directory.getEntryById(TIFF.TAG_EXIF_IFD).getValue();
+        assertEquals(new Rational(1, 125), exifRead.getEntryById(EXIF.TAG_EXPOSURE_TIME).getValue());
+        assertEquals("Not written in the IFD itself", exifRead.getEntryById(EXIF.TAG_USER_COMMENT).getValue());
+
+        Directory gpsRead = (Directory) directory.getEntryById(TIFF.TAG_GPS_IFD).getValue();
+        assertArrayEquals(new byte[] {2, 2, 0, 0}, (byte[]) gpsRead.getEntryById(0).getValue());
+    }
+
+    @Test
+    public void testWriteInfersTypes() throws IOException {
+        Directory directory = new TestDirectory(Arrays.<Entry>asList(
+                new TestEntry(TIFF.TAG_SOFTWARE, "TwelveMonkeys"),
+                new TestEntry(TIFF.TAG_X_RESOLUTION, new Rational(300)),
+                new TestEntry(TIFF.TAG_STRIP_BYTE_COUNTS, new long[] {8, 4711, 0xffffffffL}),
+                new TestEntry(TIFF.TAG_EXTRA_SAMPLES, new short[] {-1, 2}),
+                new TestEntry(TIFF.TAG_IMAGE_WIDTH, -42),
+                new TestEntry(TIFF.TAG_ICC_PROFILE, new byte[] {1, 2, 3, 4, 5}),
+                new TestEntry(TIFF.TAG_IMAGE_HEIGHT, 4.5),
+                new TestEntry(TIFF.TAG_COPYRIGHT, new float[] {1.5f, 2.5f})
+        ));
+
+        Directory read = read(write(directory, ByteOrder.LITTLE_ENDIAN));
+        assertEquals(8, read.size());
+
+        assertEquals("TwelveMonkeys", read.getEntryById(TIFF.TAG_SOFTWARE).getValue());
+        assertEquals(new Rational(300), read.getEntryById(TIFF.TAG_X_RESOLUTION).getValue());
+        assertArrayEquals(new long[] {8, 4711, 0xffffffffL}, (long[]) read.getEntryById(TIFF.TAG_STRIP_BYTE_COUNTS).getValue());
+        assertArrayEquals(new short[] {-1, 2}, (short[]) read.getEntryById(TIFF.TAG_EXTRA_SAMPLES).getValue());
+        assertEquals(-42, read.getEntryById(TIFF.TAG_IMAGE_WIDTH).getValue());
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, (byte[]) read.getEntryById(TIFF.TAG_ICC_PROFILE).getValue());
+        assertEquals(4.5, read.getEntryById(TIFF.TAG_IMAGE_HEIGHT).getValue());
+        assertArrayEquals(new float[] {1.5f, 2.5f}, (float[]) read.getEntryById(TIFF.TAG_COPYRIGHT).getValue(), 0);
+    }
+
+    @Test
+    public void testWriteValuesWordAligned() throws IOException {
+        // Odd length values should be padded, so that the next value starts on a word boundary
+        Directory directory = new TestDirectory(Arrays.<Entry>asList(
+                new TestEntry(TIFF.TAG_SOFTWARE, "Odd"),
+                new TestEntry(TIFF.TAG_ARTIST, "Not even"),
+                new TestEntry(TIFF.TAG_X_RESOLUTION, new Rational(72))
+        ));
+
+        byte[] data = write(directory, ByteOrder.BIG_ENDIAN);
+        assertEquals(8 + 2 + 3 * 12 + 4 + 10 + 8, data.length);
+
+        Directory read = read(data);
+        assertEquals("Not even", read.getEntryById(TIFF.TAG_ARTIST).getValue());
+        assertEquals(new Rational(72), read.getEntryById(TIFF.TAG_X_RESOLUTION).getValue());
+    }
+
+    @Test(expected = IIOException.class)
+    public void testWriteUnsupportedValue() throws IOException {
+        write(new TestDirectory(Arrays.<Entry>asList(new TestEntry(TIFF.TAG_SOFTWARE, new Object()))), ByteOrder.BIG_ENDIAN);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteNotTIFFTag() throws IOException {
+        write(new TestDirectory(Arrays.<Entry>asList(new TestEntry(0x10000, 1))), ByteOrder.BIG_ENDIAN);
+    }
+
+    private static class TestDirectory extends AbstractDirectory {
+        public TestDirectory(final Collection<Entry> entries) {
+            super(entries);
+        }
+    }
+
+    private static class TestEntry extends AbstractEntry {
+        public TestEntry(final int identifier, final Object value) {
+            super(identifier, value);
+        }
+    }
+}
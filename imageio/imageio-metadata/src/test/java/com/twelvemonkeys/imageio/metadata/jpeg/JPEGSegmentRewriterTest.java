@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.metadata.jpeg;
+
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JPEGSegmentRewriterTest
+ */
+public class JPEGSegmentRewriterTest {
+    private byte[] getBytes(final String name) throws IOException {
+        InputStream stream = getClass().getResourceAsStream(name);
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+
+            while ((read = stream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+
+            return bytes.toByteArray();
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    private static byte[] rewrite(final JPEGSegmentRewriter rewriter, final byte[] jpeg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream output = new MemoryCacheImageOutputStream(bytes);
+
+        try {
+            rewriter.rewrite(new ByteArrayImageInputStream(jpeg), output);
+        }
+        finally {
+            output.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static List<JPEGSegment> readSegments(final byte[] jpeg) throws IOException {
+        return JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(jpeg), JPEGSegmentUtil.ALL_SEGMENTS);
+    }
+
+    private static List<JPEGSegment> readSegments(final byte[] jpeg, final int marker) throws IOException {
+        return JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(jpeg), marker, null);
+    }
+
+    // Returns the offset of the SOS marker, following the segment structure
+    private static int getSOSOffset(final byte[] jpeg) {
+        int offset = 2;
+
+        while (true) {
+            // Skip 0xff padding
+            while ((jpeg[offset + 1] & 0xff) == 0xff) {
+                offset++;
+            }
+
+            if ((jpeg[offset + 1] & 0xff) == 0xda) {
+                return offset;
+            }
+
+            offset += 2 + ((jpeg[offset + 2] & 0xff) << 8 | jpeg[offset + 3] & 0xff);
+        }
+    }
+
+    private static void assertSameEntropyCodedData(final byte[] expected, final byte[] actual) {
+        int expectedOffset = getSOSOffset(expected);
+        int actualOffset = getSOSOffset(actual);
+
+        assertArrayEquals(
+                Arrays.copyOfRange(expected, expectedOffset, expected.length),
+                Arrays.copyOfRange(actual, actualOffset, actual.length)
+        );
+    }
+
+    @Test
+    public void testNoRules() throws IOException {
+        byte[] original = getBytes("/jpeg/exif-rgb-thumbnail-bad-exif-kodak-dc210.jpg");
+
+        assertArrayEquals(original, rewrite(new JPEGSegmentRewriter(), original));
+    }
+
+    @Test
+    public void testKeepOnly() throws IOException {
+        byte[] original = getBytes("/jpeg/jfif-padded-segments.jpg");
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter(false).keep(JPEG.APP0, "JFIF").keep(JPEG.APP14, "Adobe"), original);
+
+        List<JPEGSegment> segments = readSegments(rewritten, JPEG.APP0);
+        assertEquals(1, segments.size());
+        assertEquals("JFIF", segments.get(0).identifier());
+
+        assertTrue(readSegments(rewritten, JPEG.APP1).isEmpty());
+        assertTrue(readSegments(rewritten, JPEG.APP2).isEmpty());
+
+        // Tables are always kept
+        assertEquals(readSegments(original, JPEG.DQT), readSegments(rewritten, JPEG.DQT));
+        assertEquals(readSegments(original, JPEG.DHT), readSegments(rewritten, JPEG.DHT));
+
+        assertSameEntropyCodedData(original, rewritten);
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        byte[] original = getBytes("/jpeg/exif-rgb-thumbnail-bad-exif-kodak-dc210.jpg");
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter().remove(JPEG.APP1, "Exif").remove(JPEG.COM, null), original);
+
+        List<JPEGSegment> expected = readSegments(original);
+        List<JPEGSegment> actual = readSegments(rewritten);
+
+        // APP1 and COM are the first two segments
+        assertEquals(JPEG.APP1, expected.get(0).marker());
+        assertEquals(JPEG.COM, expected.get(1).marker());
+        assertEquals(expected.subList(2, expected.size()), actual);
+
+        assertEquals(original.length - 21674 - 2 - 61 - 2, rewritten.length);
+        assertSameEntropyCodedData(original, rewritten);
+    }
+
+    @Test
+    public void testFirstMatchingRuleWins() throws IOException {
+        byte[] original = getBytes("/jpeg/jfif-padded-segments.jpg");
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter(false).remove(JPEG.APP2, "ICC_PROFILE").keep(JPEG.APP2, null).keep(JPEG.APP1, null), original);
+
+        assertTrue(readSegments(rewritten, JPEG.APP0).isEmpty());
+        assertTrue(readSegments(rewritten, JPEG.APP2).isEmpty());
+        assertEquals(readSegments(original, JPEG.APP1), readSegments(rewritten, JPEG.APP1));
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        byte[] original = getBytes("/jpeg/jfif-padded-segments.jpg");
+        byte[] data = "Exif\0\0MM\0*\0\0\0\0".getBytes("ASCII");
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter().replace(JPEG.APP1, "Exif", data), original);
+
+        List<JPEGSegment> segments = readSegments(rewritten);
+
+        // Written in marker order, the original Exif segment came after the ICC profile
+        assertEquals(JPEG.APP0, segments.get(0).marker());
+        assertEquals(JPEG.APP1, segments.get(1).marker());
+        assertEquals("Exif", segments.get(1).identifier());
+        assertArrayEquals(data, segments.get(1).data);
+        assertEquals(JPEG.APP2, segments.get(2).marker());
+        assertEquals(JPEG.DQT, segments.get(3).marker());
+        assertEquals(1, readSegments(rewritten, JPEG.APP1).size());
+
+        assertSameEntropyCodedData(original, rewritten);
+    }
+
+    @Test
+    public void testReplaceInsertsComment() throws IOException {
+        byte[] original = getBytes("/jpeg/9788245605525.jpg");
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter().replace(JPEG.COM, null, "TwelveMonkeys".getBytes("ASCII")), original);
+
+        List<JPEGSegment> segments = readSegments(rewritten);
+
+        // Inserted after the APPn segments, before the tables
+        assertEquals(JPEG.APP0, segments.get(0).marker());
+        assertEquals(JPEG.APP14, segments.get(1).marker());
+        assertEquals(JPEG.COM, segments.get(2).marker());
+        assertEquals("TwelveMonkeys", new String(segments.get(2).data, "ASCII"));
+        assertEquals(JPEG.DQT, segments.get(3).marker());
+
+        assertEquals(original.length + 4 + 13, rewritten.length);
+        assertSameEntropyCodedData(original, rewritten);
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        byte[] original = getBytes("/jpeg/9788245605525.jpg");
+        JPEGSegmentRewriter rewriter = new JPEGSegmentRewriter().replace(JPEG.COM, null, "TwelveMonkeys".getBytes("ASCII"));
+
+        byte[] rewritten = rewrite(rewriter, original);
+        assertArrayEquals(rewritten, rewrite(rewriter, original));
+
+        // Existing comment should be replaced, not duplicated
+        assertArrayEquals(rewritten, rewrite(rewriter, rewritten));
+    }
+
+    @Test
+    public void testNoScan() throws IOException {
+        byte[] jpeg = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xfe, 0, 4, 'h', 'i', (byte) 0xff, (byte) 0xd9};
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter().remove(JPEG.COM, null), jpeg);
+
+        assertArrayEquals(new byte[] {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xd9}, rewritten);
+    }
+
+    @Test
+    public void testSegmentsBetweenScans() throws IOException {
+        byte[] jpeg = {
+                (byte) 0xff, (byte) 0xd8,
+                (byte) 0xff, (byte) 0xda, 0, 8, 1, 1, 0, 0, 0x3f, 0,
+                0x12, (byte) 0xff, 0, 0x34, (byte) 0xff, (byte) 0xd3, 0x56, (byte) 0xff, // Stuffed zero, RST3, fill byte
+                (byte) 0xff, (byte) 0xfe, 0, 4, 'h', 'i',
+                (byte) 0xff, (byte) 0xe1, 0, 7, 'E', 'x', 'i', 'f', 0,
+                (byte) 0xff, (byte) 0xda, 0, 8, 1, 1, 0, 1, 0x3f, 0,
+                0x78, (byte) 0xff, 0,
+                (byte) 0xff, (byte) 0xd9
+        };
+
+        byte[] rewritten = rewrite(new JPEGSegmentRewriter().remove(JPEG.COM, null).remove(JPEG.APP1, "Exif"), jpeg);
+
+        assertArrayEquals(new byte[] {
+                (byte) 0xff, (byte) 0xd8,
+                (byte) 0xff, (byte) 0xda, 0, 8, 1, 1, 0, 0, 0x3f, 0,
+                0x12, (byte) 0xff, 0, 0x34, (byte) 0xff, (byte) 0xd3, 0x56,
+                (byte) 0xff, (byte) 0xda, 0, 8, 1, 1, 0, 1, 0x3f, 0,
+                0x78, (byte) 0xff, 0,
+                (byte) 0xff, (byte) 0xd9
+        }, rewritten);
+    }
+
+    @Test
+    public void testProgressive() throws IOException {
+        BufferedImage image = new BufferedImage(97, 61, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, Color.RED, 97, 61, Color.BLUE));
+            g.fillRect(0, 0, 97, 61);
+        }
+        finally {
+            g.dispose();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("JPEG").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream stream = new MemoryCacheImageOutputStream(bytes);
+
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            stream.close();
+            writer.dispose();
+        }
+
+        byte[] original = bytes.toByteArray();
+
+        // Insert a comment before each scan but the first
+        ByteArrayOutputStream commented = new ByteArrayOutputStream();
+        int sosOffset = getSOSOffset(original);
+        int scans = 0;
+
+        for (int i = 0; i < original.length; i++) {
+            if (i > sosOffset && i < original.length - 1 && original[i] == (byte) 0xff && original[i + 1] == (byte) 0xda) {
+                commented.write(new byte[] {(byte) 0xff, (byte) 0xfe, 0, 4, 'h', 'i'});
+                scans++;
+            }
+
+            commented.write(original[i]);
+        }
+
+        assertTrue(scans > 0);
+
+        assertArrayEquals(original, rewrite(new JPEGSegmentRewriter().remove(JPEG.COM, null), commented.toByteArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeepNotRewritable() {
+        new JPEGSegmentRewriter().keep(JPEG.DQT, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplaceDataTooLong() {
+        new JPEGSegmentRewriter().replace(JPEG.APP1, null, new byte[0xffff]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplaceNullData() {
+        new JPEGSegmentRewriter().replace(JPEG.APP1, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCommentWithIdentifier() {
+        // Comments have no identifier, so the rule would never match
+        new JPEGSegmentRewriter().remove(JPEG.COM, "hi");
+    }
+}
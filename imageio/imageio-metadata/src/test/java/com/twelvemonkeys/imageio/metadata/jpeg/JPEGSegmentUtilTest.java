@@ -28,6 +28,11 @@
 
 package com.twelvemonkeys.imageio.metadata.jpeg;
 
+import com.twelvemonkeys.imageio.metadata.Directory;
+import com.twelvemonkeys.imageio.metadata.exif.EXIFReader;
+import com.twelvemonkeys.imageio.metadata.exif.EXIFWriter;
+import com.twelvemonkeys.imageio.metadata.exif.TIFF;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
 import com.twelvemonkeys.imageio.stream.URLImageInputStreamSpi;
 import org.junit.Test;
 
@@ -35,7 +40,10 @@ import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 import javax.imageio.spi.IIORegistry;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.color.ICC_Profile;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -209,4 +217,140 @@ public class JPEGSegmentUtilTest {
         assertEquals(JPEG.APP1, segments.get(2).marker());
         assertEquals("Exif", segments.get(2).identifier());
     }
+
+    private byte[] getBytes(final String name) throws IOException {
+        ImageInputStream stream = getData(name);
+
+        try {
+            byte[] bytes = new byte[(int) stream.length()];
+            stream.readFully(bytes);
+            return bytes;
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    private static byte[] replaceSegments(final byte[] jpeg, final int marker, final String identifier, final byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageOutputStream output = new MemoryCacheImageOutputStream(bytes);
+
+        try {
+            JPEGSegmentUtil.replaceSegments(new ByteArrayImageInputStream(jpeg), output, marker, identifier, data);
+        }
+        finally {
+            output.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    // Returns the offset of the SOS marker, following the segment structure
+    private static int getSOSOffset(final byte[] jpeg) {
+        int offset = 2;
+
+        while (true) {
+            // Skip 0xff padding
+            while ((jpeg[offset + 1] & 0xff) == 0xff) {
+                offset++;
+            }
+
+            if ((jpeg[offset + 1] & 0xff) == 0xda) {
+                break;
+            }
+
+            offset += 2 + ((jpeg[offset + 2] & 0xff) << 8 | jpeg[offset + 3] & 0xff);
+        }
+
+        return offset;
+    }
+
+    private static void assertSameEntropyCodedData(final byte[] expected, final byte[] actual) {
+        int expectedOffset = getSOSOffset(expected);
+        int actualOffset = getSOSOffset(actual);
+
+        assertEquals(expected.length - expectedOffset, actual.length - actualOffset);
+        assertArrayEquals(
+                Arrays.copyOfRange(expected, expectedOffset, expected.length),
+                Arrays.copyOfRange(actual, actualOffset, actual.length)
+        );
+    }
+
+    @Test
+    public void testReplaceSegmentsExif() throws IOException {
+        byte[] original = getBytes("/jpeg/exif-rgb-thumbnail-bad-exif-kodak-dc210.jpg");
+
+        JPEGSegment exifSegment = JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(original), JPEG.APP1, "Exif").get(0);
+        ImageInputStream exifInput = new ByteArrayImageInputStream(exifSegment.data, exifSegment.offset() + 1, exifSegment.length() - 1);
+        Directory exif = new EXIFReader().read(exifInput);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write("Exif\0\0".getBytes("ASCII"));
+        ImageOutputStream exifOutput = new MemoryCacheImageOutputStream(data);
+        new EXIFWriter().write(exif, exifOutput, exifInput);
+        exifOutput.close();
+
+        byte[] replaced = replaceSegments(original, JPEG.APP1, "Exif", data.toByteArray());
+
+        List<JPEGSegment> segments = JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(replaced), JPEGSegmentUtil.APP_SEGMENTS);
+        assertEquals(1, segments.size());
+        assertEquals(JPEG.APP1, segments.get(0).marker());
+        assertEquals("Exif", segments.get(0).identifier());
+
+        JPEGSegment segment = segments.get(0);
+        Directory rewritten = new EXIFReader().read(new ByteArrayImageInputStream(segment.data, segment.offset() + 1, segment.length() - 1));
+        assertEquals(exif.size(), rewritten.size());
+        assertEquals(exif.getEntryById(TIFF.TAG_MAKE), rewritten.getEntryById(TIFF.TAG_MAKE));
+
+        // Comment and tables should be kept as is
+        assertEquals(
+                JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(original), JPEG.COM, null),
+                JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(replaced), JPEG.COM, null)
+        );
+        assertEquals(
+                JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(original), JPEG.DQT, null),
+                JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(replaced), JPEG.DQT, null)
+        );
+
+        assertSameEntropyCodedData(original, replaced);
+    }
+
+    @Test
+    public void testReplaceSegmentsInsertAfterJFIF() throws IOException {
+        byte[] original = getBytes("/jpeg/9788245605525.jpg");
+        byte[] replaced = replaceSegments(original, JPEG.APP1, "Exif", "Exif\0\0MM\0*\0\0\0\0".getBytes("ASCII"));
+
+        List<JPEGSegment> segments = JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(replaced), JPEGSegmentUtil.APP_SEGMENTS);
+        assertEquals(3, segments.size());
+
+        assertEquals(JPEG.APP0, segments.get(0).marker());
+        assertEquals("JFIF", segments.get(0).identifier());
+        assertEquals(JPEG.APP1, segments.get(1).marker());
+        assertEquals("Exif", segments.get(1).identifier());
+        assertEquals(JPEG.APP14, segments.get(2).marker());
+        assertEquals("Adobe", segments.get(2).identifier());
+
+        assertEquals(original.length + 4 + 14, replaced.length);
+        assertSameEntropyCodedData(original, replaced);
+    }
+
+    @Test
+    public void testReplaceSegmentsRemove() throws IOException {
+        byte[] original = getBytes("/jpeg/jfif-padded-segments.jpg");
+        byte[] replaced = replaceSegments(original, JPEG.APP1, null, null);
+
+        List<JPEGSegment> segments = JPEGSegmentUtil.readSegments(new ByteArrayImageInputStream(replaced), JPEGSegmentUtil.APP_SEGMENTS);
+        assertEquals(2, segments.size());
+
+        assertEquals(JPEG.APP0, segments.get(0).marker());
+        assertEquals(JPEG.APP2, segments.get(1).marker());
+        assertEquals("ICC_PROFILE", segments.get(1).identifier());
+
+        assertSameEntropyCodedData(original, replaced);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplaceSegmentsNotAppMarker() throws IOException {
+        replaceSegments(getBytes("/jpeg/9788245605525.jpg"), JPEG.DQT, null, new byte[0]);
+    }
 }
@@ -467,4 +467,46 @@ public class XMPReaderTest extends MetadataReaderAbstractTest {
         assertThat(exif.getEntryById("http://ns.adobe.com/exif/1.0/PixelYDimension"), hasValue("550"));
         assertThat(exif.getEntryById("http://ns.adobe.com/exif/1.0/NativeDigest"), hasValue("36864,40960,40961,37121,37122,40962,40963,37510,40964,36867,36868,33434,33437,34850,34852,34855,34856,37377,37378,37379,37380,37381,37382,37383,37384,37385,37386,37396,41483,41484,41486,41487,41488,41492,41493,41495,41728,41729,41730,41985,41986,41987,41988,41989,41990,41991,41992,41993,41994,41995,41996,42016,0,2,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18,20,22,23,24,25,26,27,28,30;A7F21D25E2C562F152B2C4ECC9E534DA"));
     }
+
+    @Test
+    public void testNamespaceFilter() throws IOException {
+        Directory directory = new XMPReader(Arrays.asList(XMP.NS_DC)).read(getDataAsIIS());
+
+        assertEquals(2, directory.size());
+        assertThat(directory.getEntryById("http://purl.org/dc/elements/1.1/description"), hasValue(Collections.singletonMap("x-default", "Picture 71146")));
+        assertThat(directory.getEntryById("http://purl.org/dc/elements/1.1/format"), hasValue("image/jpeg"));
+        assertNull(directory.getEntryById("http://ns.adobe.com/photoshop/1.0/DateCreated"));
+        assertNull(directory.getEntryById("http://ns.adobe.com/xap/1.0/mm/DerivedFrom"));
+    }
+
+    @Test
+    public void testNamespaceFilterSameAsUnfiltered() throws IOException {
+        CompoundDirectory unfiltered = (CompoundDirectory) createReader().read(getDataAsIIS());
+        CompoundDirectory filtered = (CompoundDirectory) new XMPReader(Arrays.asList(XMP.NS_XAP_MM, XMP.NS_TIFF)).read(getDataAsIIS());
+
+        assertEquals(2, filtered.directoryCount());
+        assertEquals(getDirectoryByNS(unfiltered, XMP.NS_XAP_MM), getDirectoryByNS(filtered, XMP.NS_XAP_MM));
+        assertEquals(getDirectoryByNS(unfiltered, XMP.NS_TIFF), getDirectoryByNS(filtered, XMP.NS_TIFF));
+    }
+
+    @Test
+    public void testNamespaceFilterAttributeSyntax() throws IOException {
+        Directory directory = new XMPReader(Arrays.asList(XMP.NS_EXIF)).read(getResourceAsIIS("/xmp/rdf-attribute-shorthand.xml"));
+
+        assertEquals(4, directory.size());
+        assertThat(directory.getEntryById("http://ns.adobe.com/exif/1.0/PixelXDimension"), hasValue("426"));
+        assertNull(directory.getEntryById("http://ns.adobe.com/xap/1.0/CreatorTool"));
+    }
+
+    @Test
+    public void testNamespaceFilterNoMatch() throws IOException {
+        Directory directory = new XMPReader(Arrays.asList("http://example.com/ns/none/")).read(getDataAsIIS());
+
+        assertEquals(0, directory.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNamespaceFilterNull() {
+        new XMPReader(null);
+    }
 }
@@ -2,6 +2,9 @@ package com.twelvemonkeys.imageio.metadata.xmp;
 
 import org.junit.Test;
 
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
 import java.io.*;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Arrays;
@@ -43,11 +46,15 @@ public class XMPScannerTestCase  {
     }
 
     private InputStream createXMPStream(final String pXMP, final String pCharsetName) {
+        return createXMPStream(pXMP, pCharsetName, 79);
+    }
+
+    private InputStream createXMPStream(final String pXMP, final String pCharsetName, final int pOffset) {
         try {
             return new SequenceInputStream(
                     Collections.enumeration(
                             Arrays.asList(
-                                    createRandomStream(79),
+                                    createRandomStream(pOffset),
                                     new ByteArrayInputStream(pXMP.getBytes(pCharsetName)),
                                     createRandomStream(31)
                             )
@@ -142,4 +149,154 @@ public class XMPScannerTestCase  {
             System.err.println("Warning: Unsupported charset. Test skipped. " + ignore);
         }
     }
+
+    private static String readFully(final Reader pReader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[1024];
+
+        for (int read; (read = pReader.read(buffer)) >= 0;) {
+            builder.append(buffer, 0, read);
+        }
+
+        return builder.toString();
+    }
+
+    private static String getPacketContent(final String pXMP) {
+        return pXMP.substring(pXMP.indexOf("?>") + 2, pXMP.indexOf("<?xpacket end="));
+    }
+
+    private File createXMPFile(final String pXMP, final int pOffset) throws IOException {
+        File file = File.createTempFile("xmp-scanner-test", ".bin");
+        file.deleteOnExit();
+
+        OutputStream output = new FileOutputStream(file);
+
+        try {
+            InputStream input = createXMPStream(pXMP, "UTF-8", pOffset);
+            byte[] buffer = new byte[1024];
+
+            for (int read; (read = input.read(buffer)) >= 0;) {
+                output.write(buffer, 0, read);
+            }
+        }
+        finally {
+            output.close();
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testScanContent() throws IOException {
+        for (String charset : new String[] {"UTF-8", "UTF-16BE", "UTF-16LE"}) {
+            Reader reader = XMPScanner.scanForXMPPacket(createXMPStream(XMP, charset));
+
+            assertNotNull(charset, reader);
+            assertEquals(charset, getPacketContent(XMP), readFully(reader));
+        }
+    }
+
+    @Test
+    public void testScanAcrossBlockBoundary() throws IOException {
+        for (String charset : new String[] {"UTF-8", "UTF-16BE", "UTF-16LE"}) {
+            for (int offset = XMPScanner.BLOCK_SIZE - 70; offset <= XMPScanner.BLOCK_SIZE; offset++) {
+                Reader reader = XMPScanner.scanForXMPPacket(createXMPStream(XMP, charset, offset));
+
+                assertNotNull(charset + " at " + offset, reader);
+                assertEquals(charset + " at " + offset, getPacketContent(XMP), readFully(reader));
+            }
+        }
+    }
+
+    @Test
+    public void testScanNoPacket() throws IOException {
+        assertNull(XMPScanner.scanForXMPPacket(createRandomStream(XMPScanner.BLOCK_SIZE * 3 + 17)));
+    }
+
+    @Test
+    public void testScanIncompletePacket() throws IOException {
+        InputStream stream = createXMPStream(XMP.substring(0, XMP.indexOf("<?xpacket end=")), "UTF-8");
+
+        assertNull(XMPScanner.scanForXMPPacket(stream));
+    }
+
+    @Test
+    public void testScanMultiplePackets() throws IOException {
+        String other = XMP.replace("twelvemonkeys.com", "example.com");
+        InputStream input = new SequenceInputStream(createXMPStream(XMP, "UTF-8"), createXMPStream(other, "UTF-16LE"));
+        ImageInputStream stream = ImageIO.createImageInputStream(input);
+
+        try {
+            Reader first = XMPScanner.scanForXMPPacket(stream);
+            assertNotNull(first);
+            assertEquals(getPacketContent(XMP), readFully(first));
+
+            Reader second = XMPScanner.scanForXMPPacket(stream);
+            assertNotNull(second);
+            assertEquals(getPacketContent(other), readFully(second));
+
+            assertNull(XMPScanner.scanForXMPPacket(stream));
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testScanFile() throws IOException {
+        File file = createXMPFile(XMP, XMPScanner.BLOCK_SIZE - 7);
+
+        Reader reader = XMPScanner.scanForXMPPacket(file);
+        assertNotNull(reader);
+        assertEquals(getPacketContent(XMP), readFully(reader));
+
+        // Scanning again should give the same result (from cache)
+        Reader cached = XMPScanner.scanForXMPPacket((Object) file);
+        assertNotNull(cached);
+        assertEquals(getPacketContent(XMP), readFully(cached));
+    }
+
+    @Test
+    public void testScanFileModified() throws IOException {
+        File file = createXMPFile(XMP, 79);
+        assertNotNull(XMPScanner.scanForXMPPacket(file));
+
+        // Rewrite the file, with the packet at a different offset
+        File modified = createXMPFile(XMP.replace("twelvemonkeys.com", "example.com"), 211);
+        assertTrue(file.delete());
+        assertTrue(modified.renameTo(file));
+
+        Reader reader = XMPScanner.scanForXMPPacket(file);
+        assertNotNull(reader);
+        assertEquals(getPacketContent(XMP.replace("twelvemonkeys.com", "example.com")), readFully(reader));
+    }
+
+    @Test
+    public void testScanFileModifiedSameLengthAndTime() throws IOException {
+        File file = createXMPFile(XMP, 79);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        assertNotNull(XMPScanner.scanForXMPPacket(file));
+
+        // Rewrite the file, with the same length and last modified time, but the packet starting earlier
+        String other = XMP.replace("twelvemonkeys.com", "www.twelvemonkeys.com");
+        File modified = createXMPFile(other, 75);
+        assertTrue(file.delete());
+        assertTrue(modified.renameTo(file));
+        assertTrue(file.setLastModified(lastModified));
+        assertEquals(length, file.length());
+        assertEquals(lastModified, file.lastModified());
+
+        Reader reader = XMPScanner.scanForXMPPacket(file);
+        assertNotNull(reader);
+        assertEquals(getPacketContent(other), readFully(reader));
+    }
+
+    @Test
+    public void testScanFileNoPacket() throws IOException {
+        File file = createXMPFile("", 4711);
+
+        assertNull(XMPScanner.scanForXMPPacket(file));
+        assertNull(XMPScanner.scanForXMPPacket(file));
+    }
 }
@@ -34,16 +34,37 @@ import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * CCITT Modified Huffman RLE, Group 3 (T4) and Group 4 (T6) fax compression.
+ * <p/>
+ * Codes are decoded using lookup tables, indexed by the next 12 or 13 bits (run lengths) or 7 bits (2D modes)
+ * of the stream, resolving a complete code in a single lookup.
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
  * @version $Id: CCITTFaxDecoderStream.java,v 1.0 23.05.12 15:55 haraldk Exp$
  */
 final class CCITTFaxDecoderStream extends FilterInputStream {
-    // See TIFF 6.0 Specification, Section 10: "Modified Huffman Compression", page 43.
+    // See TIFF 6.0 Specification, Section 10: "Modified Huffman Compression", page 43,
+    // Section 11: "CCITT Bilevel Encodings", page 49 (T4Options and T6Options), and
+    // ITU-T Recommendations T.4 and T.6 for the 2D (MR/MMR) coding scheme.
+
+    /** T4Options bit 0: 2-dimensional coding. */
+    static final int OPTION_2D = 1;
+    /** T4Options/T6Options bit 1: Uncompressed mode allowed. */
+    static final int OPTION_UNCOMPRESSED = 2;
+    /** T4Options bit 2: Fill bits added before EOL, to make EOL end on a byte boundary. */
+    static final int OPTION_FILL_BITS = 4;
+
+    private static final int EOL_CODE = 0x01; // 12 bit
+
+    // 2D modes
+    private static final int MODE_PASS = 1;
+    private static final int MODE_HORIZONTAL = 2;
+    private static final int MODE_VERTICAL = 3; // + 3 for vertical offset -3...3
+    private static final int MODE_EXTENSION = 10;
 
     private final int columns;
     private final byte[] decodedRow;
@@ -53,186 +74,353 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
 
     private int bitBuffer;
     private int bitBufferLength;
+    private boolean eof;
 
-    // Need to take fill order into account (?) (use flip table?)
     private final int fillOrder;
     private final int type;
+    private final int options;
 
-    private final int[] changes;
-    private int changesCount;
+    // Changing elements (positions where color changes, starting with white to black) of the current and reference lines
+    private int[] changesCurrent;
+    private int[] changesReference;
+    private int changesCurrentCount;
+    private int changesReferenceCount;
 
-    private static final int EOL_CODE = 0x01; // 12 bit
+    private boolean firstRow = true;
 
     public CCITTFaxDecoderStream(final InputStream stream, final int columns, final int type, final int fillOrder) {
+        this(stream, columns, type, fillOrder, 0);
+    }
+
+    public CCITTFaxDecoderStream(final InputStream stream, final int columns, final int type, final int fillOrder, final int options) {
         super(Validate.notNull(stream, "stream"));
 
         this.columns = Validate.isTrue(columns > 0, columns, "width must be greater than 0");
         // We know this is only used for b/w (1 bit)
         this.decodedRow = new byte[(columns + 7) / 8];
-        this.type = Validate.isTrue(type == TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE, type, "Only CCITT Modified Huffman RLE compression (2) supported: %s"); // TODO: Implement group 3 and 4
-        this.fillOrder = Validate.isTrue(fillOrder == 1, fillOrder, "Only fill order 1 supported: %s"); // TODO: Implement fillOrder == 2
-
-        this.changes = new int[columns];
+        this.type = Validate.isTrue(
+                type == TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE || type == TIFFExtension.COMPRESSION_CCITT_T4 || type == TIFFExtension.COMPRESSION_CCITT_T6,
+                type, "Only CCITT Modified Huffman RLE (2), T4 (3) or T6 (4) compression supported: %s"
+        );
+        this.fillOrder = Validate.isTrue(fillOrder == 1 || fillOrder == 2, fillOrder, "Only fill order 1 or 2 supported: %s");
+        this.options = options;
+
+        // Room for a change at each column, and sentinels
+        this.changesCurrent = new int[columns + 4];
+        this.changesReference = new int[columns + 4];
     }
 
-    // IDEA: Would it be faster to keep all bit combos of each length (>=2) that is NOT a code, to find bit length, then look up value in table?
-    // -- If white run, start at 4 bits to determine length, if black, start at 2 bits
-
     private void fetch() throws IOException {
         if (decodedPos >= decodedLength) {
-            decodedLength = 0;
-            try {
-                decodeRow();
-            }
-            catch (EOFException e) {
-                // TODO: Rewrite to avoid throw/catch for normal flow...
-                if (decodedLength != 0) {
-                    throw e;
+            decodedLength = decodeRow() ? decodedRow.length : -1;
+            decodedPos = 0;
+        }
+    }
+
+    private boolean decodeRow() throws IOException {
+        Arrays.fill(decodedRow, (byte) 0);
+
+        // Swap current and reference line
+        int[] temp = changesReference;
+        changesReference = changesCurrent;
+        changesReferenceCount = firstRow ? 0 : changesCurrentCount;
+        changesCurrent = temp;
+        changesCurrentCount = 0;
+
+        boolean twoDimensional;
+
+        switch (type) {
+            case TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE:
+                // Rows always begin on a byte boundary
+                alignToByte();
+
+                if (isEndOfData()) {
+                    return false;
                 }
 
-                // ..otherwise, just client code trying to read past the end of stream
-                decodedLength = -1;
-            }
+                twoDimensional = false;
+                break;
 
-            decodedPos = 0;
+            case TIFFExtension.COMPRESSION_CCITT_T4:
+                // Each row starts with an EOL, followed by a tag bit if 2D coding is used. Multiple EOLs means end of data (RTC)
+                skipEOLs();
+
+                if (isEndOfData()) {
+                    return false;
+                }
+
+                if ((options & OPTION_2D) != 0) {
+                    twoDimensional = readBits(1) == 0;
+
+                    // In 2D mode, RTC is EOL + 1 repeated, so an EOL following the tag bit means end of data
+                    if (peekBits(12) == EOL_CODE) {
+                        return false;
+                    }
+                }
+                else {
+                    twoDimensional = false;
+                }
+
+                break;
+
+            case TIFFExtension.COMPRESSION_CCITT_T6:
+                // No EOLs, all rows are 2D coded. EOFB (two EOLs) means end of data
+                if (isEndOfData() || peekBits(12) == EOL_CODE) {
+                    return false;
+                }
+
+                twoDimensional = true;
+                break;
+
+            default:
+                throw new AssertionError();
+        }
+
+        firstRow = false;
+
+        if (twoDimensional) {
+            decode2D();
+        }
+        else {
+            decode1D();
         }
+
+        return true;
     }
 
-    private void decodeRow() throws IOException {
-        resetBuffer();
+    private void decode1D() throws IOException {
+        int index = 0;
+        boolean white = true;
+
+        do {
+            int completeRun = decodeRun(white);
 
-        boolean literalRun = true;
+            if (index + completeRun > columns) {
+                throw new IOException("Sum of run-lengths does not equal scan line width: " + (index + completeRun) + " > " + columns);
+            }
 
-        /*
-        if (type == TIFFExtension.COMPRESSION_CCITT_T4) {
-            int eol = readBits(12);
-            System.err.println("eol: " + eol);
-            while (eol != EOL_CODE) {
-                eol = readBits(1);
-                System.err.println("eol: " + eol);
-//                throw new IOException("Missing EOL");
+            if (white) {
+                fillWhite(index, index + completeRun);
             }
 
-            literalRun = readBits(1) == 1;
+            index += completeRun;
+            addChange(index);
+
+            // Flip color for next run
+            white = !white;
         }
+        while (index < columns);
+    }
 
-        System.err.println("literalRun: " + literalRun);
-        */
-        int index = 0;
+    private void decode2D() throws IOException {
+        // Sentinels at the end of the reference line
+        int[] reference = changesReference;
+        reference[changesReferenceCount] = columns;
+        reference[changesReferenceCount + 1] = columns;
+        reference[changesReferenceCount + 2] = columns;
+
+        int a0 = -1; // Imaginary changing element before the first element
+        boolean white = true;
+        int refIndex = 0;
+
+        while (a0 < columns) {
+            // Find b1, the first changing element on the reference line to the right of a0, and of opposite color of a0
+            // The previous b1 may be to the right of a0 (after a vertical left mode), so start one step back
+            if (refIndex > 0) {
+                refIndex--;
+            }
 
-        if (literalRun) {
-            changesCount = 0;
-            boolean white = true;
+            while (reference[refIndex] <= a0 && refIndex < changesReferenceCount || (refIndex & 1) != (white ? 0 : 1)) {
+                refIndex++;
+            }
+
+            int b1 = reference[refIndex];
+            int start = a0 < 0 ? 0 : a0;
+
+            int entry = MODE_LOOKUP[peekBits(7)];
+            int mode = entry >> 4;
+
+            if (mode == 0) {
+                throw new IOException("Unknown code in 2D coded CCITT stream");
+            }
+
+            skipBits(entry & 0xf);
 
-            do {
-                int completeRun = 0;
+            switch (mode) {
+                case MODE_PASS:
+                    int b2 = reference[refIndex + 1];
 
-                int run;
-                do {
                     if (white) {
-                        run = decodeRun(WHITE_CODES, WHITE_RUN_LENGTHS, 4);
-                    }
-                    else {
-                        run = decodeRun(BLACK_CODES, BLACK_RUN_LENGTHS, 2);
+                        fillWhite(start, b2);
                     }
 
-                    completeRun += run;
-                }
-                while (run >= 64); // Additional makeup codes are packed into both b/w codes, terminating codes are < 64 bytes
+                    a0 = b2;
+                    break;
 
-                changes[changesCount++] = index + completeRun;
+                case MODE_HORIZONTAL:
+                    int a1 = Math.min(start + decodeRun(white), columns);
+                    int a2 = Math.min(a1 + decodeRun(!white), columns);
 
-//                System.err.printf("%s run: %d\n", white ? "white" : "black", run);
+                    fillWhite(white ? start : a1, white ? a1 : a2);
 
-                // TODO: Optimize with lookup for 0-7 bits?
-                // Fill bits to byte boundary...
-                while (index % 8 != 0 && completeRun-- > 0) {
-                    decodedRow[index++ / 8] |= (white ? 1 << 8 - (index % 8) : 0);
-                }
+                    addChange(a1);
+                    addChange(a2);
+
+                    a0 = a2;
+                    break;
 
-                // ...then fill complete bytes to either 0xff or 0x00...
-                if (index % 8 == 0) {
-                    final byte value = (byte) (white ? 0xff : 0x00);
+                case MODE_EXTENSION:
+                    throw new IOException("Unsupported CCITT extension (uncompressed mode)");
 
-                    while (completeRun > 7) {
-                        decodedRow[index / 8] = value;
-                        completeRun -= 8;
-                        index += 8;
+                default:
+                    // Vertical mode
+                    int a1v = b1 + mode - MODE_VERTICAL - 3;
+
+                    if (a1v < start || a1v > columns) {
+                        throw new IOException("Vertical mode changing element outside scan line: " + a1v);
                     }
-                }
 
-                // ...finally fill any remaining bits
-                while (completeRun-- > 0) {
-                    decodedRow[index++ / 8] |= (white ? 1 << 8 - (index % 8) : 0);
-                }
+                    if (white) {
+                        fillWhite(start, a1v);
+                    }
 
-                // Flip color for next run
-                white = !white;
+                    addChange(a1v);
+
+                    a0 = a1v;
+                    white = !white;
+                    break;
             }
-            while (index < columns);
+        }
+    }
+
+    private void addChange(final int position) {
+        if (changesCurrentCount > 0 && changesCurrent[changesCurrentCount - 1] == position) {
+            // Zero length run, the two changes cancel out
+            changesCurrentCount--;
         }
         else {
-            // non-literal run
+            changesCurrent[changesCurrentCount++] = position;
         }
+    }
 
-        if (type == TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE && index != columns) {
-            throw new IOException("Sum of run-lengths does not equal scan line width: " + index + " > " + columns);
+    private void fillWhite(final int start, final int end) {
+        // White pixels are set, black pixels are left as 0
+        if (start >= end) {
+            return;
         }
 
-        decodedLength = (index / 8) + 1;
+        int first = start >> 3;
+        int last = (end - 1) >> 3;
+        int startMask = 0xff >> (start & 7);
+        int endMask = 0xff << (7 - ((end - 1) & 7));
+
+        if (first == last) {
+            decodedRow[first] |= startMask & endMask;
+        }
+        else {
+            decodedRow[first] |= startMask;
+
+            for (int i = first + 1; i < last; i++) {
+                decodedRow[i] = (byte) 0xff;
+            }
+
+            decodedRow[last] |= endMask;
+        }
     }
 
-    private int decodeRun(short[][] codes, short[][] runLengths, int minCodeSize) throws IOException {
-        // TODO: Optimize...
-        // Looping and comparing is the most straight-forward, but probably not the most effective way...
-        int code = readBits(minCodeSize);
+    private int decodeRun(final boolean white) throws IOException {
+        int[] lookup = white ? WHITE_LOOKUP : BLACK_LOOKUP;
+        int lookupBits = white ? 12 : 13;
 
-        for (int bits = 0; bits < codes.length; bits++) {
-            short[] bitCodes = codes[bits];
+        int completeRun = 0;
+        int run;
 
-            for (int i = 0; i < bitCodes.length; i++) {
-                if (bitCodes[i] == code) {
-//                    System.err.println("code: " + code);
+        do {
+            int entry = lookup[peekBits(lookupBits)];
 
-                    // Code found, return matching run length
-                    return runLengths[bits][i];
-                }
+            if (entry == 0) {
+                throw new IOException("Unknown code in Huffman RLE stream");
             }
 
-            // No code found, read one more bit and try again
-            code = fillOrder == 1 ? (code << 1) | readBits(1) : readBits(1) << (bits + minCodeSize) | code;
+            skipBits(entry & 0xf);
+
+            run = entry >> 4;
+            completeRun += run;
         }
+        while (run >= 64); // Additional makeup codes are packed into both b/w codes, terminating codes are < 64 bytes
 
-        throw new IOException("Unknown code in Huffman RLE stream");
+        return completeRun;
     }
 
-    private void resetBuffer() {
-        for (int i = 0; i < decodedRow.length; i++) {
-            decodedRow[i] = 0;
+    private void skipEOLs() throws IOException {
+        while (!isEndOfData()) {
+            int bits = peekBits(12);
+
+            if (bits == EOL_CODE) {
+                skipBits(12);
+            }
+            else if (bits == 0) {
+                // Fill bits, no valid code has more than 11 leading zeros
+                skipBits(1);
+            }
+            else {
+                break;
+            }
         }
+    }
+
+    private boolean isEndOfData() throws IOException {
+        fillBitBuffer();
+
+        // Only zero padding bits left
+        return eof && (bitBuffer & ((1 << bitBufferLength) - 1)) == 0;
+    }
 
-        bitBuffer = 0;
-        bitBufferLength = 0;
+    private void alignToByte() {
+        // Bytes are always read in full, so any bits not on a byte boundary are in the buffer
+        bitBufferLength -= bitBufferLength % 8;
     }
 
-    private int readBits(int bitCount) throws IOException {
-        while (bitBufferLength < bitCount) {
+    private void fillBitBuffer() throws IOException {
+        while (bitBufferLength <= 24 && !eof) {
             int read = in.read();
+
             if (read == -1) {
-                throw new EOFException("Unexpected end of Huffman RLE stream");
+                eof = true;
+                break;
             }
 
-            int bits = read & 0xff;
-            bitBuffer = (bitBuffer << 8) | bits;
+            bitBuffer = (bitBuffer << 8) | (fillOrder == 1 ? read : REVERSED_BITS[read] & 0xff);
             bitBufferLength += 8;
         }
+    }
+
+    private int peekBits(final int bitCount) throws IOException {
+        if (bitBufferLength < bitCount) {
+            fillBitBuffer();
+
+            if (bitBufferLength < bitCount) {
+                // Pad with zeros at end of stream
+                return (bitBuffer << (bitCount - bitBufferLength)) & ((1 << bitCount) - 1);
+            }
+        }
+
+        return (bitBuffer >>> (bitBufferLength - bitCount)) & ((1 << bitCount) - 1);
+    }
+
+    private void skipBits(final int bitCount) throws EOFException {
+        if (bitBufferLength < bitCount) {
+            throw new EOFException("Unexpected end of Huffman RLE stream");
+        }
 
-        // TODO: Take fill order into account
         bitBufferLength -= bitCount;
-        int result = bitBuffer >> bitBufferLength;
-        bitBuffer &= (1 << bitBufferLength) - 1;
+    }
 
-        return result;
+    private int readBits(final int bitCount) throws IOException {
+        int bits = peekBits(bitCount);
+        skipBits(bitCount);
+
+        return bits;
     }
 
     @Override
@@ -449,4 +637,71 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
                     1984, 2048, 2112, 2176, 2240, 2304, 2368, 2432, 2496, 2560,
             }
     };
+
+    // NOTE: The lookup tables must be declared after the code tables, as they are created from them
+
+    /** Lookup for white codes, indexed by the next 12 bits. Entries are {@code runLength << 4 | codeLength}, 0 means invalid code. */
+    private static final int[] WHITE_LOOKUP = createLookup(WHITE_CODES, WHITE_RUN_LENGTHS, 4, 12);
+    /** Lookup for black codes, indexed by the next 13 bits. Entries are {@code runLength << 4 | codeLength}, 0 means invalid code. */
+    private static final int[] BLACK_LOOKUP = createLookup(BLACK_CODES, BLACK_RUN_LENGTHS, 2, 13);
+    /** Lookup for 2D mode codes, indexed by the next 7 bits. Entries are {@code mode << 4 | codeLength}, 0 means invalid code. */
+    private static final int[] MODE_LOOKUP = createModeLookup();
+
+    private static final byte[] REVERSED_BITS = createReversedBits();
+
+    private static int[] createLookup(final short[][] codes, final short[][] runLengths, final int minCodeSize, final int lookupBits) {
+        int[] lookup = new int[1 << lookupBits];
+
+        for (int bits = 0; bits < codes.length; bits++) {
+            int codeSize = bits + minCodeSize;
+
+            for (int i = 0; i < codes[bits].length; i++) {
+                // All entries starting with the code resolves to the code
+                int unused = lookupBits - codeSize;
+                int first = codes[bits][i] << unused;
+
+                for (int j = 0; j < 1 << unused; j++) {
+                    lookup[first | j] = runLengths[bits][i] << 4 | codeSize;
+                }
+            }
+        }
+
+        return lookup;
+    }
+
+    private static int[] createModeLookup() {
+        int[] lookup = new int[1 << 7];
+
+        addMode(lookup, 0x1, 1, MODE_VERTICAL + 3);      // V0:  1
+        addMode(lookup, 0x3, 3, MODE_VERTICAL + 3 + 1);  // VR1: 011
+        addMode(lookup, 0x2, 3, MODE_VERTICAL + 3 - 1);  // VL1: 010
+        addMode(lookup, 0x1, 3, MODE_HORIZONTAL);        // H:   001
+        addMode(lookup, 0x1, 4, MODE_PASS);              // P:   0001
+        addMode(lookup, 0x3, 6, MODE_VERTICAL + 3 + 2);  // VR2: 000011
+        addMode(lookup, 0x2, 6, MODE_VERTICAL + 3 - 2);  // VL2: 000010
+        addMode(lookup, 0x3, 7, MODE_VERTICAL + 3 + 3);  // VR3: 0000011
+        addMode(lookup, 0x2, 7, MODE_VERTICAL + 3 - 3);  // VL3: 0000010
+        addMode(lookup, 0x1, 7, MODE_EXTENSION);         // Extensions: 0000001xxx
+
+        return lookup;
+    }
+
+    private static void addMode(final int[] lookup, final int code, final int codeSize, final int mode) {
+        int unused = 7 - codeSize;
+        int first = code << unused;
+
+        for (int j = 0; j < 1 << unused; j++) {
+            lookup[first | j] = mode << 4 | codeSize;
+        }
+    }
+
+    private static byte[] createReversedBits() {
+        byte[] reversed = new byte[256];
+
+        for (int i = 0; i < 256; i++) {
+            reversed[i] = (byte) (Integer.reverse(i) >>> 24);
+        }
+
+        return reversed;
+    }
 }
@@ -35,11 +35,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 
 /**
- * A decoder for data converted using "horizontal differencing predictor".
+ * A decoder for data converted using "horizontal differencing predictor",
+ * or the "floating point horizontal differencing predictor" (Predictor 3).
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -47,24 +50,48 @@ import java.nio.channels.ReadableByteChannel;
  */
 final class HorizontalDeDifferencingStream extends InputStream {
     // See TIFF 6.0 Specification, Section 14: "Differencing Predictor", page 64.
+    // See Adobe Photoshop TIFF Technical Note 3: "Floating Point Predictor".
 
     private final int columns;
     // NOTE: PlanarConfiguration == 2 may be treated as samplesPerPixel == 1
     private final int samplesPerPixel;
     private final int bitsPerSample;
+    private final boolean floatingPoint;
 
     private final ReadableByteChannel channel;
     private final ByteBuffer buffer;
 
+    // Views and row arrays for the array based 16/32 bit and floating point de-differencing
+    private final ShortBuffer shortBuffer;
+    private final IntBuffer intBuffer;
+    private final short[] shorts;
+    private final int[] ints;
+    private final byte[] bytes;
+
     public HorizontalDeDifferencingStream(final InputStream stream, final int columns, final int samplesPerPixel, final int bitsPerSample, final ByteOrder byteOrder) {
+        this(stream, columns, samplesPerPixel, bitsPerSample, byteOrder, false);
+    }
+
+    public HorizontalDeDifferencingStream(final InputStream stream, final int columns, final int samplesPerPixel, final int bitsPerSample, final ByteOrder byteOrder, final boolean floatingPoint) {
         channel = Channels.newChannel(Validate.notNull(stream, "stream"));
 
         this.columns = Validate.isTrue(columns > 0, columns, "width must be greater than 0");
         this.samplesPerPixel = Validate.isTrue(bitsPerSample >= 8 || samplesPerPixel == 1, samplesPerPixel, "Unsupported samples per pixel for < 8 bit samples: %s");
         this.bitsPerSample = Validate.isTrue(isValidBPS(bitsPerSample), bitsPerSample, "Unsupported bits per sample value: %s");
+        this.floatingPoint = Validate.isTrue(!floatingPoint || bitsPerSample >= 16, floatingPoint, "Unsupported bits per sample value for floating point predictor: " + bitsPerSample);
 
         buffer = ByteBuffer.allocate((columns * samplesPerPixel * bitsPerSample + 7) / 8).order(byteOrder);
+
+        // The views always span the entire row, regardless of the position of the buffer
+        shortBuffer = buffer.asShortBuffer();
+        intBuffer = buffer.asIntBuffer();
+
         buffer.flip();
+
+        int samples = columns * samplesPerPixel;
+        shorts = !floatingPoint && bitsPerSample == 16 ? new short[samples] : null;
+        ints = !floatingPoint && bitsPerSample == 32 ? new int[samples] : null;
+        bytes = floatingPoint ? new byte[buffer.capacity()] : null;
     }
 
     private boolean isValidBPS(final int bitsPerSample) {
@@ -108,6 +135,11 @@ final class HorizontalDeDifferencingStream extends InputStream {
     }
 
     private void decodeRow() throws EOFException {
+        if (floatingPoint) {
+            decodeFloatingPointRow();
+            return;
+        }
+
         // Un-apply horizontal predictor
         byte original;
         int sample = 0;
@@ -170,21 +202,28 @@ final class HorizontalDeDifferencingStream extends InputStream {
                 break;
 
             case 16:
-                for (int x = 1; x < columns; x++) {
-                    for (int b = 0; b < samplesPerPixel; b++) {
-                        int off = x * samplesPerPixel + b;
-                        buffer.putShort(2 * off, (short) (buffer.getShort(2 * (off - samplesPerPixel)) + buffer.getShort(2 * off)));
-                    }
+                // Bulk transfer to/from a plain array, the view buffer handles the byte order
+                shortBuffer.clear();
+                shortBuffer.get(shorts);
+
+                for (int i = samplesPerPixel; i < shorts.length; i++) {
+                    shorts[i] += shorts[i - samplesPerPixel];
                 }
+
+                shortBuffer.clear();
+                shortBuffer.put(shorts);
                 break;
 
             case 32:
-                for (int x = 1; x < columns; x++) {
-                    for (int b = 0; b < samplesPerPixel; b++) {
-                        int off = x * samplesPerPixel + b;
-                        buffer.putInt(4 * off, buffer.getInt(4 * (off - samplesPerPixel)) + buffer.getInt(4 * off));
-                    }
+                intBuffer.clear();
+                intBuffer.get(ints);
+
+                for (int i = samplesPerPixel; i < ints.length; i++) {
+                    ints[i] += ints[i - samplesPerPixel];
                 }
+
+                intBuffer.clear();
+                intBuffer.put(ints);
                 break;
 
             case 64:
@@ -201,6 +240,32 @@ final class HorizontalDeDifferencingStream extends InputStream {
         }
     }
 
+    private void decodeFloatingPointRow() {
+        // The row is byte-wise differenced, with a stride of samplesPerPixel, over byte planes:
+        // First the most significant byte of every sample, then the next byte of every sample, and so on
+        byte[] row = buffer.array();
+        int length = buffer.capacity();
+
+        for (int i = samplesPerPixel; i < length; i++) {
+            row[i] += row[i - samplesPerPixel];
+        }
+
+        // Re-assemble the bytes of each sample, in the byte order of the stream
+        int bytesPerSample = bitsPerSample / 8;
+        int samples = length / bytesPerSample;
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+
+        for (int b = 0; b < bytesPerSample; b++) {
+            int plane = (bigEndian ? b : bytesPerSample - 1 - b) * samples;
+
+            for (int i = 0, off = b; i < samples; i++, off += bytesPerSample) {
+                bytes[off] = row[plane + i];
+            }
+        }
+
+        System.arraycopy(bytes, 0, row, 0, length);
+    }
+
     @Override
     public int read() throws IOException {
         if (!buffer.hasRemaining()) {
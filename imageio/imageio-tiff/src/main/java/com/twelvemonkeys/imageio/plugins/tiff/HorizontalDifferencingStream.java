@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.lang.Validate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An encoder for data converted using "horizontal differencing predictor".
+ *
+ * @see HorizontalDeDifferencingStream
+ */
+final class HorizontalDifferencingStream extends OutputStream {
+    // See TIFF 6.0 Specification, Section 14: "Differencing Predictor", page 64.
+
+    private final int columns;
+    // NOTE: PlanarConfiguration == 2 may be treated as samplesPerPixel == 1
+    private final int samplesPerPixel;
+    private final int bitsPerSample;
+
+    private final OutputStream stream;
+    private final ByteBuffer buffer;
+
+    public HorizontalDifferencingStream(final OutputStream stream, final int columns, final int samplesPerPixel, final int bitsPerSample, final ByteOrder byteOrder) {
+        this.stream = Validate.notNull(stream, "stream");
+
+        this.columns = Validate.isTrue(columns > 0, columns, "width must be greater than 0");
+        this.samplesPerPixel = Validate.isTrue(samplesPerPixel > 0, samplesPerPixel, "Unsupported samples per pixel: %s");
+        this.bitsPerSample = Validate.isTrue(isValidBPS(bitsPerSample), bitsPerSample, "Unsupported bits per sample value: %s");
+
+        buffer = ByteBuffer.allocate((columns * samplesPerPixel * bitsPerSample + 7) / 8).order(byteOrder);
+    }
+
+    private boolean isValidBPS(final int bitsPerSample) {
+        switch (bitsPerSample) {
+            case 8:
+            case 16:
+            case 32:
+            case 64:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void encodeRow() throws IOException {
+        // Apply horizontal predictor, from right to left, so the original values are used
+        switch (bitsPerSample) {
+            case 8:
+                for (int off = columns * samplesPerPixel - 1; off >= samplesPerPixel; off--) {
+                    buffer.put(off, (byte) (buffer.get(off) - buffer.get(off - samplesPerPixel)));
+                }
+                break;
+
+            case 16:
+                for (int off = columns * samplesPerPixel - 1; off >= samplesPerPixel; off--) {
+                    buffer.putShort(2 * off, (short) (buffer.getShort(2 * off) - buffer.getShort(2 * (off - samplesPerPixel))));
+                }
+                break;
+
+            case 32:
+                for (int off = columns * samplesPerPixel - 1; off >= samplesPerPixel; off--) {
+                    buffer.putInt(4 * off, buffer.getInt(4 * off) - buffer.getInt(4 * (off - samplesPerPixel)));
+                }
+                break;
+
+            case 64:
+                for (int off = columns * samplesPerPixel - 1; off >= samplesPerPixel; off--) {
+                    buffer.putLong(8 * off, buffer.getLong(8 * off) - buffer.getLong(8 * (off - samplesPerPixel)));
+                }
+                break;
+
+            default:
+                throw new AssertionError(String.format("Unsupported bits per sample value: %d", bitsPerSample));
+        }
+
+        stream.write(buffer.array(), 0, buffer.capacity());
+        buffer.clear();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer.put((byte) b);
+
+        if (!buffer.hasRemaining()) {
+            encodeRow();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = Math.min(buffer.remaining(), len);
+            buffer.put(b, off, count);
+            off += count;
+            len -= count;
+
+            if (!buffer.hasRemaining()) {
+                encodeRow();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        stream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (buffer.position() > 0) {
+                throw new IOException("Incomplete row at end of stream");
+            }
+
+            super.close();
+        }
+        finally {
+            stream.close();
+        }
+    }
+}
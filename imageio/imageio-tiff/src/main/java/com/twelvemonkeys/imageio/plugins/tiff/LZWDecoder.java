@@ -58,26 +58,42 @@ abstract class LZWDecoder implements Decoder {
 
     private final boolean compatibilityMode;
 
-    private final String[] table;
+    // The string table, as flat arrays indexed by code
+    // Each string is the string of its prefix code, followed by the suffix byte
+    private final int[] prefixes;
+    private final byte[] suffixes;
+    private final byte[] firstChars; // Copied forward for fast access
+    private final int[] lengths;
+
     private int tableLength;
     int bitsPerCode;
     private int oldCode = CLEAR_CODE;
     private int maxCode;
     int bitMask;
-    private int maxString;
     boolean eofReached;
     int nextData;
     int nextBits;
 
+    // A string that did not fit in the buffer, written in full before decoding any more codes
+    private int pendingCode = -1;
+    private int pendingOffset;
 
     protected LZWDecoder(final boolean compatibilityMode) {
         this.compatibilityMode = compatibilityMode;
 
-        table = new String[compatibilityMode ? TABLE_SIZE + 1024 : TABLE_SIZE]; // libTiff adds 1024 "for compatibility"...
+        int tableSize = compatibilityMode ? TABLE_SIZE + 1024 : TABLE_SIZE; // libTiff adds 1024 "for compatibility"...
+
+        prefixes = new int[tableSize];
+        suffixes = new byte[tableSize];
+        firstChars = new byte[tableSize];
+        lengths = new int[tableSize];
 
         // First 258 entries of table is always fixed
         for (int i = 0; i < 256; i++) {
-            table[i] = new String((byte) i);
+            prefixes[i] = -1;
+            suffixes[i] = (byte) i;
+            firstChars[i] = (byte) i;
+            lengths[i] = 1;
         }
 
         init();
@@ -92,15 +108,18 @@ abstract class LZWDecoder implements Decoder {
         bitsPerCode = MIN_BITS;
         bitMask = bitmaskFor(bitsPerCode);
         maxCode = maxCode();
-        maxString = 1;
     }
 
     public int decode(final InputStream stream, final ByteBuffer buffer) throws IOException {
         // Adapted from the pseudo-code example found in the TIFF 6.0 Specification, 1992.
         // See Section 13: "LZW Compression"/"LZW Decoding", page 61+
+        if (pendingCode >= 0) {
+            writeString(pendingCode, pendingOffset, buffer);
+        }
+
         int code;
 
-        while ((code = getNextCode(stream)) != EOI_CODE) {
+        while (buffer.hasRemaining() && (code = getNextCode(stream)) != EOI_CODE) {
             if (code == CLEAR_CODE) {
                 init();
                 code = getNextCode(stream);
@@ -109,34 +128,89 @@ abstract class LZWDecoder implements Decoder {
                     break;
                 }
 
-                table[code].writeTo(buffer);
+                writeString(code, 0, buffer);
             }
             else {
                 if (isInTable(code)) {
-                    table[code].writeTo(buffer);
-                    addStringToTable(table[oldCode].concatenate(table[code].firstChar));
+                    writeString(code, 0, buffer);
+                    addStringToTable(oldCode, firstChars[code]);
                 }
                 else {
-                    String outString = table[oldCode].concatenate(table[oldCode].firstChar);
+                    // The new string is the old string, followed by its own first char
+                    int newCode = tableLength;
 
-                    outString.writeTo(buffer);
-                    addStringToTable(outString);
+                    addStringToTable(oldCode, firstChars[oldCode]);
+                    writeString(newCode, 0, buffer);
                 }
             }
 
             oldCode = code;
+        }
+
+        return buffer.position();
+    }
 
-            if (buffer.remaining() < maxString + 1) {
-                // Buffer full, stop decoding for now
-                break;
+    /**
+     * Writes the string for the given code, starting at {@code offset}, to the buffer.
+     * If the buffer has too little room left, as much as possible is written, and the rest of the
+     * string is written on the next invocation of {@code decode}.
+     */
+    private void writeString(final int code, final int offset, final ByteBuffer buffer) {
+        final int length = lengths[code];
+        final int count = Math.min(length - offset, buffer.remaining());
+
+        if (count == 1 && length == 1) {
+            buffer.put(suffixes[code]);
+        }
+        else if (count > 0) {
+            // The string is linked last byte first, skip bytes that does not fit, then write backwards
+            int c = code;
+            for (int i = length - offset - count; i > 0; i--) {
+                c = prefixes[c];
             }
+
+            final int position = buffer.position();
+
+            if (buffer.hasArray()) {
+                final byte[] array = buffer.array();
+                final int start = buffer.arrayOffset() + position;
+
+                for (int i = start + count - 1; i >= start; i--) {
+                    array[i] = suffixes[c];
+                    c = prefixes[c];
+                }
+            }
+            else {
+                for (int i = count - 1; i >= 0; i--) {
+                    buffer.put(position + i, suffixes[c]);
+                    c = prefixes[c];
+                }
+            }
+
+            buffer.position(position + count);
         }
 
-        return buffer.position();
+        if (offset + count < length) {
+            pendingCode = code;
+            pendingOffset = offset + count;
+        }
+        else {
+            pendingCode = -1;
+        }
     }
 
-    private void addStringToTable(final String string) throws IOException {
-        table[tableLength++] = string;
+    private void addStringToTable(final int prefix, final byte suffix) throws IOException {
+        if (tableLength >= prefixes.length) {
+            // In compatibility mode, codes stay at 12 bits, but the table can't grow forever without a CLEAR code
+            throw new DecodeException(String.format("TIFF LZW string table overflow (more than %d entries without CLEAR code)", prefixes.length));
+        }
+
+        final int code = tableLength++;
+
+        prefixes[code] = prefix;
+        suffixes[code] = suffix;
+        firstChars[code] = firstChars[prefix];
+        lengths[code] = lengths[prefix] + 1;
 
         if (tableLength > maxCode) {
             bitsPerCode++;
@@ -146,17 +220,13 @@ abstract class LZWDecoder implements Decoder {
                     bitsPerCode--;
                 }
                 else {
-                    throw new DecodeException(java.lang.String.format("TIFF LZW with more than %d bits per code encountered (table overflow)", MAX_BITS));
+                    throw new DecodeException(String.format("TIFF LZW with more than %d bits per code encountered (table overflow)", MAX_BITS));
                 }
             }
 
             bitMask = bitmaskFor(bitsPerCode);
             maxCode = maxCode();
         }
-
-        if (string.length > maxString) {
-            maxString = string.length;
-        }
     }
 
     protected abstract int maxCode();
@@ -278,49 +348,4 @@ abstract class LZWDecoder implements Decoder {
             return code;
         }
     }
-
-    private static final class String {
-        final String previous;
-
-        final int length;
-        final byte value;
-        final byte firstChar; // Copied forward for fast access
-
-        public String(final byte code) {
-            this(code, code, 1, null);
-        }
-
-        private String(final byte value, final byte firstChar, final int length, final String previous) {
-            this.value = value;
-            this.firstChar = firstChar;
-            this.length = length;
-            this.previous = previous;
-        }
-
-        public final String concatenate(final byte firstChar) {
-            return new String(firstChar, this.firstChar, length + 1, this);
-        }
-
-        public final void writeTo(final ByteBuffer buffer) {
-            if (length == 0) {
-                return;
-            }
-
-            if (length == 1) {
-                buffer.put(value);
-            }
-            else {
-                String e = this;
-                final int offset = buffer.position();
-
-                for (int i = length - 1; i >= 0; i--) {
-                    buffer.put(offset + i, e.value);
-                    e = e.previous;
-                }
-
-                buffer.position(offset + length);
-            }
-        }
-    }
 }
-
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.io.enc.Encoder;
+import com.twelvemonkeys.lang.Validate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lempel–Ziv–Welch (LZW) encoder, as used in TIFF.
+ * <p/>
+ * As the {@code Encoder} interface has no notion of end of data, the encoder is created with the
+ * exact number of bytes to encode. Once all bytes are encoded, the last code and the EOI code are written,
+ * and the remaining bits are flushed to the stream.
+ * A new encoder must be created for each strip or tile.
+ *
+ * @see LZWDecoder
+ */
+final class LZWEncoder implements Encoder {
+    // See TIFF 6.0 Specification, Section 13: "LZW Compression", page 57+
+    // Code sizes are increased and the table is cleared at the same points as libTiff does,
+    // to be compatible with LZWDecoder (spec version)
+
+    private static final int CLEAR_CODE = LZWDecoder.CLEAR_CODE;
+    private static final int EOI_CODE = LZWDecoder.EOI_CODE;
+
+    private static final int MIN_BITS = 9;
+    private static final int MAX_BITS = 12;
+    private static final int MAX_CODE = (1 << MAX_BITS) - 1;
+
+    // Open addressing hash table, mapping (prefix code, byte) pairs to codes
+    private static final int HASH_SIZE = 8192; // Power of 2, at least twice the number of codes
+    private static final int HASH_MASK = HASH_SIZE - 1;
+
+    private final int[] hashKeys = new int[HASH_SIZE]; // key + 1, 0 means empty
+    private final short[] hashCodes = new short[HASH_SIZE];
+
+    private long remaining;
+
+    private int prefix = -1;
+    private int nextCode;
+    private int bitsPerCode;
+
+    private int bitBuffer;
+    private int bitCount;
+
+    /**
+     * Creates an {@code LZWEncoder}.
+     *
+     * @param length the number of bytes to encode.
+     */
+    LZWEncoder(final long length) {
+        remaining = Validate.isTrue(length >= 0, length, "length must be positive: %s");
+    }
+
+    public void encode(final OutputStream stream, final ByteBuffer buffer) throws IOException {
+        Validate.isTrue(buffer.remaining() <= remaining, buffer.remaining(), "Too much data to encode: %s bytes");
+
+        if (prefix < 0 && bitsPerCode == 0) {
+            // First invocation, start with a clear code
+            resetTable();
+            writeCode(stream, CLEAR_CODE);
+        }
+
+        int code = prefix;
+
+        while (buffer.hasRemaining()) {
+            int b = buffer.get() & 0xff;
+            remaining--;
+
+            if (code < 0) {
+                code = b;
+                continue;
+            }
+
+            int key = (code << 8) | b;
+            int index = hash(key);
+            int found;
+
+            while ((found = hashKeys[index]) != 0 && found != key + 1) {
+                index = (index + 1) & HASH_MASK;
+            }
+
+            if (found != 0) {
+                // String is in table, continue extending it
+                code = hashCodes[index];
+            }
+            else {
+                writeCode(stream, code);
+
+                hashKeys[index] = key + 1;
+                hashCodes[index] = (short) nextCode;
+
+                increaseNextCode(stream);
+
+                code = b;
+            }
+        }
+
+        prefix = code;
+
+        if (remaining == 0) {
+            finish(stream);
+        }
+    }
+
+    private void finish(final OutputStream stream) throws IOException {
+        if (prefix >= 0) {
+            writeCode(stream, prefix);
+            prefix = -1;
+
+            // The decoder will add an entry for the last code, the EOI must be written with the same code size
+            increaseNextCode(stream);
+        }
+
+        writeCode(stream, EOI_CODE);
+
+        if (bitCount > 0) {
+            stream.write(bitBuffer << (8 - bitCount));
+            bitCount = 0;
+        }
+    }
+
+    private void increaseNextCode(final OutputStream stream) throws IOException {
+        nextCode++;
+
+        if (nextCode == MAX_CODE) {
+            // Table is full
+            writeCode(stream, CLEAR_CODE);
+            resetTable();
+        }
+        else if (nextCode > (1 << bitsPerCode) - 1) {
+            bitsPerCode++;
+        }
+    }
+
+    private void resetTable() {
+        Arrays.fill(hashKeys, 0);
+        nextCode = EOI_CODE + 1;
+        bitsPerCode = MIN_BITS;
+    }
+
+    private static int hash(final int key) {
+        return (key * 0x9E3779B1 >>> 16) & HASH_MASK;
+    }
+
+    private void writeCode(final OutputStream stream, final int code) throws IOException {
+        bitBuffer = (bitBuffer << bitsPerCode) | code;
+        bitCount += bitsPerCode;
+
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            stream.write(bitBuffer >> bitCount);
+        }
+
+        bitBuffer &= (1 << bitCount) - 1;
+    }
+}
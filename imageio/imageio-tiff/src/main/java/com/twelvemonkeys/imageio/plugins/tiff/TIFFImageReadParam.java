@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.lang.Validate;
+
+import javax.imageio.ImageReadParam;
+
+/**
+ * Implementation of {@code ImageReadParam} for TIFF images.
+ * <p/>
+ * In addition to the standard settings, allows decoding independent strips or tiles concurrently.
+ * By default, all decoding is done on the calling thread.
+ */
+public class TIFFImageReadParam extends ImageReadParam {
+    private int decodeThreads = 1;
+
+    /**
+     * Returns the maximum number of threads used for decoding strips or tiles.
+     *
+     * @return the maximum number of decoding threads, {@code 1} means decode on the calling thread.
+     */
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads used for decoding strips or tiles.
+     * <p/>
+     * Values greater than {@code 1} enables parallel decoding of compressed strips or tiles.
+     * The output is identical to the output when decoding on a single thread.
+     * Parallel decoding requires the StripByteCounts/TileByteCounts tags to be present,
+     * and is not used for JPEG compressed data.
+     *
+     * @param decodeThreads the maximum number of decoding threads.
+     * @throws IllegalArgumentException if {@code decodeThreads < 1}.
+     */
+    public void setDecodeThreads(final int decodeThreads) {
+        this.decodeThreads = Validate.isTrue(decodeThreads > 0, decodeThreads, "decodeThreads must be greater than 0: %s");
+    }
+}
@@ -55,14 +55,17 @@ import javax.imageio.spi.IIORegistry;
 import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.spi.ServiceRegistry;
 import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.*;
 import java.awt.color.ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.awt.image.*;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
@@ -84,6 +87,8 @@ import java.util.zip.InflaterInputStream;
  *     <li>ZLib (aka Adobe-style Deflate) Compression (type 8)</li>
  *     <li>Deflate Compression (type 32946)</li>
  *     <li>Horizontal differencing Predictor (type 2) for LZW, ZLib, Deflate and PackBits compression</li>
+ *     <li>Floating point horizontal differencing Predictor (type 3) for LZW, ZLib, Deflate and PackBits compression</li>
+ *     <li>32 bit floating point samples (SampleFormat type 3/IEEE floating point) for Gray and RGB data</li>
  *     <li>Alpha channel (ExtraSamples type 1/Associated Alpha)</li>
  *     <li>CMYK data (PhotometricInterpretation type 5/Separated)</li>
  *     <li>YCbCr data (PhotometricInterpretation type 6/YCbCr) for JPEG</li>
@@ -101,11 +106,6 @@ import java.util.zip.InflaterInputStream;
  * @version $Id: TIFFImageReader.java,v 1.0 08.05.12 15:14 haraldk Exp$
  */
 public class TIFFImageReader extends ImageReaderBase {
-    // TODOs ImageIO basic functionality:
-    // TODO: Subsampling (*tests should be failing*)
-    // TODO: Source region (*tests should be failing*)
-    // TODO: TIFFImageWriter + Spi
-
     // TODOs Full BaseLine support:
     // TODO: Support ExtraSamples (an array, if multiple extra samples!)
     //       (0: Unspecified (not alpha), 1: Associated Alpha (pre-multiplied), 2: Unassociated Alpha (non-multiplied)
@@ -120,20 +120,28 @@ public class TIFFImageReader extends ImageReaderBase {
     // TODOs Extension support
     // TODO: Support PlanarConfiguration 2
     // TODO: Support ICCProfile (fully)
-    // TODO: Support Compression 3 & 4 (CCITT T.4 & T.6)
     // TODO: Support Compression 34712 (JPEG2000)? Depends on JPEG2000 ImageReader
     // TODO: Support Compression 34661 (JBIG)? Depends on JBIG ImageReader
 
     // DONE:
-    // Handle SampleFormat (and give up if not == 1)
+    // TIFFImageWriter + Spi
+    // Subsampling & source region (only strips/tiles intersecting the source region are decoded)
+    // Handle SampleFormat (and give up if not == 1, or 3 with 32 bits per sample)
+    // Support Predictor 3 (floating point horizontal differencing)
     // Support Compression 6 ('Old-style' JPEG)
     // Support Compression 2 (CCITT Modified Huffman RLE) for bi-level images
+    // Support Compression 3 & 4 (CCITT T.4 & T.6)
 
     final static boolean DEBUG = "true".equalsIgnoreCase(System.getProperty("com.twelvemonkeys.imageio.plugins.tiff.debug"));
 
     private CompoundDirectory IFDs;
     private Directory currentIFD;
 
+    // The JPEG delegate is reused for all strips/tiles, and all images, to avoid the (native) setup cost per strip/tile
+    private ImageReader jpegDelegate;
+    // The JPEGTables currently installed in the delegate, if any
+    private byte[] jpegDelegateTables;
+
     TIFFImageReader(final TIFFImageReaderSpi provider) {
         super(provider);
     }
@@ -142,6 +150,57 @@ public class TIFFImageReader extends ImageReaderBase {
     protected void resetMembers() {
         IFDs = null;
         currentIFD = null;
+
+        if (jpegDelegate != null) {
+            jpegDelegate.reset();
+            jpegDelegateTables = null;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+
+        if (jpegDelegate != null) {
+            jpegDelegate.dispose();
+            jpegDelegate = null;
+            jpegDelegateTables = null;
+        }
+    }
+
+    private ImageReader getJPEGDelegate() {
+        if (jpegDelegate == null) {
+            // TIFF is strictly ISO JPEG, so we should probably stick to the standard reader
+            jpegDelegate = new JPEGImageReader(getOriginatingProvider());
+        }
+
+        return jpegDelegate;
+    }
+
+    /**
+     * Installs the JPEGTables in the JPEG delegate, unless the same tables are already installed.
+     *
+     * @param tables the JPEGTables 'abbreviated table specification', or {@code null} to clear any installed tables.
+     * @throws IOException if the tables can't be parsed
+     */
+    private void installJPEGTables(final byte[] tables) throws IOException {
+        if (jpegDelegateTables != null && Arrays.equals(jpegDelegateTables, tables)) {
+            return;
+        }
+
+        jpegDelegate.reset();
+        jpegDelegateTables = null;
+
+        if (tables != null) {
+            jpegDelegate.setInput(new ByteArrayImageInputStream(tables));
+
+            // NOTE: This initializes the tables AND MORE secret internal settings for the reader (as if by magic).
+            // This is probably a bug, as later setInput calls should clear/override the tables.
+            // However, it would be extremely convenient, not having to actually fiddle with the stream meta data
+            jpegDelegate.getStreamMetadata();
+
+            jpegDelegateTables = tables;
+        }
     }
 
     private void readMetadata() throws IOException {
@@ -150,7 +209,8 @@ public class TIFFImageReader extends ImageReaderBase {
         }
 
         if (IFDs == null) {
-            IFDs = (CompoundDirectory) new EXIFReader().read(imageInput); // NOTE: Sets byte order as a side effect
+            // Read lazily, IFDs are parsed as they are requested, to avoid parsing all pages of large multi-page files
+            IFDs = (CompoundDirectory) new EXIFReader().read(imageInput, true); // NOTE: Sets byte order as a side effect
 
             if (DEBUG) {
                 System.err.println("Byte order: " + imageInput.getByteOrder());
@@ -176,8 +236,32 @@ public class TIFFImageReader extends ImageReaderBase {
         return IFDs.directoryCount();
     }
 
+    // The IFDs and large values are read lazily, and throw IllegalStateException if they can't be read
+
+    private Entry getEntry(final int tag) throws IIOException {
+        try {
+            return currentIFD.getEntryById(tag);
+        }
+        catch (IllegalStateException e) {
+            throw lazyReadFailed(e);
+        }
+    }
+
+    private static Object getValue(final Entry entry) throws IIOException {
+        try {
+            return entry.getValue();
+        }
+        catch (IllegalStateException e) {
+            throw lazyReadFailed(e);
+        }
+    }
+
+    private static IIOException lazyReadFailed(final IllegalStateException e) {
+        return new IIOException(e.getMessage(), e.getCause() != null ? e.getCause() : e);
+    }
+
     private Number getValueAsNumberWithDefault(final int tag, final String tagName, final Number defaultValue) throws IIOException {
-        Entry entry = currentIFD.getEntryById(tag);
+        Entry entry = getEntry(tag);
 
         if (entry == null) {
             if (defaultValue != null)  {
@@ -187,7 +271,7 @@ public class TIFFImageReader extends ImageReaderBase {
             throw new IIOException("Missing TIFF tag: " + (tagName != null ? tagName : tag));
         }
 
-        return (Number) entry.getValue();
+        return (Number) getValue(entry);
     }
 
     private long getValueAsLongWithDefault(final int tag, final String tagName, final Long defaultValue) throws IIOException {
@@ -228,15 +312,24 @@ public class TIFFImageReader extends ImageReaderBase {
     public ImageTypeSpecifier getRawImageType(int imageIndex) throws IOException {
         readIFD(imageIndex);
 
-        getSampleFormat(); // We don't support anything but SAMPLEFORMAT_UINT at the moment, just sanity checking input
+        int sampleFormat = getSampleFormat(); // We support SAMPLEFORMAT_UINT, and SAMPLEFORMAT_FP for 32 bit samples
         int planarConfiguration = getValueAsIntWithDefault(TIFF.TAG_PLANAR_CONFIGURATION, TIFFExtension.PLANARCONFIG_PLANAR);
         int interpretation = getValueAsInt(TIFF.TAG_PHOTOMETRIC_INTERPRETATION, "PhotometricInterpretation");
         int samplesPerPixel = getValueAsIntWithDefault(TIFF.TAG_SAMPLES_PER_PIXEL, 1);
         int bitsPerSample = getBitsPerSample();
-        int dataType = bitsPerSample <= 8 ? DataBuffer.TYPE_BYTE : bitsPerSample <= 16 ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_INT;
+        int dataType = sampleFormat == TIFFExtension.SAMPLEFORMAT_FP
+                ? DataBuffer.TYPE_FLOAT
+                : bitsPerSample <= 8 ? DataBuffer.TYPE_BYTE : bitsPerSample <= 16 ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_INT;
 
         // Read embedded cs
-        ICC_Profile profile = getICCProfile();
+        ICC_Profile profile;
+
+        try {
+            profile = getICCProfile();
+        }
+        catch (IllegalStateException e) {
+            throw lazyReadFailed(e);
+        }
         ColorSpace cs;
 
         switch (interpretation) {
@@ -254,7 +347,7 @@ public class TIFFImageReader extends ImageReaderBase {
                         // ImageTypeSpecifier supports 1, 2, 4, 8 or 16 bits, we'll go with that for now
                         cs = profile == null ? ColorSpace.getInstance(ColorSpace.CS_GRAY) : ColorSpaces.createColorSpace(profile);
 
-                        if (cs == ColorSpace.getInstance(ColorSpace.CS_GRAY) && (bitsPerSample == 1 || bitsPerSample == 2 || bitsPerSample == 4 || bitsPerSample == 8 || bitsPerSample == 16)) {
+                        if (cs == ColorSpace.getInstance(ColorSpace.CS_GRAY) && dataType != DataBuffer.TYPE_FLOAT && (bitsPerSample == 1 || bitsPerSample == 2 || bitsPerSample == 4 || bitsPerSample == 8 || bitsPerSample == 16)) {
                             return ImageTypeSpecifier.createGrayscale(bitsPerSample, dataType, false);
                         }
                         else if (bitsPerSample == 1 || bitsPerSample == 2 || bitsPerSample == 4 || bitsPerSample == 8 || bitsPerSample == 16 || bitsPerSample == 32) {
@@ -275,7 +368,7 @@ public class TIFFImageReader extends ImageReaderBase {
 
                 switch (samplesPerPixel) {
                     case 3:
-                        if (bitsPerSample == 8 || bitsPerSample == 16) {
+                        if (bitsPerSample == 8 || bitsPerSample == 16 || dataType == DataBuffer.TYPE_FLOAT) {
                             switch (planarConfiguration) {
                                 case TIFFBaseline.PLANARCONFIG_CHUNKY:
                                     if (bitsPerSample == 8 && cs.isCS_sRGB()) {
@@ -289,7 +382,7 @@ public class TIFFImageReader extends ImageReaderBase {
                             }
                         }
                     case 4:
-                        if (bitsPerSample == 8 || bitsPerSample == 16) {
+                        if (bitsPerSample == 8 || bitsPerSample == 16 || dataType == DataBuffer.TYPE_FLOAT) {
                             // ExtraSamples 0=unspecified, 1=associated (premultiplied), 2=unassociated (TODO: Support unspecified, not alpha)
                             long[] extraSamples = getValueAsLongArray(TIFF.TAG_EXTRA_SAMPLES, "ExtraSamples", true);
 
@@ -319,12 +412,12 @@ public class TIFFImageReader extends ImageReaderBase {
                 }
                 // NOTE: If ExtraSamples is used, PlanarConfiguration must be taken into account also for pixel data
 
-                Entry colorMap = currentIFD.getEntryById(TIFF.TAG_COLOR_MAP);
+                Entry colorMap = getEntry(TIFF.TAG_COLOR_MAP);
                 if (colorMap == null) {
                     throw new IIOException("Missing ColorMap for Palette TIFF");
                 }
 
-                int[] cmapShort = (int[]) colorMap.getValue();
+                int[] cmapShort = (int[]) getValue(colorMap);
                 int[] cmap = new int[colorMap.valueCount() / 3];
 
                 // All reds, then greens, and finally blues
@@ -395,12 +488,20 @@ public class TIFFImageReader extends ImageReaderBase {
                 }
             }
 
-            if (sampleFormat != TIFFBaseline.SAMPLEFORMAT_UINT) {
-                throw new IIOException("Unsupported TIFF SampleFormat (expected 1/Unsigned Integer): " + sampleFormat);
+            if (sampleFormat == TIFFExtension.SAMPLEFORMAT_FP) {
+                // Only 32 bit (single precision) floating point is supported
+                if (getBitsPerSample() != 32) {
+                    throw new IIOException("Unsupported TIFF BitsPerSample for SampleFormat 3/Floating point (expected 32): " + getBitsPerSample());
+                }
+
+                return TIFFExtension.SAMPLEFORMAT_FP;
+            }
+            else if (sampleFormat != TIFFBaseline.SAMPLEFORMAT_UINT) {
+                throw new IIOException("Unsupported TIFF SampleFormat (expected 1/Unsigned Integer or 3/Floating point): " + sampleFormat);
             }
         }
 
-        // The default, and the only value we support
+        // The default
         return TIFFBaseline.SAMPLEFORMAT_UINT;
     }
 
@@ -450,6 +551,11 @@ public class TIFFImageReader extends ImageReaderBase {
         return specs.iterator();
     }
 
+    @Override
+    public ImageReadParam getDefaultReadParam() {
+        return new TIFFImageReadParam();
+    }
+
     @Override
     public BufferedImage read(int imageIndex, ImageReadParam param) throws IOException {
         readIFD(imageIndex);
@@ -464,6 +570,8 @@ public class TIFFImageReader extends ImageReaderBase {
         final Rectangle source = new Rectangle();
         final Rectangle dest = new Rectangle();
         computeRegions(param, width, height, destination, source, dest);
+        final int xSub = param != null ? param.getSourceXSubsampling() : 1;
+        final int ySub = param != null ? param.getSourceYSubsampling() : 1;
 
         WritableRaster raster = destination.getRaster();
 
@@ -509,6 +617,12 @@ public class TIFFImageReader extends ImageReaderBase {
         WritableRaster rowRaster = rawType.getColorModel().createCompatibleWritableRaster(stripTileWidth, 1);
         int row = 0;
 
+        // Strips/tiles that intersects the source region
+        int firstTileX = source.x / stripTileWidth;
+        int lastTileX = (source.x + source.width - 1) / stripTileWidth;
+        int firstTileY = source.y / stripTileHeight;
+        int lastTileY = (source.y + source.height - 1) / stripTileHeight;
+
         switch (compression) {
             // TIFF Baseline
             case TIFFBaseline.COMPRESSION_NONE:
@@ -524,9 +638,9 @@ public class TIFFImageReader extends ImageReaderBase {
             case TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE:
                 // CCITT modified Huffman
                 // Additionally, the specification defines these values as part of the TIFF extensions:
-//            case TIFFExtension.COMPRESSION_CCITT_T4:
+            case TIFFExtension.COMPRESSION_CCITT_T4:
                 // CCITT Group 3 fax encoding
-//            case TIFFExtension.COMPRESSION_CCITT_T6:
+            case TIFFExtension.COMPRESSION_CCITT_T6:
                 // CCITT Group 4 fax encoding
 
                 int[] yCbCrSubsampling = null;
@@ -546,11 +660,11 @@ public class TIFFImageReader extends ImageReaderBase {
                         processWarningOccurred("Uknown TIFF YCbCrPositioning value, expected 1 or 2: " + yCbCrPos);
                     }
 
-                    Entry subSampling = currentIFD.getEntryById(TIFF.TAG_YCBCR_SUB_SAMPLING);
+                    Entry subSampling = getEntry(TIFF.TAG_YCBCR_SUB_SAMPLING);
 
                     if (subSampling != null) {
                         try {
-                            yCbCrSubsampling = (int[]) subSampling.getValue();
+                            yCbCrSubsampling = (int[]) getValue(subSampling);
                         }
                         catch (ClassCastException e) {
                             throw new IIOException("Unknown TIFF YCbCrSubSampling value type: " + subSampling.getTypeName(), e);
@@ -570,9 +684,9 @@ public class TIFFImageReader extends ImageReaderBase {
                         yCbCrSubsampling = new int[] {2, 2};
                     }
 
-                    Entry coefficients = currentIFD.getEntryById(TIFF.TAG_YCBCR_COEFFICIENTS);
+                    Entry coefficients = getEntry(TIFF.TAG_YCBCR_COEFFICIENTS);
                     if (coefficients != null) {
-                        Rational[] value = (Rational[]) coefficients.getValue();
+                        Rational[] value = (Rational[]) getValue(coefficients);
                         yCbCrCoefficients = new double[] {value[0].doubleValue(), value[1].doubleValue(), value[2].doubleValue()};
                     }
                     else {
@@ -584,59 +698,62 @@ public class TIFFImageReader extends ImageReaderBase {
                 // Read data
                 processImageStarted(imageIndex);
 
-                // TODO: Read only tiles that lies within region
-                // General uncompressed/compressed reading
-                for (int y = 0; y < tilesDown; y++) {
-                    int col = 0;
+                StripTileDecoder decoder = new StripTileDecoder(
+                        rawType, raster, source, dest, xSub, ySub,
+                        stripTileWidth, compression, predictor, interpretation,
+                        planarConfiguration == 2 ? 1 : raster.getNumBands(), getBitsPerSample(), imageInput.getByteOrder(),
+                        yCbCrSubsampling, yCbCrPos, yCbCrCoefficients
+                );
+
+                int decodeThreads = param instanceof TIFFImageReadParam ? ((TIFFImageReadParam) param).getDecodeThreads() : 1;
+
+                if (decodeThreads > 1 && stripTileByteCounts != null && tilesAcross * tilesDown > 1) {
+                    // Decode strips/tiles concurrently, each from its own copy of the (compressed) data
+                    readStripTilesParallel(decoder, decodeThreads, stripTileOffsets, stripTileByteCounts, tilesAcross, firstTileX, lastTileX, firstTileY, lastTileY, stripTileWidth, stripTileHeight, width, height);
+                    break;
+                }
+
+                // General uncompressed/compressed reading, only strips/tiles that intersects the source region are read
+                for (int y = firstTileY; y <= lastTileY; y++) {
+                    row = y * stripTileHeight;
                     int rowsInTile = Math.min(stripTileHeight, height - row);
 
-                    for (int x = 0; x < tilesAcross; x++) {
+                    for (int x = firstTileX; x <= lastTileX; x++) {
+                        int col = x * stripTileWidth;
                         int colsInTile = Math.min(stripTileWidth, width - col);
                         int i = y * tilesAcross + x;
 
+                        if (!decoder.intersects(col, row, colsInTile, rowsInTile)) {
+                            // No sampled pixels in this strip/tile
+                            continue;
+                        }
+
                         imageInput.seek(stripTileOffsets[i]);
 
-                        DataInput input;
                         if (compression == TIFFBaseline.COMPRESSION_NONE && interpretation != TIFFExtension.PHOTOMETRIC_YCBCR) {
                             // No need for transformation, fast forward
-                            input = imageInput;
+                            decoder.readStripTileData(imageInput, rowRaster, col, row, colsInTile, rowsInTile);
                         }
                         else {
                             InputStream adapter = stripTileByteCounts != null
                                     ? IIOUtil.createStreamAdapter(imageInput, stripTileByteCounts[i])
                                     : IIOUtil.createStreamAdapter(imageInput);
 
-                            adapter = createDecompressorStream(compression, width, adapter);
-                            adapter = createUnpredictorStream(predictor, width, planarConfiguration == 2 ? 1 : raster.getNumBands(), getBitsPerSample(), adapter, imageInput.getByteOrder());
-
-                            if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR) {
-                                adapter = new YCbCrUpsamplerStream(adapter, yCbCrSubsampling, yCbCrPos, colsInTile, yCbCrCoefficients);
-                            }
-
-                            // According to the spec, short/long/etc should follow order of containing stream
-                            input = imageInput.getByteOrder() == ByteOrder.BIG_ENDIAN
-                                    ? new DataInputStream(adapter)
-                                    : new LittleEndianDataInputStream(adapter);
+                            // Read a full strip/tile
+                            decoder.decode(adapter, rowRaster, col, row, colsInTile, rowsInTile);
                         }
 
-                        // Read a full strip/tile
-                        readStripTileData(rowRaster, interpretation, raster, col, row, colsInTile, rowsInTile, input);
-
                         if (abortRequested()) {
                             break;
                         }
-
-                        col += colsInTile;
                     }
 
-                    processImageProgress(100f * row / (float) height);
+                    processImageProgress(100f * (y + 1 - firstTileY) / (lastTileY + 1 - firstTileY));
 
                     if (abortRequested()) {
                         processReadAborted();
                         break;
                     }
-
-                    row += rowsInTile;
                 }
 
                 break;
@@ -644,16 +761,14 @@ public class TIFFImageReader extends ImageReaderBase {
             case TIFFExtension.COMPRESSION_JPEG:
                 // JPEG ('new-style' JPEG)
                 // TODO: Refactor all JPEG reading out to separate JPEG support class?
-                // TODO: Cache the JPEG reader for later use? Remember to reset to avoid resource leaks
 
-                // TIFF is strictly ISO JPEG, so we should probably stick to the standard reader
-                ImageReader jpegReader = new JPEGImageReader(getOriginatingProvider());
+                ImageReader jpegReader = getJPEGDelegate();
                 JPEGImageReadParam jpegParam = (JPEGImageReadParam) jpegReader.getDefaultReadParam();
 
                 // JPEG_TABLES should be a full JPEG 'abbreviated table specification', containing:
                 // SOI, DQT, DHT, (optional markers that we ignore)..., EOI
-                Entry tablesEntry = currentIFD.getEntryById(TIFF.TAG_JPEG_TABLES);
-                byte[] tablesValue = tablesEntry != null ? (byte[]) tablesEntry.getValue() : null;
+                Entry tablesEntry = getEntry(TIFF.TAG_JPEG_TABLES);
+                byte[] tablesValue = tablesEntry != null ? (byte[]) getValue(tablesEntry) : null;
                 if (tablesValue != null) {
                     // TODO: Work this out...
                     // Whatever values I pass the reader as the read param, it never gets the same quality as if
@@ -664,12 +779,8 @@ public class TIFFImageReader extends ImageReaderBase {
                     // TODO: Consider splicing the TAG_JPEG_TABLES into the streams for each tile, for a
                     // (slightly slower for multiple images, but) more compatible approach..?
 
-                    jpegReader.setInput(new ByteArrayImageInputStream(tablesValue));
-
-                    // NOTE: This initializes the tables AND MORE secret internal settings for the reader (as if by magic).
-                    // This is probably a bug, as later setInput calls should clear/override the tables.
-                    // However, it would be extremely convenient, not having to actually fiddle with the stream meta data (as below)
-                    /*IIOMetadata streamMetadata = */jpegReader.getStreamMetadata();
+                    // The tables are parsed only once, and kept in the delegate for all strips/tiles (and images sharing the same tables)
+                    installJPEGTables(tablesValue);
 
                     /*
                     IIOMetadataNode root = (IIOMetadataNode) streamMetadata.getAsTree(streamMetadata.getNativeMetadataFormatName());
@@ -715,6 +826,7 @@ public class TIFFImageReader extends ImageReaderBase {
 //                    jpegParam.setDecodeTables(qTables, dcTables, acTables);
                 }
                 else {
+                    installJPEGTables(null);
                     processWarningOccurred("Missing JPEGTables for TIFF with compression: 7 (JPEG)");
                     // ...and the JPEG reader will probably choke on missing tables...
                 }
@@ -722,20 +834,34 @@ public class TIFFImageReader extends ImageReaderBase {
                 // Read data
                 processImageStarted(imageIndex);
 
-                for (int y = 0; y < tilesDown; y++) {
-                    int col = 0;
+                // Only strips/tiles that intersects the source region are read
+                for (int y = firstTileY; y <= lastTileY; y++) {
+                    row = y * stripTileHeight;
                     int rowsInTile = Math.min(stripTileHeight, height - row);
 
-                    for (int x = 0; x < tilesAcross; x++) {
+                    for (int x = firstTileX; x <= lastTileX; x++) {
                         int i = y * tilesAcross + x;
+                        int col = x * stripTileWidth;
                         int colsInTile = Math.min(stripTileWidth, width - col);
 
+                        // The part of the strip/tile that intersects the (subsampled) source region
+                        int firstCol = firstSampled(col, source.x, xSub);
+                        int firstRow = firstSampled(row, source.y, ySub);
+                        int endCol = Math.min(col + colsInTile, source.x + source.width);
+                        int endRow = Math.min(row + rowsInTile, source.y + source.height);
+
+                        if (firstCol >= endCol || firstRow >= endRow) {
+                            // No sampled pixels in this strip/tile
+                            continue;
+                        }
+
                         imageInput.seek(stripTileOffsets[i]);
                         ImageInputStream subStream = new SubImageInputStream(imageInput, stripTileByteCounts != null ? (int) stripTileByteCounts[i] : Short.MAX_VALUE);
                         try {
                             jpegReader.setInput(subStream);
-                            jpegParam.setSourceRegion(new Rectangle(0, 0, colsInTile, rowsInTile));
-                            jpegParam.setDestinationOffset(new Point(col, row));
+                            jpegParam.setSourceRegion(new Rectangle(firstCol - col, firstRow - row, endCol - firstCol, endRow - firstRow));
+                            jpegParam.setSourceSubsampling(xSub, ySub, 0, 0);
+                            jpegParam.setDestinationOffset(new Point(dest.x + (firstCol - source.x) / xSub, dest.y + (firstRow - source.y) / ySub));
                             jpegParam.setDestination(destination);
                             // TODO: This works only if Gray/YCbCr/RGB, not CMYK/LAB/etc...
                             // In the latter case we will have to use readAsRaster and do color conversion ourselves
@@ -748,18 +874,14 @@ public class TIFFImageReader extends ImageReaderBase {
                         if (abortRequested()) {
                             break;
                         }
-
-                        col += colsInTile;
                     }
 
-                    processImageProgress(100f * row / (float) height);
+                    processImageProgress(100f * (y + 1 - firstTileY) / (lastTileY + 1 - firstTileY));
 
                     if (abortRequested()) {
                         processReadAborted();
                         break;
                     }
-
-                    row += rowsInTile;
                 }
 
                 break;
@@ -781,10 +903,12 @@ public class TIFFImageReader extends ImageReaderBase {
 
                 // May use normal tiling??
 
-                // TIFF is strictly ISO JPEG, so we should probably stick to the standard reader
-                jpegReader = new JPEGImageReader(getOriginatingProvider());
+                jpegReader = getJPEGDelegate();
                 jpegParam = (JPEGImageReadParam) jpegReader.getDefaultReadParam();
 
+                // The delegate keeps the tables from the streams read below, so any installed JPEGTables are lost
+                installJPEGTables(null);
+
                 // 513/JPEGInterchangeFormat (may be absent...)
                 int jpegOffset = getValueAsIntWithDefault(TIFF.TAG_JPEG_INTERCHANGE_FORMAT, -1);
                 // 514/JPEGInterchangeFormatLength (may be absent...)
@@ -800,7 +924,7 @@ public class TIFFImageReader extends ImageReaderBase {
                 if (jpegOffset != -1) {
                     // Straight forward case: We're good to go! We'll disregard tiling and any tables tags
 
-                    if (currentIFD.getEntryById(TIFF.TAG_OLD_JPEG_Q_TABLES) != null || currentIFD.getEntryById(TIFF.TAG_OLD_JPEG_DC_TABLES) != null || currentIFD.getEntryById(TIFF.TAG_OLD_JPEG_AC_TABLES) != null) {
+                    if (getEntry(TIFF.TAG_OLD_JPEG_Q_TABLES) != null || getEntry(TIFF.TAG_OLD_JPEG_DC_TABLES) != null || getEntry(TIFF.TAG_OLD_JPEG_AC_TABLES) != null) {
                         processWarningOccurred("Old-style JPEG compressed TIFF with JFIF stream encountered. Ignoring JPEG tables. Reading as single tile.");
                     }
                     else {
@@ -815,7 +939,9 @@ public class TIFFImageReader extends ImageReaderBase {
                     processImageStarted(imageIndex);
 
                     try {
-                        jpegParam.setSourceRegion(new Rectangle(0, 0, width, height));
+                        jpegParam.setSourceRegion(source);
+                        jpegParam.setSourceSubsampling(xSub, ySub, 0, 0);
+                        jpegParam.setDestinationOffset(dest.getLocation());
                         jpegParam.setDestination(destination);
                         // TODO: This works only if Gray/YCbCr/RGB, not CMYK/LAB/etc...
                         // In the latter case we will have to use readAsRaster and do color conversion ourselves
@@ -885,21 +1011,38 @@ public class TIFFImageReader extends ImageReaderBase {
                         imageInput.readFully(acTables[j]);
                     }
 
+                    // The JFIF header (SOI, SOF0, DQT, DHT and SOS) is the same for all strips/tiles, so we create it only once
+                    byte[] jfifHeader = createJFIFHeader(raster, stripTileWidth, stripTileHeight, qTables, dcTables, acTables);
+
                     // Read data
                     processImageStarted(imageIndex);
 
-                    for (int y = 0; y < tilesDown; y++) {
-                        int col = 0;
+                    // Only strips/tiles that intersects the source region are read
+                    for (int y = firstTileY; y <= lastTileY; y++) {
+                        row = y * stripTileHeight;
                         int rowsInTile = Math.min(stripTileHeight, height - row);
 
-                        for (int x = 0; x < tilesAcross; x++) {
-                            int colsInTile = Math.min(stripTileWidth, width - col);
+                        for (int x = firstTileX; x <= lastTileX; x++) {
                             int i = y * tilesAcross + x;
+                            int col = x * stripTileWidth;
+                            int colsInTile = Math.min(stripTileWidth, width - col);
+
+                            // The part of the strip/tile that intersects the (subsampled) source region
+                            int firstCol = firstSampled(col, source.x, xSub);
+                            int firstRow = firstSampled(row, source.y, ySub);
+                            int endCol = Math.min(col + colsInTile, source.x + source.width);
+                            int endRow = Math.min(row + rowsInTile, source.y + source.height);
+
+                            if (firstCol >= endCol || firstRow >= endRow) {
+                                // No sampled pixels in this strip/tile
+                                continue;
+                            }
 
                             imageInput.seek(stripTileOffsets[i]);
-                            stream = ImageIO.createImageInputStream(new SequenceInputStream(Collections.enumeration(
+                            // NOTE: Memory cache, as the default file cache is expensive for the (typically small) strips/tiles
+                            stream = new MemoryCacheImageInputStream(new SequenceInputStream(Collections.enumeration(
                                     Arrays.asList(
-                                            createJFIFStream(raster, stripTileWidth, stripTileHeight, qTables, dcTables, acTables),
+                                            new ByteArrayInputStream(jfifHeader),
                                             IIOUtil.createStreamAdapter(imageInput, stripTileByteCounts != null ? (int) stripTileByteCounts[i] : Short.MAX_VALUE),
                                             new ByteArrayInputStream(new byte[] {(byte) 0xff, (byte) 0xd9}) // EOI
                                     )
@@ -908,8 +1051,9 @@ public class TIFFImageReader extends ImageReaderBase {
                             jpegReader.setInput(stream);
 
                             try {
-                                jpegParam.setSourceRegion(new Rectangle(0, 0, colsInTile, rowsInTile));
-                                jpegParam.setDestinationOffset(new Point(col, row));
+                                jpegParam.setSourceRegion(new Rectangle(firstCol - col, firstRow - row, endCol - firstCol, endRow - firstRow));
+                                jpegParam.setSourceSubsampling(xSub, ySub, 0, 0);
+                                jpegParam.setDestinationOffset(new Point(dest.x + (firstCol - source.x) / xSub, dest.y + (firstRow - source.y) / ySub));
                                 jpegParam.setDestination(destination);
                                 // TODO: This works only if Gray/YCbCr/RGB, not CMYK/LAB/etc...
                                 // In the latter case we will have to use readAsRaster and do color conversion ourselves
@@ -922,29 +1066,19 @@ public class TIFFImageReader extends ImageReaderBase {
                             if (abortRequested()) {
                                 break;
                             }
-
-                            col += colsInTile;
                         }
 
-                        processImageProgress(100f * row / (float) height);
+                        processImageProgress(100f * (y + 1 - firstTileY) / (lastTileY + 1 - firstTileY));
 
                         if (abortRequested()) {
                             processReadAborted();
                             break;
                         }
-
-                        row += rowsInTile;
                     }
                 }
 
                 break;
 
-                // Additionally, the specification defines these values as part of the TIFF extensions:
-            case TIFFExtension.COMPRESSION_CCITT_T4:
-                // CCITT Group 3 fax encoding
-            case TIFFExtension.COMPRESSION_CCITT_T6:
-                // CCITT Group 4 fax encoding
-
                 // Known, but unsupported compression types
             case TIFFCustom.COMPRESSION_NEXT:
             case TIFFCustom.COMPRESSION_CCITTRLEW:
@@ -971,7 +1105,353 @@ public class TIFFImageReader extends ImageReaderBase {
         return destination;
     }
 
-    private static InputStream createJFIFStream(WritableRaster raster, int stripTileWidth, int stripTileHeight, byte[][] qTables, byte[][] dcTables, byte[][] acTables) throws IOException {
+    private void readStripTilesParallel(final StripTileDecoder decoder, final int decodeThreads,
+                                        final long[] stripTileOffsets, final long[] stripTileByteCounts, final int tilesAcross,
+                                        final int firstTileX, final int lastTileX, final int firstTileY, final int lastTileY,
+                                        final int stripTileWidth, final int stripTileHeight,
+                                        final int width, final int height) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(decodeThreads, (lastTileX + 1 - firstTileX) * (lastTileY + 1 - firstTileY)));
+        List<List<Future<?>>> tileRows = new ArrayList<List<Future<?>>>(lastTileY + 1 - firstTileY);
+
+        try {
+            for (int y = firstTileY; y <= lastTileY; y++) {
+                final int row = y * stripTileHeight;
+                final int rowsInTile = Math.min(stripTileHeight, height - row);
+
+                List<Future<?>> tiles = new ArrayList<Future<?>>(lastTileX + 1 - firstTileX);
+                tileRows.add(tiles);
+
+                for (int x = firstTileX; x <= lastTileX; x++) {
+                    final int col = x * stripTileWidth;
+                    final int colsInTile = Math.min(stripTileWidth, width - col);
+                    final int i = y * tilesAcross + x;
+
+                    if (!decoder.intersects(col, row, colsInTile, rowsInTile)) {
+                        // No sampled pixels in this strip/tile
+                        continue;
+                    }
+
+                    tiles.add(executor.submit(new Callable<Void>() {
+                        public Void call() throws IOException {
+                            InputStream stream = readStripTileBytes(stripTileOffsets[i], stripTileByteCounts[i]);
+                            decoder.decode(stream, decoder.createRowRaster(stripTileWidth), col, row, colsInTile, rowsInTile);
+
+                            return null;
+                        }
+                    }));
+                }
+            }
+
+            // Wait for the strips/tiles in order, to report progress as for serial reading
+            for (int y = 0; y < tileRows.size(); y++) {
+                for (Future<?> tile : tileRows.get(y)) {
+                    awaitStripTile(tile);
+                }
+
+                processImageProgress(100f * (y + 1) / tileRows.size());
+
+                if (abortRequested()) {
+                    processReadAborted();
+                    break;
+                }
+            }
+        }
+        finally {
+            // Cancel the pending strips/tiles, and wait for the running ones, so that no worker reads the input
+            // or writes to the destination after we return (the input may be used for the next read)
+            for (List<Future<?>> tiles : tileRows) {
+                for (Future<?> tile : tiles) {
+                    tile.cancel(false);
+                }
+            }
+
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(final ExecutorService executor) {
+        boolean interrupted = false;
+
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                // Keep waiting, the workers must be done before the input can be used again
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private InputStream readStripTileBytes(final long offset, final long byteCount) throws IOException {
+        byte[] data;
+        int length = 0;
+
+        // The input stream is shared between all decoding threads
+        synchronized (imageInput) {
+            // Don't trust the byte count from the file, it may be corrupt
+            long streamLength = imageInput.length();
+            long count = streamLength >= 0 ? Math.max(0, Math.min(byteCount, streamLength - offset)) : byteCount;
+
+            if (count < 0 || count > Integer.MAX_VALUE) {
+                throw new IIOException(String.format("Unsupported TIFF StripByteCounts/TileByteCounts value: %d", byteCount));
+            }
+
+            data = new byte[(int) count];
+            imageInput.seek(offset);
+
+            // NOTE: Truncated data is passed on as-is, the same way the serial stream adapter does
+            int read;
+            while (length < data.length && (read = imageInput.read(data, length, data.length - length)) >= 0) {
+                length += read;
+            }
+        }
+
+        return new ByteArrayInputStream(data, 0, length);
+    }
+
+    private static void awaitStripTile(final Future<?> tile) throws IOException {
+        try {
+            tile.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding TIFF strips/tiles");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IIOException("Could not decode TIFF strip/tile", cause);
+        }
+    }
+
+    /**
+     * Returns the first sampled row or column, at or after {@code start}.
+     *
+     * @param start the first row or column of a strip or tile
+     * @param regionStart the first row or column of the source region
+     * @param subsampling the subsampling period
+     * @return the first row or column {@code >= start} that is part of the subsampled source region
+     */
+    static int firstSampled(final int start, final int regionStart, final int subsampling) {
+        if (start <= regionStart) {
+            return regionStart;
+        }
+
+        return regionStart + ((start - regionStart + subsampling - 1) / subsampling) * subsampling;
+    }
+
+    /**
+     * Decodes a single strip or tile into the destination raster.
+     * Only rows and columns that are part of the (subsampled) source region are written to the destination,
+     * and rows after the source region are never decoded.
+     * The decoder itself is not modified while decoding, so a single instance may be shared between threads,
+     * as long as each thread uses its own row raster, and decodes a disjoint area of the destination.
+     */
+    private final class StripTileDecoder {
+        private final ImageTypeSpecifier rawType;
+        private final WritableRaster raster;
+        private final Rectangle srcRegion;
+        private final Rectangle dstRegion;
+        private final int xSub;
+        private final int ySub;
+        private final int stripTileWidth;
+        private final int compression;
+        private final int predictor;
+        private final int interpretation;
+        private final int samplesPerPixel;
+        private final int bitsPerSample;
+        private final ByteOrder byteOrder;
+        private final int[] yCbCrSubsampling;
+        private final int yCbCrPos;
+        private final double[] yCbCrCoefficients;
+
+        StripTileDecoder(final ImageTypeSpecifier rawType, final WritableRaster raster,
+                         final Rectangle srcRegion, final Rectangle dstRegion, final int xSub, final int ySub, final int stripTileWidth,
+                         final int compression, final int predictor, final int interpretation,
+                         final int samplesPerPixel, final int bitsPerSample, final ByteOrder byteOrder,
+                         final int[] yCbCrSubsampling, final int yCbCrPos, final double[] yCbCrCoefficients) {
+            this.rawType = rawType;
+            this.raster = raster;
+            this.srcRegion = srcRegion;
+            this.dstRegion = dstRegion;
+            this.xSub = xSub;
+            this.ySub = ySub;
+            this.stripTileWidth = stripTileWidth;
+            this.compression = compression;
+            this.predictor = predictor;
+            this.interpretation = interpretation;
+            this.samplesPerPixel = samplesPerPixel;
+            this.bitsPerSample = bitsPerSample;
+            this.byteOrder = byteOrder;
+            this.yCbCrSubsampling = yCbCrSubsampling;
+            this.yCbCrPos = yCbCrPos;
+            this.yCbCrCoefficients = yCbCrCoefficients;
+        }
+
+        WritableRaster createRowRaster(final int stripTileWidth) {
+            return rawType.getColorModel().createCompatibleWritableRaster(stripTileWidth, 1);
+        }
+
+        boolean intersects(final int col, final int row, final int colsInTile, final int rowsInTile) {
+            return firstSampled(col, srcRegion.x, xSub) < Math.min(col + colsInTile, srcRegion.x + srcRegion.width)
+                    && firstSampled(row, srcRegion.y, ySub) < Math.min(row + rowsInTile, srcRegion.y + srcRegion.height);
+        }
+
+        void decode(final InputStream stream, final WritableRaster rowRaster,
+                    final int col, final int row, final int colsInTile, final int rowsInTile) throws IOException {
+            DataInput input;
+
+            if (compression == TIFFBaseline.COMPRESSION_NONE && interpretation != TIFFExtension.PHOTOMETRIC_YCBCR) {
+                // No need for transformation
+                input = createDataInput(stream);
+            }
+            else {
+                InputStream adapter = createDecompressorStream(compression, stripTileWidth, stream);
+                adapter = createUnpredictorStream(predictor, stripTileWidth, samplesPerPixel, bitsPerSample, adapter, byteOrder);
+
+                if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR) {
+                    adapter = new YCbCrUpsamplerStream(adapter, yCbCrSubsampling, yCbCrPos, colsInTile, yCbCrCoefficients);
+                }
+
+                input = createDataInput(adapter);
+            }
+
+            readStripTileData(input, rowRaster, col, row, colsInTile, rowsInTile);
+        }
+
+        private DataInput createDataInput(final InputStream stream) {
+            // According to the spec, short/long/etc should follow order of containing stream
+            return byteOrder == ByteOrder.BIG_ENDIAN
+                    ? new DataInputStream(stream)
+                    : new LittleEndianDataInputStream(stream);
+        }
+
+        void readStripTileData(final DataInput input, final WritableRaster rowRaster,
+                               final int col, final int startRow, final int colsInTile, final int rowsInTile) throws IOException {
+            // Rows after the source region are never read
+            int endRow = Math.min(startRow + rowsInTile, srcRegion.y + srcRegion.height);
+
+            // Columns of this strip/tile that are part of the (subsampled) source region
+            int firstCol = firstSampled(col, srcRegion.x, xSub);
+            int endCol = Math.min(col + colsInTile, srcRegion.x + srcRegion.width);
+            int dstCol = dstRegion.x + (firstCol - srcRegion.x) / xSub;
+
+            Raster sampled = firstCol == col && endCol - firstCol == rowRaster.getWidth()
+                    ? rowRaster
+                    : rowRaster.createChild(firstCol - col, 0, Math.max(endCol - firstCol, 1), 1, 0, 0, null);
+            Object pixel = null;
+
+            // Multi-byte samples from a stream are read a full row at a time, and converted in bulk
+            DataBuffer dataBuffer = rowRaster.getDataBuffer();
+            ByteBuffer rowBuffer = input instanceof ImageInputStream || dataBuffer.getDataType() == DataBuffer.TYPE_BYTE
+                    ? null
+                    : ByteBuffer.allocate(dataBuffer.getSize() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8).order(byteOrder);
+
+            for (int row = startRow; row < endRow; row++) {
+                if (row < srcRegion.y || (row - srcRegion.y) % ySub != 0) {
+                    skipRow(input, rowRaster, rowBuffer);
+                    continue;
+                }
+
+                readRow(input, rowRaster, rowBuffer);
+
+                int dstRow = dstRegion.y + (row - srcRegion.y) / ySub;
+
+                if (xSub == 1) {
+                    raster.setDataElements(dstCol, dstRow, sampled);
+                }
+                else {
+                    for (int x = firstCol, dstX = dstCol; x < endCol; x += xSub, dstX++) {
+                        pixel = rowRaster.getDataElements(x - col, 0, pixel);
+                        raster.setDataElements(dstX, dstRow, pixel);
+                    }
+                }
+            }
+        }
+
+        private void readRow(final DataInput input, final WritableRaster rowRaster, final ByteBuffer rowBuffer) throws IOException {
+            switch (rowRaster.getTransferType()) {
+                case DataBuffer.TYPE_BYTE:
+                    byte[] rowData = ((DataBufferByte) rowRaster.getDataBuffer()).getData();
+                    input.readFully(rowData);
+                    normalizeBlack(interpretation, rowData);
+
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    short[] rowDataShort = ((DataBufferUShort) rowRaster.getDataBuffer()).getData();
+
+                    if (rowBuffer == null) {
+                        ((ImageInputStream) input).readFully(rowDataShort, 0, rowDataShort.length);
+                    }
+                    else {
+                        input.readFully(rowBuffer.array());
+                        rowBuffer.asShortBuffer().get(rowDataShort);
+                    }
+
+                    normalizeBlack(interpretation, rowDataShort);
+
+                    break;
+                case DataBuffer.TYPE_INT:
+                    int[] rowDataInt = ((DataBufferInt) rowRaster.getDataBuffer()).getData();
+
+                    if (rowBuffer == null) {
+                        ((ImageInputStream) input).readFully(rowDataInt, 0, rowDataInt.length);
+                    }
+                    else {
+                        input.readFully(rowBuffer.array());
+                        rowBuffer.asIntBuffer().get(rowDataInt);
+                    }
+
+                    normalizeBlack(interpretation, rowDataInt);
+
+                    break;
+                case DataBuffer.TYPE_FLOAT:
+                    float[] rowDataFloat = ((DataBufferFloat) rowRaster.getDataBuffer()).getData();
+
+                    if (rowBuffer == null) {
+                        ((ImageInputStream) input).readFully(rowDataFloat, 0, rowDataFloat.length);
+                    }
+                    else {
+                        input.readFully(rowBuffer.array());
+                        rowBuffer.asFloatBuffer().get(rowDataFloat);
+                    }
+
+                    // NOTE: WhiteIsZero is not normalized for floating point samples, as there is no well-defined max value
+
+                    break;
+            }
+        }
+
+        private void skipRow(final DataInput input, final WritableRaster rowRaster, final ByteBuffer rowBuffer) throws IOException {
+            if (input instanceof ImageInputStream) {
+                // Uncompressed data, just seek past the row
+                DataBuffer buffer = rowRaster.getDataBuffer();
+                ((ImageInputStream) input).skipBytes((long) buffer.getSize() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8);
+            }
+            else {
+                // The row has to be decoded anyway, but it is never written to the destination
+                readRow(input, rowRaster, rowBuffer);
+            }
+        }
+    }
+
+    private static byte[] createJFIFHeader(WritableRaster raster, int stripTileWidth, int stripTileHeight, byte[][] qTables, byte[][] dcTables, byte[][] acTables) throws IOException {
         FastByteArrayOutputStream stream = new FastByteArrayOutputStream(
                 2 + 2 + 2 + 6 + 3 * raster.getNumBands() +
                 5 * qTables.length + qTables.length * qTables[0].length +
@@ -1037,90 +1517,7 @@ public class TIFFImageReader extends ImageReaderBase {
         out.writeByte(0);
         out.writeByte(0);
 
-        return stream.createInputStream();
-    }
-
-    private void readStripTileData(final WritableRaster rowRaster, final int interpretation,
-                                   final WritableRaster raster, final int col, final int startRow,
-                                   final int colsInStrip, final int rowsInStrip, final DataInput input)
-            throws IOException {
-        switch (rowRaster.getTransferType()) {
-            case DataBuffer.TYPE_BYTE:
-                byte[] rowData = ((DataBufferByte) rowRaster.getDataBuffer()).getData();
-
-                for (int j = 0; j < rowsInStrip; j++) {
-                    int row = startRow + j;
-
-                    if (row >= raster.getHeight()) {
-                        break;
-                    }
-
-                    input.readFully(rowData);
-                    normalizeBlack(interpretation, rowData);
-
-                    if (colsInStrip == rowRaster.getWidth() && col + colsInStrip <= raster.getWidth()) {
-                        raster.setDataElements(col, row, rowRaster);
-                    }
-                    else if (col >= raster.getMinX() && col < raster.getWidth()) {
-                        raster.setDataElements(col, row, rowRaster.createChild(0, 0, Math.min(colsInStrip, raster.getWidth() - col), 1, 0, 0, null));
-                    }
-                    // Else skip data
-                }
-
-                break;
-            case DataBuffer.TYPE_USHORT:
-                short [] rowDataShort = ((DataBufferUShort) rowRaster.getDataBuffer()).getData();
-
-                for (int j = 0; j < rowsInStrip; j++) {
-                    int row = startRow + j;
-
-                    if (row >= raster.getHeight()) {
-                        break;
-                    }
-
-                    for (int k = 0; k < rowDataShort.length; k++) {
-                        rowDataShort[k] = input.readShort();
-                    }
-
-                    normalizeBlack(interpretation, rowDataShort);
-
-                    if (colsInStrip == rowRaster.getWidth() && col + colsInStrip <= raster.getWidth()) {
-                        raster.setDataElements(col, row, rowRaster);
-                    }
-                    else if (col >= raster.getMinX() && col < raster.getWidth()) {
-                        raster.setDataElements(col, row, rowRaster.createChild(0, 0, Math.min(colsInStrip, raster.getWidth() - col), 1, 0, 0, null));
-                    }
-                    // Else skip data
-                }
-
-                break;
-            case DataBuffer.TYPE_INT:
-                int [] rowDataInt = ((DataBufferInt) rowRaster.getDataBuffer()).getData();
-
-                for (int j = 0; j < rowsInStrip; j++) {
-                    int row = startRow + j;
-
-                    if (row >= raster.getHeight()) {
-                        break;
-                    }
-
-                    for (int k = 0; k < rowDataInt.length; k++) {
-                        rowDataInt[k] = input.readInt();
-                    }
-
-                    normalizeBlack(interpretation, rowDataInt);
-
-                    if (colsInStrip == rowRaster.getWidth() && col + colsInStrip <= raster.getWidth()) {
-                        raster.setDataElements(col, row, rowRaster);
-                    }
-                    else if (col >= raster.getMinX() && col < raster.getWidth()) {
-                        raster.setDataElements(col, row, rowRaster.createChild(0, 0, Math.min(colsInStrip, raster.getWidth() - col), 1, 0, 0, null));
-                    }
-                    // Else skip data
-                }
-
-                break;
-        }
+        return stream.toByteArray();
     }
 
     private void normalizeBlack(int photometricInterpretation, short[] data) {
@@ -1163,9 +1560,11 @@ public class TIFFImageReader extends ImageReaderBase {
             case TIFFExtension.COMPRESSION_DEFLATE:
                 return new InflaterInputStream(stream, new Inflater(), 1024);
             case TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE:
+                return new CCITTFaxDecoderStream(stream, width, compression, getValueAsIntWithDefault(TIFF.TAG_FILL_ORDER, 1));
             case TIFFExtension.COMPRESSION_CCITT_T4:
+                return new CCITTFaxDecoderStream(stream, width, compression, getValueAsIntWithDefault(TIFF.TAG_FILL_ORDER, 1), getValueAsIntWithDefault(TIFF.TAG_T4_OPTIONS, 0));
             case TIFFExtension.COMPRESSION_CCITT_T6:
-                return new CCITTFaxDecoderStream(stream, width, compression, getValueAsIntWithDefault(TIFF.TAG_FILL_ORDER, 1));
+                return new CCITTFaxDecoderStream(stream, width, compression, getValueAsIntWithDefault(TIFF.TAG_FILL_ORDER, 1), getValueAsIntWithDefault(TIFF.TAG_T6_OPTIONS, 0));
             default:
                 throw new IllegalArgumentException("Unsupported TIFF compression: " + compression);
         }
@@ -1178,14 +1577,14 @@ public class TIFFImageReader extends ImageReaderBase {
             case TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING:
                 return new HorizontalDeDifferencingStream(stream, width, samplesPerPixel, bitsPerSample, byteOrder);
             case TIFFExtension.PREDICTOR_HORIZONTAL_FLOATINGPOINT:
-                throw new IIOException("Unsupported TIFF Predictor value: " + predictor);
+                return new HorizontalDeDifferencingStream(stream, width, samplesPerPixel, bitsPerSample, byteOrder, true);
             default:
                 throw new IIOException("Unknown TIFF Predictor value: " + predictor);
         }
     }
 
     private long[] getValueAsLongArray(final int tag, final String tagName, boolean required) throws IIOException {
-        Entry entry = currentIFD.getEntryById(tag);
+        Entry entry = getEntry(tag);
         if (entry == null) {
             if (required) {
                 throw new IIOException("Missing TIFF tag " + tagName);
@@ -1194,33 +1593,34 @@ public class TIFFImageReader extends ImageReaderBase {
             return null;
         }
 
+        Object entryValue = getValue(entry);
         long[] value;
 
         if (entry.valueCount() == 1) {
             // For single entries, this will be a boxed type
-            value = new long[] {((Number) entry.getValue()).longValue()};
+            value = new long[] {((Number) entryValue).longValue()};
         }
-        else if (entry.getValue() instanceof short[]) {
-            short[] shorts = (short[]) entry.getValue();
+        else if (entryValue instanceof short[]) {
+            short[] shorts = (short[]) entryValue;
             value = new long[shorts.length];
 
             for (int i = 0, length = value.length; i < length; i++) {
                 value[i] = shorts[i];
             }
         }
-        else if (entry.getValue() instanceof int[]) {
-            int[] ints = (int[]) entry.getValue();
+        else if (entryValue instanceof int[]) {
+            int[] ints = (int[]) entryValue;
             value = new long[ints.length];
 
             for (int i = 0, length = value.length; i < length; i++) {
                 value[i] = ints[i];
             }
         }
-        else if (entry.getValue() instanceof long[]) {
-            value = (long[]) entry.getValue();
+        else if (entryValue instanceof long[]) {
+            value = (long[]) entryValue;
         }
         else {
-            throw new IIOException(String.format("Unsupported %s type: %s (%s)", tagName, entry.getTypeName(), entry.getValue().getClass()));
+            throw new IIOException(String.format("Unsupported %s type: %s (%s)", tagName, entry.getTypeName(), entryValue.getClass()));
         }
 
         return value;
@@ -65,8 +65,7 @@ public class TIFFImageReaderSpi extends ImageReaderSpi {
                 },
                 "com.twelvemkonkeys.imageio.plugins.tiff.TIFFImageReader",
                 new Class[] {ImageInputStream.class},
-//                new String[]{"com.twelvemkonkeys.imageio.plugins.tif.TIFFImageWriterSpi"},
-                null,
+                new String[]{"com.twelvemonkeys.imageio.plugins.tiff.TIFFImageWriterSpi"},
                 true, // supports standard stream metadata
                 null, null, // native stream format name and class
                 null, null, // extra stream formats
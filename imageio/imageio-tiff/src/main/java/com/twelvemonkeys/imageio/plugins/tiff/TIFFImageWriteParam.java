@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.lang.Validate;
+
+import javax.imageio.ImageWriteParam;
+import java.util.Locale;
+
+/**
+ * Implementation of {@code ImageWriteParam} for TIFF images.
+ * <p/>
+ * Supports the compression types {@code "None"}, {@code "PackBits"}, {@code "LZW"} and {@code "Deflate"},
+ * optionally with horizontal differencing predictor for {@code "LZW"} and {@code "Deflate"}.
+ * Image data is written in strips, unless tiling is requested.
+ * In addition to the standard settings, allows encoding independent strips or tiles concurrently.
+ * By default, all encoding is done on the calling thread.
+ */
+public class TIFFImageWriteParam extends ImageWriteParam {
+    static final String COMPRESSION_NONE = "None";
+    static final String COMPRESSION_PACKBITS = "PackBits";
+    static final String COMPRESSION_LZW = "LZW";
+    static final String COMPRESSION_DEFLATE = "Deflate";
+
+    private boolean horizontalPredictor;
+    private int encodeThreads = 1;
+
+    public TIFFImageWriteParam() {
+        this(Locale.getDefault());
+    }
+
+    public TIFFImageWriteParam(final Locale locale) {
+        super(locale);
+
+        canWriteCompressed = true;
+        canWriteTiles = true;
+
+        compressionTypes = new String[] {COMPRESSION_NONE, COMPRESSION_PACKBITS, COMPRESSION_LZW, COMPRESSION_DEFLATE};
+    }
+
+    @Override
+    public boolean isCompressionLossless() {
+        super.isCompressionLossless(); // Sanity checks
+
+        return true;
+    }
+
+    /**
+     * Returns whether horizontal differencing predictor is applied before compression.
+     *
+     * @return {@code true} if horizontal differencing predictor is applied.
+     */
+    public boolean isHorizontalPredictor() {
+        return horizontalPredictor;
+    }
+
+    /**
+     * Sets whether horizontal differencing predictor should be applied before compression.
+     * <p/>
+     * The predictor is only applied for {@code "LZW"} and {@code "Deflate"} compression, and
+     * to images with 8 or 16 bits per sample. It is otherwise ignored.
+     * For continuous tone images, the predictor will typically improve compression.
+     *
+     * @param horizontalPredictor {@code true} if horizontal differencing predictor should be applied.
+     */
+    public void setHorizontalPredictor(final boolean horizontalPredictor) {
+        this.horizontalPredictor = horizontalPredictor;
+    }
+
+    /**
+     * Returns the maximum number of threads used for encoding strips or tiles.
+     *
+     * @return the maximum number of encoding threads, {@code 1} means encode on the calling thread.
+     */
+    public int getEncodeThreads() {
+        return encodeThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads used for encoding strips or tiles.
+     * <p/>
+     * Values greater than {@code 1} enables parallel encoding of strips or tiles.
+     * The output is identical to the output when encoding on a single thread.
+     *
+     * @param encodeThreads the maximum number of encoding threads.
+     * @throws IllegalArgumentException if {@code encodeThreads < 1}.
+     */
+    public void setEncodeThreads(final int encodeThreads) {
+        this.encodeThreads = Validate.isTrue(encodeThreads > 0, encodeThreads, "encodeThreads must be greater than 0: %s");
+    }
+}
@@ -0,0 +1,708 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.imageio.ImageWriterBase;
+import com.twelvemonkeys.imageio.metadata.exif.TIFF;
+import com.twelvemonkeys.io.FastByteArrayOutputStream;
+import com.twelvemonkeys.io.enc.EncoderStream;
+import com.twelvemonkeys.io.enc.PackBitsEncoder;
+
+import javax.imageio.*;
+import javax.imageio.metadata.IIOMetadata;
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * ImageWriter implementation for Aldus/Adobe Tagged Image File Format (TIFF).
+ * <p/>
+ * Writes a single image, as strips or tiles, uncompressed or compressed using
+ * PackBits, LZW or Deflate compression, optionally with horizontal differencing predictor.
+ * Supports bi-level, gray, palette, RGB and CMYK images, with or without alpha,
+ * using 1, 2, 4, 8 or 16 bits per sample.
+ * <p/>
+ * Independent strips or tiles may be encoded concurrently, using
+ * {@link TIFFImageWriteParam#setEncodeThreads(int)}.
+ *
+ * @see TIFFImageWriteParam
+ * @see TIFFImageReader
+ */
+public class TIFFImageWriter extends ImageWriterBase {
+    // TODO: Support writing multiple images (sequence)
+    // TODO: Support image metadata
+    // TODO: Support planar configuration
+    // TODO: Support JPEG and CCITT compression
+
+    // Strips of approximately 8 KB, as recommended by the TIFF 6.0 Specification, Section 3, page 19.
+    private static final int STRIP_SIZE = 8192;
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    TIFFImageWriter(final TIFFImageWriterSpi provider) {
+        super(provider);
+    }
+
+    @Override
+    public TIFFImageWriteParam getDefaultWriteParam() {
+        return new TIFFImageWriteParam(getLocale());
+    }
+
+    public IIOMetadata getDefaultImageMetadata(final ImageTypeSpecifier imageType, final ImageWriteParam param) {
+        return null;
+    }
+
+    public IIOMetadata convertImageMetadata(final IIOMetadata inData, final ImageTypeSpecifier imageType, final ImageWriteParam param) {
+        return null;
+    }
+
+    public void write(final IIOMetadata streamMetadata, final IIOImage image, final ImageWriteParam param) throws IOException {
+        assertOutput();
+
+        if (image.hasRaster()) {
+            throw new UnsupportedOperationException("Cannot write raster");
+        }
+
+        RenderedImage renderedImage = image.getRenderedImage();
+        ColorModel colorModel = renderedImage.getColorModel();
+        SampleModel sampleModel = renderedImage.getSampleModel();
+
+        if (!isSupported(colorModel, sampleModel)) {
+            throw new IIOException(String.format("Unsupported image type for TIFF: %s/%s", colorModel, sampleModel));
+        }
+
+        Rectangle source = getSourceRegion(param, renderedImage.getWidth(), renderedImage.getHeight());
+        source.translate(renderedImage.getMinX(), renderedImage.getMinY());
+
+        int xSub = param != null ? param.getSourceXSubsampling() : 1;
+        int ySub = param != null ? param.getSourceYSubsampling() : 1;
+
+        int width = (source.width + xSub - 1) / xSub;
+        int height = (source.height + ySub - 1) / ySub;
+
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Empty source region");
+        }
+
+        int samplesPerPixel = sampleModel.getNumBands();
+        int bitsPerSample = getBitsPerSample(colorModel, sampleModel);
+        int compression = getCompression(param);
+        int predictor = getPredictor(param, compression, bitsPerSample);
+        ByteOrder byteOrder = imageOutput.getByteOrder();
+
+        boolean tiled = param != null && param.canWriteTiles()
+                && (param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT || param.getTilingMode() == ImageWriteParam.MODE_DEFAULT);
+        int stripTileWidth;
+        int stripTileHeight;
+
+        if (tiled) {
+            stripTileWidth = param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT ? param.getTileWidth() : DEFAULT_TILE_SIZE;
+            stripTileHeight = param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT ? param.getTileHeight() : DEFAULT_TILE_SIZE;
+
+            // See TIFF 6.0 Specification, Section 15: "Tiled Images", page 67.
+            if (stripTileWidth <= 0 || stripTileWidth % 16 != 0 || stripTileHeight <= 0 || stripTileHeight % 16 != 0) {
+                throw new IIOException(String.format("TIFF tile width and height must be a multiple of 16: %dx%d", stripTileWidth, stripTileHeight));
+            }
+        }
+        else {
+            stripTileWidth = width;
+            stripTileHeight = Math.max(1, Math.min(height, STRIP_SIZE / ((width * samplesPerPixel * bitsPerSample + 7) / 8)));
+        }
+
+        int tilesAcross = (width + stripTileWidth - 1) / stripTileWidth;
+        int tilesDown = (height + stripTileHeight - 1) / stripTileHeight;
+
+        Raster raster = renderedImage instanceof BufferedImage ? ((BufferedImage) renderedImage).getRaster() : renderedImage.getData(source);
+        StripTileEncoder encoder = new StripTileEncoder(
+                raster, source, xSub, ySub, width, height, tiled, stripTileWidth, stripTileHeight,
+                samplesPerPixel, bitsPerSample, compression, predictor, byteOrder
+        );
+
+        processImageStarted(0);
+
+        // Write header, the IFD offset is updated after the image data is written
+        long start = imageOutput.getStreamPosition();
+        imageOutput.writeShort(byteOrder == ByteOrder.BIG_ENDIAN ? TIFF.BYTE_ORDER_MARK_BIG_ENDIAN : TIFF.BYTE_ORDER_MARK_LITTLE_ENDIAN);
+        imageOutput.writeShort(TIFF.TIFF_MAGIC);
+        imageOutput.writeInt(0);
+
+        long[] stripTileOffsets = new long[tilesAcross * tilesDown];
+        long[] stripTileByteCounts = new long[stripTileOffsets.length];
+
+        int encodeThreads = param instanceof TIFFImageWriteParam ? ((TIFFImageWriteParam) param).getEncodeThreads() : 1;
+
+        if (encodeThreads > 1 && stripTileOffsets.length > 1) {
+            if (!writeStripTilesParallel(encoder, encodeThreads, tilesAcross, tilesDown, start, stripTileOffsets, stripTileByteCounts)) {
+                return;
+            }
+        }
+        else {
+            for (int y = 0; y < tilesDown; y++) {
+                for (int x = 0; x < tilesAcross; x++) {
+                    writeStripTile(encoder.encode(x, y), y * tilesAcross + x, start, stripTileOffsets, stripTileByteCounts);
+                }
+
+                processImageProgress(100f * (y + 1) / tilesDown);
+
+                if (abortRequested()) {
+                    processWriteAborted();
+                    return;
+                }
+            }
+        }
+
+        // IFD must begin on a word boundary
+        if ((imageOutput.getStreamPosition() - start) % 2 != 0) {
+            imageOutput.writeByte(0);
+        }
+
+        long ifdOffset = imageOutput.getStreamPosition() - start;
+
+        Map<Integer, Object> entries = createEntries(
+                colorModel, width, height, tiled, stripTileWidth, stripTileHeight,
+                samplesPerPixel, bitsPerSample, compression, predictor, stripTileOffsets, stripTileByteCounts
+        );
+        writeIFD(entries, start);
+
+        long end = imageOutput.getStreamPosition();
+        imageOutput.seek(start + 4);
+        imageOutput.writeInt((int) ifdOffset);
+        imageOutput.seek(end);
+        imageOutput.flush();
+
+        processImageComplete();
+    }
+
+    private void writeStripTile(final byte[] data, final int index, final long start, final long[] stripTileOffsets, final long[] stripTileByteCounts) throws IOException {
+        stripTileOffsets[index] = imageOutput.getStreamPosition() - start;
+        stripTileByteCounts[index] = data.length;
+
+        imageOutput.write(data);
+    }
+
+    // Returns false if the write was aborted
+    private boolean writeStripTilesParallel(final StripTileEncoder encoder, final int encodeThreads, final int tilesAcross, final int tilesDown,
+                                            final long start, final long[] stripTileOffsets, final long[] stripTileByteCounts) throws IOException {
+        int threads = Math.min(encodeThreads, stripTileOffsets.length);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Limit the number of encoded strips/tiles kept in memory, while waiting to be written in order
+        int maxPending = threads * 2;
+        LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+        try {
+            int submitted = 0;
+
+            for (int i = 0; i < stripTileOffsets.length; i++) {
+                while (submitted < stripTileOffsets.length && pending.size() < maxPending) {
+                    final int x = submitted % tilesAcross;
+                    final int y = submitted / tilesAcross;
+
+                    pending.add(executor.submit(new Callable<byte[]>() {
+                        public byte[] call() throws IOException {
+                            return encoder.encode(x, y);
+                        }
+                    }));
+
+                    submitted++;
+                }
+
+                writeStripTile(awaitStripTile(pending.removeFirst()), i, start, stripTileOffsets, stripTileByteCounts);
+
+                if ((i + 1) % tilesAcross == 0) {
+                    processImageProgress(100f * (i + 1) / tilesAcross / tilesDown);
+
+                    if (abortRequested()) {
+                        processWriteAborted();
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+        finally {
+            // Cancel the pending strips/tiles, and wait for the running ones, so that no worker reads the
+            // source image after we return
+            for (Future<byte[]> tile : pending) {
+                tile.cancel(false);
+            }
+
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(final ExecutorService executor) {
+        boolean interrupted = false;
+
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                // Keep waiting, the workers must be done before the source image can be modified
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] awaitStripTile(final Future<byte[]> tile) throws IOException {
+        try {
+            return tile.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding TIFF strips/tiles");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IIOException("Could not encode TIFF strip/tile", cause);
+        }
+    }
+
+    static boolean isSupported(final ColorModel colorModel, final SampleModel sampleModel) {
+        int bitsPerSample = getBitsPerSample(colorModel, sampleModel);
+
+        if (bitsPerSample < 0) {
+            return false;
+        }
+
+        if (colorModel instanceof IndexColorModel) {
+            return sampleModel.getNumBands() == 1 && bitsPerSample <= 8;
+        }
+
+        if (bitsPerSample < 8 && sampleModel.getNumBands() != 1) {
+            return false;
+        }
+
+        switch (colorModel.getColorSpace().getType()) {
+            case ColorSpace.TYPE_GRAY:
+            case ColorSpace.TYPE_RGB:
+            case ColorSpace.TYPE_CMYK:
+                return sampleModel.getNumBands() >= colorModel.getNumComponents();
+            default:
+                return false;
+        }
+    }
+
+    private static int getBitsPerSample(final ColorModel colorModel, final SampleModel sampleModel) {
+        int bitsPerSample = sampleModel.getSampleSize(0);
+
+        for (int i = 1; i < sampleModel.getNumBands(); i++) {
+            if (sampleModel.getSampleSize(i) != bitsPerSample) {
+                return -1;
+            }
+        }
+
+        if (colorModel instanceof IndexColorModel && bitsPerSample == 3) {
+            return 4;
+        }
+        else if (colorModel instanceof IndexColorModel && bitsPerSample > 4 && bitsPerSample < 8) {
+            return 8;
+        }
+
+        switch (bitsPerSample) {
+            case 1:
+            case 2:
+            case 4:
+            case 8:
+            case 16:
+                return bitsPerSample;
+            default:
+                return -1;
+        }
+    }
+
+    private static int getCompression(final ImageWriteParam param) throws IIOException {
+        if (param == null || !param.canWriteCompressed() || param.getCompressionMode() != ImageWriteParam.MODE_EXPLICIT) {
+            return TIFFBaseline.COMPRESSION_NONE;
+        }
+
+        String compressionType = param.getCompressionType();
+
+        if (compressionType == null || TIFFImageWriteParam.COMPRESSION_NONE.equals(compressionType)) {
+            return TIFFBaseline.COMPRESSION_NONE;
+        }
+        else if (TIFFImageWriteParam.COMPRESSION_PACKBITS.equals(compressionType)) {
+            return TIFFBaseline.COMPRESSION_PACKBITS;
+        }
+        else if (TIFFImageWriteParam.COMPRESSION_LZW.equals(compressionType)) {
+            return TIFFExtension.COMPRESSION_LZW;
+        }
+        else if (TIFFImageWriteParam.COMPRESSION_DEFLATE.equals(compressionType)) {
+            // TIFFphotoshop.pdf (aka TIFF specification, supplement 2) says ZLIB (8) and DEFLATE (32946) algorithms are identical
+            return TIFFExtension.COMPRESSION_ZLIB;
+        }
+
+        throw new IIOException("Unsupported TIFF compression type: " + compressionType);
+    }
+
+    private static int getPredictor(final ImageWriteParam param, final int compression, final int bitsPerSample) {
+        if (param instanceof TIFFImageWriteParam && ((TIFFImageWriteParam) param).isHorizontalPredictor()
+                && (compression == TIFFExtension.COMPRESSION_LZW || compression == TIFFExtension.COMPRESSION_ZLIB)
+                && (bitsPerSample == 8 || bitsPerSample == 16)) {
+            return TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING;
+        }
+
+        return TIFFBaseline.PREDICTOR_NONE;
+    }
+
+    private static Map<Integer, Object> createEntries(final ColorModel colorModel, final int width, final int height,
+                                                      final boolean tiled, final int stripTileWidth, final int stripTileHeight,
+                                                      final int samplesPerPixel, final int bitsPerSample,
+                                                      final int compression, final int predictor,
+                                                      final long[] stripTileOffsets, final long[] stripTileByteCounts) {
+        // Values are int[] for SHORT, long[] for LONG and RATIONAL (numerator/denominator pairs)
+        Map<Integer, Object> entries = new TreeMap<Integer, Object>();
+
+        entries.put(TIFF.TAG_IMAGE_WIDTH, new long[] {width});
+        entries.put(TIFF.TAG_IMAGE_HEIGHT, new long[] {height});
+
+        int[] bitsPerSamples = new int[samplesPerPixel];
+        for (int i = 0; i < samplesPerPixel; i++) {
+            bitsPerSamples[i] = bitsPerSample;
+        }
+        entries.put(TIFF.TAG_BITS_PER_SAMPLE, bitsPerSamples);
+        entries.put(TIFF.TAG_COMPRESSION, new int[] {compression});
+
+        if (colorModel instanceof IndexColorModel) {
+            IndexColorModel icm = (IndexColorModel) colorModel;
+            int size = 1 << bitsPerSample;
+            int[] colorMap = new int[size * 3];
+
+            for (int i = 0; i < icm.getMapSize() && i < size; i++) {
+                int rgb = icm.getRGB(i);
+                // Scale 8 bit values to 16 bit
+                colorMap[i] = ((rgb >> 16) & 0xff) * 0x101;
+                colorMap[i + size] = ((rgb >> 8) & 0xff) * 0x101;
+                colorMap[i + size * 2] = (rgb & 0xff) * 0x101;
+            }
+
+            entries.put(TIFF.TAG_PHOTOMETRIC_INTERPRETATION, new int[] {TIFFBaseline.PHOTOMETRIC_PALETTE});
+            entries.put(TIFF.TAG_COLOR_MAP, colorMap);
+        }
+        else {
+            switch (colorModel.getColorSpace().getType()) {
+                case ColorSpace.TYPE_GRAY:
+                    entries.put(TIFF.TAG_PHOTOMETRIC_INTERPRETATION, new int[] {TIFFBaseline.PHOTOMETRIC_BLACK_IS_ZERO});
+                    break;
+                case ColorSpace.TYPE_RGB:
+                    entries.put(TIFF.TAG_PHOTOMETRIC_INTERPRETATION, new int[] {TIFFBaseline.PHOTOMETRIC_RGB});
+                    break;
+                case ColorSpace.TYPE_CMYK:
+                    entries.put(TIFF.TAG_PHOTOMETRIC_INTERPRETATION, new int[] {TIFFExtension.PHOTOMETRIC_SEPARATED});
+                    break;
+                default:
+                    throw new AssertionError("Unsupported color space: " + colorModel.getColorSpace());
+            }
+
+            int extraSamplesCount = samplesPerPixel - colorModel.getNumColorComponents();
+
+            if (extraSamplesCount > 0) {
+                int[] extraSamples = new int[extraSamplesCount];
+
+                if (colorModel.hasAlpha()) {
+                    extraSamples[0] = colorModel.isAlphaPremultiplied()
+                            ? TIFFBaseline.EXTRASAMPLE_ASSOCIATED_ALPHA
+                            : TIFFBaseline.EXTRASAMPLE_UNASSOCIATED_ALPHA;
+                }
+
+                entries.put(TIFF.TAG_EXTRA_SAMPLES, extraSamples);
+            }
+        }
+
+        entries.put(TIFF.TAG_SAMPLES_PER_PIXEL, new int[] {samplesPerPixel});
+        entries.put(TIFF.TAG_X_RESOLUTION, new long[] {72, 1});
+        entries.put(TIFF.TAG_Y_RESOLUTION, new long[] {72, 1});
+        entries.put(TIFF.TAG_PLANAR_CONFIGURATION, new int[] {TIFFBaseline.PLANARCONFIG_CHUNKY});
+        entries.put(TIFF.TAG_RESOLUTION_UNIT, new int[] {2}); // Inches
+
+        if (predictor != TIFFBaseline.PREDICTOR_NONE) {
+            entries.put(TIFF.TAG_PREDICTOR, new int[] {predictor});
+        }
+
+        if (tiled) {
+            entries.put(TIFF.TAG_TILE_WIDTH, new long[] {stripTileWidth});
+            entries.put(TIFF.TAG_TILE_HEIGTH, new long[] {stripTileHeight});
+            entries.put(TIFF.TAG_TILE_OFFSETS, stripTileOffsets);
+            entries.put(TIFF.TAG_TILE_BYTE_COUNTS, stripTileByteCounts);
+        }
+        else {
+            entries.put(TIFF.TAG_STRIP_OFFSETS, stripTileOffsets);
+            entries.put(TIFF.TAG_ROWS_PER_STRIP, new long[] {stripTileHeight});
+            entries.put(TIFF.TAG_STRIP_BYTE_COUNTS, stripTileByteCounts);
+        }
+
+        return entries;
+    }
+
+    private void writeIFD(final Map<Integer, Object> entries, final long start) throws IOException {
+        // Values that does not fit in the entry are written after the IFD, aligned on word boundaries
+        long valueOffset = imageOutput.getStreamPosition() - start + 2 + entries.size() * 12 + 4;
+
+        imageOutput.writeShort(entries.size());
+
+        for (Map.Entry<Integer, Object> entry : entries.entrySet()) {
+            int tag = entry.getKey();
+            Object value = entry.getValue();
+            short type = getType(tag, value);
+            int count = getCount(tag, value);
+            long length = (long) count * TIFF.TYPE_LENGTHS[type - 1];
+
+            imageOutput.writeShort(tag);
+            imageOutput.writeShort(type);
+            imageOutput.writeInt(count);
+
+            if (length <= 4) {
+                writeValue(type, value);
+
+                for (long i = length; i < 4; i++) {
+                    imageOutput.writeByte(0);
+                }
+            }
+            else {
+                imageOutput.writeInt((int) valueOffset);
+                valueOffset += length + length % 2;
+            }
+        }
+
+        imageOutput.writeInt(0); // No next IFD
+
+        for (Map.Entry<Integer, Object> entry : entries.entrySet()) {
+            short type = getType(entry.getKey(), entry.getValue());
+            long length = (long) getCount(entry.getKey(), entry.getValue()) * TIFF.TYPE_LENGTHS[type - 1];
+
+            if (length > 4) {
+                writeValue(type, entry.getValue());
+
+                if (length % 2 != 0) {
+                    imageOutput.writeByte(0);
+                }
+            }
+        }
+    }
+
+    private static short getType(final int tag, final Object value) {
+        switch (tag) {
+            case TIFF.TAG_X_RESOLUTION:
+            case TIFF.TAG_Y_RESOLUTION:
+                return TIFF.TYPE_RATIONAL;
+            default:
+                return value instanceof int[] ? TIFF.TYPE_SHORT : TIFF.TYPE_LONG;
+        }
+    }
+
+    private static int getCount(final int tag, final Object value) {
+        int length = value instanceof int[] ? ((int[]) value).length : ((long[]) value).length;
+        return getType(tag, value) == TIFF.TYPE_RATIONAL ? length / 2 : length;
+    }
+
+    private void writeValue(final short type, final Object value) throws IOException {
+        if (type == TIFF.TYPE_SHORT) {
+            for (int v : (int[]) value) {
+                imageOutput.writeShort(v);
+            }
+        }
+        else {
+            for (long v : (long[]) value) {
+                imageOutput.writeInt((int) v);
+            }
+        }
+    }
+
+    /**
+     * Encodes single strips or tiles of the image.
+     * Instances are immutable, and encoding is thread safe, as long as the source raster is not modified.
+     */
+    private static final class StripTileEncoder {
+        private final Raster raster;
+        private final Rectangle source;
+        private final int xSub;
+        private final int ySub;
+        private final int width;
+        private final int height;
+        private final boolean tiled;
+        private final int stripTileWidth;
+        private final int stripTileHeight;
+        private final int samplesPerPixel;
+        private final int bitsPerSample;
+        private final int compression;
+        private final int predictor;
+        private final ByteOrder byteOrder;
+
+        StripTileEncoder(final Raster raster, final Rectangle source, final int xSub, final int ySub,
+                         final int width, final int height,
+                         final boolean tiled, final int stripTileWidth, final int stripTileHeight,
+                         final int samplesPerPixel, final int bitsPerSample,
+                         final int compression, final int predictor, final ByteOrder byteOrder) {
+            this.raster = raster;
+            this.source = source;
+            this.xSub = xSub;
+            this.ySub = ySub;
+            this.width = width;
+            this.height = height;
+            this.tiled = tiled;
+            this.stripTileWidth = stripTileWidth;
+            this.stripTileHeight = stripTileHeight;
+            this.samplesPerPixel = samplesPerPixel;
+            this.bitsPerSample = bitsPerSample;
+            this.compression = compression;
+            this.predictor = predictor;
+            this.byteOrder = byteOrder;
+        }
+
+        byte[] encode(final int tileX, final int tileY) throws IOException {
+            int col = tileX * stripTileWidth;
+            int row = tileY * stripTileHeight;
+            int colsInTile = Math.min(stripTileWidth, width - col);
+            // Tiles are always full size, while the last strip contains only the remaining rows
+            int rowsInTile = tiled ? stripTileHeight : Math.min(stripTileHeight, height - row);
+
+            int rowLength = (stripTileWidth * samplesPerPixel * bitsPerSample + 7) / 8;
+            byte[] rowData = new byte[rowLength];
+            int[] samples = new int[((colsInTile - 1) * xSub + 1) * samplesPerPixel];
+
+            FastByteArrayOutputStream bytes = new FastByteArrayOutputStream(compression == TIFFBaseline.COMPRESSION_NONE ? rowLength * rowsInTile : 1024);
+            OutputStream stream = createCompressorStream(compression, bytes, (long) rowLength * rowsInTile);
+
+            if (predictor == TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING) {
+                stream = new HorizontalDifferencingStream(stream, stripTileWidth, samplesPerPixel, bitsPerSample, byteOrder);
+            }
+
+            try {
+                for (int y = row; y < row + rowsInTile; y++) {
+                    if (y < height) {
+                        raster.getPixels(source.x + col * xSub, source.y + y * ySub, (colsInTile - 1) * xSub + 1, 1, samples);
+                        packRow(samples, colsInTile, rowData);
+                    }
+                    else {
+                        // Padding, outside image
+                        Arrays.fill(rowData, (byte) 0);
+                    }
+
+                    stream.write(rowData, 0, rowLength);
+                }
+            }
+            finally {
+                stream.close();
+            }
+
+            return bytes.toByteArray();
+        }
+
+        private void packRow(final int[] samples, final int cols, final byte[] rowData) {
+            int stride = xSub * samplesPerPixel;
+
+            switch (bitsPerSample) {
+                case 1:
+                case 2:
+                case 4:
+                    // Single sample per pixel, packed most significant bits first
+                    Arrays.fill(rowData, (byte) 0);
+                    int pixelsPerByte = 8 / bitsPerSample;
+                    int mask = (1 << bitsPerSample) - 1;
+
+                    for (int x = 0; x < cols; x++) {
+                        int shift = 8 - bitsPerSample * (x % pixelsPerByte + 1);
+                        rowData[x / pixelsPerByte] |= (samples[x * stride] & mask) << shift;
+                    }
+                    break;
+
+                case 8:
+                    for (int x = 0, i = 0; x < cols; x++) {
+                        int off = x * stride;
+
+                        for (int s = 0; s < samplesPerPixel; s++) {
+                            rowData[i++] = (byte) samples[off + s];
+                        }
+                    }
+                    break;
+
+                case 16:
+                    boolean bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+
+                    for (int x = 0, i = 0; x < cols; x++) {
+                        int off = x * stride;
+
+                        for (int s = 0; s < samplesPerPixel; s++) {
+                            int sample = samples[off + s];
+                            rowData[i++] = (byte) (bigEndian ? sample >> 8 : sample);
+                            rowData[i++] = (byte) (bigEndian ? sample : sample >> 8);
+                        }
+                    }
+                    break;
+
+                default:
+                    throw new AssertionError(String.format("Unsupported bits per sample value: %d", bitsPerSample));
+            }
+        }
+
+        private static OutputStream createCompressorStream(final int compression, final OutputStream stream, final long length) {
+            switch (compression) {
+                case TIFFBaseline.COMPRESSION_NONE:
+                    return stream;
+                case TIFFBaseline.COMPRESSION_PACKBITS:
+                    // Flush on each write, to make sure each row is encoded separately
+                    return new EncoderStream(stream, new PackBitsEncoder(), true);
+                case TIFFExtension.COMPRESSION_LZW:
+                    return new EncoderStream(stream, new LZWEncoder(length));
+                case TIFFExtension.COMPRESSION_ZLIB:
+                case TIFFExtension.COMPRESSION_DEFLATE:
+                    return new DeflaterOutputStream(stream);
+                default:
+                    throw new IllegalArgumentException("Unsupported TIFF compression: " + compression);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.imageio.spi.ProviderInfo;
+import com.twelvemonkeys.imageio.util.IIOUtil;
+
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.spi.ImageWriterSpi;
+import java.util.Locale;
+
+/**
+ * TIFFImageWriterSpi
+ */
+public class TIFFImageWriterSpi extends ImageWriterSpi {
+    /**
+     * Creates a {@code TIFFImageWriterSpi}.
+     */
+    public TIFFImageWriterSpi() {
+        this(IIOUtil.getProviderInfo(TIFFImageWriterSpi.class));
+    }
+
+    private TIFFImageWriterSpi(final ProviderInfo providerInfo) {
+        super(
+                providerInfo.getVendorName(),
+                providerInfo.getVersion(),
+                new String[]{"tiff", "TIFF"},
+                new String[]{"tif", "tiff"},
+                new String[]{
+                        "image/tiff", "image/x-tiff"
+                },
+                "com.twelvemonkeys.imageio.plugins.tiff.TIFFImageWriter",
+                STANDARD_OUTPUT_TYPE,
+                new String[]{"com.twelvemonkeys.imageio.plugins.tiff.TIFFImageReaderSpi"},
+                false, // supports standard stream metadata
+                null, null, // native stream format name and class
+                null, null, // extra stream formats
+                false, // supports standard image metadata
+                null, null,
+                null, null // extra image metadata formats
+        );
+    }
+
+    public boolean canEncodeImage(final ImageTypeSpecifier type) {
+        return TIFFImageWriter.isSupported(type.getColorModel(), type.getSampleModel());
+    }
+
+    public TIFFImageWriter createWriterInstance(final Object extension) {
+        return new TIFFImageWriter(this);
+    }
+
+    public String getDescription(final Locale locale) {
+        return "Aldus/Adobe Tagged Image File Format (TIFF) image writer";
+    }
+}
@@ -30,8 +30,6 @@ package com.twelvemonkeys.imageio.plugins.tiff;
 
 import com.twelvemonkeys.lang.Validate;
 
-import java.awt.image.DataBufferByte;
-import java.awt.image.Raster;
 import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
@@ -53,7 +51,7 @@ final class YCbCrUpsamplerStream extends FilterInputStream {
     private final int vertChromaSub;
     private final int yCbCrPos;
     private final int columns;
-    private final double[] coefficients;
+    private final YCbCrConverter converter;
 
     private final int units;
     private final int unitSize;
@@ -76,7 +74,7 @@ final class YCbCrUpsamplerStream extends FilterInputStream {
         this.vertChromaSub = chromaSub[1];
         this.yCbCrPos = yCbCrPos;
         this.columns = columns;
-        this.coefficients = Arrays.equals(CCIR_601_1_COEFFICIENTS, coefficients) ? null : coefficients;
+        this.converter = YCbCrConverter.create(coefficients);
 
         // In TIFF, subsampled streams are stored in "units" of horiz * vert pixels.
         // For a 4:2 subsampled stream like this:
@@ -118,37 +116,39 @@ final class YCbCrUpsamplerStream extends FilterInputStream {
     private void decodeRows() throws EOFException {
         decodedLength = decodedRows.length;
 
+        final int[] crR = converter.crR;
+        final int[] cbB = converter.cbB;
+        final int[] crG = converter.crG;
+        final int[] cbG = converter.cbG;
+
         for (int u = 0; u < units; u++) {
             if (bufferPos >= bufferLength) {
                 throw new EOFException("Unexpected end of stream");
             }
 
-            // Decode one unit
-            byte cb = buffer[bufferPos + unitSize - 2];
-            byte cr = buffer[bufferPos + unitSize - 1];
+            // Decode one unit, the chroma contributions are the same for all pixels in the unit
+            int cb = buffer[bufferPos + unitSize - 2] & 0xff;
+            int cr = buffer[bufferPos + unitSize - 1] & 0xff;
+
+            int red = crR[cr];
+            int green = (cbG[cb] + crG[cr]) >> YCbCrConverter.SCALEBITS;
+            int blue = cbB[cb];
 
             for (int y = 0; y < vertChromaSub; y++) {
+                int pixelOff = 3 * (horizChromaSub * u + columns * y);
+
                 for (int x = 0; x < horizChromaSub; x++) {
                     // Skip padding at end of row
-                    int column = horizChromaSub * u + x;
-                    if (column >= columns) {
+                    if (horizChromaSub * u + x >= columns) {
                         bufferPos += padding;
                         break;
                     }
 
-                    int pixelOff = 3 * (column + columns * y);
+                    int luma = buffer[bufferPos++] & 0xff;
 
-                    decodedRows[pixelOff] = buffer[bufferPos++];
-                    decodedRows[pixelOff + 1] = cb;
-                    decodedRows[pixelOff + 2] = cr;
-
-                    // Convert to RGB
-                    if (coefficients == null) {
-                        YCbCrConverter.convertYCbCr2RGB(decodedRows, decodedRows, pixelOff);
-                    }
-                    else {
-                        convertYCbCr2RGB(decodedRows, decodedRows, coefficients, pixelOff);
-                    }
+                    decodedRows[pixelOff++] = clamp(luma + red);
+                    decodedRows[pixelOff++] = clamp(luma + green);
+                    decodedRows[pixelOff++] = clamp(luma + blue);
                 }
             }
 
@@ -227,48 +227,61 @@ final class YCbCrUpsamplerStream extends FilterInputStream {
         throw new IOException("mark/reset not supported");
     }
 
-    private void convertYCbCr2RGB(final byte[] yCbCr, final byte[] rgb, final double[] coefficients, final int offset) {
-        double y  = (yCbCr[offset    ] & 0xff);
-        double cb = (yCbCr[offset + 1] & 0xff) - 128; // TODO: The -128 part seems bogus... Consult ReferenceBlackWhite??? But default to these values?
-        double cr = (yCbCr[offset + 2] & 0xff) - 128;
-
-        double lumaRed   = coefficients[0];
-        double lumaGreen = coefficients[1];
-        double lumaBlue  = coefficients[2];
-
-        int red = (int) Math.round(cr * (2 - 2 * lumaRed) + y);
-        int blue = (int) Math.round(cb * (2 - 2 * lumaBlue) + y);
-        int green = (int) Math.round((y - lumaRed * (rgb[offset] & 0xff) - lumaBlue * (rgb[offset + 2] & 0xff)) / lumaGreen);
-
-        rgb[offset    ] = clamp(red);
-        rgb[offset + 2] = clamp(blue);
-        rgb[offset + 1] = clamp(green);
-    }
-
-    private static byte clamp(int val) {
-        return (byte) Math.max(0, Math.min(255, val));
+    private static byte clamp(final int val) {
+        // Fast path for values in range
+        return (byte) ((val & ~0xff) == 0 ? val : val < 0 ? 0 : 255);
     }
 
     // TODO: This code is copied from JPEG package, make it "more" public: com.tm.imageio.color package?
     /**
-     * Static inner class for lazy-loading of conversion tables.
+     * Fixed-point lookup tables for YCbCr->RGB conversion, for a given set of YCbCrCoefficients.
+     * The tables for the default (CCIR Recommendation 601-1) coefficients are created only once.
      */
     static final class YCbCrConverter {
         /** Define tables for YCC->RGB color space conversion. */
-        private final static int SCALEBITS = 16;
+        final static int SCALEBITS = 16;
         private final static int MAXJSAMPLE = 255;
         private final static int CENTERJSAMPLE = 128;
         private final static int ONE_HALF = 1 << (SCALEBITS - 1);
 
-        private final static int[] Cr_R_LUT = new int[MAXJSAMPLE + 1];
-        private final static int[] Cb_B_LUT = new int[MAXJSAMPLE + 1];
-        private final static int[] Cr_G_LUT = new int[MAXJSAMPLE + 1];
-        private final static int[] Cb_G_LUT = new int[MAXJSAMPLE + 1];
+        private static final YCbCrConverter CCIR_601_1 = new YCbCrConverter(1.40200, 1.77200, 0.71414, 0.34414);
+
+        final int[] crR = new int[MAXJSAMPLE + 1];
+        final int[] cbB = new int[MAXJSAMPLE + 1];
+        final int[] crG = new int[MAXJSAMPLE + 1];
+        final int[] cbG = new int[MAXJSAMPLE + 1];
+
+        /**
+         * Creates a converter for the given YCbCrCoefficients.
+         *
+         * @param coefficients the LumaRed, LumaGreen and LumaBlue coefficients,
+         *                     or {@code null} for the default CCIR Recommendation 601-1 values.
+         * @return a converter for the given coefficients.
+         */
+        static YCbCrConverter create(final double[] coefficients) {
+            if (coefficients == null || Arrays.equals(CCIR_601_1_COEFFICIENTS, coefficients)) {
+                return CCIR_601_1;
+            }
+
+            double lumaRed = coefficients[0];
+            double lumaGreen = coefficients[1];
+            double lumaBlue = coefficients[2];
+
+            // R = Y + (2 - 2 * LumaRed) * Cr
+            // B = Y + (2 - 2 * LumaBlue) * Cb
+            // G = (Y - LumaRed * R - LumaBlue * B) / LumaGreen, expanded using R and B above, as LumaRed + LumaGreen + LumaBlue = 1
+            return new YCbCrConverter(
+                    2 - 2 * lumaRed,
+                    2 - 2 * lumaBlue,
+                    lumaRed * (2 - 2 * lumaRed) / lumaGreen,
+                    lumaBlue * (2 - 2 * lumaBlue) / lumaGreen
+            );
+        }
 
         /**
          * Initializes tables for YCC->RGB color space conversion.
          */
-        private static void buildYCCtoRGBtable() {
+        private YCbCrConverter(final double crToR, final double cbToB, final double crToG, final double cbToG) {
             if (TIFFImageReader.DEBUG) {
                 System.err.println("Building YCC conversion table");
             }
@@ -276,76 +289,16 @@ final class YCbCrUpsamplerStream extends FilterInputStream {
             for (int i = 0, x = -CENTERJSAMPLE; i <= MAXJSAMPLE; i++, x++) {
                 // i is the actual input pixel value, in the range 0..MAXJSAMPLE
                 // The Cb or Cr value we are thinking of is x = i - CENTERJSAMPLE
-                // Cr=>R value is nearest int to 1.40200 * x
-                Cr_R_LUT[i] = (int) ((1.40200 * (1 << SCALEBITS) + 0.5) * x + ONE_HALF) >> SCALEBITS;
-                // Cb=>B value is nearest int to 1.77200 * x
-                Cb_B_LUT[i] = (int) ((1.77200 * (1 << SCALEBITS) + 0.5) * x + ONE_HALF) >> SCALEBITS;
-                // Cr=>G value is scaled-up -0.71414 * x
-                Cr_G_LUT[i] = -(int) (0.71414 * (1 << SCALEBITS) + 0.5) * x;
-                // Cb=>G value is scaled-up -0.34414 * x
+                // Cr=>R value is nearest int to crToR * x (1.40200 * x for CCIR 601-1)
+                crR[i] = (int) ((crToR * (1 << SCALEBITS) + 0.5) * x + ONE_HALF) >> SCALEBITS;
+                // Cb=>B value is nearest int to cbToB * x (1.77200 * x for CCIR 601-1)
+                cbB[i] = (int) ((cbToB * (1 << SCALEBITS) + 0.5) * x + ONE_HALF) >> SCALEBITS;
+                // Cr=>G value is scaled-up -crToG * x (-0.71414 * x for CCIR 601-1)
+                crG[i] = -(int) (crToG * (1 << SCALEBITS) + 0.5) * x;
+                // Cb=>G value is scaled-up -cbToG * x (-0.34414 * x for CCIR 601-1)
                 // We also add in ONE_HALF so that need not do it in inner loop
-                Cb_G_LUT[i] = -(int) ((0.34414) * (1 << SCALEBITS) + 0.5) * x + ONE_HALF;
+                cbG[i] = -(int) (cbToG * (1 << SCALEBITS) + 0.5) * x + ONE_HALF;
             }
         }
-
-        static {
-            buildYCCtoRGBtable();
-        }
-
-        static void convertYCbCr2RGB(final Raster raster) {
-            final int height = raster.getHeight();
-            final int width = raster.getWidth();
-            final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    convertYCbCr2RGB(data, data, (x + y * width) * 3);
-                }
-            }
-        }
-
-        static void convertYCbCr2RGB(final byte[] yCbCr, final byte[] rgb, final int offset) {
-            int y  = yCbCr[offset    ] & 0xff;
-            int cr = yCbCr[offset + 2] & 0xff;
-            int cb = yCbCr[offset + 1] & 0xff;
-
-            rgb[offset    ] = clamp(y + Cr_R_LUT[cr]);
-            rgb[offset + 1] = clamp(y + (Cb_G_LUT[cb] + Cr_G_LUT[cr] >> SCALEBITS));
-            rgb[offset + 2] = clamp(y + Cb_B_LUT[cb]);
-        }
-
-        static void convertYCCK2CMYK(final Raster raster) {
-            final int height = raster.getHeight();
-            final int width = raster.getWidth();
-            final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    convertYCCK2CMYK(data, data, (x + y * width) * 4);
-                }
-            }
-        }
-
-        private static void convertYCCK2CMYK(byte[] ycck, byte[] cmyk, int offset) {
-            // Inverted
-            int y  = 255 - ycck[offset    ] & 0xff;
-            int cb = 255 - ycck[offset + 1] & 0xff;
-            int cr = 255 - ycck[offset + 2] & 0xff;
-            int k  = 255 - ycck[offset + 3] & 0xff;
-
-            int cmykC = MAXJSAMPLE - (y + Cr_R_LUT[cr]);
-            int cmykM = MAXJSAMPLE - (y + (Cb_G_LUT[cb] + Cr_G_LUT[cr] >> SCALEBITS));
-            int cmykY = MAXJSAMPLE - (y + Cb_B_LUT[cb]);
-
-            cmyk[offset    ] = clamp(cmykC);
-            cmyk[offset + 1] = clamp(cmykM);
-            cmyk[offset + 2] = clamp(cmykY);
-            cmyk[offset + 3] = (byte) k; // K passes through unchanged
-        }
-
-//        private static byte clamp(int val) {
-//            return (byte) Math.max(0, Math.min(255, val));
-//        }
     }
-
 }
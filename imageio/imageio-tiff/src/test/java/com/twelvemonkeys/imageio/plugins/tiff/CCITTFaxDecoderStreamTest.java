@@ -37,6 +37,7 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -59,15 +60,26 @@ public class CCITTFaxDecoderStreamTest {
             (byte) 0x7d, (byte) 0xc0, // 01111101 11000000
     };
 
+    // EOL + 1000 010 0111 (x 3), EOL + 0111 11 0111, RTC (6 x EOL)
     static final byte[] DATA_TYPE_3 = {
-            0x00, 0x01, (byte) 0xc2, 0x70,
-            0x00, 0x01, 0x70,
-            0x01,
+            0x00, 0x18, 0x4e, 0x00, 0x30, (byte) 0x9c, 0x00, 0x61, 0x38, 0x00, (byte) 0xbe, (byte) 0xe0,
+            0x02, 0x00, 0x20, 0x02, 0x00, 0x20, 0x02, 0x00, 0x20
+    };
 
+    // EOL + 1 (1D) + 1000 010 0111, EOL + 0 (2D) + 111 (x 2), EOL + 0 (2D) + 010 1 1, RTC (6 x EOL + 1)
+    static final byte[] DATA_TYPE_3_2D = {
+            0x00, 0x1c, 0x27, 0x00, 0x17, 0x00, 0x17, 0x00, 0x12, (byte) 0xc0,
+            0x06, 0x00, 0x30, 0x01, (byte) 0x80, 0x0c, 0x00, 0x60, 0x03
     };
 
+    // 001 1000 010 1, 111 (x 2), 010 1 1, EOFB (2 x EOL)
     static final byte[] DATA_TYPE_4 = {
-            0x26, (byte) 0xb0, 95, (byte) 0xfa, (byte) 0xc0
+            0x30, (byte) 0xbf, (byte) 0xac, 0x00, 0x40, 0x04
+    };
+
+    // Same as above, with fill order 2 (reversed bits)
+    static final byte[] DATA_TYPE_4_REVERSED = {
+            0x0c, (byte) 0xfd, 0x35, 0x00, 0x02, 0x20
     };
 
     // Image should be (6 x 4):
@@ -122,45 +134,116 @@ public class CCITTFaxDecoderStreamTest {
         assertArrayEquals(imageData, bytes);
     }
 
-    @Test(expected = IllegalArgumentException.class)
+    @Test
     public void testDecodeType3() throws IOException {
         InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(DATA_TYPE_3), 6, TIFFExtension.COMPRESSION_CCITT_T4, 1);
+        assertDecodedEquals(stream);
+    }
 
-        byte[] imageData = ((DataBufferByte) image.getData().getDataBuffer()).getData();
-        byte[] bytes = new byte[imageData.length];
-        DataInputStream dataInput = new DataInputStream(stream);
+    @Test
+    public void testDecodeType3_2D() throws IOException {
+        InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(DATA_TYPE_3_2D), 6, TIFFExtension.COMPRESSION_CCITT_T4, 1, CCITTFaxDecoderStream.OPTION_2D);
+        assertDecodedEquals(stream);
+    }
 
-        for (int y = 0; y < image.getHeight(); y++) {
-            System.err.println("y: " + y);
-            dataInput.readFully(bytes, y * image.getWidth(), image.getWidth());
-        }
+    @Test
+    public void testDecodeType4() throws IOException {
+        InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(DATA_TYPE_4), 6, TIFFExtension.COMPRESSION_CCITT_T6, 1);
+        assertDecodedEquals(stream);
+    }
 
-//        JPanel panel = new JPanel();
-//        panel.add(new JLabel("Expected", new BufferedImageIcon(image, 300, 300, true), JLabel.CENTER));
-//        panel.add(new JLabel("Actual", new BufferedImageIcon(new BufferedImage(image.getColorModel(), Raster.createPackedRaster(new DataBufferByte(bytes, bytes.length), 6, 4, 1, null), false, null), 300, 300, true), JLabel.CENTER));
-//        JOptionPane.showConfirmDialog(null, panel);
+    @Test
+    public void testDecodeType4FillOrder2() throws IOException {
+        InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(DATA_TYPE_4_REVERSED), 6, TIFFExtension.COMPRESSION_CCITT_T6, 2);
+        assertDecodedEquals(stream);
+    }
 
-        assertArrayEquals(imageData, bytes);
+    @Test
+    public void testDecodeType2ByteAlignedWidth() throws IOException {
+        // 10011 (white 8), 2 rows, each row starts on a byte boundary
+        InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(new byte[] {(byte) 0x98, (byte) 0x98}), 8, TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE, 1);
+
+        assertEquals(0xff, stream.read());
+        assertEquals(0xff, stream.read());
+        assertEquals(-1, stream.read());
     }
 
-    @Test(expected = IllegalArgumentException.class)
-    public void testDecodeType4() throws IOException {
-        InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(DATA_TYPE_4), 6, TIFFExtension.COMPRESSION_CCITT_T6, 1);
+    @Test
+    public void testDecodeRandomType2() throws IOException {
+        assertRandomRoundTrip(TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE, 0);
+    }
+
+    @Test
+    public void testDecodeRandomType3() throws IOException {
+        assertRandomRoundTrip(TIFFExtension.COMPRESSION_CCITT_T4, 0);
+    }
 
+    @Test
+    public void testDecodeRandomType3_2D() throws IOException {
+        assertRandomRoundTrip(TIFFExtension.COMPRESSION_CCITT_T4, CCITTFaxDecoderStream.OPTION_2D);
+    }
+
+    @Test
+    public void testDecodeRandomType4() throws IOException {
+        assertRandomRoundTrip(TIFFExtension.COMPRESSION_CCITT_T6, 0);
+    }
+
+    private void assertDecodedEquals(final InputStream stream) throws IOException {
         byte[] imageData = ((DataBufferByte) image.getData().getDataBuffer()).getData();
         byte[] bytes = new byte[imageData.length];
-        DataInputStream dataInput = new DataInputStream(stream);
+        new DataInputStream(stream).readFully(bytes);
+
+        assertArrayEquals(imageData, bytes);
+        assertEquals(-1, stream.read());
+    }
+
+    private static void assertRandomRoundTrip(final int type, final int options) throws IOException {
+        Random random = new Random(7331);
+
+        for (int columns : new int[] {1, 7, 8, 63, 64, 65, 1728, 2561}) {
+            byte[][] rows = createRandomRows(random, columns, 50);
+            byte[] encoded = CCITTFaxTestEncoder.encode(rows, columns, type, options);
+
+            InputStream stream = new CCITTFaxDecoderStream(new ByteArrayInputStream(encoded), columns, type, 1, options);
+            DataInputStream input = new DataInputStream(stream);
+
+            for (int y = 0; y < rows.length; y++) {
+                byte[] row = new byte[rows[y].length];
+                input.readFully(row);
+                assertArrayEquals(String.format("columns: %d, row: %d", columns, y), rows[y], row);
+            }
 
-        for (int y = 0; y < image.getHeight(); y++) {
-            System.err.println("y: " + y);
-            dataInput.readFully(bytes, y * image.getWidth(), image.getWidth());
+            assertEquals(-1, stream.read());
         }
+    }
 
-//        JPanel panel = new JPanel();
-//        panel.add(new JLabel("Expected", new BufferedImageIcon(image, 300, 300, true), JLabel.CENTER));
-//        panel.add(new JLabel("Actual", new BufferedImageIcon(new BufferedImage(image.getColorModel(), Raster.createPackedRaster(new DataBufferByte(bytes, bytes.length), 6, 4, 1, null), false, null), 300, 300, true), JLabel.CENTER));
-//        JOptionPane.showConfirmDialog(null, panel);
+    static byte[][] createRandomRows(final Random random, final int columns, final int height) {
+        // Runs of random length, rows similar to the previous, like scanned documents
+        byte[][] rows = new byte[height][(columns + 7) / 8];
 
-        assertArrayEquals(imageData, bytes);
+        for (int y = 0; y < height; y++) {
+            if (y > 0 && random.nextBoolean()) {
+                System.arraycopy(rows[y - 1], 0, rows[y], 0, rows[y].length);
+                int x = random.nextInt(columns);
+                rows[y][x / 8] ^= 0x80 >> (x % 8);
+                continue;
+            }
+
+            boolean white = random.nextInt(4) != 0;
+
+            for (int x = 0; x < columns; ) {
+                int run = random.nextInt(random.nextInt(8) == 0 ? 3000 : 20);
+
+                for (int end = Math.min(x + run, columns); x < end; x++) {
+                    if (white) {
+                        rows[y][x / 8] |= 0x80 >> (x % 8);
+                    }
+                }
+
+                white = !white;
+            }
+        }
+
+        return rows;
     }
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Simple CCITT encoder, for testing only.
+ * Shared by the {@link CCITTFaxDecoderStream} tests and benchmarks.
+ */
+public final class CCITTFaxTestEncoder {
+    private CCITTFaxTestEncoder() {}
+
+    /**
+     * Encodes the given rows. White pixels are 1 bits.
+     * For T4 with 2D option, every other row is 2D coded.
+     *
+     * @param rows the rows to encode, packed 8 pixels per byte.
+     * @param columns the number of pixels per row.
+     * @param type the TIFF compression type (2, 3 or 4).
+     * @param options the T4 options (only {@code OPTION_2D} is supported).
+     * @return the encoded data.
+     */
+    public static byte[] encode(final byte[][] rows, final int columns, final int type, final int options) {
+        BitWriter out = new BitWriter();
+        int[] reference = new int[0];
+
+        for (int y = 0; y < rows.length; y++) {
+            int[] current = changes(rows[y], columns);
+            boolean twoDimensional = type == TIFFExtension.COMPRESSION_CCITT_T6
+                    || type == TIFFExtension.COMPRESSION_CCITT_T4 && (options & CCITTFaxDecoderStream.OPTION_2D) != 0 && y % 2 == 1;
+
+            if (type == TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE) {
+                out.align();
+            }
+            else if (type == TIFFExtension.COMPRESSION_CCITT_T4) {
+                out.write(1, 12); // EOL
+
+                if ((options & CCITTFaxDecoderStream.OPTION_2D) != 0) {
+                    out.write(twoDimensional ? 0 : 1, 1);
+                }
+            }
+
+            if (twoDimensional) {
+                encode2D(out, current, reference, columns);
+            }
+            else {
+                int a0 = 0;
+                for (int i = 0; i <= current.length; i++) {
+                    int a1 = i < current.length ? current[i] : columns;
+                    writeRun(out, a1 - a0, i % 2 == 0);
+                    a0 = a1;
+
+                    if (a0 >= columns) {
+                        break;
+                    }
+                }
+            }
+
+            reference = current;
+        }
+
+        if (type == TIFFExtension.COMPRESSION_CCITT_T6) {
+            // EOFB
+            out.write(1, 12);
+            out.write(1, 12);
+        }
+        else if (type == TIFFExtension.COMPRESSION_CCITT_T4) {
+            // RTC
+            for (int i = 0; i < 6; i++) {
+                out.write(1, 12);
+
+                if ((options & CCITTFaxDecoderStream.OPTION_2D) != 0) {
+                    out.write(1, 1);
+                }
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void encode2D(final BitWriter out, final int[] current, final int[] reference, final int columns) {
+        int a0 = -1;
+        boolean white = true;
+
+        while (a0 < columns) {
+            int a1 = next(current, a0, -1, columns);
+            int b1 = next(reference, a0, white ? 0 : 1, columns);
+            int b2 = next(reference, b1, white ? 1 : 0, columns);
+
+            if (b2 < a1) {
+                out.write(1, 4); // Pass
+                a0 = b2;
+            }
+            else if (Math.abs(a1 - b1) <= 3) {
+                int[][] vertical = {{0x2, 7}, {0x2, 6}, {0x2, 3}, {0x1, 1}, {0x3, 3}, {0x3, 6}, {0x3, 7}};
+                out.write(vertical[a1 - b1 + 3][0], vertical[a1 - b1 + 3][1]);
+                a0 = a1;
+                white = !white;
+            }
+            else {
+                int a2 = next(current, a1, -1, columns);
+                out.write(1, 3); // Horizontal
+                writeRun(out, a1 - Math.max(a0, 0), white);
+                writeRun(out, a2 - a1, !white);
+                a0 = a2;
+            }
+        }
+    }
+
+    private static int next(final int[] changes, final int position, final int parity, final int columns) {
+        for (int i = 0; i < changes.length; i++) {
+            if (changes[i] > position && (parity < 0 || i % 2 == parity)) {
+                return changes[i];
+            }
+        }
+
+        return columns;
+    }
+
+    private static int[] changes(final byte[] row, final int columns) {
+        int[] changes = new int[columns + 1];
+        int count = 0;
+        boolean white = true;
+
+        for (int x = 0; x < columns; x++) {
+            boolean pixel = (row[x / 8] & (0x80 >> (x % 8))) != 0;
+
+            if (pixel != white) {
+                changes[count++] = x;
+                white = pixel;
+            }
+        }
+
+        return Arrays.copyOf(changes, count);
+    }
+
+    private static void writeRun(final BitWriter out, int run, final boolean white) {
+        do {
+            int length = run >= 2560 ? 2560 : run >= 64 ? run / 64 * 64 : run;
+            writeCode(out, length, white);
+            run -= length;
+
+            if (length < 64) {
+                break;
+            }
+        }
+        while (true);
+    }
+
+    private static void writeCode(final BitWriter out, final int runLength, final boolean white) {
+        short[][] codes = white ? CCITTFaxDecoderStream.WHITE_CODES : CCITTFaxDecoderStream.BLACK_CODES;
+        short[][] runLengths = white ? CCITTFaxDecoderStream.WHITE_RUN_LENGTHS : CCITTFaxDecoderStream.BLACK_RUN_LENGTHS;
+
+        for (int bits = 0; bits < codes.length; bits++) {
+            for (int i = 0; i < codes[bits].length; i++) {
+                if (runLengths[bits][i] == runLength) {
+                    out.write(codes[bits][i], bits + (white ? 4 : 2));
+                    return;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("No code for run length: " + runLength);
+    }
+
+    private static final class BitWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int buffer;
+        private int count;
+
+        void write(final int code, final int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                buffer = (buffer << 1) | ((code >> i) & 1);
+
+                if (++count == 8) {
+                    bytes.write(buffer);
+                    buffer = 0;
+                    count = 0;
+                }
+            }
+        }
+
+        void align() {
+            if (count > 0) {
+                write(0, 8 - count);
+            }
+        }
+
+        byte[] toByteArray() {
+            align();
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -566,4 +566,99 @@ public class HorizontalDeDifferencingStreamTest {
         assertEquals(-1, stream.read(new byte[16]));
         assertEquals(-1, stream.read());
     }
+
+    @Test
+    public void testRead2SPP32BPSMultipleRows() throws IOException {
+        // 2 samples per pixel, 32 bits per sample, 2 rows
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream(32);
+        DataOutput dataOut = new DataOutputStream(out);
+        dataOut.writeInt(1);
+        dataOut.writeInt(-1);
+        dataOut.writeInt(1);
+        dataOut.writeInt(-1);
+
+        dataOut.writeInt(Integer.MAX_VALUE);
+        dataOut.writeInt(0);
+        dataOut.writeInt(1);
+        dataOut.writeInt(42);
+
+        InputStream in = new HorizontalDeDifferencingStream(out.createInputStream(), 2, 2, 32, ByteOrder.BIG_ENDIAN);
+        DataInput dataIn = new DataInputStream(in);
+
+        // Row 1
+        assertEquals(1, dataIn.readInt());
+        assertEquals(-1, dataIn.readInt());
+        assertEquals(2, dataIn.readInt());
+        assertEquals(-2, dataIn.readInt());
+
+        // Row 2
+        assertEquals(Integer.MAX_VALUE, dataIn.readInt());
+        assertEquals(0, dataIn.readInt());
+        assertEquals(Integer.MIN_VALUE, dataIn.readInt());
+        assertEquals(42, dataIn.readInt());
+
+        // EOF
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testReadFloatingPoint1SPP32BPS() throws IOException {
+        float[] samples = {0f, 1.5f, -273.15f, 8848.86f, Float.MAX_VALUE, Float.MIN_VALUE, Float.NaN, -0f};
+
+        InputStream in = new HorizontalDeDifferencingStream(
+                new ByteArrayInputStream(predictFloatingPoint(samples, 1)), samples.length, 1, 32, ByteOrder.BIG_ENDIAN, true
+        );
+        DataInput dataIn = new DataInputStream(in);
+
+        for (float sample : samples) {
+            assertEquals(Float.floatToRawIntBits(sample), Float.floatToRawIntBits(dataIn.readFloat()));
+        }
+
+        // EOF
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testReadFloatingPoint3SPP32BPSLittleEndian() throws IOException {
+        float[] samples = {0.1f, 0.2f, 0.3f, 10.1f, 10.2f, 10.3f, -5f, -6f, -7f, 1e-30f, 1e30f, 1};
+
+        InputStream in = new HorizontalDeDifferencingStream(
+                new ByteArrayInputStream(predictFloatingPoint(samples, 3)), samples.length / 3, 3, 32, ByteOrder.LITTLE_ENDIAN, true
+        );
+        DataInput dataIn = new LittleEndianDataInputStream(in);
+
+        for (float sample : samples) {
+            assertEquals(sample, dataIn.readFloat(), 0);
+        }
+
+        // EOF
+        assertEquals(-1, in.read());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFloatingPoint8BPS() {
+        new HorizontalDeDifferencingStream(new ByteArrayInputStream(new byte[0]), 1, 1, 8, ByteOrder.BIG_ENDIAN, true);
+    }
+
+    /**
+     * Applies the floating point predictor to a single row of samples.
+     * NOTE: The byte planes are always most significant byte first, regardless of the byte order of the file.
+     */
+    static byte[] predictFloatingPoint(final float[] samples, final int samplesPerPixel) {
+        byte[] row = new byte[samples.length * 4];
+
+        for (int i = 0; i < samples.length; i++) {
+            int bits = Float.floatToRawIntBits(samples[i]);
+
+            for (int b = 0; b < 4; b++) {
+                row[b * samples.length + i] = (byte) (bits >> (24 - 8 * b));
+            }
+        }
+
+        for (int i = row.length - 1; i >= samplesPerPixel; i--) {
+            row[i] -= row[i - samplesPerPixel];
+        }
+
+        return row;
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.io.FastByteArrayOutputStream;
+import com.twelvemonkeys.io.FileUtil;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * HorizontalDifferencingStreamTest
+ */
+public class HorizontalDifferencingStreamTest {
+    @Test
+    public void testWrite1SPP8BPS() throws IOException {
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream(8);
+        OutputStream stream = new HorizontalDifferencingStream(bytes, 4, 1, 8, ByteOrder.BIG_ENDIAN);
+
+        stream.write(new byte[] {
+                0x01, 0x02, 0x04, 0x03,
+                (byte) 0xff, 0x00, 0x7f, (byte) 0x80
+        });
+        stream.close();
+
+        assertArrayEquals(new byte[] {
+                0x01, 0x01, 0x02, (byte) 0xff,
+                (byte) 0xff, 0x01, 0x7f, 0x01
+        }, bytes.toByteArray());
+    }
+
+    @Test
+    public void testWrite3SPP8BPS() throws IOException {
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream(6);
+        OutputStream stream = new HorizontalDifferencingStream(bytes, 2, 3, 8, ByteOrder.BIG_ENDIAN);
+
+        stream.write(new byte[] {0x10, 0x20, 0x30, 0x11, 0x1f, 0x40});
+        stream.close();
+
+        assertArrayEquals(new byte[] {0x10, 0x20, 0x30, 0x01, (byte) 0xff, 0x10}, bytes.toByteArray());
+    }
+
+    @Test
+    public void testWrite1SPP16BPS() throws IOException {
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream(4);
+        OutputStream stream = new HorizontalDifferencingStream(bytes, 2, 1, 16, ByteOrder.LITTLE_ENDIAN);
+
+        // 0x01ff, 0x0200 little endian
+        stream.write(new byte[] {(byte) 0xff, 0x01, 0x00, 0x02});
+        stream.close();
+
+        assertArrayEquals(new byte[] {(byte) 0xff, 0x01, 0x01, 0x00}, bytes.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCloseIncompleteRow() throws IOException {
+        OutputStream stream = new HorizontalDifferencingStream(new FastByteArrayOutputStream(4), 4, 1, 8, ByteOrder.BIG_ENDIAN);
+        stream.write(1);
+        stream.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random(42);
+        int[][] configs = {{1, 8}, {3, 8}, {4, 8}, {1, 16}, {3, 16}, {4, 32}, {2, 64}};
+
+        for (ByteOrder byteOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (int[] config : configs) {
+                int columns = 37;
+                int rowLength = columns * config[0] * config[1] / 8;
+                byte[] data = new byte[rowLength * 11];
+                random.nextBytes(data);
+
+                FastByteArrayOutputStream bytes = new FastByteArrayOutputStream(data.length);
+                OutputStream stream = new HorizontalDifferencingStream(bytes, columns, config[0], config[1], byteOrder);
+
+                // Write in odd chunks, not aligned with rows
+                for (int off = 0; off < data.length; off += 13) {
+                    stream.write(data, off, Math.min(13, data.length - off));
+                }
+                stream.close();
+
+                byte[] decoded = FileUtil.read(new HorizontalDeDifferencingStream(bytes.createInputStream(), columns, config[0], config[1], byteOrder));
+                assertArrayEquals(String.format("%d spp, %d bps, %s", config[0], config[1], byteOrder), data, decoded);
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ package com.twelvemonkeys.imageio.plugins.tiff;/*
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.twelvemonkeys.io.enc.DecodeException;
 import com.twelvemonkeys.io.enc.Decoder;
 import com.twelvemonkeys.io.enc.DecoderAbstractTestCase;
 import com.twelvemonkeys.io.enc.DecoderStream;
@@ -33,6 +34,7 @@ import com.twelvemonkeys.io.enc.Encoder;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -73,6 +75,52 @@ public class LZWDecoderTest extends DecoderAbstractTestCase {
         assertSameStreamContents(unpacked, stream);
     }
 
+    @Test(expected = DecodeException.class)
+    public void testBitReversedStreamTableOverflow() throws IOException {
+        // A long stream without CLEAR codes, where the code length stays at 12 bits, but the table keeps growing
+        InputStream stream = new DecoderStream(new ByteArrayInputStream(createBitReversedStreamWithoutClear(8192)), LZWDecoder.create(true), 1024);
+
+        byte[] buffer = new byte[1024];
+        while (stream.read(buffer) >= 0) {
+            // Discard
+        }
+    }
+
+    // Writes CLEAR_CODE, followed by the code for 0 repeated, packed least significant bit first
+    private static byte[] createBitReversedStreamWithoutClear(final int codeCount) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int bitsPerCode = 9;
+        int tableLength = 258;
+        int data = LZWDecoder.CLEAR_CODE;
+        int bits = bitsPerCode;
+
+        for (int i = 0; i < codeCount; i++) {
+            bits += bitsPerCode; // Code 0, all bits are 0
+
+            if (i > 0) {
+                // Mimic the compatibility decoder, the first code after CLEAR adds no string
+                tableLength++;
+
+                if (tableLength > (1 << bitsPerCode) - 1 && bitsPerCode < 12) {
+                    bitsPerCode++;
+                }
+            }
+
+            while (bits >= 8) {
+                bytes.write(data & 0xff);
+                data >>>= 8;
+                bits -= 8;
+            }
+        }
+
+        if (bits > 0) {
+            bytes.write(data & 0xff);
+        }
+
+        return bytes.toByteArray();
+    }
+
     private void assertSameStreamContents(InputStream expected, InputStream actual) {
         int count = 0;
         int data;
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.io.FileUtil;
+import com.twelvemonkeys.io.enc.DecoderStream;
+import com.twelvemonkeys.io.enc.EncoderStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LZWEncoderTest
+ */
+public class LZWEncoderTest {
+    private static final Random RANDOM = new Random(4269);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateNegativeLength() {
+        new LZWEncoder(-1);
+    }
+
+    @Test
+    public void testEncodeEmpty() throws IOException {
+        assertRoundTrip(new byte[0], 1024);
+    }
+
+    @Test
+    public void testEncodeRandom() throws IOException {
+        for (int length = 1; length < 100; length++) {
+            assertRoundTrip(createRandomData(length), 1024);
+        }
+
+        // Long enough to fill the table several times
+        for (int length = 100; length < 80000; length += 4999) {
+            assertRoundTrip(createRandomData(length), 1024);
+        }
+    }
+
+    @Test
+    public void testEncodeRuns() throws IOException {
+        // Long strings, and table growing in a different pattern than random data
+        for (int length = 1; length < 100000; length += 9999) {
+            byte[] data = new byte[length];
+
+            for (int i = 0; i < length; i++) {
+                data[i] = (byte) (i / 97);
+            }
+
+            assertRoundTrip(data, 1024);
+        }
+    }
+
+    @Test
+    public void testEncodeAllZeros() throws IOException {
+        assertRoundTrip(new byte[100000], 1024);
+    }
+
+    @Test
+    public void testEncodeSingleByteWrites() throws IOException {
+        assertRoundTrip(createRandomData(5000), 1);
+    }
+
+    @Test
+    public void testEncodeOddSizedWrites() throws IOException {
+        assertRoundTrip(createRandomData(20000), 77);
+    }
+
+    @Test
+    public void testDecodeKnownData() throws IOException {
+        // Encode the same data as the decoder test data, and make sure it decodes to the same
+        byte[] data = FileUtil.read(getClass().getResourceAsStream("/lzw/unpacked-long.bin"));
+        assertRoundTrip(data, 8192);
+    }
+
+    private static byte[] createRandomData(final int length) {
+        // Random, but with some repetition, to make sure strings are reused
+        byte[] data = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) RANDOM.nextInt(RANDOM.nextBoolean() ? 8 : 256);
+        }
+
+        return data;
+    }
+
+    private static void assertRoundTrip(final byte[] data, final int chunkSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream stream = new EncoderStream(bytes, new LZWEncoder(data.length));
+
+        try {
+            for (int off = 0; off < data.length; off += chunkSize) {
+                stream.write(data, off, Math.min(chunkSize, data.length - off));
+            }
+        }
+        finally {
+            stream.close();
+        }
+
+        byte[] encoded = bytes.toByteArray();
+
+        assertFalse("Encoded stream is bit reversed", data.length > 0 && LZWDecoder.isOldBitReversedStream(new ByteArrayInputStream(encoded)));
+
+        byte[] decoded = FileUtil.read(new DecoderStream(new ByteArrayInputStream(encoded), LZWDecoder.create(false), 1024));
+        assertArrayEquals(String.format("Data length: %d", data.length), data, decoded);
+    }
+}
@@ -26,13 +26,35 @@ package com.twelvemonkeys.imageio.plugins.tiff;/*
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.twelvemonkeys.imageio.metadata.exif.TIFF;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
 import com.twelvemonkeys.imageio.util.ImageReaderAbstractTestCase;
+import com.twelvemonkeys.imageio.util.ProgressListenerBase;
+import com.twelvemonkeys.io.FileUtil;
+import org.junit.Test;
 
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.spi.ImageReaderSpi;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
 import java.util.List;
 
+import static org.junit.Assert.*;
+
 /**
  * TIFFImageReaderTest
  *
@@ -94,5 +116,439 @@ public class TIFFImageReaderTest extends ImageReaderAbstractTestCase<TIFFImageRe
         return Arrays.asList("image/tiff");
     }
 
+    @Test
+    public void testDefaultReadParamIsTIFFImageReadParam() {
+        ImageReadParam param = createReader().getDefaultReadParam();
+
+        assertTrue(param instanceof TIFFImageReadParam);
+        assertEquals(1, ((TIFFImageReadParam) param).getDecodeThreads());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetDecodeThreadsZero() {
+        new TIFFImageReadParam().setDecodeThreads(0);
+    }
+
+    @Test
+    public void testReadParallelSameAsSerial() throws IOException {
+        TIFFImageReader reader = createReader();
+
+        for (TestData data : getTestData()) {
+            reader.setInput(data.getInputStream());
+
+            BufferedImage expected = reader.read(0, reader.getDefaultReadParam());
+
+            reader.setInput(data.getInputStream());
+
+            TIFFImageReadParam param = (TIFFImageReadParam) reader.getDefaultReadParam();
+            param.setDecodeThreads(4);
+            BufferedImage actual = reader.read(0, param);
+
+            assertRasterEquals(data.toString(), expected.getRaster(), actual.getRaster());
+        }
+
+        reader.dispose();
+    }
+
+    @Test
+    public void testReadParallelAbortedThenReadSameInput() throws IOException {
+        TIFFImageReader reader = createReader();
+
+        for (TestData data : getTestData()) {
+            reader.setInput(data.getInputStream());
+            BufferedImage expected = reader.read(0);
+
+            ImageInputStream input = data.getInputStream();
+            reader.setInput(input);
+
+            // Abort as soon as the first strip/tile row is done, while later strips/tiles are still being decoded
+            IIOReadProgressListener abort = new ProgressListenerBase() {
+                @Override
+                public void imageProgress(final ImageReader source, final float percentageDone) {
+                    source.abort();
+                }
+            };
+            reader.addIIOReadProgressListener(abort);
+
+            TIFFImageReadParam param = (TIFFImageReadParam) reader.getDefaultReadParam();
+            param.setDecodeThreads(4);
+            reader.read(0, param);
+
+            reader.removeIIOReadProgressListener(abort);
+
+            // All workers must be done when read returns, so the input can be reused
+            BufferedImage actual = reader.read(0);
+
+            assertRasterEquals(data.toString(), expected.getRaster(), actual.getRaster());
+        }
+
+        reader.dispose();
+    }
+
+    @Test
+    public void testReadWithSourceRegionParamData() throws IOException {
+        TIFFImageReader reader = createReader();
+
+        for (TestData data : getTestData()) {
+            reader.setInput(data.getInputStream());
+            BufferedImage full = reader.read(0);
+
+            Rectangle region = new Rectangle(full.getWidth() / 3, full.getHeight() / 4, full.getWidth() / 2, full.getHeight() / 3);
+
+            reader.setInput(data.getInputStream());
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            BufferedImage image = reader.read(0, param);
+
+            assertEquals(region.width, image.getWidth());
+            assertEquals(region.height, image.getHeight());
+            assertRasterEquals(data.toString(), full.getRaster().createChild(region.x, region.y, region.width, region.height, 0, 0, null), image.getRaster());
+        }
+
+        reader.dispose();
+    }
+
+    @Test
+    public void testReadWithSubsampleAndSourceRegionParamData() throws IOException {
+        TIFFImageReader reader = createReader();
+
+        for (TestData data : getTestData()) {
+            reader.setInput(data.getInputStream());
+            BufferedImage full = reader.read(0);
+
+            Rectangle region = new Rectangle(full.getWidth() / 5, full.getHeight() / 6, full.getWidth() / 2, full.getHeight() / 2);
+
+            reader.setInput(data.getInputStream());
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            param.setSourceSubsampling(3, 2, 1, 1);
+            BufferedImage image = reader.read(0, param);
+
+            assertEquals((region.width - 1 + 2) / 3, image.getWidth());
+            assertEquals((region.height - 1 + 1) / 2, image.getHeight());
+
+            Object expected = null;
+            Object actual = null;
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int[] expectedPixel = full.getRaster().getPixel(region.x + 1 + x * 3, region.y + 1 + y * 2, (int[]) expected);
+                    int[] actualPixel = image.getRaster().getPixel(x, y, (int[]) actual);
+                    assertArrayEquals(String.format("%s: (%d, %d)", data, x, y), expectedPixel, actualPixel);
+
+                    expected = expectedPixel;
+                    actual = actualPixel;
+                }
+            }
+        }
+
+        reader.dispose();
+    }
+
+    @Test
+    public void testReadParallelWithSourceRegionParam() throws IOException {
+        TIFFImageReader reader = createReader();
+
+        for (TestData data : getTestData()) {
+            reader.setInput(data.getInputStream());
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(10, 20, 40, 30));
+            param.setSourceSubsampling(2, 2, 0, 0);
+            BufferedImage expected = reader.read(0, param);
+
+            reader.setInput(data.getInputStream());
+            TIFFImageReadParam parallelParam = (TIFFImageReadParam) reader.getDefaultReadParam();
+            parallelParam.setSourceRegion(new Rectangle(10, 20, 40, 30));
+            parallelParam.setSourceSubsampling(2, 2, 0, 0);
+            parallelParam.setDecodeThreads(3);
+            BufferedImage actual = reader.read(0, parallelParam);
+
+            assertRasterEquals(data.toString(), expected.getRaster(), actual.getRaster());
+        }
+
+        reader.dispose();
+    }
+
+    @Test
+    public void testReadJPEGReusedReaderSameAsNew() throws IOException {
+        // New-style (with JPEGTables), old-style with JFIF stream and old-style with tables only, in varying order
+        List<TestData> jpegData = Arrays.asList(
+                new TestData(getClassLoaderResource("/tiff/quad-jpeg.tif"), new Dimension(512, 384)),
+                new TestData(getClassLoaderResource("/tiff/smallliz.tif"), new Dimension(160, 160)),
+                new TestData(getClassLoaderResource("/tiff/zackthecat.tif"), new Dimension(234, 213)),
+                new TestData(getClassLoaderResource("/tiff/quad-jpeg.tif"), new Dimension(512, 384)),
+                new TestData(getClassLoaderResource("/tiff/zackthecat.tif"), new Dimension(234, 213))
+        );
+
+        TIFFImageReader reused = createReader();
+
+        for (TestData data : jpegData) {
+            TIFFImageReader reader = createReader();
+            reader.setInput(data.getInputStream());
+            BufferedImage expected = reader.read(0);
+            reader.dispose();
+
+            reused.setInput(data.getInputStream());
+            BufferedImage actual = reused.read(0);
+
+            assertRasterEquals(data.toString(), expected.getRaster(), actual.getRaster());
+        }
+
+        reused.dispose();
+    }
+
+    @Test
+    public void testReadJPEGMixedPages() throws IOException {
+        // New-style JPEG, old-style JPEG (full JFIF stream), and new-style JPEG with the same JPEGTables again, in one file
+        byte[] data = createMixedJPEGTIFF(
+                FileUtil.read(getClassLoaderResource("/tiff/quad-jpeg.tif").openStream()),
+                FileUtil.read(getClassLoaderResource("/tiff/smallliz.tif").openStream())
+        );
+
+        TIFFImageReader reader = createReader();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(data)));
+        assertEquals(3, reader.getNumImages(true));
+
+        BufferedImage first = reader.read(0);
+        BufferedImage oldStyle = reader.read(1);
+        BufferedImage last = reader.read(2);
+        reader.dispose();
+
+        assertEquals(160, oldStyle.getWidth());
+        assertRasterEquals("Same page after old-style JPEG", first.getRaster(), last.getRaster());
+    }
+
+    // Appends the old-style page, and a copy of the IFD of the new-style page, to the new-style TIFF.
+    // Both must be big endian, with a single IFD.
+    private static byte[] createMixedJPEGTIFF(final byte[] newStyle, final byte[] oldStyle) {
+        ByteBuffer first = ByteBuffer.wrap(newStyle);
+        ByteBuffer second = ByteBuffer.wrap(oldStyle);
+
+        int firstIFD = first.getInt(4);
+        int firstLength = 2 + (first.getShort(firstIFD) & 0xffff) * 12;
+        int secondIFD = second.getInt(4);
+        int secondEntries = second.getShort(secondIFD) & 0xffff;
+
+        int base = newStyle.length + (newStyle.length & 1);
+        int secondIFDOffset = base + oldStyle.length + (oldStyle.length & 1);
+        int thirdIFDOffset = secondIFDOffset + 2 + secondEntries * 12 + 4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(thirdIFDOffset + firstLength + 4);
+        buffer.put(newStyle);
+        buffer.putInt(firstIFD + firstLength, secondIFDOffset);
+        buffer.position(base);
+        buffer.put(oldStyle);
+
+        // The old-style page, with all offsets moved by base
+        buffer.position(secondIFDOffset);
+        buffer.putShort((short) secondEntries);
+
+        for (int i = 0; i < secondEntries; i++) {
+            int entry = secondIFD + 2 + i * 12;
+            short tag = second.getShort(entry);
+            short type = second.getShort(entry + 2);
+            int count = second.getInt(entry + 4);
+            int value = second.getInt(entry + 8);
+
+            if (tag == TIFF.TAG_OLD_JPEG_Q_TABLES || tag == TIFF.TAG_OLD_JPEG_DC_TABLES || tag == TIFF.TAG_OLD_JPEG_AC_TABLES) {
+                // Offsets to the tables
+                for (int j = 0; j < count; j++) {
+                    int position = (count > 1 ? base + value : secondIFDOffset + 2 + i * 12 + 8) + j * 4;
+                    buffer.putInt(position, second.getInt(count > 1 ? value + j * 4 : entry + 8) + base);
+                }
+            }
+
+            boolean offset = count * TIFF.TYPE_LENGTHS[type - 1] > 4 || tag == TIFF.TAG_STRIP_OFFSETS || tag == TIFF.TAG_JPEG_INTERCHANGE_FORMAT;
+            buffer.putShort(tag).putShort(type).putInt(count).putInt(offset ? value + base : value);
+        }
+
+        buffer.putInt(thirdIFDOffset);
+
+        // A copy of the new-style page, sharing its data
+        buffer.put(newStyle, firstIFD, firstLength);
+        buffer.putInt(0);
+
+        return buffer.array();
+    }
+
+    @Test
+    public void testReadFloatingPointPredictor() throws IOException {
+        int width = 17;
+        int height = 9;
+        float[] samples = new float[width * height];
+
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) Math.sin(i / 10.0) * 1000f;
+        }
+
+        TIFFImageReader reader = createReader();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(createFloatingPointTIFF(samples, width, height, 4))));
+
+        assertEquals(DataBuffer.TYPE_FLOAT, reader.getRawImageType(0).getSampleModel().getDataType());
+
+        BufferedImage image = reader.read(0);
+        assertEquals(DataBuffer.TYPE_FLOAT, image.getRaster().getTransferType());
+        assertArrayEquals(samples, image.getRaster().getPixels(0, 0, width, height, (float[]) null), 0);
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(3, 2, 10, 6));
+        param.setSourceSubsampling(2, 3, 0, 0);
+        image = reader.read(0, param);
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(samples[(2 + y * 3) * width + 3 + x * 2], image.getRaster().getSampleFloat(x, y, 0), 0);
+            }
+        }
+
+        reader.dispose();
+    }
+
+    @Test
+    public void testReadParallelCorruptByteCount() throws IOException {
+        int width = 17;
+        int height = 9;
+        float[] samples = new float[width * height];
+
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = i;
+        }
+
+        // The last strip claims to be almost 2 GB, the data must not be allocated up front
+        byte[] data = createFloatingPointTIFF(samples, width, height, 4);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(data.length - 4, Integer.MAX_VALUE - 16);
+
+        TIFFImageReader reader = createReader();
+        reader.setInput(new ByteArrayImageInputStream(data));
+
+        TIFFImageReadParam param = (TIFFImageReadParam) reader.getDefaultReadParam();
+        param.setDecodeThreads(2);
+        BufferedImage image = reader.read(0, param);
+
+        assertArrayEquals(samples, image.getRaster().getPixels(0, 0, width, height, (float[]) null), 0);
+
+        reader.dispose();
+    }
+
+    @Test(expected = IIOException.class)
+    public void testReadParallelByteCountTooLarge() throws IOException {
+        int width = 17;
+        int height = 9;
+
+        // Stream of unknown length, so the byte count can't be limited to the available data
+        byte[] data = createFloatingPointTIFF(new float[width * height], width, height, 4);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(data.length - 4, 0xfffffff0);
+
+        TIFFImageReader reader = createReader();
+        reader.setInput(ImageIO.createImageInputStream(new ByteArrayInputStream(data)));
+
+        TIFFImageReadParam param = (TIFFImageReadParam) reader.getDefaultReadParam();
+        param.setDecodeThreads(2);
+
+        try {
+            reader.read(0, param);
+        }
+        finally {
+            reader.dispose();
+        }
+    }
+
+    @Test(expected = IIOException.class)
+    public void testReadTruncatedLazyValue() throws IOException {
+        int width = 4;
+        int height = 80;
+
+        // One strip per row, so the StripOffsets array is large enough to be read lazily, and cut it off
+        byte[] data = createFloatingPointTIFF(new float[width * height], width, height, 1);
+        data = Arrays.copyOf(data, data.length - height * 8);
+
+        TIFFImageReader reader = createReader();
+        reader.setInput(new ByteArrayImageInputStream(data));
+
+        try {
+            assertEquals(width, reader.getWidth(0));
+            reader.read(0);
+        }
+        finally {
+            reader.dispose();
+        }
+    }
+
+    // Little endian, 32 bit floating point gray, Deflate compressed with floating point predictor
+    private static byte[] createFloatingPointTIFF(final float[] samples, final int width, final int height, final int rowsPerStrip) throws IOException {
+        int strips = (height + rowsPerStrip - 1) / rowsPerStrip;
+        ByteArrayOutputStream stripData = new ByteArrayOutputStream();
+        int[] stripOffsets = new int[strips];
+        int[] stripByteCounts = new int[strips];
+
+        for (int strip = 0; strip < strips; strip++) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+
+            for (int y = strip * rowsPerStrip; y < Math.min(height, (strip + 1) * rowsPerStrip); y++) {
+                deflater.write(HorizontalDeDifferencingStreamTest.predictFloatingPoint(Arrays.copyOfRange(samples, y * width, (y + 1) * width), 1));
+            }
+
+            deflater.close();
+
+            stripOffsets[strip] = 8 + stripData.size();
+            stripByteCounts[strip] = compressed.size();
+            compressed.writeTo(stripData);
+        }
+
+        short[][] entries = {
+                // tag, type (3 = SHORT, 4 = LONG), value
+                {256, 3, (short) width},
+                {257, 3, (short) height},
+                {258, 3, 32},
+                {259, 3, (short) TIFFExtension.COMPRESSION_ZLIB},
+                {262, 3, (short) TIFFBaseline.PHOTOMETRIC_BLACK_IS_ZERO},
+                {273, 4, 0}, // StripOffsets, written below
+                {277, 3, 1},
+                {278, 3, (short) rowsPerStrip},
+                {279, 4, 0}, // StripByteCounts, written below
+                {317, 3, (short) TIFFExtension.PREDICTOR_HORIZONTAL_FLOATINGPOINT},
+                {339, 3, (short) TIFFExtension.SAMPLEFORMAT_FP}
+        };
+
+        int ifdOffset = 8 + stripData.size();
+        int arrayOffset = ifdOffset + 2 + entries.length * 12 + 4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(arrayOffset + strips * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(ifdOffset);
+        buffer.put(stripData.toByteArray());
+
+        buffer.putShort((short) entries.length);
+        for (short[] entry : entries) {
+            buffer.putShort(entry[0]).putShort(entry[1]);
+
+            if (entry[0] == 273 || entry[0] == 279) {
+                buffer.putInt(strips);
+                buffer.putInt(strips == 1 ? (entry[0] == 273 ? stripOffsets[0] : stripByteCounts[0]) : entry[0] == 273 ? arrayOffset : arrayOffset + strips * 4);
+            }
+            else {
+                buffer.putInt(1).putShort(entry[2]).putShort((short) 0);
+            }
+        }
+        buffer.putInt(0); // No next IFD
+
+        for (int offset : stripOffsets) {
+            buffer.putInt(offset);
+        }
+        for (int byteCount : stripByteCounts) {
+            buffer.putInt(byteCount);
+        }
+
+        return buffer.array();
+    }
+
+    private static void assertRasterEquals(final String message, final Raster expected, final Raster actual) {
+        assertEquals(message, expected.getWidth(), actual.getWidth());
+        assertEquals(message, expected.getHeight(), actual.getHeight());
+        assertArrayEquals(message,
+                expected.getPixels(expected.getMinX(), expected.getMinY(), expected.getWidth(), expected.getHeight(), (int[]) null),
+                actual.getPixels(actual.getMinX(), actual.getMinY(), actual.getWidth(), actual.getHeight(), (int[]) null)
+        );
+    }
+
     // TODO: Test YCbCr colors
 }
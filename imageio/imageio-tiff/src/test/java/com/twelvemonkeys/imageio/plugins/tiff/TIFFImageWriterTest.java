@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name "TwelveMonkeys" nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.imageio.util.ImageWriterAbstractTestCase;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TIFFImageWriterTest
+ */
+public class TIFFImageWriterTest extends ImageWriterAbstractTestCase {
+    private static final TIFFImageWriterSpi PROVIDER = new TIFFImageWriterSpi();
+
+    @Override
+    protected ImageWriter createImageWriter() {
+        return new TIFFImageWriter(PROVIDER);
+    }
+
+    @Override
+    protected List<? extends RenderedImage> getTestData() {
+        return Arrays.asList(
+                new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB),
+                new BufferedImage(33, 20, BufferedImage.TYPE_BYTE_GRAY),
+                new BufferedImage(31, 23, BufferedImage.TYPE_BYTE_INDEXED),
+                new BufferedImage(30, 27, BufferedImage.TYPE_BYTE_BINARY),
+                new BufferedImage(28, 31, BufferedImage.TYPE_INT_BGR),
+                new BufferedImage(227, 133, BufferedImage.TYPE_INT_RGB),
+                new BufferedImage(24, 37, BufferedImage.TYPE_3BYTE_BGR),
+                new BufferedImage(23, 41, BufferedImage.TYPE_4BYTE_ABGR),
+                new BufferedImage(47, 29, BufferedImage.TYPE_USHORT_GRAY)
+        );
+    }
+
+    @Test
+    public void testDefaultWriteParamIsTIFFImageWriteParam() {
+        ImageWriteParam param = createImageWriter().getDefaultWriteParam();
+
+        assertTrue(param instanceof TIFFImageWriteParam);
+        assertTrue(param.canWriteCompressed());
+        assertTrue(param.canWriteTiles());
+        assertEquals(Arrays.asList("None", "PackBits", "LZW", "Deflate"), Arrays.asList(param.getCompressionTypes()));
+        assertEquals(1, ((TIFFImageWriteParam) param).getEncodeThreads());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetEncodeThreadsZero() {
+        new TIFFImageWriteParam().setEncodeThreads(0);
+    }
+
+    @Test
+    public void testCanEncodeImage() {
+        assertTrue(PROVIDER.canEncodeImage(ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_ARGB)));
+        assertTrue(PROVIDER.canEncodeImage(ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_BYTE_BINARY)));
+        assertFalse(PROVIDER.canEncodeImage(ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_USHORT_565_RGB)));
+    }
+
+    @Test
+    public void testWriteReadCompareUncompressed() throws IOException {
+        assertWriteReadCompare(null);
+    }
+
+    @Test
+    public void testWriteReadComparePackBits() throws IOException {
+        assertWriteReadCompare(createParam("PackBits", false));
+    }
+
+    @Test
+    public void testWriteReadCompareLZW() throws IOException {
+        assertWriteReadCompare(createParam("LZW", false));
+    }
+
+    @Test
+    public void testWriteReadCompareLZWPredictor() throws IOException {
+        assertWriteReadCompare(createParam("LZW", true));
+    }
+
+    @Test
+    public void testWriteReadCompareDeflate() throws IOException {
+        assertWriteReadCompare(createParam("Deflate", false));
+    }
+
+    @Test
+    public void testWriteReadCompareDeflatePredictor() throws IOException {
+        assertWriteReadCompare(createParam("Deflate", true));
+    }
+
+    @Test
+    public void testWriteReadCompareTiled() throws IOException {
+        TIFFImageWriteParam param = createParam("LZW", true);
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(32, 16, 0, 0);
+
+        assertWriteReadCompare(param);
+    }
+
+    @Test
+    public void testWriteParallelSameAsSerial() throws IOException {
+        for (String compression : Arrays.asList("None", "PackBits", "LZW", "Deflate")) {
+            for (RenderedImage image : getTestData()) {
+                BufferedImage original = drawSomething((BufferedImage) image);
+
+                TIFFImageWriteParam param = createParam(compression, true);
+                byte[] expected = write(original, param);
+
+                param.setEncodeThreads(3);
+                byte[] actual = write(original, param);
+
+                assertArrayEquals(compression + ": " + image, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteParallelAbort() throws IOException {
+        final ImageWriter writer = createImageWriter();
+
+        IIOWriteProgressListener listener = mock(IIOWriteProgressListener.class);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                writer.abort();
+                return null;
+            }
+        }).when(listener).imageProgress(any(ImageWriter.class), anyFloat());
+        writer.addIIOWriteProgressListener(listener);
+
+        TIFFImageWriteParam param = createParam("LZW", false);
+        param.setEncodeThreads(3);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ImageOutputStream stream = ImageIO.createImageOutputStream(buffer);
+
+        try {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(drawSomething(new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB)), null, null), param);
+        }
+        finally {
+            stream.close();
+        }
+
+        verify(listener).writeAborted(writer);
+        verify(listener, never()).imageComplete(writer);
+
+        // No IFD is written, the IFD offset in the header is still 0
+        byte[] data = buffer.toByteArray();
+        assertEquals(0, data[4] | data[5] | data[6] | data[7]);
+    }
+
+    @Test
+    public void testWriteSourceRegionAndSubsampling() throws IOException {
+        BufferedImage original = drawSomething(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB));
+
+        TIFFImageWriteParam param = createParam("LZW", false);
+        param.setSourceRegion(new Rectangle(10, 20, 100, 50));
+        param.setSourceSubsampling(3, 2, 0, 0);
+
+        BufferedImage written = read(write(original, param));
+
+        assertEquals(34, written.getWidth());
+        assertEquals(25, written.getHeight());
+
+        for (int y = 0; y < written.getHeight(); y++) {
+            for (int x = 0; x < written.getWidth(); x++) {
+                assertEquals(String.format("(%d, %d)", x, y), original.getRGB(10 + x * 3, 20 + y * 2), written.getRGB(x, y));
+            }
+        }
+    }
+
+    private static TIFFImageWriteParam createParam(final String compression, final boolean predictor) {
+        TIFFImageWriteParam param = new TIFFImageWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionType(compression);
+        param.setHorizontalPredictor(predictor);
+
+        return param;
+    }
+
+    private byte[] write(final RenderedImage image, final ImageWriteParam param) throws IOException {
+        ImageWriter writer = createImageWriter();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ImageOutputStream stream = ImageIO.createImageOutputStream(buffer);
+
+        try {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            stream.close(); // Force data to be written
+        }
+
+        return buffer.toByteArray();
+    }
+
+    private static BufferedImage read(final byte[] data) throws IOException {
+        TIFFImageReader reader = new TIFFImageReaderSpi().createReaderInstance(null);
+        ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data));
+
+        try {
+            reader.setInput(input);
+            return reader.read(0);
+        }
+        finally {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    private void assertWriteReadCompare(final ImageWriteParam param) throws IOException {
+        for (RenderedImage image : getTestData()) {
+            BufferedImage original = drawSomething((BufferedImage) image);
+            BufferedImage written = read(write(original, param));
+
+            assertNotNull(written);
+            assertEquals(original.getWidth(), written.getWidth());
+            assertEquals(original.getHeight(), written.getHeight());
+
+            for (int y = 0; y < original.getHeight(); y++) {
+                for (int x = 0; x < original.getWidth(); x++) {
+                    assertEquals(String.format("%s (%d, %d)", original, x, y), original.getRGB(x, y), written.getRGB(x, y));
+                }
+            }
+        }
+    }}
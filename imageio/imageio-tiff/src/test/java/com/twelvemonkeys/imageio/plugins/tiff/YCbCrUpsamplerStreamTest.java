@@ -116,4 +116,57 @@ public class YCbCrUpsamplerStreamTest  {
         assertArrayEquals(expected, upsampled);
         assertEquals(-1, stream.read());
     }
+
+    @Test
+    public void testUpsampleCCIR601CoefficientsSameAsDefault() throws IOException {
+        byte[] bytes = new byte[] {
+                1, 2, 3, 4, 5, 6, 7, 8, 42, 96,
+                108, 109, 110, 111, 112, 113, 114, 115, 43, 97
+        };
+
+        byte[] expected = new byte[48];
+        new DataInputStream(new YCbCrUpsamplerStream(new ByteArrayInputStream(bytes), new int[] {2, 2}, TIFFExtension.YCBCR_POSITIONING_CENTERED, 8, null)).readFully(expected);
+
+        byte[] upsampled = new byte[48];
+        new DataInputStream(new YCbCrUpsamplerStream(new ByteArrayInputStream(bytes), new int[] {2, 2}, TIFFExtension.YCBCR_POSITIONING_CENTERED, 8, new double[] {0.299, 0.587, 0.114})).readFully(upsampled);
+
+        assertArrayEquals(expected, upsampled);
+    }
+
+    @Test
+    public void testUpsampleCustomCoefficients() throws IOException {
+        // ITU-R BT.709 coefficients
+        double[] coefficients = {0.2126, 0.7152, 0.0722};
+        byte[] bytes = new byte[256 * 3];
+
+        for (int i = 0; i < 256; i++) {
+            bytes[i * 3] = (byte) i;
+            bytes[i * 3 + 1] = (byte) (255 - i);
+            bytes[i * 3 + 2] = (byte) (i * 7);
+        }
+
+        YCbCrUpsamplerStream stream = new YCbCrUpsamplerStream(new ByteArrayInputStream(bytes), new int[] {1, 1}, TIFFExtension.YCBCR_POSITIONING_CENTERED, 16, coefficients);
+
+        byte[] upsampled = new byte[bytes.length];
+        new DataInputStream(stream).readFully(upsampled);
+        assertEquals(-1, stream.read());
+
+        for (int i = 0; i < 256; i++) {
+            double y = bytes[i * 3] & 0xff;
+            double cb = (bytes[i * 3 + 1] & 0xff) - 128;
+            double cr = (bytes[i * 3 + 2] & 0xff) - 128;
+
+            double red = cr * (2 - 2 * coefficients[0]) + y;
+            double blue = cb * (2 - 2 * coefficients[2]) + y;
+            double green = (y - coefficients[0] * red - coefficients[2] * blue) / coefficients[1];
+
+            assertEquals("red: " + i, clamp(red), upsampled[i * 3] & 0xff, 1);
+            assertEquals("green: " + i, clamp(green), upsampled[i * 3 + 1] & 0xff, 1);
+            assertEquals("blue: " + i, clamp(blue), upsampled[i * 3 + 2] & 0xff, 1);
+        }
+    }
+
+    private static double clamp(final double value) {
+        return Math.max(0, Math.min(255, Math.round(value)));
+    }
 }